@@ -0,0 +1,254 @@
+package com.coursemgmt.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.BufferingStompDecoder;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompDecoder;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Broker STOMP-over-TCP chạy trong process, thay cho broker ngoài (RabbitMQ/ActiveMQ) khi chạy local/test
+ *
+ * - Bật bằng websocket.broker.mode=embedded: node này mở broker trên 127.0.0.1 và relay tới chính nó,
+ *   các node khác dùng websocket.broker.mode=relay trỏ tới cùng host/port
+ * - Chỉ hỗ trợ phần STOMP mà StompBrokerRelayMessageHandler dùng: CONNECT/STOMP, SUBSCRIBE, UNSUBSCRIBE,
+ *   SEND, DISCONNECT và receipt; destination khớp chính xác (không wildcard), không ack, không transaction
+ * - Không kiểm tra login/passcode và không giới hạn tài nguyên: không dùng cho production
+ */
+@Component
+@ConditionalOnProperty(name = "websocket.broker.mode", havingValue = "embedded")
+@Slf4j
+public class EmbeddedStompBroker {
+
+    private static final int MAX_FRAME_BYTES = 1024 * 1024;
+
+    private record Subscription(Connection connection, String id) {
+    }
+
+    private final int configuredPort;
+    private final StompEncoder encoder = new StompEncoder();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicLong messageIds = new AtomicLong();
+
+    // destination -> các subscription đang nghe
+    private final Map<String, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+
+    private volatile ServerSocket serverSocket;
+
+    public EmbeddedStompBroker(@Value("${websocket.broker.embedded.port:61613}") int configuredPort) {
+        this.configuredPort = configuredPort;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), configuredPort));
+        executor.execute(this::acceptLoop);
+        log.info("Embedded STOMP broker listening on {}:{}", getHost(), getPort());
+    }
+
+    @PreDestroy
+    public void stop() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            log.warn("Error closing embedded STOMP broker: {}", e.getMessage());
+        }
+        connections.forEach(Connection::close);
+        executor.shutdownNow();
+    }
+
+    public String getHost() {
+        return serverSocket.getInetAddress().getHostAddress();
+    }
+
+    /**
+     * Cổng thực tế (khác websocket.broker.embedded.port khi cấu hình 0 = cổng ngẫu nhiên)
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Connection connection = new Connection(serverSocket.accept());
+                connections.add(connection);
+                executor.execute(connection::readLoop);
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.error("Embedded STOMP broker accept failed: {}", e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private void handle(Connection connection, Message<byte[]> frame) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(frame);
+        StompCommand command = accessor.getCommand();
+        if (command == null) {
+            // Heartbeat
+            return;
+        }
+        switch (command) {
+            case CONNECT, STOMP -> {
+                StompHeaderAccessor connected = StompHeaderAccessor.create(StompCommand.CONNECTED);
+                connected.setNativeHeader("version", "1.2");
+                connected.setNativeHeader("heart-beat", "0,0");
+                connection.send(connected, new byte[0]);
+            }
+            case SUBSCRIBE -> {
+                String destination = accessor.getDestination();
+                String id = accessor.getSubscriptionId();
+                if (destination != null && id != null) {
+                    connection.subscriptions.put(id, destination);
+                    subscriptions.computeIfAbsent(destination, d -> ConcurrentHashMap.newKeySet())
+                            .add(new Subscription(connection, id));
+                }
+            }
+            case UNSUBSCRIBE -> {
+                String id = accessor.getSubscriptionId();
+                if (id != null) {
+                    unsubscribe(connection, id);
+                }
+            }
+            case SEND -> fanOut(accessor, frame.getPayload());
+            case DISCONNECT -> {
+                sendReceipt(connection, accessor);
+                connection.close();
+                return;
+            }
+            default -> log.debug("Embedded STOMP broker ignored {} frame", command);
+        }
+        sendReceipt(connection, accessor);
+    }
+
+    private void fanOut(StompHeaderAccessor send, byte[] payload) {
+        String destination = send.getDestination();
+        Set<Subscription> targets = destination != null ? subscriptions.get(destination) : null;
+        if (targets == null || targets.isEmpty()) {
+            return;
+        }
+        for (Subscription subscription : targets) {
+            StompHeaderAccessor message = StompHeaderAccessor.create(StompCommand.MESSAGE);
+            // Giữ header ứng dụng (content-type, header của user destination broadcast, ...)
+            Map<String, List<String>> nativeHeaders = send.toNativeHeaderMap();
+            nativeHeaders.forEach((name, values) -> {
+                if (!"receipt".equals(name) && !"transaction".equals(name) && !"content-length".equals(name)) {
+                    values.forEach(value -> message.addNativeHeader(name, value));
+                }
+            });
+            message.setNativeHeader("destination", destination);
+            message.setNativeHeader("subscription", subscription.id());
+            message.setNativeHeader("message-id", String.valueOf(messageIds.incrementAndGet()));
+            subscription.connection().send(message, payload);
+        }
+    }
+
+    private void unsubscribe(Connection connection, String id) {
+        String destination = connection.subscriptions.remove(id);
+        if (destination == null) {
+            return;
+        }
+        Set<Subscription> targets = subscriptions.get(destination);
+        if (targets != null) {
+            targets.remove(new Subscription(connection, id));
+            if (targets.isEmpty()) {
+                subscriptions.remove(destination, targets);
+            }
+        }
+    }
+
+    private void sendReceipt(Connection connection, StompHeaderAccessor accessor) {
+        String receipt = accessor.getReceipt();
+        if (receipt != null) {
+            StompHeaderAccessor receiptFrame = StompHeaderAccessor.create(StompCommand.RECEIPT);
+            receiptFrame.setNativeHeader("receipt-id", receipt);
+            connection.send(receiptFrame, new byte[0]);
+        }
+    }
+
+    /**
+     * 1 kết nối TCP (với relay của Spring: 1 kết nối "system" cho mỗi node + 1 kết nối cho mỗi phiên WebSocket)
+     */
+    private final class Connection {
+
+        private final Socket socket;
+        private final BufferingStompDecoder decoder = new BufferingStompDecoder(new StompDecoder(), MAX_FRAME_BYTES);
+
+        // subscription id -> destination
+        private final Map<String, String> subscriptions = new ConcurrentHashMap<>();
+
+        private Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        private void readLoop() {
+            byte[] chunk = new byte[8192];
+            try (InputStream in = socket.getInputStream()) {
+                int read;
+                while ((read = in.read(chunk)) != -1) {
+                    for (Message<byte[]> frame : decoder.decode(ByteBuffer.wrap(chunk, 0, read))) {
+                        handle(this, frame);
+                    }
+                }
+            } catch (Exception e) {
+                if (!socket.isClosed()) {
+                    log.debug("Embedded STOMP broker connection closed: {}", e.getMessage());
+                }
+            } finally {
+                close();
+            }
+        }
+
+        private void send(StompHeaderAccessor accessor, byte[] payload) {
+            byte[] bytes = encoder.encode(MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+            synchronized (this) {
+                try {
+                    OutputStream out = socket.getOutputStream();
+                    out.write(bytes);
+                    out.flush();
+                } catch (IOException e) {
+                    close();
+                }
+            }
+        }
+
+        private void close() {
+            if (!connections.remove(this)) {
+                return;
+            }
+            List.copyOf(subscriptions.keySet()).forEach(id -> unsubscribe(this, id));
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Đã đóng
+            }
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package com.coursemgmt.config;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
@@ -13,14 +17,56 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 @Configuration
 @EnableWebSocketMessageBroker
 @RequiredArgsConstructor
+@Slf4j
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     
+    // Destination dùng để chuyển /user/... giữa các node khi chạy qua broker relay
+    static final String USER_DESTINATION_BROADCAST = "/topic/unresolved-user-destination";
+    static final String USER_REGISTRY_BROADCAST = "/topic/simp-user-registry";
+    
     private final WebSocketAuthInterceptor webSocketAuthInterceptor;
+    private final ObjectProvider<EmbeddedStompBroker> embeddedStompBroker;
+    
+    // simple: broker trong bộ nhớ (1 node)
+    // relay: relay STOMP over TCP tới broker ngoài (RabbitMQ/ActiveMQ), tin nhắn /topic/** tới được client ở mọi node
+    // embedded: như relay nhưng tự mở EmbeddedStompBroker trong process (local/test)
+    @Value("${websocket.broker.mode:simple}")
+    private String brokerMode;
+    
+    @Value("${websocket.broker.relay.host:localhost}")
+    private String relayHost;
+    
+    @Value("${websocket.broker.relay.port:61613}")
+    private int relayPort;
+    
+    @Value("${websocket.broker.relay.virtual-host:}")
+    private String relayVirtualHost;
+    
+    @Value("${websocket.broker.relay.client-login:guest}")
+    private String relayClientLogin;
+    
+    @Value("${websocket.broker.relay.client-passcode:guest}")
+    private String relayClientPasscode;
+    
+    @Value("${websocket.broker.relay.system-login:guest}")
+    private String relaySystemLogin;
+    
+    @Value("${websocket.broker.relay.system-passcode:guest}")
+    private String relaySystemPasscode;
     
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        // Enable a simple in-memory message broker to carry messages back to the client
-        config.enableSimpleBroker("/topic", "/queue");
+        switch (brokerMode.trim().toLowerCase()) {
+            case "simple" ->
+                // Enable a simple in-memory message broker to carry messages back to the client
+                config.enableSimpleBroker("/topic", "/queue");
+            case "relay" -> enableRelay(config, relayHost, relayPort);
+            case "embedded" -> {
+                EmbeddedStompBroker broker = embeddedStompBroker.getObject();
+                enableRelay(config, broker.getHost(), broker.getPort());
+            }
+            default -> throw new IllegalArgumentException("Unknown websocket.broker.mode: " + brokerMode);
+        }
         // Prefix for messages bound to methods annotated with @MessageMapping
         config.setApplicationDestinationPrefixes("/app");
         // Set user destination prefix for sending messages to specific users
@@ -40,5 +86,22 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         // Add interceptor to authenticate WebSocket connections
         registration.interceptors(webSocketAuthInterceptor);
     }
+    
+    private void enableRelay(MessageBrokerRegistry config, String host, int port) {
+        StompBrokerRelayRegistration relay = config.enableStompBrokerRelay("/topic", "/queue")
+                .setRelayHost(host)
+                .setRelayPort(port)
+                .setClientLogin(relayClientLogin)
+                .setClientPasscode(relayClientPasscode)
+                .setSystemLogin(relaySystemLogin)
+                .setSystemPasscode(relaySystemPasscode)
+                // convertAndSendToUser tới user đang kết nối ở node khác
+                .setUserDestinationBroadcast(USER_DESTINATION_BROADCAST)
+                .setUserRegistryBroadcast(USER_REGISTRY_BROADCAST);
+        if (!relayVirtualHost.isBlank()) {
+            relay.setVirtualHost(relayVirtualHost);
+        }
+        log.info("WebSocket broker mode '{}': relaying /topic, /queue to {}:{}", brokerMode, host, port);
+    }
 }
 
@@ -2,11 +2,13 @@ package com.coursemgmt.controller;
 
 import com.coursemgmt.dto.AdminUserDTO;
 import com.coursemgmt.dto.CourseResponse;
+import com.coursemgmt.dto.CursorPageResponse;
 import com.coursemgmt.model.Course;
 import com.coursemgmt.model.ERole;
 import com.coursemgmt.model.User;
 import com.coursemgmt.repository.CourseRepository;
 import com.coursemgmt.repository.UserRepository;
+import com.coursemgmt.service.CourseDetailCache;
 import com.coursemgmt.service.CourseService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -35,6 +37,9 @@ public class AdminCourseController {
     
     @Autowired
     private UserRepository userRepository;
+    
+    @Autowired
+    private CourseDetailCache courseDetailCache;
 
     /**
      * GET /api/v1/admin/courses
@@ -60,6 +65,43 @@ public class AdminCourseController {
         return ResponseEntity.ok(courseResponses);
     }
 
+    /**
+     * GET /api/v1/admin/courses/cursor
+     * Lấy khóa học theo cursor (keyset pagination) - không dùng OFFSET, COUNT chỉ chạy khi includeTotal=true
+     */
+    @GetMapping("/cursor")
+    public ResponseEntity<CursorPageResponse<CourseResponse>> getAllCoursesByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "createdAt") String sortBy,
+            @RequestParam(defaultValue = "DESC") String sortDir,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String status,
+            @RequestParam(defaultValue = "false") boolean includeTotal
+    ) {
+        Sort.Direction direction = sortDir.equalsIgnoreCase("ASC") 
+            ? Sort.Direction.ASC 
+            : Sort.Direction.DESC;
+        
+        CursorPageResponse<Course> courses = courseService.getCoursesForAdminByCursor(
+            search, status, cursor, size, sortBy, direction, includeTotal);
+        List<CourseResponse> content = courses.getContent().stream()
+            .map(CourseResponse::fromEntity)
+            .collect(Collectors.toList());
+        
+        return ResponseEntity.ok(new CursorPageResponse<>(content, courses.getNextCursor(), courses.isHasNext(),
+            content.size(), courses.getTotalElements()));
+    }
+
+    /**
+     * GET /api/v1/admin/courses/cache-stats
+     * Số liệu hit/miss/eviction của cache trang chi tiết khóa học
+     */
+    @GetMapping("/cache-stats")
+    public ResponseEntity<Map<String, Object>> getCourseDetailCacheStats() {
+        return ResponseEntity.ok(courseDetailCache.getStats());
+    }
+
     /**
      * GET /api/v1/admin/courses/{id}
      * Lấy chi tiết khóa học
@@ -1,6 +1,7 @@
 package com.coursemgmt.controller;
 
 import com.coursemgmt.service.AdminDashboardService;
+import com.coursemgmt.service.DashboardQueryExecutor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -18,6 +19,9 @@ public class AdminDashboardController {
     @Autowired
     private AdminDashboardService adminDashboardService;
 
+    @Autowired
+    private DashboardQueryExecutor dashboardQueryExecutor;
+
     /**
      * GET /api/v1/admin/stats/summary
      * Trả về các con số tổng quan
@@ -47,5 +51,13 @@ public class AdminDashboardController {
         List<Map<String, Object>> topCourses = adminDashboardService.getTopSellingCourses();
         return ResponseEntity.ok(topCourses);
     }
-}
 
+    /**
+     * GET /api/v1/admin/stats/widget-metrics
+     * Thời gian chạy của từng widget dashboard (số lần, lỗi, quá hạn, trung bình / tối đa ms)
+     */
+    @GetMapping("/widget-metrics")
+    public ResponseEntity<Map<String, DashboardQueryExecutor.WidgetMetrics>> getWidgetMetrics() {
+        return ResponseEntity.ok(dashboardQueryExecutor.getMetrics());
+    }
+}
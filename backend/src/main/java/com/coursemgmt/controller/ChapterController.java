@@ -330,6 +330,21 @@ public class ChapterController {
         }
     }
 
+    /**
+     * Cập nhật thứ tự lessons của cả khóa học trong 1 request (nhiều chapters)
+     */
+    @PatchMapping("/lessons/reorder")
+    @PreAuthorize("hasRole('ADMIN') or @courseSecurityService.isInstructor(authentication, #courseId)")
+    public ResponseEntity<?> reorderCourseLessons(@PathVariable Long courseId,
+                                                  @RequestBody Map<Long, Integer> lessonPositions) {
+        try {
+            contentService.reorderCourseLessons(courseId, lessonPositions);
+            return ResponseEntity.ok(new MessageResponse("Lessons reordered successfully"));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error reordering lessons: " + e.getMessage()));
+        }
+    }
+
     /**
      * Cập nhật thứ tự lessons trong chapter
      */
@@ -12,6 +12,7 @@ import org.springframework.web.bind.annotation.*;
 import com.coursemgmt.security.services.UserDetailsImpl;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/v1/chat")
@@ -19,6 +20,9 @@ import java.util.List;
 @CrossOrigin(origins = "*", maxAge = 3600)
 public class ChatController {
 
+    private static final int MAX_INBOX_PAGE_SIZE = 100;
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
+
     private final ChatService chatService;
 
     @PostMapping("/conversations")
@@ -41,6 +45,20 @@ public class ChatController {
         }
     }
 
+    /**
+     * Inbox phân trang theo cursor (hoạt động gần nhất trước)
+     * GET /api/v1/chat/conversations/inbox?size=20&cursor=...
+     */
+    @GetMapping("/conversations/inbox")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<CursorPageResponse<ConversationResponse>> getInbox(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        Long currentUserId = getCurrentUserId();
+        int pageSize = Math.max(1, Math.min(size, MAX_INBOX_PAGE_SIZE));
+        return ResponseEntity.ok(chatService.getInbox(currentUserId, cursor, pageSize));
+    }
+
     @GetMapping("/conversations/{id}")
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<ConversationResponse> getConversation(@PathVariable Long id) {
@@ -72,6 +90,24 @@ public class ChatController {
         }
     }
 
+    /**
+     * Lịch sử tin nhắn theo cursor id (tối đa 1 trong before / after / around)
+     * GET /api/v1/chat/conversations/{id}/messages/history?before=120&size=50
+     * - after: bắt kịp các tin nhắn sau id cuối client đã thấy (ví dụ sau khi WebSocket kết nối lại)
+     */
+    @GetMapping("/conversations/{id}/messages/history")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<MessageHistoryResponse> getMessageHistory(
+            @PathVariable Long id,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Long around,
+            @RequestParam(defaultValue = "50") int size) {
+        Long currentUserId = getCurrentUserId();
+        int pageSize = Math.max(1, Math.min(size, MAX_HISTORY_PAGE_SIZE));
+        return ResponseEntity.ok(chatService.getMessageHistory(id, currentUserId, before, after, around, pageSize));
+    }
+
     @PutMapping("/messages/{id}")
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<ChatMessageResponse> updateMessage(
@@ -92,10 +128,10 @@ public class ChatController {
 
     @PostMapping("/conversations/{id}/read")
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<Void> markAsRead(@PathVariable Long id) {
+    public ResponseEntity<Map<String, Long>> markAsRead(@PathVariable Long id) {
         Long currentUserId = getCurrentUserId();
-        chatService.markAsRead(id, currentUserId);
-        return ResponseEntity.noContent().build();
+        Long lastReadMessageId = chatService.markAsRead(id, currentUserId);
+        return ResponseEntity.ok(Map.of("lastReadMessageId", lastReadMessageId));
     }
 
     @GetMapping("/conversations/{id}/unread-count")
@@ -4,6 +4,8 @@ import com.coursemgmt.dto.CourseRequest;
 import com.coursemgmt.dto.CourseResponse;
 import com.coursemgmt.dto.CourseStatisticsResponse;
 import com.coursemgmt.dto.CourseAnalyticsResponse;
+import com.coursemgmt.dto.CursorPageResponse;
+import com.coursemgmt.dto.HomePageResponse;
 import com.coursemgmt.dto.MessageResponse;
 import com.coursemgmt.dto.MeetingResponse;
 import com.coursemgmt.dto.ChapterResponse;
@@ -50,7 +52,7 @@ public class CourseController {
 
     private static final Set<String> VALID_SORT_FIELDS = new HashSet<>(Arrays.asList(
             "id", "title", "description", "price", "imageUrl", "totalDurationInHours",
-            "status", "createdAt", "updatedAt"
+            "status", "createdAt", "updatedAt", CourseService.SORT_RELEVANCE
     ));
 
     /**
@@ -199,6 +201,12 @@ public class CourseController {
         return ResponseEntity.ok(featuredCourses);
     }
 
+    // 5.3. Dữ liệu trang chủ: featured + mới nhất + bán chạy (Public, phục vụ từ snapshot)
+    @GetMapping("/home")
+    public ResponseEntity<HomePageResponse> getHomePage() {
+        return ResponseEntity.ok(courseService.getHomePage());
+    }
+
     // 6. Tìm kiếm, lọc, sắp xếp khóa học (Public)
     @GetMapping
     public ResponseEntity<Page<CourseResponse>> getAllCourses(
@@ -212,14 +220,41 @@ public class CourseController {
             @RequestParam(required = false) Double minRating, // Đánh giá tối thiểu
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
-            @RequestParam(defaultValue = "createdAt,desc") String sort // Sắp xếp
+            @RequestParam(required = false) String sort // Sắp xếp (mặc định: relevance nếu có keyword, ngược lại createdAt,desc)
     ) {
+        // Có keyword mà không chỉ định sort thì xếp theo độ liên quan
+        if (sort == null && keyword != null && !keyword.isBlank()) {
+            sort = CourseService.SORT_RELEVANCE + ",desc";
+        }
         // Sanitize sort parameter to prevent 400 errors from invalid field names
         String sanitizedSort = sanitizeSort(sort);
         Page<CourseResponse> courses = courseService.getAllPublishedCourses(keyword, categoryId, minPrice, maxPrice, isFree, isPaid, level, minRating, page, size, sanitizedSort);
         return ResponseEntity.ok(courses);
     }
 
+    // 6.1. Danh sách khóa học theo cursor (keyset pagination, Public)
+    // Trang sau: gửi lại nextCursor của response trước, giữ nguyên sort và bộ lọc
+    @GetMapping("/cursor")
+    public ResponseEntity<CursorPageResponse<CourseResponse>> getAllCoursesByCursor(
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Boolean isFree,
+            @RequestParam(required = false) Boolean isPaid,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String sort, // createdAt | updatedAt | price | title | popularity | relevance (kèm ",asc"/",desc")
+            @RequestParam(defaultValue = "false") boolean includeTotal
+    ) {
+        if (sort == null || sort.isBlank()) {
+            sort = keyword != null && !keyword.isBlank() ? CourseService.SORT_RELEVANCE + ",desc" : "createdAt,desc";
+        }
+        CursorPageResponse<CourseResponse> courses = courseService.getPublishedCoursesByCursor(
+                keyword, categoryId, minPrice, maxPrice, isFree, isPaid, cursor, size, sort, includeTotal);
+        return ResponseEntity.ok(courses);
+    }
+
     // 7. Thống kê (Admin hoặc Giảng viên sở hữu)
     @GetMapping("/{id}/statistics")
     @PreAuthorize("hasRole('ADMIN') or @courseSecurityService.isInstructor(authentication, #id)")
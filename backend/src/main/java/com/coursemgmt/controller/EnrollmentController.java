@@ -137,13 +137,17 @@ public class EnrollmentController {
 
     /**
      * 8. Thống kê học viên mới theo tháng
-     * GET /api/v1/enrollments/stats/monthly?year=2025
+     * GET /api/v1/enrollments/stats/monthly?year=2025[&courseId=1][&instructorId=2]
+     * Security: Admin, hoặc giảng viên với khóa học của mình / instructorId của chính mình
      */
     @GetMapping("/stats/monthly")
+    @PreAuthorize("hasRole('ADMIN') or (hasRole('LECTURER') and @courseSecurityService.canViewEnrollmentStats(authentication, #courseId, #instructorId))")
     public ResponseEntity<MonthlyStudentStatsDTO> getMonthlyStudentStats(
-        @RequestParam(defaultValue = "2025") int year
+        @RequestParam(defaultValue = "2025") int year,
+        @RequestParam(required = false) Long courseId,
+        @RequestParam(required = false) Long instructorId
     ) {
-        MonthlyStudentStatsDTO stats = enrollmentService.getMonthlyStudentStats(year);
+        MonthlyStudentStatsDTO stats = enrollmentService.getMonthlyStudentStats(year, courseId, instructorId);
         return ResponseEntity.ok(stats);
     }
 }
@@ -5,9 +5,14 @@ import com.coursemgmt.dto.InstructorCourseDTO;
 import com.coursemgmt.dto.InstructorChartDataDTO;
 import com.coursemgmt.dto.InstructorEarningsDTO;
 import com.coursemgmt.dto.InstructorStudentDTO;
+import com.coursemgmt.dto.StudentRosterFilter;
 import com.coursemgmt.security.services.UserDetailsImpl;
 import com.coursemgmt.service.InstructorDashboardService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -20,6 +25,8 @@ import java.util.List;
 @RequestMapping("/api/instructor")
 public class InstructorDashboardController {
 
+    private static final int MAX_ROSTER_PAGE_SIZE = 100;
+
     @Autowired
     private InstructorDashboardService instructorDashboardService;
 
@@ -53,15 +60,20 @@ public class InstructorDashboardController {
 
     /**
      * 3. Lấy dữ liệu charts cho Dashboard
-     * GET /api/instructor/dashboard/charts
+     * GET /api/instructor/dashboard/charts?range=6m&granularity=month
+     * - range: 30d, 6m (mặc định), 12m, all
+     * - granularity: day, week, month (mặc định)
      * Security: Chỉ Instructor mới có quyền truy cập
      */
     @GetMapping("/dashboard/charts")
     @PreAuthorize("hasRole('LECTURER')")
     public ResponseEntity<InstructorChartDataDTO> getChartData(
-            @AuthenticationPrincipal UserDetailsImpl userDetails
+            @AuthenticationPrincipal UserDetailsImpl userDetails,
+            @RequestParam(defaultValue = "6m") String range,
+            @RequestParam(defaultValue = "month") String granularity
     ) {
-        InstructorChartDataDTO chartData = instructorDashboardService.getChartData(userDetails.getId());
+        InstructorChartDataDTO chartData = instructorDashboardService.getChartData(userDetails.getId(),
+                InstructorChartDataDTO.Range.fromParam(range), InstructorChartDataDTO.Granularity.fromParam(granularity));
         return ResponseEntity.ok(chartData);
     }
     
@@ -92,5 +104,29 @@ public class InstructorDashboardController {
         List<InstructorStudentDTO> students = instructorDashboardService.getStudents(userDetails.getId());
         return ResponseEntity.ok(students);
     }
+
+    /**
+     * 6. Danh sách học viên có phân trang / lọc / sắp xếp (thực hiện trong SQL)
+     * GET /api/instructor/students/roster?page=0&size=20&sort=lastActive,desc
+     *     &courseId=&status=IN_PROGRESS&minProgress=&maxProgress=&activeFrom=&activeTo=&search=
+     * - sort: studentName, courseTitle, progress, enrolledAt (mặc định), lastActive, status
+     * Security: Chỉ Instructor mới có quyền truy cập
+     */
+    @GetMapping("/students/roster")
+    @PreAuthorize("hasRole('LECTURER')")
+    public ResponseEntity<Page<InstructorStudentDTO>> getStudentRoster(
+            @AuthenticationPrincipal UserDetailsImpl userDetails,
+            StudentRosterFilter filter,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "enrolledAt,desc") String sort
+    ) {
+        String[] sortParts = sort.split(",");
+        Sort.Direction direction = sortParts.length > 1 && sortParts[1].equalsIgnoreCase("asc")
+                ? Sort.Direction.ASC : Sort.Direction.DESC;
+        Pageable pageable = PageRequest.of(page, Math.min(size, MAX_ROSTER_PAGE_SIZE), Sort.by(direction, sortParts[0]));
+        Page<InstructorStudentDTO> students = instructorDashboardService.getStudentRoster(userDetails.getId(), filter, pageable);
+        return ResponseEntity.ok(students);
+    }
 }
 
@@ -16,6 +16,7 @@ import org.springframework.web.bind.annotation.*;
 import com.coursemgmt.security.services.UserDetailsImpl;
 
 import java.io.IOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -95,6 +96,23 @@ public class StatisticsController {
         return ResponseEntity.ok(report);
     }
 
+    /**
+     * 5b. Phân tích doanh thu theo khóa học / danh mục / giảng viên (Admin only)
+     * GET /api/v1/statistics/revenue/breakdown?startDate=2026-01-01&endDate=2026-03-31
+     * - Khoảng ngày bao gồm cả endDate; mỗi nhóm có doanh thu, số lượng bán, số giao dịch lỗi/chờ và tỷ lệ lỗi
+     */
+    @GetMapping("/revenue/breakdown")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<RevenueBreakdownDTO> getRevenueBreakdown(
+        @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) 
+        LocalDate startDate,
+        @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) 
+        LocalDate endDate
+    ) {
+        RevenueBreakdownDTO breakdown = statisticsService.getRevenueBreakdown(startDate, endDate);
+        return ResponseEntity.ok(breakdown);
+    }
+
     /**
      * 6. Báo cáo tỷ lệ hoàn thành (Admin only)
      * GET /api/v1/statistics/completion
@@ -1,6 +1,7 @@
 package com.coursemgmt.controller;
 
 import com.coursemgmt.dto.ChatMessageResponse;
+import com.coursemgmt.dto.MessageHistoryResponse;
 import com.coursemgmt.dto.SendMessageRequest;
 import com.coursemgmt.dto.UpdateMessageRequest;
 import com.coursemgmt.dto.DeleteMessageRequest;
@@ -29,6 +30,8 @@ public class WebSocketChatController {
     private final NotificationService notificationService;
     private final SimpMessagingTemplate messagingTemplate;
     
+    private static final int CATCH_UP_BATCH_SIZE = 100;
+    
     @MessageMapping("/chat.send")
     public void sendMessage(@Payload SendMessageRequest request, SimpMessageHeaderAccessor headerAccessor) {
         try {
@@ -100,7 +103,8 @@ public class WebSocketChatController {
             }
             
             Long userId = ((UserDetailsImpl) auth.getPrincipal()).getId();
-            chatService.markAsRead(read.getConversationId(), userId);
+            // messageId (nếu có) = tin cuối cùng client đã hiển thị; broadcast watermark thực tế cho các participant khác
+            read.setMessageId(chatService.markAsRead(read.getConversationId(), userId, read.getMessageId()));
             
             // Notify other participants
             messagingTemplate.convertAndSend("/topic/conversation/" + read.getConversationId() + "/read", read);
@@ -196,6 +200,28 @@ public class WebSocketChatController {
         }
     }
     
+    /**
+     * Client kết nối lại gửi id tin nhắn cuối đã thấy của conversation; server trả các tin nhắn bị lỡ
+     * về /user/queue/chat.catchup (tối đa CATCH_UP_BATCH_SIZE tin, hasNewer = true thì client gửi lại với newestId)
+     */
+    @MessageMapping("/chat.catchup")
+    public void catchUp(@Payload CatchUpRequest request, SimpMessageHeaderAccessor headerAccessor) {
+        try {
+            Authentication auth = (Authentication) headerAccessor.getUser();
+            if (auth == null || !(auth.getPrincipal() instanceof UserDetailsImpl)) {
+                return;
+            }
+            
+            Long userId = ((UserDetailsImpl) auth.getPrincipal()).getId();
+            Long lastSeen = request.getLastSeenMessageId() != null ? request.getLastSeenMessageId() : 0L;
+            MessageHistoryResponse missed = chatService.getMessageHistory(
+                request.getConversationId(), userId, null, lastSeen, null, CATCH_UP_BATCH_SIZE);
+            messagingTemplate.convertAndSendToUser(userId.toString(), "/queue/chat.catchup", missed);
+        } catch (Exception e) {
+            log.error("Error catching up conversation: {}", e.getMessage(), e);
+        }
+    }
+    
     // Inner classes for WebSocket messages
     public static class TypingMessage {
         private Long conversationId;
@@ -210,6 +236,16 @@ public class WebSocketChatController {
         public void setIsTyping(Boolean isTyping) { this.isTyping = isTyping; }
     }
     
+    public static class CatchUpRequest {
+        private Long conversationId;
+        private Long lastSeenMessageId;
+        
+        public Long getConversationId() { return conversationId; }
+        public void setConversationId(Long conversationId) { this.conversationId = conversationId; }
+        public Long getLastSeenMessageId() { return lastSeenMessageId; }
+        public void setLastSeenMessageId(Long lastSeenMessageId) { this.lastSeenMessageId = lastSeenMessageId; }
+    }
+    
     public static class ReadMessage {
         private Long conversationId;
         private Long messageId;
@@ -45,6 +45,30 @@ public class CourseResponse {
         private String avatarUrl;
     }
 
+    // Bản sao nông (category/instructor không bị sửa sau khi tạo nên dùng chung được)
+    public CourseResponse copy() {
+        CourseResponse dto = new CourseResponse();
+        dto.setId(id);
+        dto.setTitle(title);
+        dto.setDescription(description);
+        dto.setPrice(price);
+        dto.setImageUrl(imageUrl);
+        dto.setTotalDurationInHours(totalDurationInHours);
+        dto.setStatus(status);
+        dto.setCreatedAt(createdAt);
+        dto.setEnrollmentCount(enrollmentCount);
+        dto.setIsFeatured(isFeatured);
+        dto.setIsPublished(isPublished);
+        dto.setIsEnrolled(isEnrolled);
+        dto.setRating(rating);
+        dto.setReviewCount(reviewCount);
+        dto.setEnrollmentProgress(enrollmentProgress);
+        dto.setEnrollmentStatus(enrollmentStatus);
+        dto.setCategory(category);
+        dto.setInstructor(instructor);
+        return dto;
+    }
+
     // Tiện ích để chuyển từ Entity sang DTO
     public static CourseResponse fromEntity(Course course) {
         CourseResponse dto = new CourseResponse();
@@ -0,0 +1,22 @@
+package com.coursemgmt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Kết quả phân trang theo cursor (keyset pagination)
+ * Client gửi lại nextCursor để lấy trang tiếp theo
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageResponse<T> {
+    private List<T> content;
+    private String nextCursor; // null nếu đã hết dữ liệu
+    private boolean hasNext;
+    private int size;
+    private Long totalElements; // Chỉ tính khi client yêu cầu (includeTotal=true), ngược lại là null
+}
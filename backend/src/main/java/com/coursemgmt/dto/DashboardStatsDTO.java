@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Map;
+
 /**
  * DTO cho tổng quan dashboard
  */
@@ -37,5 +39,8 @@ public class DashboardStatsDTO {
     private Double averageCompletionRate;
     private Long completedEnrollments;
     private Long inProgressEnrollments;
+    
+    // Widget lỗi/quá hạn khi tải dashboard: tên trường -> TIMEOUT / FAILED (null nếu đủ số liệu)
+    private Map<String, String> widgetErrors;
 }
 
@@ -0,0 +1,21 @@
+package com.coursemgmt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Dữ liệu trang chủ: khóa học nổi bật, mới nhất và bán chạy
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HomePageResponse {
+    private List<CourseResponse> featuredCourses;
+    private List<CourseResponse> latestCourses;
+    private List<CourseResponse> topSellingCourses;
+    private LocalDateTime generatedAt; // Thời điểm dựng snapshot
+}
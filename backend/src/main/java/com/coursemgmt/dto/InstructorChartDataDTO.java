@@ -13,14 +13,52 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 public class InstructorChartDataDTO {
-    private List<MonthlyData> earnings; // Doanh thu theo tháng
-    private List<MonthlyData> enrollments; // Số lượng đăng ký theo tháng
+    private List<MonthlyData> earnings; // Doanh thu theo từng khoảng (mặc định: theo tháng)
+    private List<MonthlyData> enrollments; // Số lượng đăng ký theo từng khoảng
+
+    /**
+     * Khoảng thời gian của chart (tham số range: 30d, 6m, 12m, all)
+     */
+    public enum Range {
+        LAST_30_DAYS("30d"), LAST_6_MONTHS("6m"), LAST_12_MONTHS("12m"), ALL_TIME("all");
+
+        private final String param;
+
+        Range(String param) {
+            this.param = param;
+        }
+
+        public static Range fromParam(String value) {
+            for (Range range : values()) {
+                if (range.param.equalsIgnoreCase(value)) {
+                    return range;
+                }
+            }
+            throw new IllegalArgumentException("Invalid chart range: " + value + " (expected 30d, 6m, 12m or all)");
+        }
+    }
+
+    /**
+     * Độ chia của chart (tham số granularity: day, week, month)
+     */
+    public enum Granularity {
+        DAY, WEEK, MONTH;
+
+        public static Granularity fromParam(String value) {
+            for (Granularity granularity : values()) {
+                if (granularity.name().equalsIgnoreCase(value)) {
+                    return granularity;
+                }
+            }
+            throw new IllegalArgumentException("Invalid chart granularity: " + value + " (expected day, week or month)");
+        }
+    }
 
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
     public static class MonthlyData {
-        private String month; // "Tháng 1", "Tháng 2", etc.
+        private String month; // Nhãn của khoảng: "Tháng 1" (theo tháng), "Tuần 06/10" (theo tuần), "06/10" (theo ngày)
         private Double value; // Doanh thu hoặc số lượng đăng ký
     }
 }
@@ -21,7 +21,7 @@ public class InstructorStudentDTO {
     private String courseTitle;
     private Double progress; // Tiến độ học tập (%)
     private LocalDateTime enrolledAt; // Ngày đăng ký
-    private LocalDateTime lastActive; // Hoạt động gần nhất (từ User_Progress)
+    private LocalDateTime lastActive; // Hoạt động gần nhất (enrollments.last_active_at)
     private String status; // IN_PROGRESS, COMPLETED
 }
 
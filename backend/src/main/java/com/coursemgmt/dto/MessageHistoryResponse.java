@@ -0,0 +1,24 @@
+package com.coursemgmt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 1 đoạn lịch sử tin nhắn phân trang theo id (cursor = id tin nhắn)
+ * - content: sắp xếp từ cũ đến mới
+ * - Trang cũ hơn: gửi before = oldestId; trang mới hơn / bắt kịp sau khi kết nối lại: gửi after = newestId
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageHistoryResponse {
+    private Long conversationId;
+    private List<ChatMessageResponse> content;
+    private Long oldestId;   // null nếu content rỗng
+    private Long newestId;   // null nếu content rỗng
+    private boolean hasOlder; // Còn tin nhắn cũ hơn oldestId
+    private boolean hasNewer; // Còn tin nhắn mới hơn newestId (client bắt kịp cần gọi tiếp với after = newestId)
+}
@@ -0,0 +1,42 @@
+package com.coursemgmt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * DTO cho phân tích doanh thu theo khóa học / danh mục / giảng viên trong 1 khoảng ngày
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevenueBreakdownDTO {
+    private LocalDate startDate;
+    private LocalDate endDate; // Bao gồm cả ngày cuối
+
+    // Tổng quan (toàn bộ giao dịch trong khoảng)
+    private RevenueGroupDTO total;
+
+    // Sắp xếp theo doanh thu giảm dần
+    private List<RevenueGroupDTO> byCourse;
+    private List<RevenueGroupDTO> byCategory;
+    private List<RevenueGroupDTO> byInstructor;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RevenueGroupDTO {
+        private Long id;   // courseId / categoryId / instructorId (null = chưa phân loại)
+        private String name;
+        private Double revenue;            // Tổng tiền giao dịch SUCCESS
+        private Long unitsSold;            // Số giao dịch SUCCESS (mỗi giao dịch = 1 khóa học)
+        private Long totalTransactions;    // Mọi trạng thái
+        private Long failedTransactions;
+        private Long pendingTransactions;
+        private Double failureRate;        // % giao dịch FAILED trên tổng số giao dịch
+        private Double averageOrderValue;  // revenue / unitsSold
+    }
+}
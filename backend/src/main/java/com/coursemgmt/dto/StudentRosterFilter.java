@@ -0,0 +1,26 @@
+package com.coursemgmt.dto;
+
+import com.coursemgmt.model.EEnrollmentStatus;
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * Bộ lọc danh sách học viên của Instructor (mọi trường đều không bắt buộc)
+ */
+@Data
+public class StudentRosterFilter {
+    private Long courseId;
+    private EEnrollmentStatus status; // IN_PROGRESS, COMPLETED
+    private Double minProgress; // Tiến độ tối thiểu (%)
+    private Double maxProgress; // Tiến độ tối đa (%)
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime activeFrom; // Hoạt động gần nhất từ (bao gồm)
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime activeTo; // Hoạt động gần nhất trước (không bao gồm)
+
+    private String search; // Tìm theo tên / username / email học viên
+}
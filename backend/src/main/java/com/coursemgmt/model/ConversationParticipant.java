@@ -37,6 +37,10 @@ public class ConversationParticipant {
     @Column(name = "last_read_at")
     private LocalDateTime lastReadAt;
     
+    // Watermark đã đọc: id tin nhắn cuối cùng participant đã đọc (mọi tin có id <= watermark coi là đã đọc)
+    @Column(name = "last_read_message_id")
+    private Long lastReadMessageId = 0L;
+    
     @Column(name = "is_muted", nullable = false)
     private Boolean isMuted = false;
     
@@ -6,7 +6,12 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "courses")
+@Table(name = "courses", indexes = {
+        // Keyset pagination: (trường sắp xếp, id) cho danh sách public và admin
+        @Index(name = "idx_courses_status_created", columnList = "status, created_at, id"),
+        @Index(name = "idx_courses_status_price", columnList = "status, price, id"),
+        @Index(name = "idx_courses_created", columnList = "created_at, id")
+})
 @Data
 public class Course {
 
@@ -40,6 +45,11 @@ public class Course {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
+    // Phiên bản nội dung (chapters/lessons), tăng mỗi khi curriculum thay đổi - dùng để kiểm tra cache
+    // Chỉ được tăng bằng CourseRepository.bumpCurriculumVersion (updatable = false để save() không ghi đè giá trị cũ)
+    @Column(name = "curriculum_version", updatable = false)
+    private Long curriculumVersion = 0L;
+
     // (n-1) Nhiều Course thuộc 1 Giảng viên (User)
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "instructor_id")
@@ -0,0 +1,52 @@
+package com.coursemgmt.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Bộ đếm tổng hợp cho mỗi khóa học (denormalized)
+ * Được cập nhật trong cùng transaction với enrollments/reviews/transactions
+ * và được đối soát định kỳ bởi CourseStatsService.rebuildAllStats()
+ */
+@Entity
+@Table(name = "course_stats", indexes = {
+        // Keyset pagination theo độ phổ biến (sort=popularity)
+        @Index(name = "idx_course_stats_enrollment", columnList = "enrollment_count, course_id")
+})
+@Data
+@NoArgsConstructor
+public class CourseStats {
+
+    @Id
+    @Column(name = "course_id")
+    private Long courseId;
+
+    @Column(nullable = false)
+    private Long enrollmentCount = 0L;
+
+    @Column(nullable = false)
+    private Long completedCount = 0L;
+
+    @Column(nullable = false)
+    private Long reviewCount = 0L;
+
+    @Column(nullable = false)
+    private Long ratingSum = 0L; // Tổng số sao, rating trung bình = ratingSum / reviewCount
+
+    @Column(nullable = false)
+    private Double revenueTotal = 0.0; // Tổng doanh thu từ transactions SUCCESS
+
+    private LocalDateTime updatedAt;
+
+    public CourseStats(Long courseId) {
+        this.courseId = courseId;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public Double getAverageRating() {
+        return reviewCount != null && reviewCount > 0 ? (double) ratingSum / reviewCount : 0.0;
+    }
+}
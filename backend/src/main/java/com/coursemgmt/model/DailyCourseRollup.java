@@ -0,0 +1,50 @@
+package com.coursemgmt.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Số liệu tổng hợp theo ngày cho mỗi khóa học (doanh thu, số giao dịch, ghi danh, hoàn thành)
+ * Được cập nhật tăng dần bởi DailyRollupService cùng transaction với sự kiện thanh toán/ghi danh
+ * và được dựng lại toàn bộ từ dữ liệu gốc bởi DailyRollupBackfillJob
+ */
+@Entity
+@Table(name = "daily_course_rollup",
+        uniqueConstraints = @UniqueConstraint(name = "uk_daily_rollup_course_date", columnNames = {"course_id", "stat_date"}),
+        indexes = {
+                @Index(name = "idx_daily_rollup_date", columnList = "stat_date"),
+                @Index(name = "idx_daily_rollup_instructor_date", columnList = "instructor_id, stat_date")
+        })
+@Data
+@NoArgsConstructor
+public class DailyCourseRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate statDate;
+
+    @Column(name = "course_id", nullable = false)
+    private Long courseId;
+
+    // Giảng viên hiện tại của khóa học (cập nhật lại khi chuyển quyền sở hữu)
+    @Column(name = "instructor_id")
+    private Long instructorId;
+
+    @Column(nullable = false)
+    private Double revenue = 0.0; // Doanh thu từ transactions SUCCESS tạo trong ngày
+
+    @Column(nullable = false)
+    private Long transactionCount = 0L; // Số transactions SUCCESS tạo trong ngày
+
+    @Column(nullable = false)
+    private Long enrollmentCount = 0L; // Số ghi danh trong ngày
+
+    @Column(nullable = false)
+    private Long completionCount = 0L; // Số enrollment chuyển sang COMPLETED trong ngày
+}
@@ -6,7 +6,11 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "enrollments")
+// Index cho danh sách học viên của giảng viên: lọc theo khóa học + trạng thái / hoạt động gần nhất
+@Table(name = "enrollments", indexes = {
+        @Index(name = "idx_enrollments_course_status", columnList = "course_id, status"),
+        @Index(name = "idx_enrollments_course_last_active", columnList = "course_id, last_active_at")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -27,6 +31,20 @@ public class Enrollment {
     @Column(length = 20)
     private EEnrollmentStatus status; // Enum: IN_PROGRESS, COMPLETED
 
+    // Hoạt động gần nhất (xem video / hoàn thành bài), cập nhật bởi ContentService và WatchTimeBuffer
+    @Column(name = "last_active_at")
+    private LocalDateTime lastActiveAt;
+
+    // Thời điểm chuyển sang COMPLETED (null khi chưa hoàn thành), dùng để tính hoàn thành theo ngày trong daily_course_rollup
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    // Tăng mỗi khi bài học của enrollment được hoàn thành, ở bất kỳ node nào (xem LearningStateCache)
+    // Chỉ ghi bằng UPDATE trực tiếp: entity không insert/update cột này để không ghi đè giá trị cũ
+    @Column(name = "progress_version", insertable = false, updatable = false,
+            columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long progressVersion;
+
     // (n-1) Nhiều Ghi danh thuộc 1 User
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
@@ -44,4 +62,11 @@ public class Enrollment {
     // (1-n) 1 Ghi danh có nhiều Tiến độ bài học
     @OneToMany(mappedBy = "enrollment", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<User_Progress> progresses;
+
+    @PrePersist
+    protected void onCreate() {
+        if (lastActiveAt == null) {
+            lastActiveAt = enrolledAt != null ? enrolledAt : LocalDateTime.now();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,80 @@
+package com.coursemgmt.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Dòng inbox của 1 user cho 1 conversation (projection denormalized phục vụ danh sách conversation)
+ * Được cập nhật bởi InboxProjectionService cùng transaction với tạo conversation / gửi, sửa, xóa tin nhắn / đánh dấu đã đọc
+ * và được dựng từ dữ liệu gốc bởi InboxBackfillJob cho các participant chưa có dòng inbox
+ */
+@Entity
+@Table(name = "inbox_entries",
+        uniqueConstraints = @UniqueConstraint(name = "uk_inbox_user_conversation", columnNames = {"user_id", "conversation_id"}),
+        indexes = {
+                // Keyset pagination inbox: hoạt động gần nhất trước
+                @Index(name = "idx_inbox_user_activity", columnList = "user_id, activity_at, conversation_id"),
+                @Index(name = "idx_inbox_conversation", columnList = "conversation_id"),
+                // Cập nhật tên/avatar khi người còn lại sửa hồ sơ
+                @Index(name = "idx_inbox_other_user", columnList = "other_user_id")
+        })
+@Data
+@NoArgsConstructor
+public class InboxEntry {
+
+    public static final int PREVIEW_LENGTH = 255;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "conversation_id", nullable = false)
+    private Long conversationId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private Conversation.ConversationType conversationType;
+
+    private LocalDateTime conversationCreatedAt;
+
+    // Thời điểm tin nhắn cuối (hoặc thời điểm tạo conversation nếu chưa có tin nhắn), dùng để sắp xếp
+    @Column(name = "activity_at", nullable = false)
+    private LocalDateTime activityAt;
+
+    // Người còn lại trong conversation
+    private Long otherUserId;
+    private String otherFullName;
+    private String otherAvatar;
+    private String otherRole;
+
+    // Tin nhắn cuối (content chỉ lưu bản rút gọn PREVIEW_LENGTH ký tự)
+    private Long lastMessageId;
+    private Long lastMessageSenderId;
+    private String lastMessageSenderName;
+    private String lastMessageSenderAvatar;
+
+    @Column(length = PREVIEW_LENGTH)
+    private String lastMessagePreview;
+
+    @Column(length = 20)
+    private String lastMessageType;
+
+    private Boolean lastMessageEdited = false;
+    private Boolean lastMessageDeleted = false;
+    private LocalDateTime lastMessageAt;
+
+    // Số tin nhắn của người khác sau watermark đã đọc của user
+    @Column(nullable = false)
+    private Long unreadCount = 0L;
+
+    // Watermark đã đọc của user và của người còn lại (để hiển thị "đã xem" cho tin nhắn cuối)
+    private LocalDateTime lastReadAt;
+    private Long otherLastReadMessageId = 0L;
+    private LocalDateTime otherLastReadAt;
+}
@@ -8,7 +8,11 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "messages")
+// Lịch sử tin nhắn lọc theo conversation + thời gian; số tin chưa đọc theo conversation + id (watermark)
+@Table(name = "messages", indexes = {
+        @Index(name = "idx_messages_conversation_created", columnList = "conversation_id, created_at"),
+        @Index(name = "idx_messages_conversation_id", columnList = "conversation_id, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
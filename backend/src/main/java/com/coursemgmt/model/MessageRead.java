@@ -7,6 +7,11 @@ import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 
+/**
+ * Read receipt theo từng tin nhắn (mô hình cũ)
+ * Trạng thái đã đọc hiện dùng watermark ConversationParticipant.lastReadMessageId;
+ * bảng này chỉ còn được đọc bởi ChatReadWatermarkBackfillJob để chuyển dữ liệu cũ sang watermark
+ */
 @Entity
 @Table(name = "message_reads",
        uniqueConstraints = @UniqueConstraint(columnNames = {"message_id", "user_id"}))
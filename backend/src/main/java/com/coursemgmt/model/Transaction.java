@@ -5,7 +5,13 @@ import lombok.Data;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "transactions")
+// Index cho các query dashboard: theo trạng thái + thời gian (toàn hệ thống) và theo khóa học + trạng thái + thời gian
+// Báo cáo doanh thu theo khoảng ngày (mọi trạng thái) quét range trên created_at, đủ cột để không phải đọc từng dòng
+@Table(name = "transactions", indexes = {
+        @Index(name = "idx_transactions_status_created", columnList = "status, created_at"),
+        @Index(name = "idx_transactions_course_status_created", columnList = "course_id, status, created_at"),
+        @Index(name = "idx_transactions_created_course", columnList = "created_at, course_id, status, amount")
+})
 @Data
 public class Transaction {
 
@@ -51,6 +51,12 @@ public class User {
     @Column(length = 500)
     private String lockReason; // Lý do khóa tài khoản
 
+    // Tăng mỗi khi thời gian học (user_progress) của user thay đổi, ở bất kỳ node nào (xem StudyTimeAccumulator)
+    // Chỉ ghi bằng UPDATE trực tiếp: entity không insert/update cột này để không ghi đè giá trị cũ
+    @Column(name = "study_time_version", insertable = false, updatable = false,
+            columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long studyTimeVersion;
+
     // (n-n) User có nhiều Role
     @ManyToMany(fetch = FetchType.EAGER) // Tải Role ngay khi tải User
     @JoinTable(name = "user_roles",
@@ -5,7 +5,10 @@ import lombok.Data;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "user_progress")
+// Mỗi (enrollment, lesson) chỉ có 1 bản ghi: WatchTimeBuffer ghi bằng INSERT ... ON DUPLICATE KEY UPDATE dựa trên khóa này
+@Table(name = "user_progress", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_user_progress_enrollment_lesson", columnNames = {"enrollment_id", "lesson_id"})
+})
 @Data
 public class User_Progress {
 
@@ -32,6 +32,16 @@ public interface CertificateRepository extends JpaRepository<Certificate, Long>
     @Query("SELECT c FROM Certificate c WHERE c.enrollment.course.id = :courseId")
     Page<Certificate> findByEnrollmentCourseId(@Param("courseId") Long courseId, Pageable pageable);
     
+    // Đếm certificate của 1 course / của 1 học viên / của các course thuộc giảng viên (không load entity)
+    @Query("SELECT COUNT(c) FROM Certificate c WHERE c.enrollment.course.id = :courseId")
+    Long countByEnrollmentCourseId(@Param("courseId") Long courseId);
+    
+    @Query("SELECT COUNT(c) FROM Certificate c WHERE c.enrollment.user.id = :userId")
+    Long countByEnrollmentUserId(@Param("userId") Long userId);
+    
+    @Query("SELECT COUNT(c) FROM Certificate c WHERE c.enrollment.course.instructor.id = :instructorId")
+    Long countByInstructorId(@Param("instructorId") Long instructorId);
+    
     // Đếm số certificate đã cấp theo khoảng thời gian
     @Query("SELECT COUNT(c) FROM Certificate c WHERE " +
            "c.issuedAt BETWEEN :startDate AND :endDate")
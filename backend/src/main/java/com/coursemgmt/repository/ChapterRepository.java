@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -15,4 +16,8 @@ public interface ChapterRepository extends JpaRepository<Chapter, Long> {
     // Fetch chapters with lessons using JOIN FETCH to avoid LAZY loading issues
     @Query("SELECT DISTINCT c FROM Chapter c LEFT JOIN FETCH c.lessons WHERE c.course.id = :courseId ORDER BY c.position ASC")
     List<Chapter> findByCourseIdWithLessons(@Param("courseId") Long courseId);
+
+    // [chapterId, courseId] cho nhiều chapters trong 1 query (kiểm tra quyền sở hữu khi sắp xếp lại)
+    @Query("SELECT c.id, c.course.id FROM Chapter c WHERE c.id IN :ids")
+    List<Object[]> findCourseIdsByIdIn(@Param("ids") Collection<Long> ids);
 }
\ No newline at end of file
@@ -1,11 +1,15 @@
 package com.coursemgmt.repository;
 
 import com.coursemgmt.model.ConversationParticipant;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,8 +18,49 @@ public interface ConversationParticipantRepository extends JpaRepository<Convers
     
     Optional<ConversationParticipant> findByConversationIdAndUserId(Long conversationId, Long userId);
     
+    // Đẩy watermark đã đọc lên upToMessageId (không bao giờ lùi), 1 câu UPDATE trên 1 dòng
+    // Trả về 0 nếu user không phải participant
+    @Modifying
+    @Query("UPDATE ConversationParticipant cp SET " +
+           "cp.lastReadMessageId = CASE WHEN cp.lastReadMessageId IS NULL OR cp.lastReadMessageId < :upToMessageId " +
+           "THEN :upToMessageId ELSE cp.lastReadMessageId END, " +
+           "cp.lastReadAt = :readAt " +
+           "WHERE cp.conversation.id = :conversationId AND cp.user.id = :userId")
+    int advanceReadWatermark(@Param("conversationId") Long conversationId,
+                             @Param("userId") Long userId,
+                             @Param("upToMessageId") Long upToMessageId,
+                             @Param("readAt") LocalDateTime readAt);
+    
+    // Chuyển read receipt cũ (message_reads) và last_read_at sang watermark cho các participant chưa có watermark
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE conversation_participants cp SET last_read_message_id = GREATEST(" +
+                   "COALESCE((SELECT MAX(mr.message_id) FROM message_reads mr JOIN messages m ON m.id = mr.message_id " +
+                   "WHERE m.conversation_id = cp.conversation_id AND mr.user_id = cp.user_id), 0), " +
+                   "COALESCE((SELECT MAX(m.id) FROM messages m " +
+                   "WHERE m.conversation_id = cp.conversation_id AND m.created_at <= cp.last_read_at), 0)) " +
+                   "WHERE cp.last_read_message_id IS NULL",
+           nativeQuery = true)
+    int backfillReadWatermarks();
+    
     List<ConversationParticipant> findByConversationId(Long conversationId);
     
+    // Participant chưa có dòng inbox (dữ liệu có từ trước inbox projection)
+    @Query("SELECT cp FROM ConversationParticipant cp " +
+           "JOIN FETCH cp.conversation c " +
+           "JOIN FETCH cp.user u " +
+           "WHERE NOT EXISTS (SELECT 1 FROM InboxEntry e WHERE e.userId = u.id AND e.conversationId = c.id) " +
+           "ORDER BY cp.id")
+    List<ConversationParticipant> findWithoutInboxEntry(Pageable pageable);
+
+    // Như findWithoutInboxEntry, chỉ cho 1 user (sửa inbox của user trước khi đọc)
+    @Query("SELECT cp FROM ConversationParticipant cp " +
+           "JOIN FETCH cp.conversation c " +
+           "JOIN FETCH cp.user u " +
+           "WHERE u.id = :userId " +
+           "AND NOT EXISTS (SELECT 1 FROM InboxEntry e WHERE e.userId = u.id AND e.conversationId = c.id)")
+    List<ConversationParticipant> findWithoutInboxEntryByUserId(@Param("userId") Long userId);
+    
     List<ConversationParticipant> findByUserId(Long userId);
     
     @Query("SELECT cp FROM ConversationParticipant cp " +
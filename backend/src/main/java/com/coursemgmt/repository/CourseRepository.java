@@ -3,12 +3,17 @@ package com.coursemgmt.repository;
 import com.coursemgmt.model.Course;
 import com.coursemgmt.model.ECourseStatus;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,7 +22,39 @@ public interface CourseRepository extends JpaRepository<Course, Long>, JpaSpecif
 
     Optional<Course> findByTitle(String title);
 
+    // Load sẵn instructor và category cho trang danh sách (tránh N+1 khi map sang CourseResponse)
+    @Override
+    @EntityGraph(attributePaths = {"instructor", "category"})
+    Page<Course> findAll(Specification<Course> spec, Pageable pageable);
+
     List<Course> findByInstructorId(Long instructorId);
+
+    boolean existsByIdAndInstructorId(Long id, Long instructorId);
+
+    // Load 1 khóa học kèm instructor và category (trang chi tiết)
+    @EntityGraph(attributePaths = {"instructor", "category"})
+    Optional<Course> findWithDetailsById(Long id);
+
+    // Load các khóa học theo danh sách id (trang kết quả tìm kiếm từ CourseSearchIndex)
+    @EntityGraph(attributePaths = {"instructor", "category"})
+    List<Course> findByIdIn(Collection<Long> ids);
+
+    // Như trên nhưng chỉ giữ khóa học đang ở trạng thái status (chỉ mục tìm kiếm ở node này có thể chưa biết course đã bị gỡ)
+    @EntityGraph(attributePaths = {"instructor", "category"})
+    List<Course> findByIdInAndStatus(Collection<Long> ids, ECourseStatus status);
+
+    // Toàn bộ khóa học PUBLISHED kèm instructor và category (dựng chỉ mục tìm kiếm)
+    @EntityGraph(attributePaths = {"instructor", "category"})
+    @Query("SELECT c FROM Course c WHERE c.status = 'PUBLISHED'")
+    List<Course> findAllPublishedWithDetails();
+
+    @Query("SELECT c.id FROM Course c")
+    List<Long> findAllIds();
+
+    // Tăng phiên bản curriculum (gọi trong cùng transaction với thay đổi chapter/lesson)
+    @Modifying
+    @Query("UPDATE Course c SET c.curriculumVersion = COALESCE(c.curriculumVersion, 0) + 1 WHERE c.id = :courseId")
+    int bumpCurriculumVersion(@Param("courseId") Long courseId);
     
     Long countByStatus(ECourseStatus status);
     
@@ -25,10 +62,12 @@ public interface CourseRepository extends JpaRepository<Course, Long>, JpaSpecif
     Long countDistinctInstructors();
     
     // Tìm các khóa học nổi bật (featured) và đã published - sử dụng @Query explicit để tránh naming convention issues
+    @EntityGraph(attributePaths = {"instructor", "category"})
     @Query("SELECT c FROM Course c WHERE c.isFeatured = true AND c.isPublished = true AND c.status = 'PUBLISHED' ORDER BY c.createdAt DESC")
-    List<Course> findFeaturedCourses();
+    List<Course> findFeaturedCourses(Pageable pageable);
     
     // Tìm các khóa học mới nhất đã published - sử dụng @Query explicit
+    @EntityGraph(attributePaths = {"instructor", "category"})
     @Query("SELECT c FROM Course c WHERE c.isPublished = true AND c.status = 'PUBLISHED' ORDER BY c.createdAt DESC")
     List<Course> findLatestPublishedCourses(Pageable pageable);
 
@@ -37,6 +76,11 @@ public interface CourseRepository extends JpaRepository<Course, Long>, JpaSpecif
         return (course, cq, cb) -> cb.like(course.get("title"), "%" + keyword + "%");
     }
 
+    // Tạo Specification để lọc theo danh sách id (kết quả từ chỉ mục tìm kiếm)
+    static Specification<Course> idIn(Collection<Long> ids) {
+        return (course, cq, cb) -> course.get("id").in(ids);
+    }
+
     // Tạo Specification để lọc theo categoryId
     static Specification<Course> hasCategory(Long categoryId) {
         return (course, cq, cb) -> cb.equal(course.get("category").get("id"), categoryId);
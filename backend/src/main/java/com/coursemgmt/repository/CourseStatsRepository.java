@@ -0,0 +1,68 @@
+package com.coursemgmt.repository;
+
+import com.coursemgmt.model.CourseStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CourseStatsRepository extends JpaRepository<CourseStats, Long> {
+
+    List<CourseStats> findByCourseIdIn(Collection<Long> courseIds);
+
+    // Các câu UPDATE tăng/giảm trực tiếp trên DB (atomic, không cần đọc trước)
+    // Trả về số dòng bị ảnh hưởng: 0 nghĩa là chưa có dòng course_stats cho course này
+
+    @Modifying
+    @Query("UPDATE CourseStats s SET s.enrollmentCount = s.enrollmentCount + :delta, s.updatedAt = :now " +
+           "WHERE s.courseId = :courseId")
+    int addEnrollments(@Param("courseId") Long courseId, @Param("delta") long delta, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE CourseStats s SET s.completedCount = s.completedCount + :delta, s.updatedAt = :now " +
+           "WHERE s.courseId = :courseId")
+    int addCompletions(@Param("courseId") Long courseId, @Param("delta") long delta, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE CourseStats s SET s.reviewCount = s.reviewCount + :countDelta, " +
+           "s.ratingSum = s.ratingSum + :ratingDelta, s.updatedAt = :now " +
+           "WHERE s.courseId = :courseId")
+    int addReviews(@Param("courseId") Long courseId, @Param("countDelta") long countDelta,
+                   @Param("ratingDelta") long ratingDelta, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE CourseStats s SET s.revenueTotal = s.revenueTotal + :amount, s.updatedAt = :now " +
+           "WHERE s.courseId = :courseId")
+    int addRevenue(@Param("courseId") Long courseId, @Param("amount") double amount, @Param("now") LocalDateTime now);
+
+    // Đối soát: ghi giá trị tính lại chỉ khi dòng vẫn giữ đúng các giá trị đã đọc trước khi đếm bảng nguồn
+    // Trả về 0 nếu có delta commit xen giữa (lần đối soát sau sẽ sửa nếu vẫn lệch)
+    @Modifying
+    @Query("UPDATE CourseStats s SET s.enrollmentCount = :enrollmentCount, s.completedCount = :completedCount, " +
+           "s.reviewCount = :reviewCount, s.ratingSum = :ratingSum, s.revenueTotal = :revenueTotal, s.updatedAt = :now " +
+           "WHERE s.courseId = :courseId AND s.enrollmentCount = :expectedEnrollmentCount " +
+           "AND s.completedCount = :expectedCompletedCount AND s.reviewCount = :expectedReviewCount " +
+           "AND s.ratingSum = :expectedRatingSum AND s.revenueTotal = :expectedRevenueTotal")
+    int replaceCountersIfUnchanged(@Param("courseId") Long courseId,
+                                   @Param("enrollmentCount") long enrollmentCount,
+                                   @Param("completedCount") long completedCount,
+                                   @Param("reviewCount") long reviewCount,
+                                   @Param("ratingSum") long ratingSum,
+                                   @Param("revenueTotal") double revenueTotal,
+                                   @Param("expectedEnrollmentCount") long expectedEnrollmentCount,
+                                   @Param("expectedCompletedCount") long expectedCompletedCount,
+                                   @Param("expectedReviewCount") long expectedReviewCount,
+                                   @Param("expectedRatingSum") long expectedRatingSum,
+                                   @Param("expectedRevenueTotal") double expectedRevenueTotal,
+                                   @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM CourseStats s WHERE s.courseId = :courseId")
+    void deleteByCourseId(@Param("courseId") Long courseId);
+}
@@ -0,0 +1,96 @@
+package com.coursemgmt.repository;
+
+import com.coursemgmt.model.DailyCourseRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface DailyCourseRollupRepository extends JpaRepository<DailyCourseRollup, Long> {
+
+    // Cộng dồn vào dòng (ngày, khóa học), tạo dòng mới nếu chưa có; instructor_id lấy từ courses
+    @Modifying
+    @Query(value = "INSERT INTO daily_course_rollup " +
+                   "(stat_date, course_id, instructor_id, revenue, transaction_count, enrollment_count, completion_count) " +
+                   "SELECT :statDate, c.id, c.instructor_id, :revenue, :transactions, :enrollments, :completions " +
+                   "FROM courses c WHERE c.id = :courseId " +
+                   "ON DUPLICATE KEY UPDATE revenue = revenue + VALUES(revenue), " +
+                   "transaction_count = transaction_count + VALUES(transaction_count), " +
+                   "enrollment_count = enrollment_count + VALUES(enrollment_count), " +
+                   "completion_count = completion_count + VALUES(completion_count)",
+           nativeQuery = true)
+    int upsert(@Param("statDate") LocalDate statDate, @Param("courseId") Long courseId,
+               @Param("revenue") double revenue, @Param("transactions") long transactions,
+               @Param("enrollments") long enrollments, @Param("completions") long completions);
+
+    @Modifying
+    @Query("UPDATE DailyCourseRollup r SET r.instructorId = :instructorId WHERE r.courseId = :courseId")
+    int updateInstructor(@Param("courseId") Long courseId, @Param("instructorId") Long instructorId);
+
+    @Modifying
+    @Query("DELETE FROM DailyCourseRollup r WHERE r.courseId = :courseId")
+    void deleteByCourseId(@Param("courseId") Long courseId);
+
+    // --- Dựng lại từ dữ liệu gốc (backfill) ---
+
+    @Modifying
+    @Query("DELETE FROM DailyCourseRollup r")
+    int deleteAllRows();
+
+    @Modifying
+    @Query(value = "INSERT INTO daily_course_rollup " +
+                   "(stat_date, course_id, instructor_id, revenue, transaction_count, enrollment_count, completion_count) " +
+                   "SELECT CAST(t.created_at AS DATE), t.course_id, MAX(c.instructor_id), SUM(t.amount), COUNT(*), 0, 0 " +
+                   "FROM transactions t JOIN courses c ON c.id = t.course_id " +
+                   "WHERE t.status = 'SUCCESS' AND t.created_at IS NOT NULL AND t.amount IS NOT NULL " +
+                   "GROUP BY CAST(t.created_at AS DATE), t.course_id",
+           nativeQuery = true)
+    int backfillRevenue();
+
+    @Modifying
+    @Query(value = "INSERT INTO daily_course_rollup " +
+                   "(stat_date, course_id, instructor_id, revenue, transaction_count, enrollment_count, completion_count) " +
+                   "SELECT CAST(e.enrolled_at AS DATE), e.course_id, MAX(c.instructor_id), 0, 0, COUNT(*), 0 " +
+                   "FROM enrollments e JOIN courses c ON c.id = e.course_id " +
+                   "WHERE e.enrolled_at IS NOT NULL " +
+                   "GROUP BY CAST(e.enrolled_at AS DATE), e.course_id " +
+                   "ON DUPLICATE KEY UPDATE enrollment_count = enrollment_count + VALUES(enrollment_count)",
+           nativeQuery = true)
+    int backfillEnrollments();
+
+    // Hoàn thành được tính vào ngày completed_at (cùng ngày mà DailyRollupService.recordCompletion ghi)
+    @Modifying
+    @Query(value = "INSERT INTO daily_course_rollup " +
+                   "(stat_date, course_id, instructor_id, revenue, transaction_count, enrollment_count, completion_count) " +
+                   "SELECT CAST(e.completed_at AS DATE), e.course_id, MAX(c.instructor_id), 0, 0, 0, COUNT(*) " +
+                   "FROM enrollments e JOIN courses c ON c.id = e.course_id " +
+                   "WHERE e.status = 'COMPLETED' AND e.completed_at IS NOT NULL " +
+                   "GROUP BY CAST(e.completed_at AS DATE), e.course_id " +
+                   "ON DUPLICATE KEY UPDATE completion_count = completion_count + VALUES(completion_count)",
+           nativeQuery = true)
+    int backfillCompletions();
+
+    // --- Đọc cho dashboard (mỗi dòng: [statDate, revenue, transactions, enrollments, completions]) ---
+
+    @Query("SELECT r.statDate, SUM(r.revenue), SUM(r.transactionCount), SUM(r.enrollmentCount), SUM(r.completionCount) " +
+           "FROM DailyCourseRollup r WHERE r.statDate BETWEEN :from AND :to " +
+           "GROUP BY r.statDate ORDER BY r.statDate")
+    List<Object[]> sumByDate(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query("SELECT r.statDate, SUM(r.revenue), SUM(r.transactionCount), SUM(r.enrollmentCount), SUM(r.completionCount) " +
+           "FROM DailyCourseRollup r WHERE r.instructorId = :instructorId AND r.statDate BETWEEN :from AND :to " +
+           "GROUP BY r.statDate ORDER BY r.statDate")
+    List<Object[]> sumByDateForInstructor(@Param("instructorId") Long instructorId,
+                                          @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query("SELECT r.statDate, r.revenue, r.transactionCount, r.enrollmentCount, r.completionCount " +
+           "FROM DailyCourseRollup r WHERE r.courseId = :courseId AND r.statDate BETWEEN :from AND :to " +
+           "ORDER BY r.statDate")
+    List<Object[]> findByCourseAndDateRange(@Param("courseId") Long courseId,
+                                            @Param("from") LocalDate from, @Param("to") LocalDate to);
+}
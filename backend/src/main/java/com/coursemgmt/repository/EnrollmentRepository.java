@@ -11,7 +11,9 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -30,15 +32,75 @@ public interface EnrollmentRepository extends JpaRepository<Enrollment, Long> {
     // Fetch all enrolled course IDs for a user efficiently (for batch checking)
     @Query("SELECT e.course.id FROM Enrollment e WHERE e.user.id = :userId")
     Set<Long> findEnrolledCourseIdsByUserId(@Param("userId") Long userId);
+
+    // Heartbeat xem video: lấy [enrollmentId, courseId, curriculumVersion, progressVersion] của user
+    // cho khóa học chứa lesson trong 1 query
+    @Query("SELECT e.id, c.id, c.curriculumVersion, e.progressVersion FROM Enrollment e JOIN e.course c, Lesson l " +
+           "WHERE e.user.id = :userId AND l.id = :lessonId AND l.chapter.course = c")
+    List<Object[]> findWatchTarget(@Param("userId") Long userId, @Param("lessonId") Long lessonId);
+
+    // Phiên bản trạng thái học của enrollment (LearningStateCache so sánh với bản đang cache)
+    @Query(value = "SELECT progress_version FROM enrollments WHERE id = :enrollmentId", nativeQuery = true)
+    Long findProgressVersion(@Param("enrollmentId") Long enrollmentId);
+
+    @Modifying
+    @Query(value = "UPDATE enrollments SET progress_version = progress_version + 1 WHERE id = :enrollmentId", nativeQuery = true)
+    int incrementProgressVersion(@Param("enrollmentId") Long enrollmentId);
+    
+    // Đếm enrollments và số đã hoàn thành cho nhiều courses trong 1 query
+    // Mỗi dòng: [courseId, total, completed]
+    @Query("SELECT e.course.id, COUNT(e), " +
+           "SUM(CASE WHEN e.status = com.coursemgmt.model.EEnrollmentStatus.COMPLETED THEN 1 ELSE 0 END) " +
+           "FROM Enrollment e " +
+           "WHERE e.course.id IN :courseIds " +
+           "GROUP BY e.course.id")
+    List<Object[]> getEnrollmentTotalsByCourseIds(@Param("courseIds") Collection<Long> courseIds);
+    
+    // Như trên nhưng cho tất cả courses (dùng cho đối soát course_stats)
+    @Query("SELECT e.course.id, COUNT(e), " +
+           "SUM(CASE WHEN e.status = com.coursemgmt.model.EEnrollmentStatus.COMPLETED THEN 1 ELSE 0 END) " +
+           "FROM Enrollment e " +
+           "GROUP BY e.course.id")
+    List<Object[]> getEnrollmentTotalsGroupedByCourse();
+    
+    // Báo cáo hoàn thành theo khóa học, gom nhóm trong DB (không load enrollment)
+    // Mỗi dòng: [courseId, courseTitle, total, completed, avgProgress]; khóa học chưa có ghi danh có total = 0
+    @Query("SELECT c.id, c.title, COUNT(e.id), " +
+           "COALESCE(SUM(CASE WHEN e.progress >= 100.0 THEN 1 ELSE 0 END), 0), " +
+           "COALESCE(AVG(e.progress), 0.0) " +
+           "FROM Course c LEFT JOIN Enrollment e ON e.course = c " +
+           "GROUP BY c.id, c.title " +
+           "ORDER BY c.id")
+    List<Object[]> aggregateCompletionByCourse();
+    
+    // Tiến độ trung bình của 1 khóa học (tổng số / số hoàn thành đọc từ course_stats)
+    @Query("SELECT COALESCE(AVG(e.progress), 0.0) FROM Enrollment e WHERE e.course.id = :courseId")
+    Double averageProgressByCourseId(@Param("courseId") Long courseId);
+    
+    // Enrollments của 1 học viên cho dashboard, 1 dòng: [total, active, avgProgress]
+    // active = IN_PROGRESS hoặc progress < 100
+    @Query("SELECT COUNT(e), " +
+           "COALESCE(SUM(CASE WHEN e.status = 'IN_PROGRESS' OR e.progress < 100.0 THEN 1 ELSE 0 END), 0), " +
+           "COALESCE(AVG(COALESCE(e.progress, 0.0)), 0.0) " +
+           "FROM Enrollment e WHERE e.user.id = :userId")
+    List<Object[]> aggregateDashboardByUserId(@Param("userId") Long userId);
+    
+    // Số học viên (không trùng) của tất cả khóa học thuộc giảng viên
+    @Query("SELECT COUNT(DISTINCT e.user.id) FROM Enrollment e WHERE e.course.instructor.id = :instructorId")
+    Long countDistinctStudentsByInstructorId(@Param("instructorId") Long instructorId);
     
     Page<Enrollment> findByCourseId(Long courseId, Pageable pageable);
     Page<Enrollment> findByUserId(Long userId, Pageable pageable);
     
     // Fetch enrollments with course and instructor (JOIN FETCH to avoid LazyInitializationException)
+    // Fetch luôn roles của instructor (EAGER) và certificate (OneToOne phía mappedBy không lazy được),
+    // nếu không mỗi enrollment tốn thêm 2 query
     @Query("SELECT DISTINCT e FROM Enrollment e " +
            "LEFT JOIN FETCH e.course c " +
-           "LEFT JOIN FETCH c.instructor " +
+           "LEFT JOIN FETCH c.instructor i " +
+           "LEFT JOIN FETCH i.roles " +
            "LEFT JOIN FETCH c.category " +
+           "LEFT JOIN FETCH e.certificate " +
            "WHERE e.user.id = :userId")
     List<Enrollment> findByUserIdWithCourse(@Param("userId") Long userId);
     
@@ -59,6 +121,29 @@ public interface EnrollmentRepository extends JpaRepository<Enrollment, Long> {
            "ORDER BY month")
     List<Object[]> getMonthlyEnrollmentsByCourse(@Param("courseId") Long courseId, @Param("year") int year);
     
+    // Thống kê theo tháng trong [from, to) - mỗi dòng: [month, enrollments, completions, newStudents]
+    // Học viên mới = học viên có lần ghi danh đầu tiên (trong phạm vi lọc course/instructor) rơi vào tháng đó
+    // Hoàn thành được tính theo tháng ghi danh (cohort)
+    @Query(value = "SELECT MONTH(e.enrolled_at), COUNT(*), " +
+                   "SUM(CASE WHEN e.status = 'COMPLETED' THEN 1 ELSE 0 END), " +
+                   "COUNT(DISTINCT CASE WHEN e.enrolled_at = f.first_at THEN e.user_id END) " +
+                   "FROM enrollments e JOIN courses c ON c.id = e.course_id " +
+                   "JOIN (SELECT e2.user_id, MIN(e2.enrolled_at) AS first_at " +
+                   "      FROM enrollments e2 JOIN courses c2 ON c2.id = e2.course_id " +
+                   "      WHERE e2.enrolled_at < :to " +
+                   "      AND (:courseId IS NULL OR e2.course_id = :courseId) " +
+                   "      AND (:instructorId IS NULL OR c2.instructor_id = :instructorId) " +
+                   "      GROUP BY e2.user_id) f ON f.user_id = e.user_id " +
+                   "WHERE e.enrolled_at >= :from AND e.enrolled_at < :to " +
+                   "AND (:courseId IS NULL OR e.course_id = :courseId) " +
+                   "AND (:instructorId IS NULL OR c.instructor_id = :instructorId) " +
+                   "GROUP BY MONTH(e.enrolled_at)",
+           nativeQuery = true)
+    List<Object[]> aggregateMonthlyCohorts(@Param("from") java.time.LocalDateTime from,
+                                           @Param("to") java.time.LocalDateTime to,
+                                           @Param("courseId") Long courseId,
+                                           @Param("instructorId") Long instructorId);
+    
     // Count enrollments by instructor's courses in a date range
     @Query("SELECT COUNT(e) FROM Enrollment e " +
            "WHERE e.course.instructor.id = :instructorId " +
@@ -78,6 +163,65 @@ public interface EnrollmentRepository extends JpaRepository<Enrollment, Long> {
            "ORDER BY e.enrolledAt DESC")
     List<Enrollment> findByInstructorIdWithDetails(@Param("instructorId") Long instructorId);
     
+    // Danh sách học viên của giảng viên (phân trang, sắp xếp và lọc trong SQL, không load progress)
+    // Mỗi dòng: [enrollmentId, studentId, studentName, studentEmail, courseId, courseTitle,
+    //            progress, enrolledAt, lastActiveAt, status]
+    @Query(value = "SELECT e.id, u.id, COALESCE(u.fullName, u.username), u.email, c.id, c.title, " +
+                   "e.progress, e.enrolledAt, e.lastActiveAt, e.status " +
+                   "FROM Enrollment e JOIN e.user u JOIN e.course c " +
+                   "WHERE c.instructor.id = :instructorId " + ROSTER_FILTER,
+           countQuery = "SELECT COUNT(e) FROM Enrollment e JOIN e.user u JOIN e.course c " +
+                        "WHERE c.instructor.id = :instructorId " + ROSTER_FILTER)
+    Page<Object[]> findRosterByInstructorId(@Param("instructorId") Long instructorId,
+                                            @Param("courseId") Long courseId,
+                                            @Param("status") EEnrollmentStatus status,
+                                            @Param("minProgress") Double minProgress,
+                                            @Param("maxProgress") Double maxProgress,
+                                            @Param("activeFrom") java.time.LocalDateTime activeFrom,
+                                            @Param("activeTo") java.time.LocalDateTime activeTo,
+                                            @Param("search") String search,
+                                            Pageable pageable);
+
+    String ROSTER_FILTER =
+            "AND (:courseId IS NULL OR c.id = :courseId) " +
+            "AND (:status IS NULL OR e.status = :status) " +
+            "AND (:minProgress IS NULL OR e.progress >= :minProgress) " +
+            "AND (:maxProgress IS NULL OR e.progress <= :maxProgress) " +
+            "AND (:activeFrom IS NULL OR e.lastActiveAt >= :activeFrom) " +
+            "AND (:activeTo IS NULL OR e.lastActiveAt < :activeTo) " +
+            "AND (:search IS NULL OR LOWER(u.fullName) LIKE :search OR LOWER(u.username) LIKE :search " +
+            "OR LOWER(u.email) LIKE :search)";
+
+    // Enrollment mới nhất của mỗi học viên trong các khóa học của giảng viên (phân trang trong SQL)
+    @Query(value = "SELECT e FROM Enrollment e " +
+                   "JOIN FETCH e.user u JOIN FETCH e.course c LEFT JOIN FETCH c.instructor " +
+                   "WHERE c.instructor.id = :instructorId AND NOT EXISTS (" +
+                   "SELECT 1 FROM Enrollment e2 WHERE e2.user = e.user AND e2.course.instructor.id = :instructorId " +
+                   "AND (e2.enrolledAt > e.enrolledAt OR (e2.enrolledAt = e.enrolledAt AND e2.id > e.id)))",
+           countQuery = "SELECT COUNT(DISTINCT e.user.id) FROM Enrollment e WHERE e.course.instructor.id = :instructorId")
+    Page<Enrollment> findLatestPerStudentByInstructorId(@Param("instructorId") Long instructorId, Pageable pageable);
+
+    // Lấp last_active_at cho dữ liệu cũ: lần hoàn thành bài gần nhất, nếu không có thì ngày ghi danh
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE enrollments SET last_active_at = COALESCE(" +
+                   "(SELECT MAX(p.completed_at) FROM user_progress p WHERE p.enrollment_id = enrollments.id), " +
+                   "enrolled_at, CURRENT_TIMESTAMP) " +
+                   "WHERE last_active_at IS NULL",
+           nativeQuery = true)
+    int backfillLastActiveAt();
+
+    // Lấp completed_at cho enrollment COMPLETED có từ trước khi có cột này:
+    // lần hoàn thành bài cuối cùng, nếu không có thì hoạt động gần nhất / ngày ghi danh
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE enrollments SET completed_at = COALESCE(" +
+                   "(SELECT MAX(p.completed_at) FROM user_progress p WHERE p.enrollment_id = enrollments.id), " +
+                   "last_active_at, enrolled_at, CURRENT_TIMESTAMP) " +
+                   "WHERE status = 'COMPLETED' AND completed_at IS NULL",
+           nativeQuery = true)
+    int backfillCompletedAt();
+    
     // Xóa tất cả enrollments của một course
     @Modifying
     @Query("DELETE FROM Enrollment e WHERE e.course.id = :courseId")
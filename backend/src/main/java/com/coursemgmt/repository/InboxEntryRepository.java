@@ -0,0 +1,114 @@
+package com.coursemgmt.repository;
+
+import com.coursemgmt.model.InboxEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface InboxEntryRepository extends JpaRepository<InboxEntry, Long> {
+
+    Optional<InboxEntry> findByUserIdAndConversationId(Long userId, Long conversationId);
+
+    boolean existsByUserIdAndConversationId(Long userId, Long conversationId);
+
+    // Toàn bộ inbox của user, hoạt động gần nhất trước
+    List<InboxEntry> findByUserIdOrderByActivityAtDescConversationIdDesc(Long userId);
+
+    // Trang đầu inbox (keyset), giới hạn bằng Pageable
+    @Query("SELECT e FROM InboxEntry e WHERE e.userId = :userId " +
+           "ORDER BY e.activityAt DESC, e.conversationId DESC")
+    List<InboxEntry> findInboxFirstPage(@Param("userId") Long userId, Pageable pageable);
+
+    // Trang tiếp theo: các dòng đứng sau (activityAt, conversationId) của dòng cuối trang trước
+    @Query("SELECT e FROM InboxEntry e WHERE e.userId = :userId " +
+           "AND (e.activityAt < :activityAt OR (e.activityAt = :activityAt AND e.conversationId < :conversationId)) " +
+           "ORDER BY e.activityAt DESC, e.conversationId DESC")
+    List<InboxEntry> findInboxPageAfter(@Param("userId") Long userId,
+                                        @Param("activityAt") LocalDateTime activityAt,
+                                        @Param("conversationId") Long conversationId,
+                                        Pageable pageable);
+
+    // Tin nhắn mới: tăng số chưa đọc của các participant khác người gửi
+    @Modifying
+    @Query("UPDATE InboxEntry e SET e.unreadCount = e.unreadCount + 1 " +
+           "WHERE e.conversationId = :conversationId AND e.userId <> :senderId")
+    int incrementUnread(@Param("conversationId") Long conversationId, @Param("senderId") Long senderId);
+
+    // Tin nhắn mới thành tin nhắn cuối (bỏ qua nếu dòng inbox đã có tin nhắn mới hơn)
+    @Modifying
+    @Query("UPDATE InboxEntry e SET e.lastMessageId = :messageId, e.lastMessageSenderId = :senderId, " +
+           "e.lastMessageSenderName = :senderName, e.lastMessageSenderAvatar = :senderAvatar, " +
+           "e.lastMessagePreview = :preview, e.lastMessageType = :messageType, " +
+           "e.lastMessageEdited = false, e.lastMessageDeleted = false, " +
+           "e.lastMessageAt = :createdAt, e.activityAt = :createdAt " +
+           "WHERE e.conversationId = :conversationId " +
+           "AND (e.lastMessageId IS NULL OR e.lastMessageId < :messageId)")
+    int applyLastMessage(@Param("conversationId") Long conversationId,
+                         @Param("messageId") Long messageId,
+                         @Param("senderId") Long senderId,
+                         @Param("senderName") String senderName,
+                         @Param("senderAvatar") String senderAvatar,
+                         @Param("preview") String preview,
+                         @Param("messageType") String messageType,
+                         @Param("createdAt") LocalDateTime createdAt);
+
+    // Sửa/xóa tin nhắn: chỉ ảnh hưởng dòng inbox đang hiển thị tin nhắn đó
+    @Modifying
+    @Query("UPDATE InboxEntry e SET e.lastMessagePreview = :preview, " +
+           "e.lastMessageEdited = :edited, e.lastMessageDeleted = :deleted " +
+           "WHERE e.conversationId = :conversationId AND e.lastMessageId = :messageId")
+    int updateLastMessage(@Param("conversationId") Long conversationId,
+                          @Param("messageId") Long messageId,
+                          @Param("preview") String preview,
+                          @Param("edited") boolean edited,
+                          @Param("deleted") boolean deleted);
+
+    // Đánh dấu đã đọc: số chưa đọc = số tin của người khác sau watermark hiện tại của participant
+    @Modifying
+    @Query("UPDATE InboxEntry e SET e.lastReadAt = :readAt, e.unreadCount = " +
+           "(SELECT COUNT(m) FROM Message m WHERE m.conversation.id = :conversationId " +
+           "AND m.sender.id <> :userId AND m.id > " +
+           "(SELECT COALESCE(MAX(cp.lastReadMessageId), 0) FROM ConversationParticipant cp " +
+           "WHERE cp.conversation.id = :conversationId AND cp.user.id = :userId)) " +
+           "WHERE e.conversationId = :conversationId AND e.userId = :userId")
+    int applyRead(@Param("conversationId") Long conversationId,
+                  @Param("userId") Long userId,
+                  @Param("readAt") LocalDateTime readAt);
+
+    // Watermark của người đọc hiện trên dòng inbox của các participant còn lại ("đã xem")
+    @Modifying
+    @Query("UPDATE InboxEntry e SET " +
+           "e.otherLastReadMessageId = CASE WHEN e.otherLastReadMessageId IS NULL OR e.otherLastReadMessageId < :watermark " +
+           "THEN :watermark ELSE e.otherLastReadMessageId END, " +
+           "e.otherLastReadAt = :readAt " +
+           "WHERE e.conversationId = :conversationId AND e.userId <> :readerId")
+    int applyOtherRead(@Param("conversationId") Long conversationId,
+                       @Param("readerId") Long readerId,
+                       @Param("watermark") Long watermark,
+                       @Param("readAt") LocalDateTime readAt);
+
+    // User đổi tên/avatar: cập nhật phần "người còn lại" trên inbox của người khác
+    @Modifying
+    @Query("UPDATE InboxEntry e SET e.otherFullName = :fullName, e.otherAvatar = :avatar " +
+           "WHERE e.otherUserId = :userId")
+    int updateOtherSummary(@Param("userId") Long userId,
+                           @Param("fullName") String fullName,
+                           @Param("avatar") String avatar);
+
+    // ... và tên/avatar người gửi của tin nhắn cuối (chỉ trong các conversation user tham gia)
+    @Modifying
+    @Query("UPDATE InboxEntry e SET e.lastMessageSenderName = :senderName, e.lastMessageSenderAvatar = :avatar " +
+           "WHERE e.lastMessageSenderId = :userId AND e.conversationId IN " +
+           "(SELECT cp.conversation.id FROM ConversationParticipant cp WHERE cp.user.id = :userId)")
+    int updateSenderSummary(@Param("userId") Long userId,
+                            @Param("senderName") String senderName,
+                            @Param("avatar") String avatar);
+}
@@ -2,8 +2,11 @@ package com.coursemgmt.repository;
 
 import com.coursemgmt.model.Lesson;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -11,4 +14,8 @@ public interface LessonRepository extends JpaRepository<Lesson, Long> {
     long countByChapter_Course_Id(Long courseId);
     List<Lesson> findByChapterIdOrderByPositionAsc(Long chapterId);
     List<Lesson> findByChapterId(Long chapterId);
+
+    // [lessonId, chapterId, courseId] cho nhiều lessons trong 1 query (kiểm tra quyền sở hữu khi sắp xếp lại)
+    @Query("SELECT l.id, l.chapter.id, l.chapter.course.id FROM Lesson l WHERE l.id IN :ids")
+    List<Object[]> findOwnersByIdIn(@Param("ids") Collection<Long> ids);
 }
\ No newline at end of file
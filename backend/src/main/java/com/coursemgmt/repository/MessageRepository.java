@@ -29,24 +29,53 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
            "ORDER BY m.createdAt ASC")
     List<Message> findByConversationIdOrderByCreatedAtAsc(@Param("conversationId") Long conversationId);
     
-    @Query("SELECT COUNT(m) FROM Message m " +
-           "JOIN m.conversation c " +
-           "JOIN c.participants p " +
-           "WHERE c.id = :conversationId " +
+    // Số tin nhắn của người khác sau watermark đã đọc của user
+    @Query("SELECT COUNT(m) FROM Message m, ConversationParticipant p " +
+           "WHERE p.conversation.id = :conversationId " +
            "AND p.user.id = :userId " +
-           "AND m.createdAt > COALESCE(p.lastReadAt, :defaultTime) " +
+           "AND m.conversation.id = :conversationId " +
+           "AND m.id > COALESCE(p.lastReadMessageId, 0) " +
            "AND m.sender.id != :userId")
     Long countUnreadMessages(@Param("conversationId") Long conversationId, 
-                            @Param("userId") Long userId,
-                            @Param("defaultTime") LocalDateTime defaultTime);
+                            @Param("userId") Long userId);
     
-    @Query("SELECT m FROM Message m " +
+    // Id tin nhắn mới nhất của conversation, không vượt quá upToMessageId (null = không giới hạn)
+    @Query("SELECT MAX(m.id) FROM Message m " +
            "WHERE m.conversation.id = :conversationId " +
-           "AND m.createdAt > :after " +
-           "ORDER BY m.createdAt ASC")
-    List<Message> findNewMessagesAfter(@Param("conversationId") Long conversationId, 
-                                       @Param("after") LocalDateTime after);
+           "AND (:upToMessageId IS NULL OR m.id <= :upToMessageId)")
+    Long findLastMessageId(@Param("conversationId") Long conversationId,
+                           @Param("upToMessageId") Long upToMessageId);
+    
+    // Lịch sử theo cursor id (index conversation_id, id), giới hạn bằng Pageable, sender được load sẵn
+    // Tin nhắn cũ hơn beforeId, mới nhất trước
+    @Query("SELECT m FROM Message m " +
+           "JOIN FETCH m.sender " +
+           "WHERE m.conversation.id = :conversationId AND m.id < :beforeId " +
+           "ORDER BY m.id DESC")
+    List<Message> findBeforeId(@Param("conversationId") Long conversationId,
+                               @Param("beforeId") Long beforeId,
+                               Pageable pageable);
+    
+    // Tin nhắn có id >= fromId, cũ nhất trước
+    @Query("SELECT m FROM Message m " +
+           "JOIN FETCH m.sender " +
+           "WHERE m.conversation.id = :conversationId AND m.id >= :fromId " +
+           "ORDER BY m.id ASC")
+    List<Message> findFromId(@Param("conversationId") Long conversationId,
+                             @Param("fromId") Long fromId,
+                             Pageable pageable);
+    
+    boolean existsByConversationIdAndIdLessThan(Long conversationId, Long id);
+    
+    boolean existsByConversationIdAndIdGreaterThan(Long conversationId, Long id);
     
     Optional<Message> findByIdAndSenderId(Long messageId, Long senderId);
+    
+    // Tin nhắn mới nhất của conversation (giới hạn bằng Pageable), sender được load sẵn
+    @Query("SELECT m FROM Message m " +
+           "JOIN FETCH m.sender " +
+           "WHERE m.conversation.id = :conversationId " +
+           "ORDER BY m.id DESC")
+    List<Message> findLatestByConversationId(@Param("conversationId") Long conversationId, Pageable pageable);
 }
 
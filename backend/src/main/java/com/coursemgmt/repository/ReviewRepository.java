@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -33,6 +34,17 @@ public interface ReviewRepository extends JpaRepository<Review, Long> {
     @Query("SELECT AVG(r.rating) FROM Review r WHERE r.course.id = :courseId")
     Double getAverageRatingByCourseId(@Param("courseId") Long courseId);
 
+    // Số review và tổng số sao cho nhiều courses trong 1 query
+    // Mỗi dòng: [courseId, reviewCount, ratingSum]
+    @Query("SELECT r.course.id, COUNT(r), SUM(r.rating) FROM Review r " +
+           "WHERE r.course.id IN :courseIds " +
+           "GROUP BY r.course.id")
+    List<Object[]> getReviewTotalsByCourseIds(@Param("courseIds") Collection<Long> courseIds);
+
+    // Như trên nhưng cho tất cả courses (dùng cho đối soát course_stats)
+    @Query("SELECT r.course.id, COUNT(r), SUM(r.rating) FROM Review r GROUP BY r.course.id")
+    List<Object[]> getReviewTotalsGroupedByCourse();
+
     // Calculate average rating for all courses of an instructor
     @Query("SELECT AVG(r.rating) FROM Review r WHERE r.course.instructor.id = :instructorId")
     Double getAverageRatingByInstructorId(@Param("instructorId") Long instructorId);
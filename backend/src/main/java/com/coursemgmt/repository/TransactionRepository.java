@@ -11,6 +11,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -52,6 +53,15 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
         @Param("endDate") LocalDateTime endDate
     );
     
+    // Đếm giao dịch theo trạng thái trong khoảng thời gian [startDate, endDate)
+    @Query("SELECT COUNT(t) FROM Transaction t WHERE t.status = :status " +
+           "AND t.createdAt >= :startDate AND t.createdAt < :endDate")
+    long countByStatusAndDateRange(
+        @Param("status") ETransactionStatus status,
+        @Param("startDate") LocalDateTime startDate,
+        @Param("endDate") LocalDateTime endDate
+    );
+    
     // Đếm số giao dịch thành công
     @Query("SELECT COUNT(t) FROM Transaction t WHERE t.status = 'SUCCESS'")
     Long countSuccessfulTransactions();
@@ -89,11 +99,46 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
             @Param("endDate") LocalDateTime endDate
     );
     
+    // Tổng tiền giao dịch theo trạng thái của các courses thuộc instructor (vd: PENDING = đang chờ thanh toán)
+    @Query("SELECT COALESCE(SUM(t.amount), 0.0) FROM Transaction t " +
+           "WHERE t.status = :status AND t.course.instructor.id = :instructorId")
+    Double sumAmountByInstructorAndStatus(
+            @Param("instructorId") Long instructorId,
+            @Param("status") ETransactionStatus status
+    );
+    
+    // Doanh thu thành công của instructor trong khoảng thời gian (không load từng transaction)
+    @Query("SELECT COALESCE(SUM(t.amount), 0.0) FROM Transaction t " +
+           "WHERE t.status = 'SUCCESS' AND t.course.instructor.id = :instructorId " +
+           "AND t.createdAt BETWEEN :startDate AND :endDate")
+    Double sumRevenueByInstructorAndDateRange(
+            @Param("instructorId") Long instructorId,
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate
+    );
+    
     // Tính doanh thu từ transactions thành công của một course cụ thể
     @Query("SELECT SUM(t.amount) FROM Transaction t " +
            "WHERE t.status = 'SUCCESS' AND t.course.id = :courseId")
     Double calculateRevenueByCourseId(@Param("courseId") Long courseId);
     
+    // Doanh thu thành công cho nhiều courses trong 1 query
+    // Mỗi dòng: [courseId, revenue]
+    @Query("SELECT t.course.id, SUM(t.amount) FROM Transaction t " +
+           "WHERE t.status = 'SUCCESS' AND t.course.id IN :courseIds " +
+           "GROUP BY t.course.id")
+    List<Object[]> getRevenueByCourseIds(@Param("courseIds") Collection<Long> courseIds);
+    
+    // Số giao dịch (mọi trạng thái) của 1 khóa học, chỉ quét idx_transactions_course_status_created
+    // (doanh thu thành công đọc từ course_stats)
+    long countByCourseId(Long courseId);
+    
+    // Như trên nhưng cho tất cả courses (dùng cho đối soát course_stats)
+    @Query("SELECT t.course.id, SUM(t.amount) FROM Transaction t " +
+           "WHERE t.status = 'SUCCESS' " +
+           "GROUP BY t.course.id")
+    List<Object[]> getRevenueGroupedByCourse();
+    
     // Doanh thu theo tháng cho một course cụ thể
     @Query("SELECT MONTH(t.createdAt) as month, " +
            "YEAR(t.createdAt) as year, " +
@@ -104,12 +149,41 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
            "ORDER BY month")
     List<Object[]> getMonthlyRevenueByCourse(@Param("courseId") Long courseId, @Param("year") int year);
     
+    // Báo cáo doanh thu theo khóa học trong khoảng [startDate, endDate), 1 dòng / khóa học có giao dịch:
+    // [courseId, courseTitle, categoryId, categoryName, instructorId, instructorName,
+    //  revenue, successCount, failedCount, pendingCount, totalCount, vnpaySuccessCount, momoSuccessCount]
+    @Query("SELECT c.id, c.title, cat.id, cat.name, i.id, COALESCE(i.fullName, i.username), " +
+           "COALESCE(SUM(CASE WHEN t.status = 'SUCCESS' THEN t.amount ELSE 0.0 END), 0.0), " +
+           "SUM(CASE WHEN t.status = 'SUCCESS' THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN t.status = 'FAILED' THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN t.status = 'PENDING' THEN 1 ELSE 0 END), " +
+           "COUNT(t), " +
+           "SUM(CASE WHEN t.status = 'SUCCESS' AND t.paymentGateway = 'VNPAY' THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN t.status = 'SUCCESS' AND t.paymentGateway = 'MOMO' THEN 1 ELSE 0 END) " +
+           "FROM Transaction t JOIN t.course c " +
+           "LEFT JOIN c.category cat " +
+           "LEFT JOIN c.instructor i " +
+           "WHERE t.createdAt >= :startDate AND t.createdAt < :endDate " +
+           "GROUP BY c.id, c.title, cat.id, cat.name, i.id, i.fullName, i.username")
+    List<Object[]> aggregateRevenueByCourse(
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate
+    );
+    
     // Lấy tất cả transactions của instructor (để lọc và sắp xếp)
     @Query("SELECT t FROM Transaction t " +
            "WHERE t.course.instructor.id = :instructorId " +
            "ORDER BY t.createdAt DESC")
     List<Transaction> findByInstructorIdOrderByCreatedAtDesc(@Param("instructorId") Long instructorId);
     
+    // N giao dịch mới nhất của instructor (giới hạn bằng Pageable), course và user được load sẵn
+    @Query("SELECT t FROM Transaction t " +
+           "JOIN FETCH t.course c " +
+           "LEFT JOIN FETCH t.user " +
+           "WHERE c.instructor.id = :instructorId " +
+           "ORDER BY t.createdAt DESC")
+    List<Transaction> findRecentByInstructorId(@Param("instructorId") Long instructorId, Pageable pageable);
+    
     // Xóa tất cả transactions của một course
     @Modifying
     @Query("DELETE FROM Transaction t WHERE t.course.id = :courseId")
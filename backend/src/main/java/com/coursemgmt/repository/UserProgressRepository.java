@@ -6,6 +6,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
@@ -13,6 +15,16 @@ import java.util.Set;
 public interface UserProgressRepository extends JpaRepository<User_Progress, Long> {
     Optional<User_Progress> findByEnrollmentAndLesson(Enrollment enrollment, Lesson lesson);
 
+    // Các cặp (enrollmentId, lessonId) bị trùng bản ghi (dữ liệu có từ trước khi có unique constraint)
+    @Query("SELECT up.enrollment.id, up.lesson.id FROM User_Progress up " +
+           "GROUP BY up.enrollment.id, up.lesson.id HAVING COUNT(up) > 1")
+    List<Object[]> findDuplicateEnrollmentLessons();
+
+    @Query("SELECT up FROM User_Progress up WHERE up.enrollment.id = :enrollmentId AND up.lesson.id = :lessonId " +
+           "ORDER BY up.id ASC")
+    List<User_Progress> findAllByEnrollmentIdAndLessonId(@Param("enrollmentId") Long enrollmentId,
+                                                         @Param("lessonId") Long lessonId);
+
     // Đếm số bài đã học trong 1 enrollment
     long countByEnrollmentAndIsCompleted(Enrollment enrollment, boolean isCompleted);
 
@@ -24,4 +36,26 @@ public interface UserProgressRepository extends JpaRepository<User_Progress, Lon
            "LEFT JOIN FETCH up.lesson " +
            "WHERE up.enrollment = :enrollment")
     Set<User_Progress> findByEnrollmentWithLesson(@Param("enrollment") Enrollment enrollment);
+
+    // Số bài đã hoàn thành của enrollment còn thuộc khóa học (bài đã xóa/chuyển khóa khác không tính)
+    @Query("SELECT COUNT(up) FROM User_Progress up " +
+           "WHERE up.enrollment.id = :enrollmentId AND up.isCompleted = true AND up.lesson.chapter.course.id = :courseId")
+    long countCompletedLessonsInCourse(@Param("enrollmentId") Long enrollmentId, @Param("courseId") Long courseId);
+
+    // Chỉ lấy ID các bài đã hoàn thành (dùng để dựng bitset tiến độ, không load entity)
+    @Query("SELECT up.lesson.id FROM User_Progress up " +
+           "WHERE up.enrollment.id = :enrollmentId AND up.isCompleted = true")
+    List<Long> findCompletedLessonIds(@Param("enrollmentId") Long enrollmentId);
+
+    // Tổng phút học của học viên trên mọi enrollment, 1 dòng: [totalMinutes, minutesCompletedSince]
+    // Mỗi bài: lastWatchedTime (giây) nếu > 0, nếu không thì durationInMinutes khi đã hoàn thành
+    // (cùng công thức với StudyTimeAccumulator.minutesOf)
+    @Query("SELECT COALESCE(SUM(CASE WHEN up.lastWatchedTime > 0 THEN up.lastWatchedTime / 60.0 " +
+           "WHEN up.isCompleted = true THEN COALESCE(l.durationInMinutes, 0) ELSE 0 END), 0), " +
+           "COALESCE(SUM(CASE WHEN up.completedAt >= :since THEN " +
+           "(CASE WHEN up.lastWatchedTime > 0 THEN up.lastWatchedTime / 60.0 ELSE COALESCE(l.durationInMinutes, 0) END) " +
+           "ELSE 0 END), 0) " +
+           "FROM User_Progress up JOIN up.lesson l " +
+           "WHERE up.enrollment.user.id = :userId")
+    List<Object[]> sumStudyMinutesByUserId(@Param("userId") Long userId, @Param("since") LocalDateTime since);
 }
\ No newline at end of file
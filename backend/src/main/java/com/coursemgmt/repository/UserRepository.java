@@ -3,6 +3,9 @@ package com.coursemgmt.repository;
 import com.coursemgmt.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -19,4 +22,12 @@ public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificat
     Boolean existsByUsername(String username);
 
     Boolean existsByEmail(String email);
+
+    // Phiên bản thời gian học của user (StudyTimeAccumulator so sánh với bản đang cache)
+    @Query(value = "SELECT study_time_version FROM users WHERE id = :userId", nativeQuery = true)
+    Long findStudyTimeVersion(@Param("userId") Long userId);
+
+    @Modifying
+    @Query(value = "UPDATE users SET study_time_version = study_time_version + 1 WHERE id = :userId", nativeQuery = true)
+    int incrementStudyTimeVersion(@Param("userId") Long userId);
 }
\ No newline at end of file
@@ -30,6 +30,14 @@ public class CourseSecurityService {
         return course.getInstructor().getId().equals(userDetails.getId());
     }
 
+    // Giảng viên chỉ xem thống kê học viên của khóa học / của chính mình (toàn hệ thống: chỉ Admin)
+    public boolean canViewEnrollmentStats(Authentication authentication, Long courseId, Long instructorId) {
+        UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
+        if (instructorId != null && !instructorId.equals(userDetails.getId())) return false;
+        if (courseId != null) return isInstructor(authentication, courseId);
+        return instructorId != null;
+    }
+
     // Kiểm tra chủ chương
     public boolean isInstructorOfChapter(Authentication authentication, Long chapterId) {
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
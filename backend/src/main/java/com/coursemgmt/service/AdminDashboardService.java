@@ -6,7 +6,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.time.temporal.TemporalAdjusters;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -26,43 +28,59 @@ public class AdminDashboardService {
     @Autowired
     private TransactionRepository transactionRepository;
     
+    @Autowired
+    private DailyRollupService dailyRollupService;
+    
+    @Autowired
+    private DashboardQueryExecutor dashboardQueryExecutor;
+    
+    @Autowired
+    private DashboardSnapshotCache dashboardSnapshotCache;
+    
 
     /**
      * Lấy tổng quan stats cho admin dashboard
+     * (snapshot dùng chung cho mọi admin, xem DashboardSnapshotCache; các widget tự mở transaction riêng)
      */
     public Map<String, Object> getSummaryStats() {
+        return dashboardSnapshotCache.get("admin-summary", null, this::loadSummaryStats);
+    }
+
+    private Map<String, Object> loadSummaryStats() {
         Map<String, Object> stats = new HashMap<>();
         
+        LocalDateTime startOfMonth = LocalDateTime.now()
+            .with(TemporalAdjusters.firstDayOfMonth())
+            .withHour(0).withMinute(0).withSecond(0).withNano(0);
+        
+        // Các con số độc lập được đếm song song
+        DashboardQueryExecutor.Batch batch = dashboardQueryExecutor.newBatch("admin-summary");
+        
         // Tổng số User
-        Long totalUsers = userRepository.count();
-        stats.put("totalUsers", totalUsers);
+        var totalUsers = batch.submit("totalUsers", 0L, userRepository::count);
         
         // Tổng số Khóa học
-        Long totalCourses = courseRepository.count();
-        stats.put("totalCourses", totalCourses);
+        var totalCourses = batch.submit("totalCourses", 0L, courseRepository::count);
         
         // Tổng Doanh thu (tất cả transactions SUCCESS)
-        Double totalRevenue = transactionRepository.calculateRevenueByDateRange(
+        var totalRevenue = batch.submit("totalRevenue", 0.0, () -> transactionRepository.calculateRevenueByDateRange(
             LocalDateTime.of(2020, 1, 1, 0, 0),
             LocalDateTime.now()
-        );
-        stats.put("totalRevenue", totalRevenue != null ? totalRevenue : 0.0);
+        ));
         
-        // Số giao dịch trong tháng
-        LocalDateTime startOfMonth = LocalDateTime.now()
-            .with(TemporalAdjusters.firstDayOfMonth())
-            .withHour(0).withMinute(0).withSecond(0);
-        LocalDateTime endOfMonth = LocalDateTime.now();
+        // Đếm số giao dịch thành công trong tháng hiện tại (COUNT trên index (status, created_at))
+        var monthlyTransactions = batch.submit("monthlyTransactions", 0L, () -> transactionRepository.countByStatusAndDateRange(
+            ETransactionStatus.SUCCESS, startOfMonth, startOfMonth.plusMonths(1)));
+        
+        batch.await();
         
-        // Đếm số giao dịch thành công trong tháng hiện tại
-        List<Transaction> allTransactions = transactionRepository.findAll();
-        long monthlyTransactions = allTransactions.stream()
-            .filter(t -> t.getStatus() == ETransactionStatus.SUCCESS)
-            .filter(t -> t.getCreatedAt() != null && 
-                        t.getCreatedAt().isAfter(startOfMonth) && 
-                        t.getCreatedAt().isBefore(endOfMonth.plusDays(1)))
-            .count();
-        stats.put("monthlyTransactions", monthlyTransactions);
+        stats.put("totalUsers", totalUsers.get());
+        stats.put("totalCourses", totalCourses.get());
+        stats.put("totalRevenue", totalRevenue.get() != null ? totalRevenue.get() : 0.0);
+        stats.put("monthlyTransactions", monthlyTransactions.get());
+        if (!batch.errors().isEmpty()) {
+            stats.put("widgetErrors", batch.errors());
+        }
         
         return stats;
     }
@@ -71,33 +89,33 @@ public class AdminDashboardService {
      * Lấy doanh thu theo 12 tháng gần nhất
      */
     public List<Map<String, Object>> getRevenueChart() {
+        return dashboardSnapshotCache.get("admin-revenue-chart", null, this::loadRevenueChart);
+    }
+
+    private List<Map<String, Object>> loadRevenueChart() {
         List<Map<String, Object>> chartData = new ArrayList<>();
         
-        LocalDateTime now = LocalDateTime.now();
-        int currentYear = now.getYear();
-        
-        // Lấy doanh thu theo tháng
-        List<Object[]> monthlyRevenue = transactionRepository.getMonthlyRevenue(currentYear);
+        LocalDate today = LocalDate.now();
+        YearMonth currentMonth = YearMonth.from(today);
         
-        // Tạo map để dễ truy cập
-        Map<Integer, Double> revenueMap = new HashMap<>();
-        for (Object[] row : monthlyRevenue) {
-            Integer month = (Integer) row[0];
-            Double revenue = ((Number) row[2]).doubleValue();
-            revenueMap.put(month, revenue);
+        // Lấy doanh thu theo ngày từ bảng tổng hợp (tối đa ~366 dòng) rồi gom theo (năm, tháng)
+        Map<YearMonth, Double> revenueMap = new HashMap<>();
+        for (DailyRollupService.DailyTotals day : dailyRollupService.getDailyTotals(
+                currentMonth.minusMonths(11).atDay(1), today)) {
+            revenueMap.merge(YearMonth.from(day.date()), day.revenue(), Double::sum);
         }
         
         // Tạo dữ liệu cho 12 tháng gần nhất
         for (int i = 11; i >= 0; i--) {
-            LocalDateTime monthDate = now.minusMonths(i);
-            int month = monthDate.getMonthValue();
-            int year = monthDate.getYear();
+            YearMonth yearMonth = currentMonth.minusMonths(i);
+            int month = yearMonth.getMonthValue();
+            int year = yearMonth.getYear();
             
             Map<String, Object> monthData = new HashMap<>();
             monthData.put("month", month);
             monthData.put("year", year);
             monthData.put("monthName", getMonthName(month));
-            monthData.put("revenue", revenueMap.getOrDefault(month, 0.0));
+            monthData.put("revenue", revenueMap.getOrDefault(yearMonth, 0.0));
             
             chartData.add(monthData);
         }
@@ -109,6 +127,10 @@ public class AdminDashboardService {
      * Lấy top 5 khóa học bán chạy nhất
      */
     public List<Map<String, Object>> getTopSellingCourses() {
+        return dashboardSnapshotCache.getInTransaction("admin-top-courses", null, this::loadTopSellingCourses);
+    }
+
+    private List<Map<String, Object>> loadTopSellingCourses() {
         List<Object[]> topCourses = transactionRepository.findTopSellingCourses(
             PageRequest.of(0, 5)
         );
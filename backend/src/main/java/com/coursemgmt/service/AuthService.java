@@ -54,6 +54,9 @@ public class AuthService {
     @Autowired
     EmailService emailService;
 
+    @Autowired
+    InboxProjectionService inboxProjectionService;
+
     @Value("${app.frontend.url:http://localhost:3000}")
     private String frontendUrl;
 
@@ -282,6 +285,7 @@ public class AuthService {
         // Step 3: CRITICAL - Save to database to persist changes
         System.out.println("UpdateProfile: Saving user to database...");
         User savedUser = userRepository.save(user);
+        inboxProjectionService.onUserProfileChanged(savedUser);
         System.out.println("UpdateProfile: Profile updated successfully for user ID: " + userId);
         
         return savedUser;
@@ -293,7 +297,9 @@ public class AuthService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found!"));
         user.setAvatarUrl(avatarUrl);
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        inboxProjectionService.onUserProfileChanged(savedUser);
+        return savedUser;
     }
 
     // New method to get user by ID
@@ -0,0 +1,33 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.repository.ConversationParticipantRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Chuyển trạng thái đã đọc cũ (message_reads theo từng tin nhắn + last_read_at) sang watermark
+ * conversation_participants.last_read_message_id khi khởi động
+ * Chỉ xử lý participant chưa có watermark (cột mới được thêm), participant tạo sau này bắt đầu từ 0
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ChatReadWatermarkBackfillJob {
+
+    private final ConversationParticipantRepository participantRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        try {
+            int updated = participantRepository.backfillReadWatermarks();
+            if (updated > 0) {
+                log.info("Backfilled read watermark for {} conversation participant(s)", updated);
+            }
+        } catch (Exception e) {
+            log.error("Chat read watermark backfill failed: {}", e.getMessage(), e);
+        }
+    }
+}
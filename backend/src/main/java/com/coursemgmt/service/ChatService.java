@@ -6,6 +6,7 @@ import com.coursemgmt.model.*;
 import com.coursemgmt.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -14,6 +15,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -25,10 +28,35 @@ public class ChatService {
     private final ConversationRepository conversationRepository;
     private final ConversationParticipantRepository participantRepository;
     private final MessageRepository messageRepository;
-    private final MessageReadRepository messageReadRepository;
     private final UserRepository userRepository;
     private final EnrollmentRepository enrollmentRepository;
     private final CourseRepository courseRepository;
+    private final InboxEntryRepository inboxEntryRepository;
+    private final InboxProjectionService inboxProjectionService;
+    
+    /**
+     * Trạng thái đã đọc của 1 conversation với 1 người xem, suy ra từ watermark của các participant
+     * - Tin của người khác: đã đọc nếu id <= watermark của người xem
+     * - Tin của người xem: "đã xem" nếu id <= watermark lớn nhất của các participant còn lại
+     * readAt là thời điểm watermark tương ứng được đẩy lên lần cuối (không lưu theo từng tin nhắn)
+     */
+    private record ReadState(Long viewerId, long viewerWatermark, LocalDateTime viewerReadAt,
+                             long othersWatermark, LocalDateTime othersReadAt) {
+
+        private boolean isRead(Message message) {
+            return message.getId() <= (isOwn(message) ? othersWatermark : viewerWatermark);
+        }
+
+        private ChatMessageResponse toResponse(Message message) {
+            boolean read = isRead(message);
+            return ChatMessageResponse.fromEntity(message, read,
+                    read ? (isOwn(message) ? othersReadAt : viewerReadAt) : null);
+        }
+
+        private boolean isOwn(Message message) {
+            return message.getSender().getId().equals(viewerId);
+        }
+    }
     
     @Transactional
     public ConversationResponse createConversation(Long currentUserId, CreateConversationRequest request) {
@@ -77,7 +105,7 @@ public class ChatService {
                 .orElse(null);
         
         if (existingConversation != null) {
-            return getConversationResponse(existingConversation, currentUserId);
+            return getConversationResponse(existingConversation.getId(), currentUserId);
         }
         
         // Create new conversation
@@ -98,40 +126,54 @@ public class ChatService {
         
         participantRepository.save(participant1);
         participantRepository.save(participant2);
+        inboxProjectionService.createEntries(conversation, List.of(participant1, participant2));
         
-        return getConversationResponse(conversation, currentUserId);
+        return getConversationResponse(conversation.getId(), currentUserId);
     }
     
-    @Transactional(readOnly = true)
+    /**
+     * Toàn bộ conversation của user từ inbox projection (1 query), hoạt động gần nhất trước
+     * Không chạy trong 1 transaction chung: dòng inbox còn thiếu được dựng và commit trước khi đọc
+     */
     public List<ConversationResponse> getUserConversations(Long userId) {
-        try {
-            List<Conversation> conversations = conversationRepository
-                    .findByUserIdOrderByLastMessageAtDesc(userId);
-            
-            return conversations.stream()
-                    .map(conv -> {
-                        try {
-                            return getConversationResponse(conv, userId);
-                        } catch (Exception e) {
-                            log.error("Error processing conversation {}: {}", conv.getId(), e.getMessage(), e);
-                            // Return a minimal response to avoid breaking the entire list
-                            return ConversationResponse.fromEntity(conv, null, null, 0L);
-                        }
-                    })
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            log.error("Error getting user conversations for user {}: {}", userId, e.getMessage(), e);
-            throw new RuntimeException("Error fetching conversations: " + e.getMessage(), e);
+        ensureInboxEntries(userId);
+        return inboxEntryRepository.findByUserIdOrderByActivityAtDescConversationIdDesc(userId).stream()
+                .map(inboxProjectionService::toResponse)
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Inbox phân trang theo cursor: mỗi trang là 1 query trên index (user_id, activity_at, conversation_id)
+     */
+    public CursorPageResponse<ConversationResponse> getInbox(Long userId, String cursor, int size) {
+        ensureInboxEntries(userId);
+        Pageable limit = PageRequest.of(0, size + 1); // Lấy dư 1 dòng để biết còn trang sau không
+        List<InboxEntry> entries;
+        if (cursor == null || cursor.isBlank()) {
+            entries = inboxEntryRepository.findInboxFirstPage(userId, limit);
+        } else {
+            InboxCursor after = InboxCursor.decode(cursor);
+            entries = inboxEntryRepository.findInboxPageAfter(userId, after.activityAt(), after.conversationId(), limit);
+        }
+        
+        boolean hasNext = entries.size() > size;
+        if (hasNext) {
+            entries = entries.subList(0, size);
         }
+        String nextCursor = null;
+        if (hasNext) {
+            InboxEntry last = entries.get(entries.size() - 1);
+            nextCursor = new InboxCursor(last.getActivityAt(), last.getConversationId()).encode();
+        }
+        List<ConversationResponse> content = entries.stream()
+                .map(inboxProjectionService::toResponse)
+                .collect(Collectors.toList());
+        return new CursorPageResponse<>(content, nextCursor, hasNext, content.size(), null);
     }
     
     @Transactional(readOnly = true)
     public ConversationResponse getConversation(Long conversationId, Long userId) {
-        Conversation conversation = conversationRepository
-                .findByIdAndUserId(conversationId, userId)
-                .orElseThrow(() -> new RuntimeException("Conversation not found"));
-        
-        return getConversationResponse(conversation, userId);
+        return getConversationResponse(conversationId, userId);
     }
     
     @Transactional
@@ -160,6 +202,7 @@ public class ChatService {
         // Update conversation last message time
         conversation.setLastMessageAt(LocalDateTime.now());
         conversationRepository.save(conversation);
+        inboxProjectionService.onMessageSent(message);
         
         return ChatMessageResponse.fromEntity(message, false, null);
     }
@@ -173,29 +216,12 @@ public class ChatService {
         Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
         Page<Message> messages = messageRepository.findByConversationIdOrderByCreatedAtDesc(conversationId, pageable);
         
-        // Get read status for each message
-        List<MessageRead> reads = messageReadRepository.findByConversationIdAndUserId(conversationId, userId);
+        // Trạng thái đã đọc suy ra từ watermark (1 query participants cho cả trang)
+        ReadState readState = loadReadState(conversationId, userId);
         
         return messages.map(msg -> {
-            MessageRead read = reads.stream()
-                    .filter(r -> {
-                        try {
-                            return r.getMessage() != null && r.getMessage().getId() != null && 
-                                   r.getMessage().getId().equals(msg.getId());
-                        } catch (Exception e) {
-                            log.warn("Error checking message read status: {}", e.getMessage());
-                            return false;
-                        }
-                    })
-                    .findFirst()
-                    .orElse(null);
-            
             try {
-                return ChatMessageResponse.fromEntity(
-                        msg,
-                        read != null,
-                        read != null ? read.getReadAt() : null
-                );
+                return readState.toResponse(msg);
             } catch (Exception e) {
                 log.error("Error creating ChatMessageResponse for message {}: {}", msg.getId(), e.getMessage(), e);
                 throw new RuntimeException("Error processing message: " + e.getMessage(), e);
@@ -203,6 +229,56 @@ public class ChatService {
         });
     }
     
+    /**
+     * Lịch sử tin nhắn theo cursor id, chi phí mỗi trang không phụ thuộc vị trí trong conversation
+     * - Không có anchor: size tin mới nhất
+     * - before: size tin ngay trước tin before (cuộn lên)
+     * - after: size tin ngay sau tin after (cuộn xuống; client WebSocket kết nối lại gửi id cuối đã thấy để bắt kịp)
+     * - around: tin around ở giữa, khoảng size/2 tin mỗi bên (nhảy tới 1 tin nhắn)
+     */
+    @Transactional(readOnly = true)
+    public MessageHistoryResponse getMessageHistory(Long conversationId, Long userId,
+                                                    Long before, Long after, Long around, int size) {
+        int anchors = (before != null ? 1 : 0) + (after != null ? 1 : 0) + (around != null ? 1 : 0);
+        if (anchors > 1) {
+            throw new IllegalArgumentException("Only one of before, after, around can be specified");
+        }
+        ReadState readState = loadReadState(conversationId, userId);
+        
+        List<Message> messages;
+        boolean hasOlder;
+        boolean hasNewer;
+        if (after != null) {
+            messages = messageRepository.findFromId(conversationId, after + 1, PageRequest.of(0, size + 1));
+            hasNewer = messages.size() > size;
+            messages = messages.subList(0, Math.min(size, messages.size()));
+            hasOlder = messageRepository.existsByConversationIdAndIdLessThan(conversationId, after + 1);
+        } else if (around != null) {
+            int olderCount = size / 2;
+            List<Message> older = messageRepository.findBeforeId(conversationId, around, PageRequest.of(0, olderCount + 1));
+            List<Message> newer = messageRepository.findFromId(conversationId, around, PageRequest.of(0, size - olderCount + 1));
+            hasOlder = older.size() > olderCount;
+            hasNewer = newer.size() > size - olderCount;
+            messages = new ArrayList<>(older.subList(0, Math.min(olderCount, older.size())));
+            Collections.reverse(messages);
+            messages.addAll(newer.subList(0, Math.min(size - olderCount, newer.size())));
+        } else {
+            long beforeId = before != null ? before : Long.MAX_VALUE;
+            messages = new ArrayList<>(messageRepository.findBeforeId(conversationId, beforeId, PageRequest.of(0, size + 1)));
+            hasOlder = messages.size() > size;
+            messages = messages.subList(0, Math.min(size, messages.size()));
+            Collections.reverse(messages);
+            hasNewer = before != null && messageRepository.existsByConversationIdAndIdGreaterThan(conversationId, before - 1);
+        }
+        
+        List<ChatMessageResponse> content = messages.stream()
+                .map(readState::toResponse)
+                .collect(Collectors.toList());
+        Long oldestId = content.isEmpty() ? null : content.get(0).getId();
+        Long newestId = content.isEmpty() ? null : content.get(content.size() - 1).getId();
+        return new MessageHistoryResponse(conversationId, content, oldestId, newestId, hasOlder, hasNewer);
+    }
+    
     @Transactional
     public ChatMessageResponse updateMessage(Long messageId, Long userId, UpdateMessageRequest request) {
         Message message = messageRepository.findByIdAndSenderId(messageId, userId)
@@ -213,9 +289,9 @@ public class ChatService {
         message.setEditedAt(LocalDateTime.now());
         
         message = messageRepository.save(message);
+        inboxProjectionService.onMessageChanged(message);
         
-        MessageRead read = messageReadRepository.findByMessageIdAndUserId(messageId, userId).orElse(null);
-        return ChatMessageResponse.fromEntity(message, read != null, read != null ? read.getReadAt() : null);
+        return loadReadState(message.getConversation().getId(), userId).toResponse(message);
     }
     
     @Transactional
@@ -226,51 +302,41 @@ public class ChatService {
         message.setIsDeleted(true);
         message.setDeletedAt(LocalDateTime.now());
         messageRepository.save(message);
+        inboxProjectionService.onMessageChanged(message);
     }
     
+    /**
+     * Đánh dấu đã đọc toàn bộ tin nhắn hiện có của conversation
+     */
     @Transactional
-    public void markAsRead(Long conversationId, Long userId) {
-        ConversationParticipant participant = participantRepository
-                .findByConversationIdAndUserId(conversationId, userId)
-                .orElseThrow(() -> new RuntimeException("Participant not found"));
-        
-        participant.setLastReadAt(LocalDateTime.now());
-        participantRepository.save(participant);
-        
-        // Mark all unread messages as read
-        List<Message> allMessages = messageRepository.findByConversationIdOrderByCreatedAtAsc(conversationId);
-        List<Message> unreadMessages = allMessages.stream()
-                .filter(msg -> {
-                    // Check if message is from other users
-                    try {
-                        Long senderId = msg.getSender().getId();
-                        if (senderId.equals(userId)) {
-                            return false; // Skip own messages
-                        }
-                    } catch (Exception e) {
-                        log.warn("Error getting sender ID: {}", e.getMessage());
-                        return false;
-                    }
-                    
-                    // Check if already read
-                    MessageRead existingRead = messageReadRepository
-                            .findByMessageIdAndUserId(msg.getId(), userId)
-                            .orElse(null);
-                    return existingRead == null;
-                })
-                .collect(Collectors.toList());
+    public Long markAsRead(Long conversationId, Long userId) {
+        return markAsRead(conversationId, userId, null);
+    }
+    
+    /**
+     * Đẩy watermark đã đọc của user lên tin nhắn mới nhất có id <= upToMessageId (null = tin mới nhất)
+     * - 1 câu MAX(id) trên index + 1 câu UPDATE 1 dòng, không phụ thuộc độ dài conversation
+     * - Watermark không bao giờ lùi (đọc lại tin cũ không làm tin mới thành chưa đọc)
+     * @return id tin nhắn được đánh dấu đã đọc tới (0 nếu không có tin nào);
+     *         watermark thực tế có thể lớn hơn nếu trước đó user đã đọc xa hơn
+     */
+    @Transactional
+    public Long markAsRead(Long conversationId, Long userId, Long upToMessageId) {
+        Long lastMessageId = messageRepository.findLastMessageId(conversationId, upToMessageId);
+        long watermark = lastMessageId != null ? lastMessageId : 0L;
         
-        for (Message msg : unreadMessages) {
-            MessageRead read = new MessageRead();
-            read.setMessage(msg);
-            read.setUser(participant.getUser());
-            messageReadRepository.save(read);
+        LocalDateTime readAt = LocalDateTime.now();
+        int updated = participantRepository.advanceReadWatermark(conversationId, userId, watermark, readAt);
+        if (updated == 0) {
+            throw new RuntimeException("Participant not found");
         }
+        inboxProjectionService.onRead(conversationId, userId, watermark, readAt);
+        return watermark;
     }
     
     @Transactional(readOnly = true)
     public Long getUnreadCount(Long conversationId, Long userId) {
-        return messageRepository.countUnreadMessages(conversationId, userId, LocalDateTime.MIN);
+        return messageRepository.countUnreadMessages(conversationId, userId);
     }
     
     /**
@@ -300,51 +366,50 @@ public class ChatService {
                 .collect(Collectors.toList());
     }
     
-    private ConversationResponse getConversationResponse(Conversation conversation, Long currentUserId) {
+    // Backfill inbox chưa xong: dựng dòng còn thiếu của user trước khi đọc để không thiếu conversation cũ
+    private void ensureInboxEntries(Long userId) {
         try {
-            // Get other participant
-            List<ConversationParticipant> otherParticipants = participantRepository
-                    .findOtherParticipants(conversation.getId(), currentUserId);
-            
-            ConversationResponse.UserInfo otherParticipant = null;
-            if (!otherParticipants.isEmpty()) {
-                ConversationParticipant participant = otherParticipants.get(0);
-                User otherUser = participant.getUser();
-                if (otherUser != null) {
-                    otherParticipant = ConversationResponse.UserInfo.builder()
-                            .id(otherUser.getId())
-                            .fullName(otherUser.getFullName())
-                            .avatar(otherUser.getAvatarUrl())
-                            .role(participant.getRole() != null ? participant.getRole().name() : "STUDENT")
-                            .build();
-                }
+            int built = inboxProjectionService.ensureEntries(userId);
+            if (built > 0) {
+                log.info("Built {} missing inbox entr(ies) for user {}", built, userId);
             }
-            
-            // Get last message - query separately to avoid LAZY loading issues
-            ChatMessageResponse lastMessage = null;
-            List<Message> messages = messageRepository.findByConversationIdOrderByCreatedAtAsc(conversation.getId());
-            if (!messages.isEmpty()) {
-                Message lastMsg = messages.get(messages.size() - 1); // Last message (most recent)
-                if (lastMsg != null && lastMsg.getSender() != null) {
-                    MessageRead read = messageReadRepository
-                            .findByMessageIdAndUserId(lastMsg.getId(), currentUserId)
-                            .orElse(null);
-                    lastMessage = ChatMessageResponse.fromEntity(
-                            lastMsg,
-                            read != null,
-                            read != null ? read.getReadAt() : null
-                    );
-                }
+        } catch (DataIntegrityViolationException e) {
+            // Request khác (hoặc InboxBackfillJob) vừa dựng cùng dòng: dữ liệu đã có
+            log.debug("Inbox entries for user {} were built concurrently: {}", userId, e.getMessage());
+        }
+    }
+
+    // Dòng inbox của user; participant chưa có dòng inbox (backfill chưa chạy) thì tính từ dữ liệu gốc
+    private ConversationResponse getConversationResponse(Long conversationId, Long userId) {
+        InboxEntry entry = inboxEntryRepository.findByUserIdAndConversationId(userId, conversationId)
+                .orElseGet(() -> participantRepository.findByConversationIdAndUserId(conversationId, userId)
+                        .map(inboxProjectionService::buildFromSource)
+                        .orElseThrow(() -> new RuntimeException("Conversation not found")));
+        return inboxProjectionService.toResponse(entry);
+    }
+    
+    // Đồng thời kiểm tra viewer là participant của conversation
+    private ReadState loadReadState(Long conversationId, Long viewerId) {
+        boolean isParticipant = false;
+        long viewerWatermark = 0L;
+        LocalDateTime viewerReadAt = null;
+        long othersWatermark = 0L;
+        LocalDateTime othersReadAt = null;
+        for (ConversationParticipant participant : participantRepository.findByConversationId(conversationId)) {
+            long watermark = participant.getLastReadMessageId() != null ? participant.getLastReadMessageId() : 0L;
+            if (participant.getUser().getId().equals(viewerId)) {
+                isParticipant = true;
+                viewerWatermark = watermark;
+                viewerReadAt = participant.getLastReadAt();
+            } else if (watermark > othersWatermark) {
+                othersWatermark = watermark;
+                othersReadAt = participant.getLastReadAt();
             }
-            
-            // Get unread count
-            Long unreadCount = getUnreadCount(conversation.getId(), currentUserId);
-            
-            return ConversationResponse.fromEntity(conversation, otherParticipant, lastMessage, unreadCount);
-        } catch (Exception e) {
-            log.error("Error creating ConversationResponse for conversation {}: {}", conversation.getId(), e.getMessage(), e);
-            throw new RuntimeException("Error processing conversation: " + e.getMessage(), e);
         }
+        if (!isParticipant) {
+            throw new RuntimeException("User is not a participant");
+        }
+        return new ReadState(viewerId, viewerWatermark, viewerReadAt, othersWatermark, othersReadAt);
     }
     
     private ConversationParticipant.ParticipantRole getUserRole(User user) {
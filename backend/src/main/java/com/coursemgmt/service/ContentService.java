@@ -10,16 +10,18 @@ import com.coursemgmt.model.*;
 import com.coursemgmt.repository.*;
 import com.coursemgmt.security.services.UserDetailsImpl;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 @Service
 public class ContentService {
@@ -38,6 +40,19 @@ public class ContentService {
     private UserProgressRepository userProgressRepository;
     @Autowired
     private CertificateService certificateService;
+    @Autowired
+    private CurriculumCache curriculumCache;
+    @Autowired
+    private LearningStateCache learningStateCache;
+    @Autowired
+    private WatchTimeBuffer watchTimeBuffer;
+    @Autowired
+    private StudyTimeAccumulator studyTimeAccumulator;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Số dòng tối đa trong 1 câu UPDATE ... CASE (mỗi dòng 3 tham số)
+    private static final int POSITION_UPDATE_CHUNK = 500;
 
     private static final Logger logger = Logger.getLogger(ContentService.class.getName());
 
@@ -52,7 +67,9 @@ public class ContentService {
         chapter.setTitle(request.getTitle());
         chapter.setPosition(request.getPosition());
         chapter.setCourse(course);
-        return chapterRepository.save(chapter);
+        Chapter savedChapter = chapterRepository.save(chapter);
+        curriculumCache.bumpVersion(courseId);
+        return savedChapter;
     }
 
     @Transactional
@@ -62,7 +79,9 @@ public class ContentService {
 
         chapter.setTitle(request.getTitle());
         chapter.setPosition(request.getPosition());
-        return chapterRepository.save(chapter);
+        Chapter savedChapter = chapterRepository.save(chapter);
+        curriculumCache.bumpVersion(chapter.getCourse().getId());
+        return savedChapter;
     }
 
     @Transactional
@@ -70,6 +89,7 @@ public class ContentService {
         Chapter chapter = chapterRepository.findById(chapterId)
                 .orElseThrow(() -> new RuntimeException("Chapter not found!"));
         chapterRepository.delete(chapter);
+        curriculumCache.bumpVersion(chapter.getCourse().getId());
     }
 
     // --- Quản lý Lesson ---
@@ -77,6 +97,9 @@ public class ContentService {
     @Autowired
     private VideoDurationService videoDurationService;
 
+    @Autowired
+    private CourseStatsService courseStatsService;
+
     @Transactional
     public Lesson createLesson(Long chapterId, LessonRequest request) {
         Chapter chapter = chapterRepository.findById(chapterId)
@@ -103,7 +126,9 @@ public class ContentService {
         lesson.setIsPreview(request.getIsPreview() != null ? request.getIsPreview() : false);
         lesson.setChapter(chapter);
 
-        return lessonRepository.save(lesson);
+        Lesson savedLesson = lessonRepository.save(lesson);
+        curriculumCache.bumpVersion(chapter.getCourse().getId());
+        return savedLesson;
     }
 
     @Transactional
@@ -132,7 +157,9 @@ public class ContentService {
         
         lesson.setIsPreview(request.getIsPreview() != null ? request.getIsPreview() : false);
 
-        return lessonRepository.save(lesson);
+        Lesson savedLesson = lessonRepository.save(lesson);
+        curriculumCache.bumpVersion(lesson.getChapter().getCourse().getId());
+        return savedLesson;
     }
 
     /**
@@ -170,6 +197,7 @@ public class ContentService {
         Lesson lesson = lessonRepository.findById(lessonId)
                 .orElseThrow(() -> new RuntimeException("Lesson not found!"));
         lessonRepository.delete(lesson);
+        curriculumCache.bumpVersion(lesson.getChapter().getCourse().getId());
     }
 
     // Helper method to get lessons for a chapter
@@ -198,47 +226,31 @@ public class ContentService {
             return null; // Khóa học miễn phí không cần preview
         }
         
-        // Lấy chapters với lessons (sắp xếp theo position)
-        List<Chapter> chapters = chapterRepository.findByCourseIdWithLessons(courseId);
-        
-        if (chapters == null || chapters.isEmpty()) {
-            return null; // Không có chapter nào
-        }
-        
-        // Tìm chapter đầu tiên
-        Chapter firstChapter = chapters.stream()
-                .min((c1, c2) -> {
-                    int pos1 = c1.getPosition() != null ? c1.getPosition() : Integer.MAX_VALUE;
-                    int pos2 = c2.getPosition() != null ? c2.getPosition() : Integer.MAX_VALUE;
-                    return Integer.compare(pos1, pos2);
-                })
-                .orElse(null);
-        
-        if (firstChapter == null || firstChapter.getLessons() == null || firstChapter.getLessons().isEmpty()) {
-            return null; // Không có lesson nào trong chapter đầu tiên
-        }
-        
-        // Tìm lesson đầu tiên trong chapter đầu tiên (sắp xếp theo position)
-        Lesson firstLesson = firstChapter.getLessons().stream()
-                .min((l1, l2) -> {
-                    int pos1 = l1.getPosition() != null ? l1.getPosition() : Integer.MAX_VALUE;
-                    int pos2 = l2.getPosition() != null ? l2.getPosition() : Integer.MAX_VALUE;
-                    return Integer.compare(pos1, pos2);
-                })
-                .orElse(null);
-        
+        // Bài học đầu tiên của chapter đầu tiên, lấy từ cây curriculum đã sắp xếp sẵn
+        CurriculumCache.LessonNode firstLesson = curriculumCache.getTree(course).firstLesson();
         if (firstLesson == null) {
-            return null;
+            return null; // Không có chapter nào, hoặc chapter đầu tiên chưa có lesson
         }
         
         // Chỉ trả về lesson có video (VIDEO content type) để preview
-        if ((firstLesson.getContentType() != EContentType.VIDEO && firstLesson.getContentType() != EContentType.YOUTUBE) || 
-            firstLesson.getVideoUrl() == null || firstLesson.getVideoUrl().isEmpty()) {
+        if ((firstLesson.contentType() != EContentType.VIDEO && firstLesson.contentType() != EContentType.YOUTUBE) || 
+            firstLesson.videoUrl() == null || firstLesson.videoUrl().isEmpty()) {
             return null; // Không có video để preview
         }
         
         // Trả về LessonResponse (không cần isCompleted vì đây là preview)
-        return LessonResponse.fromEntity(firstLesson, false);
+        LessonResponse preview = new LessonResponse();
+        preview.setId(firstLesson.id());
+        preview.setTitle(firstLesson.title());
+        preview.setContentType(firstLesson.contentType());
+        preview.setDurationInMinutes(firstLesson.durationInMinutes());
+        preview.setPosition(firstLesson.position());
+        preview.setIsPreview(firstLesson.isPreview());
+        preview.setVideoUrl(firstLesson.videoUrl());
+        preview.setDocumentUrl(firstLesson.documentUrl());
+        preview.setSlideUrl(firstLesson.slideUrl());
+        preview.setContent(firstLesson.content());
+        return preview;
     }
 
     /**
@@ -252,65 +264,94 @@ public class ContentService {
         Course course = courseRepository.findById(courseId)
                 .orElseThrow(() -> new ResourceNotFoundException("Course", "id", courseId));
         
-        // Lấy chapters với lessons (sắp xếp theo position)
-        List<Chapter> chapters = chapterRepository.findByCourseIdWithLessons(courseId);
-        
-        return chapters.stream()
-                .sorted((c1, c2) -> {
-                    int pos1 = c1.getPosition() != null ? c1.getPosition() : Integer.MAX_VALUE;
-                    int pos2 = c2.getPosition() != null ? c2.getPosition() : Integer.MAX_VALUE;
-                    return Integer.compare(pos1, pos2);
-                })
-                .map(chapter -> {
-                    List<LessonResponse> lessonResponses = chapter.getLessons().stream()
-                            .sorted((l1, l2) -> {
-                                int pos1 = l1.getPosition() != null ? l1.getPosition() : Integer.MAX_VALUE;
-                                int pos2 = l2.getPosition() != null ? l2.getPosition() : Integer.MAX_VALUE;
-                                return Integer.compare(pos1, pos2);
-                            })
-                            .map(lesson -> {
-                                // Tạo LessonResponse nhưng không có nội dung chi tiết
-                                LessonResponse lessonResponse = new LessonResponse();
-                                lessonResponse.setId(lesson.getId());
-                                lessonResponse.setTitle(lesson.getTitle());
-                                lessonResponse.setContentType(lesson.getContentType());
-                                lessonResponse.setPosition(lesson.getPosition());
-                                lessonResponse.setDurationInMinutes(lesson.getDurationInMinutes());
-                                // Đánh dấu lesson nào là preview
-                                lessonResponse.setIsPreview(previewLessonId != null && lesson.getId().equals(previewLessonId));
-                                // Không set videoUrl, documentUrl, slideUrl, content để bảo mật
-                                return lessonResponse;
-                            })
-                            .collect(Collectors.toList());
-                    
-                    return ChapterResponse.fromEntity(chapter, lessonResponses);
-                })
-                .collect(Collectors.toList());
+        // Cây curriculum dùng chung (đã sắp xếp), chỉ gắn cờ preview và bỏ nội dung chi tiết để bảo mật
+        return curriculumCache.getTree(course).toPublicResponses(previewLessonId);
     }
 
     // Reorder chapters
     @Transactional
     public void reorderChapters(Long courseId, Map<Long, Integer> chapterPositions) {
+        // Kiểm tra quyền sở hữu cho tất cả chapters trong 1 query (chapter của khóa học khác bị bỏ qua như trước)
+        Map<Long, Long> courseIdByChapter = new HashMap<>();
+        for (Object[] row : chapterRepository.findCourseIdsByIdIn(chapterPositions.keySet())) {
+            courseIdByChapter.put((Long) row[0], (Long) row[1]);
+        }
+        List<Object[]> updates = new ArrayList<>(chapterPositions.size());
         for (Map.Entry<Long, Integer> entry : chapterPositions.entrySet()) {
-            Chapter chapter = chapterRepository.findById(entry.getKey())
-                    .orElseThrow(() -> new RuntimeException("Chapter not found: " + entry.getKey()));
-            if (chapter.getCourse().getId().equals(courseId)) {
-                chapter.setPosition(entry.getValue());
-                chapterRepository.save(chapter);
+            Long ownerCourseId = courseIdByChapter.get(entry.getKey());
+            if (ownerCourseId == null) {
+                throw new RuntimeException("Chapter not found: " + entry.getKey());
+            }
+            if (ownerCourseId.equals(courseId)) {
+                updates.add(new Object[]{entry.getValue(), entry.getKey()});
             }
         }
+        // Cập nhật tất cả vị trí trong 1 câu UPDATE
+        updatePositions("chapters", updates);
+        curriculumCache.bumpVersion(courseId);
     }
 
     // Reorder lessons in a chapter
     @Transactional
     public void reorderLessons(Long chapterId, Map<Long, Integer> lessonPositions) {
+        Chapter chapter = chapterRepository.findById(chapterId)
+                .orElseThrow(() -> new RuntimeException("Chapter not found: " + chapterId));
+        // Chỉ cập nhật lesson thuộc chapter này
+        applyLessonPositions(lessonPositions, owner -> owner[1].equals(chapterId));
+        curriculumCache.bumpVersion(chapter.getCourse().getId());
+    }
+
+    /**
+     * Sắp xếp lại lessons của cả khóa học trong 1 lần (nhiều chapters, ví dụ sau khi kéo thả toàn bộ curriculum)
+     * Lesson không thuộc khóa học bị bỏ qua; lesson không đổi chapter
+     */
+    @Transactional
+    public void reorderCourseLessons(Long courseId, Map<Long, Integer> lessonPositions) {
+        applyLessonPositions(lessonPositions, owner -> owner[2].equals(courseId));
+        curriculumCache.bumpVersion(courseId);
+    }
+
+    // Kiểm tra lessons trong 1 query ([lessonId, chapterId, courseId]) rồi cập nhật vị trí trong 1 câu UPDATE
+    private void applyLessonPositions(Map<Long, Integer> lessonPositions, Predicate<Object[]> belongs) {
+        Map<Long, Object[]> ownersByLesson = new HashMap<>();
+        for (Object[] row : lessonRepository.findOwnersByIdIn(lessonPositions.keySet())) {
+            ownersByLesson.put((Long) row[0], row);
+        }
+        List<Object[]> updates = new ArrayList<>(lessonPositions.size());
         for (Map.Entry<Long, Integer> entry : lessonPositions.entrySet()) {
-            Lesson lesson = lessonRepository.findById(entry.getKey())
-                    .orElseThrow(() -> new RuntimeException("Lesson not found: " + entry.getKey()));
-            if (lesson.getChapter().getId().equals(chapterId)) {
-                lesson.setPosition(entry.getValue());
-                lessonRepository.save(lesson);
+            Object[] owner = ownersByLesson.get(entry.getKey());
+            if (owner == null) {
+                throw new RuntimeException("Lesson not found: " + entry.getKey());
+            }
+            if (belongs.test(owner)) {
+                updates.add(new Object[]{entry.getValue(), entry.getKey()});
+            }
+        }
+        updatePositions("lessons", updates);
+    }
+
+    /**
+     * UPDATE table SET position = CASE id WHEN ? THEN ? ... END WHERE id IN (...)
+     * 1 câu lệnh (1 round trip) cho mỗi POSITION_UPDATE_CHUNK dòng, không phụ thuộc rewriteBatchedStatements của driver
+     * @param updates các cặp [position, id]
+     */
+    private void updatePositions(String table, List<Object[]> updates) {
+        for (int from = 0; from < updates.size(); from += POSITION_UPDATE_CHUNK) {
+            List<Object[]> chunk = updates.subList(from, Math.min(from + POSITION_UPDATE_CHUNK, updates.size()));
+            StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET position = CASE id");
+            List<Object> args = new ArrayList<>(chunk.size() * 3);
+            for (Object[] update : chunk) {
+                sql.append(" WHEN ? THEN ?");
+                args.add(update[1]);
+                args.add(update[0]);
+            }
+            sql.append(" END WHERE id IN (");
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+                args.add(chunk.get(i)[1]);
             }
+            sql.append(")");
+            jdbcTemplate.update(sql.toString(), args.toArray());
         }
     }
 
@@ -382,154 +423,20 @@ public class ContentService {
         System.out.println("Access granted - proceeding to fetch content");
         System.out.println("========================================");
         
-        // Lấy danh sách ID các bài học đã hoàn thành
-        Set<Long> completedLessonIds = Set.of();
-        if (enrollment != null) {
-            System.out.println("Fetching user progress for enrollment ID: " + enrollment.getId());
-            try {
-                // Sử dụng JOIN FETCH để load lesson cùng lúc, tránh LazyInitializationException
-                Set<User_Progress> progressSet = userProgressRepository.findByEnrollmentWithLesson(enrollment);
-                System.out.println("Found " + progressSet.size() + " progress records");
-                
-                completedLessonIds = progressSet.stream()
-                        .filter(progress -> {
-                            if (progress == null) return false;
-                            Boolean isCompleted = progress.getIsCompleted();
-                            return isCompleted != null && isCompleted;
-                        })
-                        .filter(progress -> {
-                            try {
-                                return progress.getLesson() != null && progress.getLesson().getId() != null;
-                            } catch (Exception e) {
-                                System.err.println("ERROR accessing lesson from progress: " + e.getMessage());
-                                e.printStackTrace();
-                                return false;
-                            }
-                        })
-                        .map(progress -> {
-                            try {
-                                return progress.getLesson().getId();
-                            } catch (Exception e) {
-                                System.err.println("ERROR getting lesson ID: " + e.getMessage());
-                                e.printStackTrace();
-                                return null;
-                            }
-                        })
-                        .filter(id -> id != null)
-                        .collect(Collectors.toSet());
-                System.out.println("Completed lesson IDs: " + completedLessonIds.size());
-            } catch (Exception e) {
-                System.err.println("ERROR fetching user progress: " + e.getMessage());
-                e.printStackTrace();
-                // Continue with empty set if progress fetch fails
-                completedLessonIds = Set.of();
-            }
-        }
-        
-        System.out.println("Final completed lesson IDs count: " + completedLessonIds.size());
-
-        final Set<Long> finalCompletedLessonIds = completedLessonIds; // Cần final để dùng trong lambda
-
-        // Lấy danh sách Chapters với lessons (sử dụng JOIN FETCH để tránh LazyInitializationException)
-        System.out.println("Fetching chapters for course ID: " + courseId);
-        List<Chapter> chapters;
-        try {
-            chapters = chapterRepository.findByCourseIdWithLessons(courseId);
-            System.out.println("Found " + chapters.size() + " chapters");
-            
-            if (chapters.isEmpty()) {
-                System.out.println("WARNING: No chapters found for course " + courseId);
-                return List.of(); // Return empty list instead of throwing error
-            }
-        } catch (Exception e) {
-            System.err.println("ERROR fetching chapters: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Không thể tải nội dung khóa học: " + e.getMessage(), e);
+        // Lấy cây curriculum dùng chung (cache theo curriculum_version)
+        CurriculumCache.CurriculumTree tree = curriculumCache.getTree(course);
+        logger.fine(() -> "Found " + tree.chapters().size() + " chapters for course " + courseId
+                + " (curriculum version " + tree.version() + ")");
+        if (tree.isEmpty()) {
+            return List.of(); // Return empty list instead of throwing error
         }
 
-        // Map sang DTO với logic khóa bài học tuần tự
-        System.out.println("Mapping chapters to DTOs...");
-        try {
-            // Sắp xếp chapters theo position
-            List<Chapter> sortedChapters = chapters.stream()
-                    .sorted((c1, c2) -> {
-                        int pos1 = c1.getPosition() != null ? c1.getPosition() : Integer.MAX_VALUE;
-                        int pos2 = c2.getPosition() != null ? c2.getPosition() : Integer.MAX_VALUE;
-                        return Integer.compare(pos1, pos2);
-                    })
-                    .collect(Collectors.toList());
-            
-            return sortedChapters.stream().map(chapter -> {
-                // Sắp xếp lessons trong chapter theo position
-                List<Lesson> sortedLessons = chapter.getLessons().stream()
-                        .sorted((l1, l2) -> {
-                            int pos1 = l1.getPosition() != null ? l1.getPosition() : Integer.MAX_VALUE;
-                            int pos2 = l2.getPosition() != null ? l2.getPosition() : Integer.MAX_VALUE;
-                            return Integer.compare(pos1, pos2);
-                        })
-                        .collect(Collectors.toList());
-
-                List<LessonResponse> lessonResponses = new java.util.ArrayList<>();
-                Lesson previousLesson = null;
-                
-                for (int i = 0; i < sortedLessons.size(); i++) {
-                    Lesson lesson = sortedLessons.get(i);
-                    boolean isCompleted = isInstructor || finalCompletedLessonIds.contains(lesson.getId());
-                    
-                    // Xác định bài học có bị khóa không
-                    boolean isLocked = false;
-                    
-                    if (!isInstructor) {
-                        // Giảng viên không bị khóa bài nào
-                        if (i == 0) {
-                            // Bài học đầu tiên trong chapter
-                            // Kiểm tra xem có phải chapter đầu tiên không
-                            boolean isFirstChapter = sortedChapters.indexOf(chapter) == 0;
-                            if (isFirstChapter) {
-                                // Bài học đầu tiên của chapter đầu tiên: không khóa
-                                isLocked = false;
-                            } else {
-                                // Bài học đầu tiên của chapter sau: khóa nếu bài học cuối cùng của chapter trước chưa hoàn thành
-                                int currentChapterIndex = sortedChapters.indexOf(chapter);
-                                Chapter previousChapter = sortedChapters.get(currentChapterIndex - 1);
-                                
-                                // Lấy bài học cuối cùng của chapter trước
-                                List<Lesson> previousChapterLessons = previousChapter.getLessons().stream()
-                                        .sorted((l1, l2) -> {
-                                            int pos1 = l1.getPosition() != null ? l1.getPosition() : Integer.MAX_VALUE;
-                                            int pos2 = l2.getPosition() != null ? l2.getPosition() : Integer.MAX_VALUE;
-                                            return Integer.compare(pos1, pos2);
-                                        })
-                                        .collect(Collectors.toList());
-                                
-                                if (!previousChapterLessons.isEmpty()) {
-                                    Lesson lastLessonInPreviousChapter = previousChapterLessons.get(previousChapterLessons.size() - 1);
-                                    boolean lastLessonCompleted = finalCompletedLessonIds.contains(lastLessonInPreviousChapter.getId());
-                                    isLocked = !lastLessonCompleted;
-                                } else {
-                                    // Chapter trước không có lesson nào: không khóa
-                                    isLocked = false;
-                                }
-                            }
-                        } else {
-                            // Bài học không phải đầu tiên: khóa nếu bài học trước chưa hoàn thành
-                            boolean previousLessonCompleted = previousLesson != null && 
-                                    finalCompletedLessonIds.contains(previousLesson.getId());
-                            isLocked = !previousLessonCompleted;
-                        }
-                    }
-                    
-                    lessonResponses.add(LessonResponse.fromEntity(lesson, isCompleted, isLocked));
-                    previousLesson = lesson;
-                }
-                
-                return ChapterResponse.fromEntity(chapter, lessonResponses);
-            }).collect(Collectors.toList());
-        } catch (Exception e) {
-            System.err.println("ERROR mapping chapters to DTOs: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Không thể xử lý nội dung khóa học: " + e.getMessage(), e);
-        }
+        // Trạng thái học của user dạng bitset (bài đã hoàn thành), chỉ gắn isCompleted/isLocked lên cây dùng chung
+        LearningStateCache.LearningState state = enrollment != null
+                ? learningStateCache.getState(enrollment.getId(), tree)
+                : LearningStateCache.LearningState.empty();
+        logger.fine(() -> "Completed lessons: " + state.getCompletedCount() + " / " + tree.lessonCount());
+        return tree.toResponses(state, isInstructor);
     }
 
     // --- Chức năng: Theo dõi tiến độ ---
@@ -566,16 +473,20 @@ public class ContentService {
         User_Progress progress = userProgressRepository.findByEnrollmentAndLesson(enrollment, lesson)
                 .orElse(new User_Progress());
 
+        StudyTimeAccumulator.ProgressTime before = StudyTimeAccumulator.ProgressTime.of(progress);
         progress.setEnrollment(enrollment);
         progress.setLesson(lesson);
         progress.setIsCompleted(true);
         progress.setCompletedAt(LocalDateTime.now());
         userProgressRepository.save(progress);
+        enrollment.setLastActiveAt(progress.getCompletedAt());
+        studyTimeAccumulator.recordProgressChange(user.getId(), before,
+                StudyTimeAccumulator.ProgressTime.of(progress), lesson.getDurationInMinutes());
         
         System.out.println("DEBUG: Marked lesson as completed, updating enrollment progress...");
 
         // Cập nhật lại % tiến độ tổng của Enrollment
-        updateEnrollmentProgress(enrollment);
+        markCompletedAndUpdateProgress(enrollment, course, lessonId);
         
         System.out.println("DEBUG: markLessonAsCompleted completed successfully");
     }
@@ -583,6 +494,25 @@ public class ContentService {
     // --- Chức năng: Cập nhật tiến độ xem video (Auto-Progress) ---
     @Transactional
     public void updateLessonWatchTime(Long lessonId, Integer watchedTime, Integer totalDuration, UserDetailsImpl userDetails) {
+        // Calculate watch percentage
+        double percent = (double) watchedTime / totalDuration;
+
+        // Heartbeat thông thường (chưa tới ngưỡng hoàn thành hoặc bài đã hoàn thành):
+        // chỉ gộp vào WatchTimeBuffer, thời gian xem được ghi xuống DB theo lô
+        List<Object[]> targets = enrollmentRepository.findWatchTarget(userDetails.getId(), lessonId);
+        if (!targets.isEmpty()) {
+            Object[] target = targets.get(0);
+            Long enrollmentId = (Long) target[0];
+            CurriculumCache.CurriculumTree tree = curriculumCache.getTree((Long) target[1], (Long) target[2]);
+            boolean alreadyCompleted = learningStateCache.getState(enrollmentId, tree, (Long) target[3])
+                    .isCompleted(tree.ordinalOf(lessonId));
+            if (percent < 0.9 || alreadyCompleted) {
+                watchTimeBuffer.record(userDetails.getId(), enrollmentId, lessonId, watchedTime, totalDuration);
+                return;
+            }
+        }
+
+        // Bài học vừa đạt ngưỡng hoàn thành (hoặc không tìm được enrollment để báo lỗi): xử lý đồng bộ
         User user = userRepository.findById(userDetails.getId())
                 .orElseThrow(() -> new RuntimeException("User not found!"));
         Lesson lesson = lessonRepository.findById(lessonId)
@@ -603,32 +533,51 @@ public class ContentService {
             progress.setLesson(lesson);
         }
 
-        // Update watched time and total duration
-        progress.setLastWatchedTime(watchedTime);
+        // Update watched time and total duration (gộp cả thời gian xem còn chờ trong buffer)
+        StudyTimeAccumulator.ProgressTime before = StudyTimeAccumulator.ProgressTime.of(progress);
+        WatchTimeBuffer.PendingWatch buffered = watchTimeBuffer.take(enrollment.getId(), lessonId);
+        int maxWatchedTime = Math.max(watchedTime, buffered != null ? buffered.watchedTime() : 0);
+        if (progress.getLastWatchedTime() != null) {
+            maxWatchedTime = Math.max(maxWatchedTime, progress.getLastWatchedTime());
+        }
+        progress.setLastWatchedTime(maxWatchedTime);
         progress.setTotalDuration(totalDuration);
-
-        // Calculate watch percentage
-        double percent = (double) watchedTime / totalDuration;
+        enrollment.setLastActiveAt(LocalDateTime.now());
 
         // Crucial Check: IF watched >= 90% AND not already completed -> Auto-complete
-        if (percent >= 0.9 && !Boolean.TRUE.equals(progress.getIsCompleted())) {
+        boolean justCompleted = percent >= 0.9 && !Boolean.TRUE.equals(progress.getIsCompleted());
+        if (justCompleted) {
             progress.setIsCompleted(true);
             progress.setCompletedAt(LocalDateTime.now());
-            
-            // Trigger course-level progress recalculation
-            updateEnrollmentProgress(enrollment);
         }
 
-        // Save progress (whether completed or not)
+        // Save progress (whether completed or not) - trước khi tính lại tiến độ từ user_progress
         userProgressRepository.save(progress);
+        if (justCompleted) {
+            // Trigger course-level progress recalculation
+            markCompletedAndUpdateProgress(enrollment, course, lessonId);
+        }
+        studyTimeAccumulator.recordProgressChange(user.getId(), before,
+                StudyTimeAccumulator.ProgressTime.of(progress), lesson.getDurationInMinutes());
     }
 
-    // Hàm private để tính toán lại tiến độ
+    // Ghi nhận bài học vào bitset trạng thái học (chỉ dùng để đọc) rồi tính lại tiến độ từ DB
+    // (progress của bài học này phải đã được save)
+    private void markCompletedAndUpdateProgress(Enrollment enrollment, Course course, Long lessonId) {
+        learningStateCache.markCompleted(enrollment.getId(), curriculumCache.getTree(course), lessonId);
+        updateEnrollmentProgress(enrollment);
+    }
+
+    // Hàm private để tính toán lại tiến độ (số bài hoàn thành / tổng số bài đếm trong DB)
+    // Không dùng bitset của LearningStateCache: cache nằm riêng ở mỗi node và có thể cũ khi chạy nhiều node
     private void updateEnrollmentProgress(Enrollment enrollment) {
-        long totalLessonsInCourse = lessonRepository.countByChapter_Course_Id(enrollment.getCourse().getId());
+        Long courseId = enrollment.getCourse().getId();
+        EEnrollmentStatus oldStatus = enrollment.getStatus();
+        long totalLessonsInCourse = lessonRepository.countByChapter_Course_Id(courseId);
         if (totalLessonsInCourse == 0) {
             enrollment.setProgress(100.0);
             enrollment.setStatus(EEnrollmentStatus.COMPLETED);
+            courseStatsService.recordStatusChange(enrollment, oldStatus);
             enrollmentRepository.save(enrollment);
             
             // Auto-issue certificate for courses with no lessons
@@ -636,14 +585,9 @@ public class ContentService {
             return;
         }
 
-        long completedLessons = userProgressRepository.countByEnrollmentAndIsCompleted(enrollment, true);
-
-        double progressPercentage = totalLessonsInCourse > 0 
-            ? ((double) completedLessons / totalLessonsInCourse) * 100.0 
-            : 100.0;
-        
-        // Round to 2 decimal places
-        progressPercentage = Math.round(progressPercentage * 100.0) / 100.0;
+        long completedLessons = userProgressRepository.countCompletedLessonsInCourse(enrollment.getId(), courseId);
+        // Làm tròn 2 chữ số (giống LearningState.getProgressPercentage)
+        double progressPercentage = Math.round(((double) completedLessons / totalLessonsInCourse) * 100.0 * 100.0) / 100.0;
         
         System.out.println("Updating enrollment progress: " + completedLessons + " / " + totalLessonsInCourse + " = " + progressPercentage + "%");
         
@@ -651,12 +595,14 @@ public class ContentService {
 
         if (progressPercentage >= 100.0) {
             enrollment.setStatus(EEnrollmentStatus.COMPLETED);
+            courseStatsService.recordStatusChange(enrollment, oldStatus);
             enrollmentRepository.save(enrollment);
             
             // Auto-issue certificate when course is completed
             autoIssueCertificate(enrollment);
         } else {
             enrollment.setStatus(EEnrollmentStatus.IN_PROGRESS);
+            courseStatsService.recordStatusChange(enrollment, oldStatus);
             enrollmentRepository.save(enrollment);
         }
     }
@@ -0,0 +1,140 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.CourseResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Cache read-through cho trang chi tiết khóa học (phần không phụ thuộc người dùng của CourseResponse)
+ *
+ * - Giới hạn số phần tử (LRU) và thời gian sống (TTL)
+ * - Phần theo người dùng (isEnrolled) được CourseService gắn sau khi lấy từ cache
+ * - Xóa chính xác theo courseId sau khi transaction thay đổi khóa học/đánh giá/ghi danh commit
+ */
+@Service
+public class CourseDetailCache {
+
+    private record CacheEntry(CourseResponse value, long expiresAt) {
+    }
+
+    private final int maxSize;
+    private final long ttlMillis;
+
+    private final LinkedHashMap<Long, CacheEntry> entries;
+
+    // Tăng mỗi lần invalidate: bản load bắt đầu trước lần invalidate sẽ không được ghi vào cache
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();      // Bị loại do vượt kích thước hoặc hết TTL
+    private final AtomicLong invalidations = new AtomicLong();  // Bị xóa do dữ liệu khóa học thay đổi
+
+    public CourseDetailCache(@Value("${course.detail-cache.max-size:1000}") int maxSize,
+                             @Value("${course.detail-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CacheEntry> eldest) {
+                if (size() > CourseDetailCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Lấy bản sao CourseResponse từ cache, nếu chưa có (hoặc hết hạn) thì gọi loader và lưu lại
+     * Luôn trả về bản sao để caller có thể gắn thông tin theo người dùng mà không ảnh hưởng cache
+     */
+    public CourseResponse get(Long courseId, Function<Long, CourseResponse> loader) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            CacheEntry entry = entries.get(courseId);
+            if (entry != null) {
+                if (entry.expiresAt() > now) {
+                    hits.incrementAndGet();
+                    return entry.value().copy();
+                }
+                entries.remove(courseId);
+                evictions.incrementAndGet();
+            }
+        }
+
+        misses.incrementAndGet();
+        long startGeneration = generation.get();
+        CourseResponse loaded = loader.apply(courseId);
+        synchronized (entries) {
+            if (generation.get() == startGeneration) {
+                entries.put(courseId, new CacheEntry(loaded.copy(), System.currentTimeMillis() + ttlMillis));
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Xóa khóa học khỏi cache sau khi transaction hiện tại commit
+     * (xóa trước commit thì request khác có thể load lại dữ liệu cũ vào cache)
+     */
+    public void evict(Long courseId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(courseId);
+                }
+            });
+        } else {
+            evictNow(courseId);
+        }
+    }
+
+    private void evictNow(Long courseId) {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            if (entries.remove(courseId) != null) {
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    /**
+     * Số liệu hit/miss/eviction để theo dõi hiệu quả cache
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", size);
+        stats.put("maxSize", maxSize);
+        stats.put("ttlSeconds", ttlMillis / 1000);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total > 0 ? (double) hitCount / total : 0.0);
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+}
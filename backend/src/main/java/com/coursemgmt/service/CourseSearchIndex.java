@@ -0,0 +1,353 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.model.Course;
+import com.coursemgmt.model.ECourseStatus;
+import com.coursemgmt.repository.CourseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Chỉ mục tìm kiếm full-text (inverted index) trong bộ nhớ cho các khóa học đã PUBLISHED
+ *
+ * - Đánh chỉ mục title, description, tên danh mục và tên giảng viên (mỗi trường có trọng số riêng)
+ * - Bỏ dấu tiếng Việt khi đánh chỉ mục và khi tìm: "lap trinh" khớp "lập trình"
+ * - Hỗ trợ tìm theo tiền tố: "lap tr" khớp "lập trình"; mọi từ có tiền tố đó được gộp thành 1 posting list
+ * - Xếp hạng theo BM25 (biến thể BM25F đơn giản: tf của mỗi trường nhân trọng số)
+ * - Cập nhật tăng dần từ CourseService sau khi transaction commit;
+ *   dựng lại toàn bộ khi khởi động và hằng đêm theo cron (dựng chỉ mục mới rồi thay thế,
+ *   các cập nhật tăng dần xảy ra trong lúc dựng được áp lại lên chỉ mục mới)
+ */
+@Service
+@Slf4j
+public class CourseSearchIndex {
+
+    // Tham số BM25
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Trọng số từng trường
+    private static final float TITLE_WEIGHT = 3.0f;
+    private static final float CATEGORY_WEIGHT = 2.0f;
+    private static final float INSTRUCTOR_WEIGHT = 2.0f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+
+    // Tìm theo tiền tố: điểm thấp hơn khớp nguyên từ
+    private static final double PREFIX_FACTOR = 0.6;
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^a-z0-9]+");
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    // Đọc/sửa index và thay index mới đều giữ lock này
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Index index = new Index();
+
+    // Khác null khi đang dựng lại: các cập nhật tăng dần được ghi lại để áp lên chỉ mục mới trước khi thay thế
+    private List<Consumer<Index>> updatesDuringRebuild;
+
+    private volatile boolean ready = false;
+
+    /**
+     * Một kết quả tìm kiếm (kèm categoryId và price để CourseService lọc mà không cần query DB)
+     */
+    public record SearchHit(Long courseId, double score, Long categoryId, Double price) {
+    }
+
+    private record IndexedCourse(Long courseId, Long categoryId, Double price,
+                                 Map<String, Float> termFreqs, float length) {
+    }
+
+    /**
+     * Nội dung chỉ mục; chỉ đọc/sửa khi giữ lock
+     */
+    private static final class Index {
+
+        // term -> (courseId -> tf đã nhân trọng số). TreeMap để duyệt theo tiền tố
+        private final TreeMap<String, Map<Long, Float>> postings = new TreeMap<>();
+        private final Map<Long, IndexedCourse> documents = new HashMap<>();
+        private double totalLength = 0;
+
+        private void addDocument(IndexedCourse doc) {
+            documents.put(doc.courseId(), doc);
+            totalLength += doc.length();
+            for (Map.Entry<String, Float> entry : doc.termFreqs().entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), k -> new HashMap<>()).put(doc.courseId(), entry.getValue());
+            }
+        }
+
+        private void removeDocument(Long courseId) {
+            IndexedCourse doc = documents.remove(courseId);
+            if (doc == null) {
+                return;
+            }
+            totalLength -= doc.length();
+            for (String term : doc.termFreqs().keySet()) {
+                Map<Long, Float> posting = postings.get(term);
+                if (posting != null) {
+                    posting.remove(courseId);
+                    if (posting.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+        }
+    }
+
+    // --- Dựng chỉ mục ---
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    /**
+     * Dựng lại toàn bộ chỉ mục từ DB
+     * Dữ liệu được đọc, tách từ và đánh chỉ mục vào 1 Index mới ngoài lock; cập nhật tăng dần commit trong lúc đó
+     * vẫn áp vào chỉ mục cũ và được ghi lại, rồi áp lên chỉ mục mới ngay trước khi thay thế (dưới write lock)
+     */
+    @Scheduled(cron = "${course.search.rebuild-cron:0 0 4 * * *}")
+    public synchronized void rebuild() {
+        List<Consumer<Index>> updates = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            // Bắt đầu ghi lại trước khi đọc DB: cập nhật nào DB chưa thấy thì chắc chắn có trong danh sách này
+            updatesDuringRebuild = updates;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            long start = System.currentTimeMillis();
+            Index rebuilt = new Index();
+            for (Course course : courseRepository.findAllPublishedWithDetails()) {
+                rebuilt.addDocument(analyze(course));
+            }
+
+            int replayed;
+            lock.writeLock().lock();
+            try {
+                // Áp lại theo thứ tự commit; cập nhật DB đã thấy áp lại cũng cho cùng kết quả
+                updates.forEach(update -> update.accept(rebuilt));
+                replayed = updates.size();
+                index = rebuilt;
+            } finally {
+                updatesDuringRebuild = null;
+                lock.writeLock().unlock();
+            }
+            ready = true;
+            log.info("Course search index built: {} course(s), {} term(s), {} concurrent update(s) replayed in {} ms",
+                    rebuilt.documents.size(), rebuilt.postings.size(), replayed, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            lock.writeLock().lock();
+            try {
+                updatesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.error("Failed to build course search index: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Chỉ mục đã sẵn sàng chưa (trước khi dựng xong, CourseService dùng LIKE như cũ)
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    // --- Cập nhật tăng dần ---
+
+    /**
+     * Đánh chỉ mục lại 1 khóa học (khóa học không còn PUBLISHED sẽ bị gỡ khỏi chỉ mục)
+     * Nội dung được tách từ ngay (khi session còn mở), chỉ áp vào chỉ mục sau khi commit
+     */
+    public void indexCourse(Course course) {
+        if (course.getStatus() != ECourseStatus.PUBLISHED) {
+            removeCourse(course.getId());
+            return;
+        }
+        IndexedCourse doc = analyze(course);
+        afterCommit(() -> apply(target -> {
+            target.removeDocument(doc.courseId());
+            target.addDocument(doc);
+        }));
+    }
+
+    /**
+     * Gỡ khóa học khỏi chỉ mục (unpublish / xóa)
+     */
+    public void removeCourse(Long courseId) {
+        afterCommit(() -> apply(target -> target.removeDocument(courseId)));
+    }
+
+    // Áp 1 cập nhật tăng dần vào chỉ mục hiện tại (và ghi lại nếu đang dựng lại)
+    private void apply(Consumer<Index> update) {
+        lock.writeLock().lock();
+        try {
+            update.accept(index);
+            if (updatesDuringRebuild != null) {
+                updatesDuringRebuild.add(update);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- Tìm kiếm ---
+
+    /**
+     * Tìm các khóa học khớp TẤT CẢ từ khóa (mỗi từ khóa khớp nguyên từ hoặc theo tiền tố)
+     * Kết quả đã sắp xếp theo điểm BM25 giảm dần
+     */
+    public List<SearchHit> search(String query) {
+        List<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Index current = index;
+            int docCount = current.documents.size();
+            double avgLength = docCount > 0 ? current.totalLength / docCount : 0;
+            Map<Long, Double> scores = null;
+
+            for (String queryTerm : queryTerms) {
+                // Điểm tốt nhất của từ khóa này trên mỗi khóa học (khớp nguyên từ hoặc tiền tố)
+                Map<Long, Double> termScores = new HashMap<>();
+                Map<Long, Float> exact = current.postings.get(queryTerm);
+                if (exact != null) {
+                    accumulate(current, termScores, exact, 1.0, docCount, avgLength);
+                }
+                // Gộp posting list của mọi từ có tiền tố này (tf lớn nhất của mỗi khóa học) rồi tính điểm 1 lần,
+                // df là số khóa học khớp tiền tố: chi phí theo số posting, không bỏ sót từ nào
+                SortedMap<String, Map<Long, Float>> prefixed =
+                        current.postings.subMap(queryTerm, false, queryTerm + Character.MAX_VALUE, false);
+                if (!prefixed.isEmpty()) {
+                    Map<Long, Float> merged = new HashMap<>();
+                    for (Map<Long, Float> posting : prefixed.values()) {
+                        posting.forEach((courseId, tf) -> merged.merge(courseId, tf, Math::max));
+                    }
+                    accumulate(current, termScores, merged, PREFIX_FACTOR, docCount, avgLength);
+                }
+
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    // AND: chỉ giữ khóa học khớp cả các từ khóa trước đó
+                    scores.keySet().retainAll(termScores.keySet());
+                    for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                        entry.setValue(entry.getValue() + termScores.get(entry.getKey()));
+                    }
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+
+            List<SearchHit> hits = new ArrayList<>(scores.size());
+            for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                IndexedCourse doc = current.documents.get(entry.getKey());
+                hits.add(new SearchHit(doc.courseId(), entry.getValue(), doc.categoryId(), doc.price()));
+            }
+            hits.sort(Comparator.comparingDouble(SearchHit::score).reversed()
+                    .thenComparing(SearchHit::courseId, Comparator.reverseOrder()));
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void accumulate(Index current, Map<Long, Double> termScores, Map<Long, Float> posting, double factor,
+                            int docCount, double avgLength) {
+        int df = posting.size();
+        double idf = Math.log(1 + (docCount - df + 0.5) / (df + 0.5));
+        for (Map.Entry<Long, Float> entry : posting.entrySet()) {
+            double tf = entry.getValue();
+            double length = current.documents.get(entry.getKey()).length();
+            double norm = avgLength > 0 ? length / avgLength : 1.0;
+            double score = factor * idf * (tf * (K1 + 1)) / (tf + K1 * (1 - B + B * norm));
+            termScores.merge(entry.getKey(), score, Math::max);
+        }
+    }
+
+    // --- Tách từ ---
+
+    /**
+     * Chuẩn hóa chuỗi: chữ thường, bỏ dấu tiếng Việt (kể cả đ -> d)
+     */
+    public static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+        String lower = text.toLowerCase().replace('đ', 'd');
+        return COMBINING_MARKS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("");
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : NON_ALPHANUMERIC.split(fold(text))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private IndexedCourse analyze(Course course) {
+        Map<String, Float> termFreqs = new HashMap<>();
+        float length = 0;
+        length += addField(termFreqs, course.getTitle(), TITLE_WEIGHT);
+        length += addField(termFreqs, course.getDescription(), DESCRIPTION_WEIGHT);
+        if (course.getCategory() != null) {
+            length += addField(termFreqs, course.getCategory().getName(), CATEGORY_WEIGHT);
+        }
+        if (course.getInstructor() != null) {
+            length += addField(termFreqs, course.getInstructor().getFullName(), INSTRUCTOR_WEIGHT);
+        }
+        Long categoryId = course.getCategory() != null ? course.getCategory().getId() : null;
+        return new IndexedCourse(course.getId(), categoryId, course.getPrice(), termFreqs, length);
+    }
+
+    private float addField(Map<String, Float> termFreqs, String text, float weight) {
+        List<String> tokens = tokenize(text);
+        for (String token : tokens) {
+            termFreqs.merge(token, weight, Float::sum);
+        }
+        return tokens.size() * weight;
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.coursemgmt.service;
+
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Cursor cho keyset pagination danh sách khóa học: (trường sắp xếp, chiều, giá trị cuối, id cuối)
+ * Được mã hóa Base64 URL-safe để client xem như chuỗi opaque
+ */
+record CourseSeekCursor(String sortField, Sort.Direction direction, Object lastValue, Long lastId) {
+
+    private static final String SEPARATOR = "|";
+    private static final String NULL_VALUE = "n";
+    private static final String VALUE_PREFIX = "v";
+
+    String encode() {
+        String value = lastValue == null ? NULL_VALUE : VALUE_PREFIX + lastValue;
+        String raw = sortField + SEPARATOR + direction.name() + SEPARATOR + lastId + SEPARATOR + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Giải mã cursor và kiểm tra cursor được tạo với cùng kiểu sắp xếp của request hiện tại
+     */
+    static CourseSeekCursor decode(String cursor, String sortField, Sort.Direction direction, Class<?> valueType) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            // Giá trị nằm cuối và có thể chứa '|' (ví dụ title) nên chỉ tách 4 phần
+            String[] parts = raw.split("\\|", 4);
+            if (parts.length != 4 || !parts[0].equals(sortField) || !parts[1].equals(direction.name())) {
+                throw new RuntimeException("Invalid cursor: sort does not match the request");
+            }
+            Long lastId = Long.valueOf(parts[2]);
+            Object lastValue = parts[3].equals(NULL_VALUE) ? null : parseValue(parts[3].substring(1), valueType);
+            return new CourseSeekCursor(sortField, direction, lastValue, lastId);
+        } catch (IllegalArgumentException | java.time.format.DateTimeParseException e) {
+            throw new RuntimeException("Invalid cursor");
+        }
+    }
+
+    private static Object parseValue(String value, Class<?> valueType) {
+        if (valueType == LocalDateTime.class) {
+            return LocalDateTime.parse(value);
+        } else if (valueType == Double.class) {
+            return Double.valueOf(value);
+        } else if (valueType == Long.class) {
+            return Long.valueOf(value);
+        } else if (valueType == Integer.class) {
+            return Integer.valueOf(value);
+        }
+        return value;
+    }
+}
@@ -4,6 +4,8 @@ import com.coursemgmt.dto.CourseRequest;
 import com.coursemgmt.dto.CourseResponse;
 import com.coursemgmt.dto.CourseStatisticsResponse;
 import com.coursemgmt.dto.CourseAnalyticsResponse;
+import com.coursemgmt.dto.CursorPageResponse;
+import com.coursemgmt.dto.HomePageResponse;
 import com.coursemgmt.exception.ResourceNotFoundException;
 import com.coursemgmt.model.*;
 import com.coursemgmt.model.EEnrollmentStatus;
@@ -34,18 +36,45 @@ import org.springframework.transaction.annotation.Transactional;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 import java.util.ArrayList;
 
 @Service
 public class CourseService {
 
+    // Giá trị sort đặc biệt: sắp xếp theo độ liên quan khi tìm kiếm bằng keyword
+    public static final String SORT_RELEVANCE = "relevance";
+
+    // Giá trị sort đặc biệt: sắp xếp theo số học viên (course_stats.enrollmentCount), chỉ có ở chế độ cursor
+    public static final String SORT_POPULARITY = "popularity";
+
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
+    // Trường sắp xếp hỗ trợ keyset pagination: tên -> biểu thức JPQL, kiểu giá trị, cột có thể NULL
+    private record SeekSortField(String expression, Class<?> valueType, boolean nullable) {
+    }
+
+    private static final Map<String, SeekSortField> SEEK_SORT_FIELDS = Map.of(
+            "createdAt", new SeekSortField("c.createdAt", LocalDateTime.class, true),
+            "updatedAt", new SeekSortField("c.updatedAt", LocalDateTime.class, true),
+            "price", new SeekSortField("c.price", Double.class, false),
+            "title", new SeekSortField("c.title", String.class, false),
+            "totalDurationInHours", new SeekSortField("c.totalDurationInHours", Integer.class, true),
+            "id", new SeekSortField("c.id", Long.class, false),
+            SORT_POPULARITY, new SeekSortField("s.enrollmentCount", Long.class, false)
+    );
+
     @Autowired
     private CourseRepository courseRepository;
 
@@ -82,6 +111,21 @@ public class CourseService {
     @Autowired
     private NewsletterService newsletterService;
 
+    @Autowired
+    private CourseStatsService courseStatsService;
+
+    @Autowired
+    private CourseSearchIndex courseSearchIndex;
+
+    @Autowired
+    private CourseDetailCache courseDetailCache;
+
+    @Autowired
+    private DailyRollupService dailyRollupService;
+
+    @Autowired
+    private HomePageSnapshotService homePageSnapshotService;
+
     // Hàm chung để lấy User từ security context
     private User getCurrentUser(UserDetailsImpl userDetails) {
         return userRepository.findById(userDetails.getId())
@@ -98,6 +142,10 @@ public class CourseService {
             if (authentication == null || !(authentication.getPrincipal() instanceof UserDetails)) {
                 return null;
             }
+            // JWT filter đã nạp sẵn UserDetailsImpl (có id) nên không cần query lại bảng users
+            if (authentication.getPrincipal() instanceof UserDetailsImpl userDetailsImpl) {
+                return userDetailsImpl.getId();
+            }
             UserDetails userDetails = (UserDetails) authentication.getPrincipal();
             String username = userDetails.getUsername();
             User user = userRepository.findByUsername(username).orElse(null);
@@ -156,6 +204,45 @@ public class CourseService {
         }
     }
 
+    /**
+     * Helper method: Điền enrollmentCount, rating và reviewCount cho một danh sách khóa học
+     * Đọc từ bảng course_stats (1 query IN) thay vì đếm lại enrollments/reviews mỗi lần
+     */
+    private void applyCourseStats(List<CourseResponse> dtos) {
+        if (dtos.isEmpty()) {
+            return;
+        }
+        Set<Long> courseIds = dtos.stream()
+                .map(CourseResponse::getId)
+                .collect(Collectors.toSet());
+
+        Map<Long, CourseStats> statsMap = courseStatsService.getStatsByCourseIds(courseIds);
+
+        for (CourseResponse dto : dtos) {
+            CourseStats stats = statsMap.get(dto.getId());
+            dto.setEnrollmentCount(stats != null ? stats.getEnrollmentCount() : 0L);
+            dto.setRating(stats != null ? stats.getAverageRating() : 0.0);
+            dto.setReviewCount(stats != null ? stats.getReviewCount() : 0L);
+        }
+    }
+
+    /**
+     * Helper method: Gắn isEnrolled, enrollmentProgress và enrollmentStatus của user hiện tại vào DTO
+     */
+    private void applyEnrollmentInfo(CourseResponse dto, Set<Long> enrolledIds, Map<Long, Enrollment> enrollmentMap) {
+        boolean isEnrolled = enrolledIds.contains(dto.getId());
+        dto.setIsEnrolled(isEnrolled);
+
+        // If enrolled, set enrollment progress and status
+        if (isEnrolled) {
+            Enrollment enrollment = enrollmentMap.get(dto.getId());
+            if (enrollment != null) {
+                dto.setEnrollmentProgress(enrollment.getProgress() != null ? enrollment.getProgress() : 0.0);
+                dto.setEnrollmentStatus(enrollment.getStatus() != null ? enrollment.getStatus().name() : "IN_PROGRESS");
+            }
+        }
+    }
+
     // Chức năng 1: Tạo khóa học
     @Transactional
     public Course createCourse(CourseRequest request, UserDetailsImpl userDetails) {
@@ -187,6 +274,9 @@ public class CourseService {
         }
 
         Course savedCourse = courseRepository.save(course);
+        courseStatsService.initStats(savedCourse.getId());
+        courseSearchIndex.indexCourse(savedCourse);
+        homePageSnapshotService.markDirty();
 
         // Gửi email thông báo khóa học mới nếu khóa học được publish ngay (Admin tạo)
         if (savedCourse.getStatus() == ECourseStatus.PUBLISHED) {
@@ -223,7 +313,11 @@ public class CourseService {
         // Khi cập nhật, có thể reset status về PENDING để admin duyệt lại
         // course.setStatus(ECourseStatus.PENDING_APPROVAL);
 
-        return courseRepository.save(course);
+        Course savedCourse = courseRepository.save(course);
+        courseSearchIndex.indexCourse(savedCourse);
+        homePageSnapshotService.markDirty();
+        courseDetailCache.evict(courseId);
+        return savedCourse;
     }
 
     // Chức năng 3: Xóa khóa học
@@ -249,8 +343,14 @@ public class CourseService {
         // 5. Xóa transactions
         transactionRepository.deleteByCourseId(courseId);
         
-        // 6. Xóa khóa học (chapters và lessons sẽ tự động xóa do cascade = CascadeType.ALL)
+        // 6. Xóa bộ đếm course_stats
+        courseStatsService.deleteStats(courseId);
+        
+        // 7. Xóa khóa học (chapters và lessons sẽ tự động xóa do cascade = CascadeType.ALL)
         courseRepository.delete(course);
+        courseSearchIndex.removeCourse(courseId);
+        homePageSnapshotService.markDirty();
+        courseDetailCache.evict(courseId);
     }
 
     // Chức năng 3.1: Chuyển quyền sở hữu khóa học (Admin only)
@@ -273,24 +373,30 @@ public class CourseService {
         course.setInstructor(newInstructor);
         course.setUpdatedAt(LocalDateTime.now());
         
-        return courseRepository.save(course);
+        Course savedCourse = courseRepository.save(course);
+        // Số liệu theo ngày của khóa học chuyển sang giảng viên mới
+        dailyRollupService.reassignInstructor(courseId, newInstructorId);
+        courseSearchIndex.indexCourse(savedCourse);
+        homePageSnapshotService.markDirty();
+        courseDetailCache.evict(courseId);
+        return savedCourse;
     }
 
-    // Chức năng 4: Lấy 1 khóa học
-    public CourseResponse getCourseById(Long courseId) {
-        Course course = courseRepository.findById(courseId)
+    // Load phần không phụ thuộc người dùng của trang chi tiết (dùng khi cache miss)
+    private CourseResponse loadCourseDetail(Long courseId) {
+        Course course = courseRepository.findWithDetailsById(courseId)
                 .orElseThrow(() -> new ResourceNotFoundException("Course", "id", courseId));
         CourseResponse dto = CourseResponse.fromEntity(course);
         
-        // Tính enrollmentCount từ repository (tránh LAZY loading issue)
-        Long enrollmentCount = enrollmentRepository.countByCourseId(courseId);
-        dto.setEnrollmentCount(enrollmentCount != null ? enrollmentCount : 0L);
-        
-        // Set rating info
-        Double avgRating = reviewRepository.getAverageRatingByCourseId(courseId);
-        Long reviewCount = reviewRepository.countByCourseId(courseId);
-        dto.setRating(avgRating != null ? avgRating : 0.0);
-        dto.setReviewCount(reviewCount != null ? reviewCount : 0L);
+        // Set enrollmentCount + rating info
+        applyCourseStats(List.of(dto));
+        return dto;
+    }
+
+    // Chức năng 4: Lấy 1 khóa học
+    public CourseResponse getCourseById(Long courseId) {
+        // Phần chung cho mọi người dùng (course + enrollmentCount + rating) lấy qua cache
+        CourseResponse dto = courseDetailCache.get(courseId, this::loadCourseDetail);
         
         // Check if current user is enrolled
         Long currentUserId = getCurrentUserId();
@@ -308,59 +414,36 @@ public class CourseService {
 
     // Chức năng 5.1: Lấy danh sách khóa học nổi bật (Featured Courses)
     public List<CourseResponse> getFeaturedCourses() {
-        // Lấy các khóa học được đánh dấu là featured và đã published (sử dụng @Query explicit)
-        List<Course> featuredCourses = courseRepository.findFeaturedCourses();
-        
-        // Nếu không có khóa học nào được đánh dấu featured, fallback về 4 khóa học mới nhất đã published
-        if (featuredCourses == null || featuredCourses.isEmpty()) {
-            // Fallback: Get top 4 latest published courses if no featured ones found
-            Pageable pageable = PageRequest.of(0, 4);
-            featuredCourses = courseRepository.findLatestPublishedCourses(pageable);
-        }
-        
-        // Get enrolled course IDs and enrollment map for current user (if authenticated)
+        // Lấy từ snapshot trang chủ (featured, hoặc 4 khóa học mới nhất nếu chưa có featured) - không query DB
+        return withEnrollmentOverlay(homePageSnapshotService.getSnapshot().featured());
+    }
+
+    // Chức năng 5.2: Dữ liệu trang chủ (featured / mới nhất / bán chạy) từ snapshot
+    public HomePageResponse getHomePage() {
+        HomePageSnapshotService.HomePageSnapshot snapshot = homePageSnapshotService.getSnapshot();
+        return new HomePageResponse(
+                withEnrollmentOverlay(snapshot.featured()),
+                withEnrollmentOverlay(snapshot.latest()),
+                withEnrollmentOverlay(snapshot.topSelling()),
+                snapshot.builtAt());
+    }
+
+    /**
+     * Copy danh sách từ snapshot và gắn isEnrolled + enrollmentProgress cho user hiện tại
+     * (user ẩn danh: không query DB)
+     */
+    private List<CourseResponse> withEnrollmentOverlay(List<CourseResponse> snapshotCourses) {
         Long currentUserId = getCurrentUserId();
-        Set<Long> enrolledIds = getEnrolledCourseIds(currentUserId);
-        Map<Long, Enrollment> enrollmentMap = getEnrollmentMap(currentUserId);
-        
-        // Convert sang DTO và tính enrollmentCount + isEnrolled + enrollmentProgress + rating
-        return featuredCourses.stream()
-                .map(course -> {
-                    CourseResponse dto = CourseResponse.fromEntity(course);
-                    // Tính enrollmentCount từ repository (tránh LAZY loading issue)
-                    Long enrollmentCount = enrollmentRepository.countByCourseId(course.getId());
-                    dto.setEnrollmentCount(enrollmentCount != null ? enrollmentCount : 0L);
-                    
-                    // Set rating info
-                    Double avgRating = reviewRepository.getAverageRatingByCourseId(course.getId());
-                    Long reviewCount = reviewRepository.countByCourseId(course.getId());
-                    dto.setRating(avgRating != null ? avgRating : 0.0);
-                    dto.setReviewCount(reviewCount != null ? reviewCount : 0L);
-                    
-                    // Set isEnrolled status
-                    boolean isEnrolled = enrolledIds.contains(course.getId());
-                    dto.setIsEnrolled(isEnrolled);
-                    
-                    // If enrolled, set enrollment progress and status
-                    if (isEnrolled) {
-                        Enrollment enrollment = enrollmentMap.get(course.getId());
-                        if (enrollment != null) {
-                            if (enrollment.getProgress() != null) {
-                                dto.setEnrollmentProgress(enrollment.getProgress());
-                            } else {
-                                dto.setEnrollmentProgress(0.0);
-                            }
-                            if (enrollment.getStatus() != null) {
-                                dto.setEnrollmentStatus(enrollment.getStatus().name());
-                            } else {
-                                dto.setEnrollmentStatus("IN_PROGRESS");
-                            }
-                        }
-                    }
-                    
-                    return dto;
-                })
+        List<CourseResponse> dtos = snapshotCourses.stream()
+                .map(CourseResponse::copy)
                 .collect(Collectors.toList());
+        if (currentUserId == null) {
+            return dtos;
+        }
+        Set<Long> enrolledIds = getEnrolledCourseIds(currentUserId);
+        Map<Long, Enrollment> enrollmentMap = enrolledIds.isEmpty() ? Collections.emptyMap() : getEnrollmentMap(currentUserId);
+        dtos.forEach(dto -> applyEnrollmentInfo(dto, enrolledIds, enrollmentMap));
+        return dtos;
     }
 
     // Chức năng 6.1: Lấy tất cả khóa học cho Admin (không filter theo published)
@@ -368,8 +451,9 @@ public class CourseService {
     public Page<Course> getAllCoursesForAdmin(Pageable pageable, String search, String status) {
         // Use custom query with JOIN FETCH to eager load instructor and category
         // This avoids LAZY loading issues when converting to DTO
-        String baseQuery = "SELECT DISTINCT c FROM Course c LEFT JOIN FETCH c.instructor LEFT JOIN FETCH c.category WHERE 1=1";
-        String countQuery = "SELECT COUNT(DISTINCT c) FROM Course c WHERE 1=1";
+        // (instructor và category là quan hệ n-1 nên không cần DISTINCT)
+        String baseQuery = "SELECT c FROM Course c LEFT JOIN FETCH c.instructor LEFT JOIN FETCH c.category WHERE 1=1";
+        String countQuery = "SELECT COUNT(c) FROM Course c WHERE 1=1";
         
         List<String> conditions = new ArrayList<>();
         List<Object> params = new ArrayList<>();
@@ -428,15 +512,23 @@ public class CourseService {
     public Page<CourseResponse> getAllPublishedCourses(String keyword, Long categoryId, Double minPrice, Double maxPrice, Boolean isFree, Boolean isPaid, String level, Double minRating, int page, int size, String sort) {
 
         // 1. Phân trang và Sắp xếp
-        // 'sort' có dạng: "price,asc" hoặc "createdAt,desc"
+        // 'sort' có dạng: "price,asc", "createdAt,desc" hoặc "relevance,desc" (chỉ khi có keyword)
         String[] sortParams = sort.split(",");
         Sort.Direction direction = sortParams[1].equalsIgnoreCase("desc") ? Sort.Direction.DESC : Sort.Direction.ASC;
-        Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortParams[0]));
+        boolean hasKeyword = keyword != null && !keyword.isBlank();
+
+        // Có keyword và chỉ mục đã sẵn sàng: khớp văn bản trong bộ nhớ thay vì LIKE trên MySQL
+        if (hasKeyword && courseSearchIndex.isReady()) {
+            return searchPublishedCourses(keyword, categoryId, minPrice, maxPrice, isFree, isPaid, page, size, sortParams[0], direction);
+        }
+
+        String sortField = SORT_RELEVANCE.equals(sortParams[0]) ? "createdAt" : sortParams[0];
+        Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortField));
 
         // 2. Tạo Specification (bộ lọc động)
         Specification<Course> spec = CourseRepository.isPublished();
 
-        if (keyword != null && !keyword.isEmpty()) {
+        if (hasKeyword) {
             spec = spec.and(CourseRepository.titleContains(keyword));
         }
         if (categoryId != null) {
@@ -471,51 +563,297 @@ public class CourseService {
         // 3. Truy vấn
         Page<Course> coursePage = courseRepository.findAll(spec, pageable);
 
-        // 4. Get enrolled course IDs and enrollment map for current user (if authenticated)
+        return toCourseResponsePage(coursePage.getContent(), pageable, coursePage.getTotalElements());
+    }
+
+    /**
+     * Tìm kiếm bằng CourseSearchIndex: chỉ mục trả về danh sách id đã xếp hạng (BM25),
+     * lọc danh mục/giá trên kết quả trong bộ nhớ, sau đó chỉ load các khóa học của trang hiện tại theo id
+     */
+    private Page<CourseResponse> searchPublishedCourses(String keyword, Long categoryId, Double minPrice, Double maxPrice,
+                                                        Boolean isFree, Boolean isPaid, int page, int size,
+                                                        String sortField, Sort.Direction direction) {
+        List<Long> hitIds = courseSearchIndex.search(keyword).stream()
+                .filter(hit -> categoryId == null || categoryId.equals(hit.categoryId()))
+                .filter(hit -> matchesPrice(hit.price(), minPrice, maxPrice, isFree, isPaid))
+                .map(CourseSearchIndex.SearchHit::courseId)
+                .collect(Collectors.toList());
+
+        // Sắp xếp theo độ liên quan: cắt trang ngay trên danh sách id đã xếp hạng
+        if (SORT_RELEVANCE.equals(sortField)) {
+            Pageable pageable = PageRequest.of(page, size);
+            int from = (int) Math.min(pageable.getOffset(), hitIds.size());
+            int to = Math.min(from + size, hitIds.size());
+            List<Long> pageIds = hitIds.subList(from, to);
+
+            return toCourseResponsePage(loadPublishedInOrder(pageIds), pageable, hitIds.size());
+        }
+
+        // Sắp xếp theo trường khác: để DB sắp xếp/phân trang trên tập id đã khớp
+        Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortField));
+        if (hitIds.isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, 0);
+        }
+        Page<Course> coursePage = courseRepository.findAll(
+                CourseRepository.isPublished().and(CourseRepository.idIn(hitIds)), pageable);
+        return toCourseResponsePage(coursePage.getContent(), pageable, coursePage.getTotalElements());
+    }
+
+    // Load 1 trang kết quả tìm kiếm theo đúng thứ tự xếp hạng, chỉ giữ khóa học vẫn PUBLISHED trong DB
+    // (chỉ mục ở node này chỉ nhận cập nhật từ chính node đó và lần rebuild hằng ngày, nên có thể còn
+    // khóa học đã bị gỡ/từ chối ở node khác)
+    private List<Course> loadPublishedInOrder(List<Long> ids) {
+        Map<Long, Course> coursesById = courseRepository.findByIdInAndStatus(ids, ECourseStatus.PUBLISHED).stream()
+                .collect(Collectors.toMap(Course::getId, c -> c));
+        return ids.stream()
+                .map(coursesById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    // Cùng quy tắc với các Specification priceRange/isFree/isPaid
+    private boolean matchesPrice(Double price, Double minPrice, Double maxPrice, Boolean isFree, Boolean isPaid) {
+        double value = price != null ? price : 0.0;
+        if (isFree != null && isFree) {
+            return value == 0.0;
+        } else if (isPaid != null && isPaid) {
+            return value > 0.0;
+        }
+        return (minPrice == null || value >= minPrice) && (maxPrice == null || value <= maxPrice);
+    }
+
+    /**
+     * Convert 1 trang khóa học sang DTO: điền enrollmentCount + rating (batch) và isEnrolled cho user hiện tại
+     */
+    private Page<CourseResponse> toCourseResponsePage(List<Course> courses, Pageable pageable, long total) {
+        return new PageImpl<>(toCourseResponses(courses), pageable, total);
+    }
+
+    private List<CourseResponse> toCourseResponses(List<Course> courses) {
+        // Get enrolled course IDs and enrollment map for current user (if authenticated)
         Long currentUserId = getCurrentUserId();
         Set<Long> enrolledIds = getEnrolledCourseIds(currentUserId);
         Map<Long, Enrollment> enrollmentMap = getEnrollmentMap(currentUserId);
 
-        // 5. Convert sang DTO và tính enrollmentCount + isEnrolled + enrollmentProgress + rating
-        List<CourseResponse> dtos = coursePage.getContent().stream()
-                .map(course -> {
-                    CourseResponse dto = CourseResponse.fromEntity(course);
-                    // Tính enrollmentCount từ repository (tránh LAZY loading issue)
-                    Long enrollmentCount = enrollmentRepository.countByCourseId(course.getId());
-                    dto.setEnrollmentCount(enrollmentCount != null ? enrollmentCount : 0L);
-                    
-                    // Set rating info
-                    Double avgRating = reviewRepository.getAverageRatingByCourseId(course.getId());
-                    Long reviewCount = reviewRepository.countByCourseId(course.getId());
-                    dto.setRating(avgRating != null ? avgRating : 0.0);
-                    dto.setReviewCount(reviewCount != null ? reviewCount : 0L);
-                    
-                    // Set isEnrolled status
-                    boolean isEnrolled = enrolledIds.contains(course.getId());
-                    dto.setIsEnrolled(isEnrolled);
-                    
-                    // If enrolled, set enrollment progress and status
-                    if (isEnrolled) {
-                        Enrollment enrollment = enrollmentMap.get(course.getId());
-                        if (enrollment != null) {
-                            if (enrollment.getProgress() != null) {
-                                dto.setEnrollmentProgress(enrollment.getProgress());
-                            } else {
-                                dto.setEnrollmentProgress(0.0);
-                            }
-                            if (enrollment.getStatus() != null) {
-                                dto.setEnrollmentStatus(enrollment.getStatus().name());
-                            } else {
-                                dto.setEnrollmentStatus("IN_PROGRESS");
-                            }
-                        }
-                    }
-                    
-                    return dto;
-                })
+        // Convert sang DTO, sau đó điền enrollmentCount + rating cho cả trang (batch)
+        List<CourseResponse> dtos = courses.stream()
+                .map(CourseResponse::fromEntity)
                 .collect(Collectors.toList());
+        applyCourseStats(dtos);
+        
+        // Gắn isEnrolled + enrollmentProgress cho user hiện tại
+        dtos.forEach(dto -> applyEnrollmentInfo(dto, enrolledIds, enrollmentMap));
+        return dtos;
+    }
+
+    // Chức năng 6.2: Danh sách khóa học public theo cursor (keyset pagination)
+    // Trang thứ N tốn chi phí như trang đầu: WHERE (sortField, id) < (giá trị cuối, id cuối) thay vì OFFSET
+    @Transactional(readOnly = true)
+    public CursorPageResponse<CourseResponse> getPublishedCoursesByCursor(String keyword, Long categoryId, Double minPrice, Double maxPrice,
+                                                                        Boolean isFree, Boolean isPaid, String cursor, int size,
+                                                                        String sort, boolean includeTotal) {
+        String[] sortParams = sort.split(",");
+        String sortField = sortParams[0];
+        Sort.Direction direction = sortParams.length > 1 && sortParams[1].equalsIgnoreCase("asc")
+                ? Sort.Direction.ASC : Sort.Direction.DESC;
+        size = Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+        boolean hasKeyword = keyword != null && !keyword.isBlank();
+
+        List<CourseSearchIndex.SearchHit> hits = null;
+        if (hasKeyword && courseSearchIndex.isReady()) {
+            hits = courseSearchIndex.search(keyword).stream()
+                    .filter(hit -> categoryId == null || categoryId.equals(hit.categoryId()))
+                    .filter(hit -> matchesPrice(hit.price(), minPrice, maxPrice, isFree, isPaid))
+                    .collect(Collectors.toList());
+            if (SORT_RELEVANCE.equals(sortField)) {
+                return seekSearchHits(hits, cursor, size, includeTotal);
+            }
+        }
+        if (!SEEK_SORT_FIELDS.containsKey(sortField)) {
+            sortField = "createdAt";
+        }
+
+        List<String> conditions = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        conditions.add("c.status = " + addParam(params, ECourseStatus.PUBLISHED));
+        if (hits != null) {
+            if (hits.isEmpty()) {
+                return new CursorPageResponse<>(List.of(), null, false, 0, includeTotal ? 0L : null);
+            }
+            List<Long> hitIds = hits.stream().map(CourseSearchIndex.SearchHit::courseId).collect(Collectors.toList());
+            conditions.add("c.id IN " + addParam(params, hitIds));
+        } else if (hasKeyword) {
+            conditions.add("c.title LIKE " + addParam(params, "%" + keyword + "%"));
+        }
+        if (categoryId != null) {
+            conditions.add("c.category.id = " + addParam(params, categoryId));
+        }
+        if (isFree != null && isFree) {
+            conditions.add("c.price = 0.0");
+        } else if (isPaid != null && isPaid) {
+            conditions.add("c.price > 0.0");
+        } else {
+            if (minPrice != null) {
+                conditions.add("c.price >= " + addParam(params, minPrice));
+            }
+            if (maxPrice != null) {
+                conditions.add("c.price <= " + addParam(params, maxPrice));
+            }
+        }
+
+        CursorPageResponse<Course> coursePage = seekCourses(conditions, params, sortField, direction, cursor, size, includeTotal);
+        List<CourseResponse> dtos = toCourseResponses(coursePage.getContent());
+        return new CursorPageResponse<>(dtos, coursePage.getNextCursor(), coursePage.isHasNext(), dtos.size(), coursePage.getTotalElements());
+    }
+
+    // Chức năng 6.3: Danh sách khóa học cho Admin theo cursor (không filter theo published)
+    @Transactional(readOnly = true)
+    public CursorPageResponse<Course> getCoursesForAdminByCursor(String search, String status, String cursor, int size,
+                                                                 String sortBy, Sort.Direction direction, boolean includeTotal) {
+        String sortField = SEEK_SORT_FIELDS.containsKey(sortBy) ? sortBy : "createdAt";
+        size = Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+
+        List<String> conditions = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        if (search != null && !search.trim().isEmpty()) {
+            conditions.add("LOWER(c.title) LIKE LOWER(" + addParam(params, "%" + search.trim() + "%") + ")");
+        }
+        if (status != null && !status.trim().isEmpty()) {
+            try {
+                ECourseStatus courseStatus = ECourseStatus.valueOf(status.toUpperCase());
+                conditions.add("c.status = " + addParam(params, courseStatus));
+            } catch (IllegalArgumentException e) {
+                // Invalid status, ignore
+            }
+        }
+        return seekCourses(conditions, params, sortField, direction, cursor, size, includeTotal);
+    }
+
+    /**
+     * Keyset pagination dùng chung cho public và admin
+     * Lấy size + 1 dòng để biết còn trang sau hay không; COUNT chỉ chạy khi includeTotal = true
+     */
+    private CursorPageResponse<Course> seekCourses(List<String> conditions, List<Object> params, String sortField,
+                                                   Sort.Direction direction, String cursor, int size, boolean includeTotal) {
+        SeekSortField field = SEEK_SORT_FIELDS.get(sortField);
+        String from = " FROM Course c";
+        if (SORT_POPULARITY.equals(sortField)) {
+            from += " JOIN CourseStats s ON s.courseId = c.id";
+        }
+
+        Long total = null;
+        if (includeTotal) {
+            jakarta.persistence.Query countQ = entityManager.createQuery("SELECT COUNT(c)" + from + buildWhere(conditions));
+            for (int i = 0; i < params.size(); i++) {
+                countQ.setParameter(i + 1, params.get(i));
+            }
+            total = (Long) countQ.getSingleResult();
+        }
+
+        List<String> seekConditions = new ArrayList<>(conditions);
+        List<Object> seekParams = new ArrayList<>(params);
+        if (cursor != null && !cursor.isBlank()) {
+            CourseSeekCursor after = CourseSeekCursor.decode(cursor, sortField, direction, field.valueType());
+            seekConditions.add(buildSeekCondition(field, direction, after, seekParams));
+        }
+
+        String dir = direction.isDescending() ? "DESC" : "ASC";
+        String orderBy = sortField.equals("id")
+                ? " ORDER BY c.id " + dir
+                : " ORDER BY " + field.expression() + " " + dir + ", c.id " + dir;
+        String queryString = "SELECT c, " + field.expression() + from
+                + " LEFT JOIN FETCH c.instructor LEFT JOIN FETCH c.category"
+                + buildWhere(seekConditions) + orderBy;
+
+        jakarta.persistence.Query query = entityManager.createQuery(queryString);
+        for (int i = 0; i < seekParams.size(); i++) {
+            query.setParameter(i + 1, seekParams.get(i));
+        }
+        query.setMaxResults(size + 1);
+
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = query.getResultList();
+        boolean hasNext = rows.size() > size;
+        if (hasNext) {
+            rows = rows.subList(0, size);
+        }
 
-        return new PageImpl<>(dtos, pageable, coursePage.getTotalElements());
+        List<Course> courses = rows.stream().map(row -> (Course) row[0]).collect(Collectors.toList());
+        String nextCursor = null;
+        if (hasNext) {
+            Object[] last = rows.get(rows.size() - 1);
+            nextCursor = new CourseSeekCursor(sortField, direction, last[1], ((Course) last[0]).getId()).encode();
+        }
+        return new CursorPageResponse<>(courses, nextCursor, hasNext, courses.size(), total);
+    }
+
+    /**
+     * Điều kiện "nằm sau cursor" theo (trường sắp xếp, id)
+     * MySQL coi NULL nhỏ hơn mọi giá trị: NULL đứng đầu khi ASC, đứng cuối khi DESC
+     */
+    private String buildSeekCondition(SeekSortField field, Sort.Direction direction, CourseSeekCursor after, List<Object> params) {
+        boolean desc = direction.isDescending();
+        String cmp = desc ? "<" : ">";
+        String expr = field.expression();
+        if (expr.equals("c.id")) {
+            return "c.id " + cmp + " " + addParam(params, after.lastId());
+        }
+        if (after.lastValue() != null) {
+            String value = addParam(params, after.lastValue());
+            String id = addParam(params, after.lastId());
+            String condition = expr + " " + cmp + " " + value + " OR (" + expr + " = " + value + " AND c.id " + cmp + " " + id + ")";
+            if (desc && field.nullable()) {
+                condition += " OR " + expr + " IS NULL";
+            }
+            return "(" + condition + ")";
+        }
+        String id = addParam(params, after.lastId());
+        return desc
+                ? "(" + expr + " IS NULL AND c.id < " + id + ")"
+                : "(" + expr + " IS NOT NULL OR c.id > " + id + ")";
+    }
+
+    /**
+     * Keyset trên danh sách kết quả đã xếp hạng của CourseSearchIndex (điểm giảm dần, id giảm dần)
+     */
+    private CursorPageResponse<CourseResponse> seekSearchHits(List<CourseSearchIndex.SearchHit> hits, String cursor,
+                                                              int size, boolean includeTotal) {
+        int start = 0;
+        if (cursor != null && !cursor.isBlank()) {
+            CourseSeekCursor after = CourseSeekCursor.decode(cursor, SORT_RELEVANCE, Sort.Direction.DESC, Double.class);
+            double lastScore = after.lastValue() != null ? (Double) after.lastValue() : 0.0;
+            while (start < hits.size()) {
+                CourseSearchIndex.SearchHit hit = hits.get(start);
+                if (hit.score() < lastScore || (hit.score() == lastScore && hit.courseId() < after.lastId())) {
+                    break;
+                }
+                start++;
+            }
+        }
+        int end = Math.min(start + size, hits.size());
+        List<CourseSearchIndex.SearchHit> pageHits = hits.subList(start, end);
+        boolean hasNext = end < hits.size();
+
+        List<Long> pageIds = pageHits.stream().map(CourseSearchIndex.SearchHit::courseId).collect(Collectors.toList());
+        List<Course> courses = loadPublishedInOrder(pageIds);
+
+        String nextCursor = null;
+        if (hasNext) {
+            CourseSearchIndex.SearchHit last = pageHits.get(pageHits.size() - 1);
+            nextCursor = new CourseSeekCursor(SORT_RELEVANCE, Sort.Direction.DESC, last.score(), last.courseId()).encode();
+        }
+        List<CourseResponse> dtos = toCourseResponses(courses);
+        return new CursorPageResponse<>(dtos, nextCursor, hasNext, dtos.size(), includeTotal ? (long) hits.size() : null);
+    }
+
+    private String buildWhere(List<String> conditions) {
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    // Thêm tham số positional (?1, ?2, ...) và trả về placeholder tương ứng
+    private String addParam(List<Object> params, Object value) {
+        params.add(value);
+        return "?" + params.size();
     }
 
     // Chức năng 7: Thống kê
@@ -533,54 +871,45 @@ public class CourseService {
         Course course = courseRepository.findById(courseId)
                 .orElseThrow(() -> new RuntimeException("Course not found!"));
         
-        // Basic stats
-        Long totalEnrollments = enrollmentRepository.countByCourseId(courseId);
-        
-        // Calculate total revenue from successful transactions
-        Double totalRevenue = transactionRepository.calculateRevenueByCourseId(courseId);
-        if (totalRevenue == null) {
-            totalRevenue = 0.0;
-        }
+        // Basic stats (đọc từ course_stats)
+        CourseStats stats = courseStatsService.getStats(courseId);
+        Long totalEnrollments = stats.getEnrollmentCount();
+        Double totalRevenue = stats.getRevenueTotal();
+        Long completedEnrollments = stats.getCompletedCount();
         
         // Calculate completion rate
-        Long completedEnrollments = enrollmentRepository.countByCourseIdAndStatus(
-            courseId, 
-            EEnrollmentStatus.COMPLETED
-        );
         Double completionRate = 0.0;
-        if (totalEnrollments > 0 && completedEnrollments != null) {
+        if (totalEnrollments > 0) {
             completionRate = (completedEnrollments * 100.0) / totalEnrollments;
         }
         
-        // Average rating (not implemented yet, set to null)
-        Double averageRating = null;
+        // Average rating
+        Double averageRating = stats.getReviewCount() > 0 ? stats.getAverageRating() : null;
         
-        // Get current year for monthly data
-        int currentYear = LocalDateTime.now().getYear();
+        // Monthly data của năm hiện tại, gom từ bảng tổng hợp theo ngày (tối đa 366 dòng)
+        LocalDate today = LocalDate.now();
+        Map<Integer, long[]> enrollmentsByMonth = new TreeMap<>();
+        Map<Integer, double[]> revenueByMonth = new TreeMap<>();
+        for (DailyRollupService.DailyTotals day : dailyRollupService.getDailyTotalsForCourse(
+                courseId, today.withDayOfYear(1), today.with(TemporalAdjusters.lastDayOfYear()))) {
+            int month = day.date().getMonthValue();
+            if (day.enrollments() != 0) {
+                enrollmentsByMonth.computeIfAbsent(month, m -> new long[1])[0] += day.enrollments();
+            }
+            if (day.transactions() != 0) {
+                revenueByMonth.computeIfAbsent(month, m -> new double[1])[0] += day.revenue();
+            }
+        }
         
         // Monthly enrollments
-        List<Object[]> monthlyEnrollmentData = enrollmentRepository.getMonthlyEnrollmentsByCourse(courseId, currentYear);
         List<CourseAnalyticsResponse.MonthlyEnrollmentData> monthlyEnrollments = new ArrayList<>();
-        for (Object[] data : monthlyEnrollmentData) {
-            Integer month = (Integer) data[0];
-            Long count = ((Number) data[2]).longValue();
-            monthlyEnrollments.add(new CourseAnalyticsResponse.MonthlyEnrollmentData(
-                "Tháng " + month,
-                count
-            ));
-        }
+        enrollmentsByMonth.forEach((month, count) -> monthlyEnrollments.add(
+                new CourseAnalyticsResponse.MonthlyEnrollmentData("Tháng " + month, count[0])));
         
         // Monthly revenue
-        List<Object[]> monthlyRevenueData = transactionRepository.getMonthlyRevenueByCourse(courseId, currentYear);
         List<CourseAnalyticsResponse.MonthlyRevenueData> monthlyRevenue = new ArrayList<>();
-        for (Object[] data : monthlyRevenueData) {
-            Integer month = (Integer) data[0];
-            Double revenue = ((Number) data[2]).doubleValue();
-            monthlyRevenue.add(new CourseAnalyticsResponse.MonthlyRevenueData(
-                "Tháng " + month,
-                revenue
-            ));
-        }
+        revenueByMonth.forEach((month, revenue) -> monthlyRevenue.add(
+                new CourseAnalyticsResponse.MonthlyRevenueData("Tháng " + month, revenue[0])));
         
         return new CourseAnalyticsResponse(
             courseId,
@@ -603,7 +932,10 @@ public class CourseService {
         course.setIsFeatured(isFeatured != null ? isFeatured : true);
         course.setUpdatedAt(LocalDateTime.now());
         
-        return courseRepository.save(course);
+        Course savedCourse = courseRepository.save(course);
+        courseDetailCache.evict(courseId);
+        homePageSnapshotService.markDirty();
+        return savedCourse;
     }
 
     // Chức năng 8: Giảng viên tự publish khóa học (Marketplace Model - Self-Publish)
@@ -670,6 +1002,9 @@ public class CourseService {
         course.setUpdatedAt(LocalDateTime.now());
         
         Course savedCourse = courseRepository.save(course);
+        courseSearchIndex.indexCourse(savedCourse);
+        homePageSnapshotService.markDirty();
+        courseDetailCache.evict(courseId);
         System.out.println("Course published successfully. New status: " + savedCourse.getStatus());
         System.out.println("========================================");
 
@@ -711,7 +1046,11 @@ public class CourseService {
         course.setStatus(ECourseStatus.DRAFT);
         course.setIsPublished(false);
         course.setUpdatedAt(LocalDateTime.now());
-        return courseRepository.save(course);
+        Course savedCourse = courseRepository.save(course);
+        courseSearchIndex.removeCourse(courseId);
+        homePageSnapshotService.markDirty();
+        courseDetailCache.evict(courseId);
+        return savedCourse;
     }
 
     // Chức năng 10: Lấy danh sách khóa học của học viên (My Courses)
@@ -765,16 +1104,6 @@ public class CourseService {
                             
                             CourseResponse dto = CourseResponse.fromEntity(course);
                             
-                            // Set enrollment info
-                            Long enrollmentCount = enrollmentRepository.countByCourseId(course.getId());
-                            dto.setEnrollmentCount(enrollmentCount != null ? enrollmentCount : 0L);
-                            
-                            // Set rating info
-                            Double avgRating = reviewRepository.getAverageRatingByCourseId(course.getId());
-                            Long reviewCount = reviewRepository.countByCourseId(course.getId());
-                            dto.setRating(avgRating != null ? avgRating : 0.0);
-                            dto.setReviewCount(reviewCount != null ? reviewCount : 0L);
-                            
                             // All courses in "My Courses" are enrolled by definition
                             dto.setIsEnrolled(true);
                             
@@ -803,6 +1132,9 @@ public class CourseService {
                     .filter(dto -> dto != null) // Filter out null DTOs
                     .collect(Collectors.toList());
             
+            // Set enrollmentCount + rating info cho tất cả khóa học (batch)
+            applyCourseStats(courses);
+            
             System.out.println("CourseService.getMyCourses: Returning " + courses.size() + " courses");
             
             return courses;
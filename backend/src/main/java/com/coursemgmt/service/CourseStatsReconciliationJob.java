@@ -0,0 +1,42 @@
+package com.coursemgmt.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Đối soát định kỳ bảng course_stats với dữ liệu nguồn
+ * Chạy 1 lần khi khởi động (để lấp dữ liệu cho các khóa học cũ) và hằng đêm theo cron
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CourseStatsReconciliationJob {
+
+    private final CourseStatsService courseStatsService;
+    private final CourseDetailCache courseDetailCache;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        reconcile();
+    }
+
+    @Scheduled(cron = "${course.stats.reconcile-cron:0 30 3 * * *}")
+    public void reconcile() {
+        try {
+            long start = System.currentTimeMillis();
+            int fixed = courseStatsService.rebuildAllStats();
+            if (fixed > 0) {
+                // Bộ đếm đã thay đổi: bỏ các trang chi tiết đang cache số liệu cũ
+                courseDetailCache.clear();
+            }
+            log.info("Course stats reconciliation finished: {} row(s) updated in {} ms",
+                    fixed, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("Course stats reconciliation failed: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.model.CourseStats;
+import com.coursemgmt.model.EEnrollmentStatus;
+import com.coursemgmt.model.Enrollment;
+import com.coursemgmt.repository.CourseRepository;
+import com.coursemgmt.repository.CourseStatsRepository;
+import com.coursemgmt.repository.EnrollmentRepository;
+import com.coursemgmt.repository.ReviewRepository;
+import com.coursemgmt.repository.TransactionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Quản lý bộ đếm tổng hợp của khóa học (bảng course_stats)
+ *
+ * Các hàm record* được gọi từ service nghiệp vụ, trong cùng transaction với thay đổi gốc,
+ * nên bộ đếm luôn commit/rollback cùng dữ liệu nguồn.
+ * Các hàm đọc trả về giá trị O(1) thay vì COUNT/AVG trên enrollments, reviews, transactions.
+ * Doanh thu/ghi danh/hoàn thành đồng thời được cộng vào bảng tổng hợp theo ngày (DailyRollupService).
+ */
+@Service
+public class CourseStatsService {
+
+    @Autowired
+    private CourseStatsRepository courseStatsRepository;
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private EnrollmentRepository enrollmentRepository;
+
+    @Autowired
+    private ReviewRepository reviewRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private CourseDetailCache courseDetailCache;
+
+    @Autowired
+    private DailyRollupService dailyRollupService;
+
+    // --- Đọc ---
+
+    /**
+     * Lấy bộ đếm của 1 khóa học
+     */
+    @Transactional(readOnly = true)
+    public CourseStats getStats(Long courseId) {
+        return getStatsByCourseIds(List.of(courseId)).get(courseId);
+    }
+
+    /**
+     * Lấy bộ đếm cho nhiều khóa học trong 1 query
+     * Khóa học chưa có dòng course_stats (dữ liệu cũ, chưa đối soát) được tính tạm từ bảng nguồn,
+     * không ghi lại để có thể gọi trong transaction read-only
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, CourseStats> getStatsByCourseIds(Collection<Long> courseIds) {
+        if (courseIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, CourseStats> result = courseStatsRepository.findByCourseIdIn(courseIds).stream()
+                .collect(Collectors.toMap(CourseStats::getCourseId, Function.identity()));
+
+        Set<Long> missing = new HashSet<>(courseIds);
+        missing.removeAll(result.keySet());
+        if (!missing.isEmpty()) {
+            result.putAll(computeStats(missing));
+        }
+        return result;
+    }
+
+    // --- Cập nhật tăng dần ---
+
+    /**
+     * Tạo dòng bộ đếm rỗng cho khóa học mới
+     */
+    @Transactional
+    public void initStats(Long courseId) {
+        if (!courseStatsRepository.existsById(courseId)) {
+            courseStatsRepository.save(new CourseStats(courseId));
+        }
+    }
+
+    @Transactional
+    public void recordEnrollment(Long courseId) {
+        LocalDateTime now = LocalDateTime.now();
+        dailyRollupService.recordEnrollment(courseId, now, 1);
+        ensureApplied(courseId, courseStatsRepository.addEnrollments(courseId, 1, now));
+        courseDetailCache.evict(courseId);
+    }
+
+    @Transactional
+    public void recordEnrollmentRemoved(Long courseId, EEnrollmentStatus status, LocalDateTime enrolledAt,
+                                        LocalDateTime completedAt) {
+        courseDetailCache.evict(courseId);
+        dailyRollupService.recordEnrollment(courseId, enrolledAt, -1);
+        if (status == EEnrollmentStatus.COMPLETED) {
+            dailyRollupService.recordCompletion(courseId, completedAt, -1);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (courseStatsRepository.addEnrollments(courseId, -1, now) == 0) {
+            rebuildStats(courseId);
+            return;
+        }
+        if (status == EEnrollmentStatus.COMPLETED) {
+            courseStatsRepository.addCompletions(courseId, -1, now);
+        }
+    }
+
+    /**
+     * Ghi nhận thay đổi trạng thái enrollment (IN_PROGRESS <-> COMPLETED) sau khi đã set status mới
+     * Đồng thời set / xóa enrollment.completedAt (enrollment đang được quản lý trong transaction của caller)
+     */
+    @Transactional
+    public void recordStatusChange(Enrollment enrollment, EEnrollmentStatus oldStatus) {
+        Long courseId = enrollment.getCourse().getId();
+        boolean wasCompleted = oldStatus == EEnrollmentStatus.COMPLETED;
+        boolean isCompleted = enrollment.getStatus() == EEnrollmentStatus.COMPLETED;
+        if (wasCompleted == isCompleted) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (isCompleted) {
+            enrollment.setCompletedAt(now);
+            dailyRollupService.recordCompletion(courseId, now, 1);
+        } else {
+            // Trừ vào đúng ngày đã cộng
+            dailyRollupService.recordCompletion(courseId, enrollment.getCompletedAt(), -1);
+            enrollment.setCompletedAt(null);
+        }
+        ensureApplied(courseId, courseStatsRepository.addCompletions(courseId, isCompleted ? 1 : -1, now));
+    }
+
+    /**
+     * Ghi nhận review mới (previousRating = null) hoặc review được sửa điểm
+     */
+    @Transactional
+    public void recordReview(Long courseId, Integer previousRating, Integer newRating) {
+        long countDelta = previousRating == null ? 1 : 0;
+        long ratingDelta = newRating - (previousRating != null ? previousRating : 0);
+        if (countDelta == 0 && ratingDelta == 0) {
+            return;
+        }
+        ensureApplied(courseId, courseStatsRepository.addReviews(courseId, countDelta, ratingDelta, LocalDateTime.now()));
+        courseDetailCache.evict(courseId);
+    }
+
+    @Transactional
+    public void recordReviewDeleted(Long courseId, Integer rating) {
+        ensureApplied(courseId, courseStatsRepository.addReviews(courseId, -1, -rating, LocalDateTime.now()));
+        courseDetailCache.evict(courseId);
+    }
+
+    /**
+     * Ghi nhận doanh thu (amount âm khi giao dịch SUCCESS bị chuyển sang trạng thái khác)
+     * Doanh thu theo ngày được tính vào ngày tạo transaction
+     */
+    @Transactional
+    public void recordRevenue(Long courseId, Double amount, LocalDateTime transactionCreatedAt) {
+        if (amount == null || amount == 0.0) {
+            return;
+        }
+        dailyRollupService.recordRevenue(courseId, transactionCreatedAt, amount);
+        ensureApplied(courseId, courseStatsRepository.addRevenue(courseId, amount, LocalDateTime.now()));
+    }
+
+    @Transactional
+    public void deleteStats(Long courseId) {
+        courseStatsRepository.deleteByCourseId(courseId);
+        dailyRollupService.deleteCourse(courseId);
+    }
+
+    // Nếu chưa có dòng course_stats thì dựng lại từ bảng nguồn (đã bao gồm thay đổi hiện tại)
+    private void ensureApplied(Long courseId, int updatedRows) {
+        if (updatedRows == 0) {
+            rebuildStats(courseId);
+        }
+    }
+
+    // --- Đối soát ---
+
+    /**
+     * Dựng lại bộ đếm của 1 khóa học từ bảng nguồn
+     */
+    @Transactional
+    public CourseStats rebuildStats(Long courseId) {
+        CourseStats computed = computeStats(List.of(courseId)).get(courseId);
+        CourseStats stats = courseStatsRepository.findById(courseId).orElseGet(() -> new CourseStats(courseId));
+        copyCounters(computed, stats);
+        return courseStatsRepository.save(stats);
+    }
+
+    /**
+     * Dựng lại bộ đếm của tất cả khóa học từ bảng nguồn (mỗi chỉ số 1 query GROUP BY)
+     *
+     * Không khóa course_stats: các dòng được đọc trước khi đếm bảng nguồn và mỗi dòng lệch được sửa bằng
+     * 1 câu UPDATE có điều kiện (các bộ đếm vẫn bằng giá trị đã đọc). Delta commit trong lúc đối soát
+     * làm dòng đó bị bỏ qua thay vì bị ghi đè bằng số đếm cũ
+     * @return số dòng course_stats đã được sửa
+     */
+    @Transactional
+    public int rebuildAllStats() {
+        Map<Long, CourseStats> existing = courseStatsRepository.findAll().stream()
+                .collect(Collectors.toMap(CourseStats::getCourseId, Function.identity()));
+
+        Map<Long, CourseStats> computed = new HashMap<>();
+        for (Long courseId : courseRepository.findAllIds()) {
+            computed.put(courseId, new CourseStats(courseId));
+        }
+        fillCounters(computed,
+                enrollmentRepository.getEnrollmentTotalsGroupedByCourse(),
+                reviewRepository.getReviewTotalsGroupedByCourse(),
+                transactionRepository.getRevenueGroupedByCourse());
+
+        int fixed = 0;
+        List<CourseStats> created = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (CourseStats fresh : computed.values()) {
+            CourseStats stats = existing.remove(fresh.getCourseId());
+            if (stats == null) {
+                created.add(fresh);
+            } else if (!sameCounters(stats, fresh)) {
+                fixed += courseStatsRepository.replaceCountersIfUnchanged(fresh.getCourseId(),
+                        fresh.getEnrollmentCount(), fresh.getCompletedCount(), fresh.getReviewCount(),
+                        fresh.getRatingSum(), fresh.getRevenueTotal(),
+                        stats.getEnrollmentCount(), stats.getCompletedCount(), stats.getReviewCount(),
+                        stats.getRatingSum(), stats.getRevenueTotal(), now);
+            }
+        }
+        courseStatsRepository.saveAll(created);
+
+        // Dòng của khóa học đã bị xóa
+        courseStatsRepository.deleteAll(existing.values());
+        return fixed + created.size() + existing.size();
+    }
+
+    // Tính bộ đếm từ bảng nguồn cho một tập khóa học (không ghi DB)
+    private Map<Long, CourseStats> computeStats(Collection<Long> courseIds) {
+        Map<Long, CourseStats> result = new HashMap<>();
+        for (Long courseId : courseIds) {
+            result.put(courseId, new CourseStats(courseId));
+        }
+        fillCounters(result,
+                enrollmentRepository.getEnrollmentTotalsByCourseIds(courseIds),
+                reviewRepository.getReviewTotalsByCourseIds(courseIds),
+                transactionRepository.getRevenueByCourseIds(courseIds));
+        return result;
+    }
+
+    private void fillCounters(Map<Long, CourseStats> target, List<Object[]> enrollmentRows,
+                              List<Object[]> reviewRows, List<Object[]> revenueRows) {
+        for (Object[] row : enrollmentRows) {
+            CourseStats stats = target.get((Long) row[0]);
+            if (stats != null) {
+                stats.setEnrollmentCount(toLong(row[1]));
+                stats.setCompletedCount(toLong(row[2]));
+            }
+        }
+        for (Object[] row : reviewRows) {
+            CourseStats stats = target.get((Long) row[0]);
+            if (stats != null) {
+                stats.setReviewCount(toLong(row[1]));
+                stats.setRatingSum(toLong(row[2]));
+            }
+        }
+        for (Object[] row : revenueRows) {
+            CourseStats stats = target.get((Long) row[0]);
+            if (stats != null) {
+                stats.setRevenueTotal(row[1] != null ? ((Number) row[1]).doubleValue() : 0.0);
+            }
+        }
+    }
+
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+
+    private static boolean sameCounters(CourseStats a, CourseStats b) {
+        return a.getEnrollmentCount().equals(b.getEnrollmentCount())
+                && a.getCompletedCount().equals(b.getCompletedCount())
+                && a.getReviewCount().equals(b.getReviewCount())
+                && a.getRatingSum().equals(b.getRatingSum())
+                && Math.abs(a.getRevenueTotal() - b.getRevenueTotal()) < 0.005;
+    }
+
+    private static void copyCounters(CourseStats from, CourseStats to) {
+        to.setEnrollmentCount(from.getEnrollmentCount());
+        to.setCompletedCount(from.getCompletedCount());
+        to.setReviewCount(from.getReviewCount());
+        to.setRatingSum(from.getRatingSum());
+        to.setRevenueTotal(from.getRevenueTotal());
+        to.setUpdatedAt(LocalDateTime.now());
+    }
+}
@@ -0,0 +1,239 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.ChapterResponse;
+import com.coursemgmt.dto.LessonResponse;
+import com.coursemgmt.model.Chapter;
+import com.coursemgmt.model.Course;
+import com.coursemgmt.model.EContentType;
+import com.coursemgmt.model.Lesson;
+import com.coursemgmt.repository.ChapterRepository;
+import com.coursemgmt.repository.CourseRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache cây curriculum (chapters + lessons đã sắp xếp) theo khóa học, gắn với phiên bản courses.curriculum_version
+ *
+ * - Cây dùng chung cho mọi người dùng, không sửa được; trạng thái hoàn thành/khóa bài được gắn khi tạo response
+ * - Mỗi thay đổi chapter/lesson gọi bumpVersion() trong cùng transaction, nên cây cũ tự hết hiệu lực
+ *   (kể cả khi chạy nhiều instance, vì phiên bản được đọc từ DB cùng với Course)
+ */
+@Service
+public class CurriculumCache {
+
+    private static final Comparator<Integer> POSITION_ORDER =
+            Comparator.nullsLast(Comparator.naturalOrder());
+
+    public record LessonNode(Long id, String title, EContentType contentType, String videoUrl, String documentUrl,
+                             String slideUrl, String content, Integer durationInMinutes, Integer position,
+                             boolean isPreview) {
+    }
+
+    public record ChapterNode(Long id, String title, Integer position, List<LessonNode> lessons) {
+    }
+
+    /**
+     * Cây curriculum của 1 khóa học
+     * - lessonOrdinals: lessonId -> thứ tự của bài trong toàn khóa học (0..n-1), dùng làm chỉ số bit trong LearningState
+     * - lockPredecessors[i]: thứ tự của bài phải hoàn thành trước khi mở bài i (-1 nếu bài i không bao giờ bị khóa)
+     */
+    public record CurriculumTree(Long courseId, long version, List<ChapterNode> chapters,
+                                 Map<Long, Integer> lessonOrdinals, int[] lockPredecessors) {
+
+        public boolean isEmpty() {
+            return chapters.isEmpty();
+        }
+
+        public int lessonCount() {
+            return lockPredecessors.length;
+        }
+
+        /**
+         * Thứ tự của bài học trong khóa học, -1 nếu bài không thuộc cây này
+         */
+        public int ordinalOf(Long lessonId) {
+            Integer ordinal = lessonOrdinals.get(lessonId);
+            return ordinal != null ? ordinal : -1;
+        }
+
+        /**
+         * Bài học có bị khóa với trạng thái học này không (học tuần tự)
+         */
+        public boolean isLocked(int ordinal, LearningStateCache.LearningState state) {
+            int predecessor = lockPredecessors[ordinal];
+            return predecessor >= 0 && !state.isCompleted(predecessor);
+        }
+
+        /**
+         * Response cho học viên/giảng viên: gắn isCompleted và isLocked theo bitset tiến độ của học viên
+         * Giảng viên: mọi bài đều hoàn thành và không khóa
+         */
+        public List<ChapterResponse> toResponses(LearningStateCache.LearningState state, boolean isInstructor) {
+            List<ChapterResponse> result = new ArrayList<>(chapters.size());
+            int ordinal = 0;
+            for (ChapterNode chapter : chapters) {
+                List<LessonResponse> lessonResponses = new ArrayList<>(chapter.lessons().size());
+                for (LessonNode lesson : chapter.lessons()) {
+                    LessonResponse dto = toLessonResponse(lesson, true);
+                    dto.setCompleted(isInstructor || state.isCompleted(ordinal));
+                    dto.setLocked(!isInstructor && isLocked(ordinal, state));
+                    lessonResponses.add(dto);
+                    ordinal++;
+                }
+                result.add(toChapterResponse(chapter, lessonResponses));
+            }
+            return result;
+        }
+
+        /**
+         * Response công khai: chỉ tên và thời lượng, không có video/tài liệu/nội dung
+         */
+        public List<ChapterResponse> toPublicResponses(Long previewLessonId) {
+            List<ChapterResponse> result = new ArrayList<>(chapters.size());
+            for (ChapterNode chapter : chapters) {
+                List<LessonResponse> lessonResponses = new ArrayList<>(chapter.lessons().size());
+                for (LessonNode lesson : chapter.lessons()) {
+                    LessonResponse dto = toLessonResponse(lesson, false);
+                    // Đánh dấu lesson nào là preview
+                    dto.setIsPreview(previewLessonId != null && lesson.id().equals(previewLessonId));
+                    lessonResponses.add(dto);
+                }
+                result.add(toChapterResponse(chapter, lessonResponses));
+            }
+            return result;
+        }
+
+        /**
+         * Bài học đầu tiên của chapter đầu tiên (null nếu chapter đầu không có bài nào)
+         */
+        public LessonNode firstLesson() {
+            if (chapters.isEmpty() || chapters.get(0).lessons().isEmpty()) {
+                return null;
+            }
+            return chapters.get(0).lessons().get(0);
+        }
+    }
+
+    private final CourseRepository courseRepository;
+    private final ChapterRepository chapterRepository;
+    private final int maxSize;
+
+    private final LinkedHashMap<Long, CurriculumTree> trees;
+
+    public CurriculumCache(CourseRepository courseRepository, ChapterRepository chapterRepository,
+                           @Value("${content.curriculum-cache.max-size:500}") int maxSize) {
+        this.courseRepository = courseRepository;
+        this.chapterRepository = chapterRepository;
+        this.maxSize = maxSize;
+        this.trees = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CurriculumTree> eldest) {
+                return size() > CurriculumCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Lấy cây curriculum của khóa học, dựng lại nếu chưa có hoặc phiên bản trong cache khác phiên bản của course
+     */
+    public CurriculumTree getTree(Course course) {
+        return getTree(course.getId(), course.getCurriculumVersion());
+    }
+
+    /**
+     * Như getTree(Course), dùng khi chỉ có id và curriculum_version (không cần load Course)
+     */
+    public CurriculumTree getTree(Long courseId, Long curriculumVersion) {
+        long version = curriculumVersion != null ? curriculumVersion : 0L;
+        synchronized (trees) {
+            CurriculumTree cached = trees.get(courseId);
+            if (cached != null && cached.version() == version) {
+                return cached;
+            }
+        }
+
+        CurriculumTree tree = buildTree(courseId, version);
+        synchronized (trees) {
+            trees.put(courseId, tree);
+        }
+        return tree;
+    }
+
+    /**
+     * Tăng phiên bản curriculum của khóa học (gọi sau mỗi thay đổi chapter/lesson, trong cùng transaction)
+     */
+    public void bumpVersion(Long courseId) {
+        courseRepository.bumpCurriculumVersion(courseId);
+        synchronized (trees) {
+            trees.remove(courseId);
+        }
+    }
+
+    private CurriculumTree buildTree(Long courseId, long version) {
+        List<Chapter> chapters = new ArrayList<>(chapterRepository.findByCourseIdWithLessons(courseId));
+        chapters.sort(Comparator.comparing(Chapter::getPosition, POSITION_ORDER));
+
+        List<ChapterNode> chapterNodes = new ArrayList<>(chapters.size());
+        Map<Long, Integer> lessonOrdinals = new HashMap<>();
+        List<Integer> lockPredecessors = new ArrayList<>();
+        for (int c = 0; c < chapters.size(); c++) {
+            Chapter chapter = chapters.get(c);
+            List<Lesson> lessons = new ArrayList<>(chapter.getLessons());
+            lessons.sort(Comparator.comparing(Lesson::getPosition, POSITION_ORDER));
+
+            List<LessonNode> lessonNodes = new ArrayList<>(lessons.size());
+            for (int i = 0; i < lessons.size(); i++) {
+                Lesson lesson = lessons.get(i);
+                int ordinal = lockPredecessors.size();
+                lessonOrdinals.put(lesson.getId(), ordinal);
+                // Quy tắc khóa bài (giữ như logic cũ):
+                // - Bài đầu của chapter đầu: không khóa
+                // - Bài đầu của chapter sau: phụ thuộc bài cuối của chapter liền trước (chapter trước rỗng thì không khóa)
+                // - Các bài khác: phụ thuộc bài liền trước
+                boolean hasPredecessor = i > 0 || (c > 0 && !chapters.get(c - 1).getLessons().isEmpty());
+                lockPredecessors.add(hasPredecessor ? ordinal - 1 : -1);
+                lessonNodes.add(new LessonNode(lesson.getId(), lesson.getTitle(), lesson.getContentType(),
+                        lesson.getVideoUrl(), lesson.getDocumentUrl(), lesson.getSlideUrl(), lesson.getContent(),
+                        lesson.getDurationInMinutes(), lesson.getPosition(),
+                        lesson.getIsPreview() != null && lesson.getIsPreview()));
+            }
+            chapterNodes.add(new ChapterNode(chapter.getId(), chapter.getTitle(), chapter.getPosition(),
+                    List.copyOf(lessonNodes)));
+        }
+        return new CurriculumTree(courseId, version, List.copyOf(chapterNodes), Map.copyOf(lessonOrdinals),
+                lockPredecessors.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private static LessonResponse toLessonResponse(LessonNode lesson, boolean withContent) {
+        LessonResponse dto = new LessonResponse();
+        dto.setId(lesson.id());
+        dto.setTitle(lesson.title());
+        dto.setContentType(lesson.contentType());
+        dto.setDurationInMinutes(lesson.durationInMinutes());
+        dto.setPosition(lesson.position());
+        dto.setIsPreview(lesson.isPreview());
+        if (withContent) {
+            dto.setVideoUrl(lesson.videoUrl());
+            dto.setDocumentUrl(lesson.documentUrl());
+            dto.setSlideUrl(lesson.slideUrl());
+            dto.setContent(lesson.content());
+        }
+        return dto;
+    }
+
+    private static ChapterResponse toChapterResponse(ChapterNode chapter, List<LessonResponse> lessons) {
+        ChapterResponse dto = new ChapterResponse();
+        dto.setId(chapter.id());
+        dto.setTitle(chapter.title());
+        dto.setPosition(chapter.position());
+        dto.setLessons(lessons);
+        return dto;
+    }
+}
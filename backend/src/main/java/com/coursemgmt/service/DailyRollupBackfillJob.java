@@ -0,0 +1,42 @@
+package com.coursemgmt.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lấp dữ liệu cho bảng daily_course_rollup
+ * Khi khởi động: chỉ dựng nếu bảng còn trống (lần đầu triển khai); hằng đêm: dựng lại để đối soát theo cron
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DailyRollupBackfillJob {
+
+    private final DailyRollupService dailyRollupService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        try {
+            if (dailyRollupService.isEmpty()) {
+                rebuild();
+            }
+        } catch (Exception e) {
+            log.error("Daily rollup backfill failed: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(cron = "${stats.rollup.rebuild-cron:0 45 3 * * *}")
+    public void rebuild() {
+        try {
+            long start = System.currentTimeMillis();
+            long rows = dailyRollupService.rebuildAll();
+            log.info("Daily rollup rebuilt: {} row(s) in {} ms", rows, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("Daily rollup rebuild failed: {}", e.getMessage(), e);
+        }
+    }
+}
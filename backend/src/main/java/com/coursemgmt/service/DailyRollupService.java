@@ -0,0 +1,118 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.repository.DailyCourseRollupRepository;
+import com.coursemgmt.repository.EnrollmentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Bảng tổng hợp theo ngày (daily_course_rollup) cho biểu đồ doanh thu / ghi danh / hoàn thành
+ *
+ * - Ghi: cộng dồn tăng dần (1 câu upsert) cùng transaction với sự kiện, gọi từ CourseStatsService
+ * - Đọc: dashboard chỉ đọc vài trăm dòng theo ngày thay vì quét transactions/enrollments với YEAR()/MONTH()
+ * - Doanh thu và ghi danh được tính vào ngày tạo transaction / ngày ghi danh (giống các query cũ),
+ *   hoàn thành được tính vào enrollments.completed_at (cả khi ghi tăng dần lẫn khi dựng lại)
+ */
+@Service
+public class DailyRollupService {
+
+    /**
+     * Số liệu của 1 ngày (của 1 khóa học, 1 giảng viên hoặc toàn hệ thống)
+     */
+    public record DailyTotals(LocalDate date, double revenue, long transactions, long enrollments, long completions) {
+    }
+
+    @Autowired
+    private DailyCourseRollupRepository rollupRepository;
+
+    @Autowired
+    private EnrollmentRepository enrollmentRepository;
+
+    // --- Ghi tăng dần ---
+
+    /**
+     * Doanh thu thay đổi (amount âm khi giao dịch rời trạng thái SUCCESS)
+     */
+    public void recordRevenue(Long courseId, LocalDateTime transactionCreatedAt, double amount) {
+        if (amount == 0.0) {
+            return;
+        }
+        rollupRepository.upsert(toDate(transactionCreatedAt), courseId, amount, amount > 0 ? 1 : -1, 0, 0);
+    }
+
+    public void recordEnrollment(Long courseId, LocalDateTime enrolledAt, int delta) {
+        rollupRepository.upsert(toDate(enrolledAt), courseId, 0.0, 0, delta, 0);
+    }
+
+    /**
+     * Hoàn thành thay đổi vào ngày completedAt của enrollment
+     * completedAt null (enrollment cũ chưa được lấp completed_at) thì bỏ qua, giống khi dựng lại
+     */
+    public void recordCompletion(Long courseId, LocalDateTime completedAt, int delta) {
+        if (completedAt == null) {
+            return;
+        }
+        rollupRepository.upsert(completedAt.toLocalDate(), courseId, 0.0, 0, 0, delta);
+    }
+
+    public void reassignInstructor(Long courseId, Long instructorId) {
+        rollupRepository.updateInstructor(courseId, instructorId);
+    }
+
+    public void deleteCourse(Long courseId) {
+        rollupRepository.deleteByCourseId(courseId);
+    }
+
+    /**
+     * Dựng lại toàn bộ bảng tổng hợp từ transactions và enrollments (backfill / đối soát)
+     * @return số dòng tổng hợp sau khi dựng
+     */
+    @Transactional
+    public long rebuildAll() {
+        enrollmentRepository.backfillCompletedAt();
+        rollupRepository.deleteAllRows();
+        rollupRepository.backfillRevenue();
+        rollupRepository.backfillEnrollments();
+        rollupRepository.backfillCompletions();
+        return rollupRepository.count();
+    }
+
+    public boolean isEmpty() {
+        return rollupRepository.count() == 0;
+    }
+
+    // --- Đọc ---
+
+    public List<DailyTotals> getDailyTotals(LocalDate from, LocalDate to) {
+        return toTotals(rollupRepository.sumByDate(from, to));
+    }
+
+    public List<DailyTotals> getDailyTotalsForInstructor(Long instructorId, LocalDate from, LocalDate to) {
+        return toTotals(rollupRepository.sumByDateForInstructor(instructorId, from, to));
+    }
+
+    public List<DailyTotals> getDailyTotalsForCourse(Long courseId, LocalDate from, LocalDate to) {
+        return toTotals(rollupRepository.findByCourseAndDateRange(courseId, from, to));
+    }
+
+    private static List<DailyTotals> toTotals(List<Object[]> rows) {
+        return rows.stream()
+                .map(row -> new DailyTotals(
+                        (LocalDate) row[0],
+                        row[1] != null ? ((Number) row[1]).doubleValue() : 0.0,
+                        row[2] != null ? ((Number) row[2]).longValue() : 0L,
+                        row[3] != null ? ((Number) row[3]).longValue() : 0L,
+                        row[4] != null ? ((Number) row[4]).longValue() : 0L))
+                .collect(Collectors.toList());
+    }
+
+    private static LocalDate toDate(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.toLocalDate() : LocalDate.now();
+    }
+}
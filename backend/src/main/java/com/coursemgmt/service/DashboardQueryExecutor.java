@@ -0,0 +1,218 @@
+package com.coursemgmt.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Chạy song song các query độc lập của 1 dashboard (mỗi widget 1 query count/sum) trên virtual thread
+ *
+ * - Mỗi widget chạy trong transaction read-only riêng; số widget chạy cùng lúc bị giới hạn
+ *   (dashboard.fanout.max-concurrency) để không chiếm hết connection pool
+ * - Mỗi widget có timeout riêng (tính từ lúc bắt đầu batch); widget lỗi/quá hạn trả về giá trị mặc định
+ *   và được ghi vào errors() để client biết số liệu nào bị thiếu
+ * - Thời gian chạy của từng widget được thống kê (getMetrics) và ghi log debug
+ */
+@Service
+@Slf4j
+public class DashboardQueryExecutor {
+
+    public static final String ERROR_TIMEOUT = "TIMEOUT";
+    public static final String ERROR_FAILED = "FAILED";
+
+    /**
+     * Thống kê thời gian chạy của 1 widget (tích lũy từ khi khởi động)
+     */
+    public record WidgetMetrics(long calls, long failures, long timeouts, double averageMs, long maxMs) {
+    }
+
+    private static final class WidgetCounters {
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong totalMs = new AtomicLong();
+        private final AtomicLong maxMs = new AtomicLong();
+
+        private void record(long elapsedMs) {
+            calls.incrementAndGet();
+            totalMs.addAndGet(elapsedMs);
+            maxMs.accumulateAndGet(elapsedMs, Math::max);
+        }
+
+        private WidgetMetrics snapshot() {
+            long count = calls.get();
+            return new WidgetMetrics(count, failures.get(), timeouts.get(),
+                    count > 0 ? (double) totalMs.get() / count : 0.0, maxMs.get());
+        }
+    }
+
+    private final TransactionTemplate readOnlyTransaction;
+    private final Semaphore permits;
+    private final long widgetTimeoutMs;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // "dashboard.widget" -> thống kê
+    private final Map<String, WidgetCounters> metrics = new ConcurrentHashMap<>();
+
+    public DashboardQueryExecutor(PlatformTransactionManager transactionManager,
+                                  @Value("${dashboard.fanout.max-concurrency:6}") int maxConcurrency,
+                                  @Value("${dashboard.fanout.widget-timeout-ms:5000}") long widgetTimeoutMs) {
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.permits = new Semaphore(Math.max(1, maxConcurrency));
+        this.widgetTimeoutMs = widgetTimeoutMs;
+    }
+
+    /**
+     * Bắt đầu 1 batch widget cho dashboard (tên dashboard dùng làm tiền tố trong metrics/log)
+     */
+    public Batch newBatch(String dashboard) {
+        return new Batch(dashboard);
+    }
+
+    /**
+     * Thống kê thời gian chạy theo widget, sắp xếp theo tên
+     */
+    public Map<String, WidgetMetrics> getMetrics() {
+        Map<String, WidgetMetrics> result = new LinkedHashMap<>();
+        metrics.keySet().stream().sorted().forEach(name -> result.put(name, metrics.get(name).snapshot()));
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Kết quả của 1 widget, đọc sau khi Batch.await()
+     */
+    public static final class Widget<T> {
+
+        private final String name;
+        private final Future<T> future;
+        private final T fallback;
+        private T value;
+        private String error;
+
+        private Widget(String name, Future<T> future, T fallback) {
+            this.name = name;
+            this.future = future;
+            this.fallback = fallback;
+        }
+
+        /**
+         * Giá trị của widget, hoặc giá trị mặc định nếu widget lỗi/quá hạn
+         */
+        public T get() {
+            return error != null ? fallback : value;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+
+    /**
+     * 1 lần tải dashboard: submit các widget, await() rồi đọc kết quả
+     * Không dùng chung giữa các thread
+     */
+    public final class Batch {
+
+        private final String dashboard;
+        private final long startNanos = System.nanoTime();
+        private final List<Widget<?>> widgets = new ArrayList<>();
+        private final Map<String, String> errors = new LinkedHashMap<>();
+
+        private Batch(String dashboard) {
+            this.dashboard = dashboard;
+        }
+
+        /**
+         * Chạy query của widget trên virtual thread, trong transaction read-only riêng
+         * @param fallback giá trị trả về nếu query lỗi hoặc quá hạn
+         */
+        public <T> Widget<T> submit(String name, T fallback, Supplier<T> query) {
+            WidgetCounters counters = metrics.computeIfAbsent(dashboard + "." + name, key -> new WidgetCounters());
+            Future<T> future = executor.submit(() -> {
+                permits.acquire();
+                long start = System.nanoTime();
+                try {
+                    return readOnlyTransaction.execute(status -> query.get());
+                } finally {
+                    permits.release();
+                    counters.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+            });
+            Widget<T> widget = new Widget<>(name, future, fallback);
+            widgets.add(widget);
+            return widget;
+        }
+
+        /**
+         * Chờ tất cả widget xong (hoặc hết hạn). Tổng thời gian ≈ widget chậm nhất, không phải tổng các widget
+         */
+        public Batch await() {
+            long deadline = startNanos + TimeUnit.MILLISECONDS.toNanos(widgetTimeoutMs);
+            for (Widget<?> widget : widgets) {
+                complete(widget, deadline);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Dashboard '{}': {} widget(s) in {} ms, errors: {}", dashboard, widgets.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), errors);
+            }
+            return this;
+        }
+
+        /**
+         * Widget lỗi/quá hạn: tên widget -> TIMEOUT / FAILED (rỗng nếu đủ số liệu)
+         */
+        public Map<String, String> errors() {
+            return errors;
+        }
+
+        private <T> void complete(Widget<T> widget, long deadline) {
+            WidgetCounters counters = metrics.get(dashboard + "." + widget.name);
+            try {
+                widget.value = widget.future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                widget.future.cancel(true);
+                widget.error = ERROR_TIMEOUT;
+                counters.timeouts.incrementAndGet();
+                log.warn("Dashboard '{}' widget '{}' timed out after {} ms", dashboard, widget.name, widgetTimeoutMs);
+            } catch (ExecutionException e) {
+                widget.error = ERROR_FAILED;
+                counters.failures.incrementAndGet();
+                log.error("Dashboard '{}' widget '{}' failed: {}", dashboard, widget.name,
+                        e.getCause() != null ? e.getCause().getMessage() : e.getMessage(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                widget.future.cancel(true);
+                widget.error = ERROR_TIMEOUT;
+            }
+            if (widget.error != null) {
+                errors.put(widget.name, widget.error);
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.coursemgmt.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Cache snapshot dashboard theo (loại dashboard, id người xem) với stale-while-revalidate
+ *
+ * - Snapshot còn mới (dashboard.snapshot.fresh-ms): trả về ngay
+ * - Snapshot cũ nhưng chưa quá dashboard.snapshot.max-stale-ms: trả về ngay và làm mới nền trên virtual thread
+ *   (mỗi key chỉ 1 lần làm mới tại 1 thời điểm)
+ * - Chưa có / quá cũ: tính đồng bộ; các request đồng thời cùng key chờ chung 1 lần tính
+ * - Snapshot trả về được dùng chung giữa các request: caller không được sửa
+ */
+@Service
+@Slf4j
+public class DashboardSnapshotCache {
+
+    private record Key(String dashboard, Long principalId) {
+    }
+
+    private static final class Entry {
+        private volatile Object value;
+        private volatile long loadedAtNanos;
+        private volatile boolean loaded;
+        private final AtomicBoolean refreshing = new AtomicBoolean(false);
+    }
+
+    private final TransactionTemplate readOnlyTransaction;
+    private final long freshNanos;
+    private final long maxStaleNanos;
+    private final int maxSize;
+    private final ExecutorService refresher = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final LinkedHashMap<Key, Entry> entries;
+
+    public DashboardSnapshotCache(PlatformTransactionManager transactionManager,
+                                  @Value("${dashboard.snapshot.fresh-ms:30000}") long freshMs,
+                                  @Value("${dashboard.snapshot.max-stale-ms:600000}") long maxStaleMs,
+                                  @Value("${dashboard.snapshot.max-size:10000}") int maxSize) {
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.freshNanos = TimeUnit.MILLISECONDS.toNanos(freshMs);
+        this.maxStaleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(freshMs, maxStaleMs));
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > DashboardSnapshotCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Snapshot của dashboard cho người xem principalId (null với dashboard chung, ví dụ admin)
+     * @param loader tính snapshot mới; tự quản lý transaction của nó
+     */
+    public <T> T get(String dashboard, Long principalId, Supplier<T> loader) {
+        Key key = new Key(dashboard, principalId);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.computeIfAbsent(key, k -> new Entry());
+        }
+
+        if (entry.loaded) {
+            long age = System.nanoTime() - entry.loadedAtNanos;
+            if (age < freshNanos) {
+                return cast(entry.value);
+            }
+            if (age < maxStaleNanos) {
+                refreshAsync(key, entry, loader);
+                return cast(entry.value);
+            }
+        }
+
+        // Chưa có hoặc quá cũ: tính đồng bộ, request đồng thời cùng key chờ kết quả của request đầu tiên
+        synchronized (entry) {
+            if (!entry.loaded || System.nanoTime() - entry.loadedAtNanos >= maxStaleNanos) {
+                store(entry, loader.get());
+            }
+            return cast(entry.value);
+        }
+    }
+
+    /**
+     * Như get(), loader chạy trong 1 transaction read-only (cho loader cần lazy loading)
+     */
+    public <T> T getInTransaction(String dashboard, Long principalId, Supplier<T> loader) {
+        return get(dashboard, principalId, () -> readOnlyTransaction.execute(status -> loader.get()));
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    private void refreshAsync(Key key, Entry entry, Supplier<?> loader) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        refresher.execute(() -> {
+            try {
+                Object value = loader.get();
+                synchronized (entry) {
+                    store(entry, value);
+                }
+            } catch (Exception e) {
+                // Giữ snapshot cũ, request sau sẽ thử làm mới lại
+                log.warn("Failed to refresh dashboard snapshot {}: {}", key, e.getMessage(), e);
+            } finally {
+                entry.refreshing.set(false);
+            }
+        });
+    }
+
+    private static void store(Entry entry, Object value) {
+        entry.value = value;
+        entry.loadedAtNanos = System.nanoTime();
+        entry.loaded = true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object value) {
+        return (T) value;
+    }
+}
@@ -0,0 +1,32 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.repository.EnrollmentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lấp enrollments.last_active_at cho dữ liệu có từ trước khi có cột này (chạy 1 lần khi khởi động,
+ * chỉ sửa các dòng còn NULL nên các lần khởi động sau gần như không tốn gì)
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EnrollmentActivityBackfillJob {
+
+    private final EnrollmentRepository enrollmentRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        try {
+            int updated = enrollmentRepository.backfillLastActiveAt();
+            if (updated > 0) {
+                log.info("Backfilled last_active_at for {} enrollment(s)", updated);
+            }
+        } catch (Exception e) {
+            log.error("Enrollment last_active_at backfill failed: {}", e.getMessage(), e);
+        }
+    }
+}
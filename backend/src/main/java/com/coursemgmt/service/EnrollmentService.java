@@ -6,13 +6,15 @@ import com.coursemgmt.model.EEnrollmentStatus;
 import com.coursemgmt.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.time.Month;
 import java.time.format.TextStyle;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -31,6 +33,9 @@ public class EnrollmentService {
     
     @Autowired
     private CertificateRepository certificateRepository;
+    
+    @Autowired
+    private CourseStatsService courseStatsService;
 
     /**
      * Lấy danh sách enrollment theo course
@@ -115,6 +120,7 @@ public class EnrollmentService {
         enrollment.setEnrolledAt(LocalDateTime.now());
         
         Enrollment saved = enrollmentRepository.save(enrollment);
+        courseStatsService.recordEnrollment(course.getId());
         return convertToDTO(saved);
     }
 
@@ -125,6 +131,7 @@ public class EnrollmentService {
     public EnrollmentDTO updateEnrollment(Long enrollmentId, EnrollmentUpdateRequest request) {
         Enrollment enrollment = enrollmentRepository.findById(enrollmentId)
             .orElseThrow(() -> new RuntimeException("Enrollment not found with id: " + enrollmentId));
+        EEnrollmentStatus oldStatus = enrollment.getStatus();
         
         // Update status
         if (request.getStatus() != null) {
@@ -151,6 +158,7 @@ public class EnrollmentService {
             // Would update in actual implementation if field exists
         }
         
+        courseStatsService.recordStatusChange(enrollment, oldStatus);
         Enrollment updated = enrollmentRepository.save(enrollment);
         return convertToDTO(updated);
     }
@@ -165,6 +173,8 @@ public class EnrollmentService {
         
         // Can add business logic here (e.g., refund check)
         enrollmentRepository.delete(enrollment);
+        courseStatsService.recordEnrollmentRemoved(enrollment.getCourse().getId(), enrollment.getStatus(),
+                enrollment.getEnrolledAt(), enrollment.getCompletedAt());
     }
 
     /**
@@ -244,52 +254,54 @@ public class EnrollmentService {
      * Thống kê học viên mới theo tháng
      */
     public MonthlyStudentStatsDTO getMonthlyStudentStats(int year) {
-        MonthlyStudentStatsDTO stats = new MonthlyStudentStatsDTO();
-        
-        List<MonthlyStudentStatsDTO.MonthlyData> monthlyData = new ArrayList<>();
-        
+        return getMonthlyStudentStats(year, null, null);
+    }
+
+    /**
+     * Thống kê học viên mới / ghi danh / hoàn thành theo tháng của 1 năm (1 query GROUP BY tháng)
+     * @param courseId     chỉ tính 1 khóa học (null = tất cả)
+     * @param instructorId chỉ tính các khóa học của 1 giảng viên (null = tất cả)
+     */
+    public MonthlyStudentStatsDTO getMonthlyStudentStats(int year, Long courseId, Long instructorId) {
+        LocalDateTime from = LocalDateTime.of(year, 1, 1, 0, 0);
+        LocalDateTime to = from.plusYears(1);
+
+        // month -> [enrollments, completions, newStudents]
+        Map<Integer, long[]> byMonth = new HashMap<>();
+        for (Object[] row : enrollmentRepository.aggregateMonthlyCohorts(from, to, courseId, instructorId)) {
+            byMonth.put(((Number) row[0]).intValue(), new long[] {
+                toLong(row[1]), toLong(row[2]), toLong(row[3])
+            });
+        }
+
+        List<MonthlyStudentStatsDTO.MonthlyData> monthlyData = new ArrayList<>(12);
+        long totalNewStudents = 0;
+        long totalEnrollments = 0;
+        long totalCompletions = 0;
         for (int month = 1; month <= 12; month++) {
-            LocalDateTime startOfMonth = LocalDateTime.of(year, month, 1, 0, 0);
-            LocalDateTime endOfMonth = startOfMonth.plusMonths(1).minusSeconds(1);
-            
-            // Count new enrollments in this month
-            // Note: This is simplified - in production, would use proper queries
-            List<Enrollment> enrollments = enrollmentRepository
-                .findByUserId(1L, Pageable.unpaged()) // Simplified
-                .getContent();
-            
-            long monthEnrollments = enrollments.stream()
-                .filter(e -> e.getEnrolledAt() != null)
-                .filter(e -> e.getEnrolledAt().isAfter(startOfMonth) && 
-                           e.getEnrolledAt().isBefore(endOfMonth))
-                .count();
-            
-            long monthCompletions = enrollments.stream()
-                .filter(e -> EEnrollmentStatus.COMPLETED.equals(e.getStatus()))
-                .filter(e -> e.getEnrolledAt() != null)
-                .filter(e -> e.getEnrolledAt().isAfter(startOfMonth) && 
-                           e.getEnrolledAt().isBefore(endOfMonth))
-                .count();
-            
-            String monthName = startOfMonth.getMonth()
+            long[] counts = byMonth.getOrDefault(month, new long[3]);
+            String monthName = Month.of(month)
                 .getDisplayName(TextStyle.SHORT, Locale.ENGLISH) + " " + year;
-            
-            MonthlyStudentStatsDTO.MonthlyData data = new MonthlyStudentStatsDTO.MonthlyData(
-                year,
-                month,
-                monthName,
-                monthEnrollments, // Simplified
-                monthEnrollments,
-                monthCompletions
-            );
-            
-            monthlyData.add(data);
+            monthlyData.add(new MonthlyStudentStatsDTO.MonthlyData(
+                year, month, monthName, counts[2], counts[0], counts[1]));
+            totalEnrollments += counts[0];
+            totalCompletions += counts[1];
+            totalNewStudents += counts[2];
         }
-        
+
+        MonthlyStudentStatsDTO stats = new MonthlyStudentStatsDTO();
+        stats.setYear(year);
+        stats.setNewStudents(totalNewStudents);
+        stats.setTotalEnrollments(totalEnrollments);
+        stats.setCompletedCourses(totalCompletions);
         stats.setMonthlyData(monthlyData);
         return stats;
     }
 
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+
     /**
      * Convert Enrollment entity to DTO
      */
@@ -318,9 +330,8 @@ public class EnrollmentService {
         dto.setStatus(enrollment.getStatus().name());
         dto.setProgress(enrollment.getProgress());
         dto.setEnrolledAt(enrollment.getEnrolledAt());
-        // completedAt and lastAccessedAt not in entity - set null
-        dto.setCompletedAt(null);
-        dto.setLastAccessedAt(null);
+        dto.setCompletedAt(enrollment.getCompletedAt());
+        dto.setLastAccessedAt(enrollment.getLastActiveAt());
         
         return dto;
     }
@@ -330,20 +341,10 @@ public class EnrollmentService {
      * Returns all students enrolled in ANY course owned by the current instructor
      */
     public Page<EnrollmentDTO> getMyStudents(Long instructorId, Long courseId, Pageable pageable) {
-        // Get all courses owned by this instructor
-        List<Course> instructorCourses = courseRepository.findByInstructorId(instructorId);
-        
-        if (instructorCourses.isEmpty()) {
-            return new PageImpl<>(Collections.emptyList(), pageable, 0);
-        }
-        
         // Filter by specific course if provided
         if (courseId != null) {
             // Verify the course belongs to this instructor
-            boolean courseBelongsToInstructor = instructorCourses.stream()
-                .anyMatch(c -> c.getId().equals(courseId));
-            
-            if (!courseBelongsToInstructor) {
+            if (!courseRepository.existsByIdAndInstructorId(courseId, instructorId)) {
                 throw new AccessDeniedException("You are not authorized to view enrollments for this course");
             }
             
@@ -352,42 +353,13 @@ public class EnrollmentService {
             return enrollments.map(this::convertToDTO);
         }
         
-        // Get enrollments from all courses owned by this instructor
-        List<Long> courseIds = instructorCourses.stream()
-            .map(Course::getId)
-            .collect(Collectors.toList());
-        
-        // Fetch all enrollments for these courses
-        List<Enrollment> allEnrollments = new ArrayList<>();
-        for (Long cId : courseIds) {
-            List<Enrollment> enrollments = enrollmentRepository.findByCourseId(cId, Pageable.unpaged())
-                .getContent();
-            allEnrollments.addAll(enrollments);
-        }
-        
-        // Remove duplicates (same student in multiple courses)
-        Map<Long, Enrollment> uniqueEnrollments = new LinkedHashMap<>();
-        for (Enrollment enrollment : allEnrollments) {
-            Long studentId = enrollment.getUser().getId();
-            // Keep the most recent enrollment per student
-            if (!uniqueEnrollments.containsKey(studentId) || 
-                enrollment.getEnrolledAt().isAfter(uniqueEnrollments.get(studentId).getEnrolledAt())) {
-                uniqueEnrollments.put(studentId, enrollment);
-            }
-        }
-        
-        // Paginate manually
-        List<EnrollmentDTO> enrollmentDTOs = uniqueEnrollments.values().stream()
-            .map(this::convertToDTO)
-            .collect(Collectors.toList());
-        
-        int start = (int) pageable.getOffset();
-        int end = Math.min((start + pageable.getPageSize()), enrollmentDTOs.size());
-        List<EnrollmentDTO> pageContent = start < enrollmentDTOs.size() 
-            ? enrollmentDTOs.subList(start, end) 
-            : Collections.emptyList();
-        
-        return new PageImpl<>(pageContent, pageable, enrollmentDTOs.size());
+        // Mỗi học viên 1 dòng (enrollment mới nhất trong các khóa học của giảng viên), phân trang trong SQL
+        Pageable sorted = pageable.getSort().isSorted()
+            ? pageable
+            : PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(),
+                Sort.by(Sort.Direction.DESC, "enrolledAt").and(Sort.by(Sort.Direction.DESC, "id")));
+        return enrollmentRepository.findLatestPerStudentByInstructorId(instructorId, sorted)
+            .map(this::convertToDTO);
     }
 }
 
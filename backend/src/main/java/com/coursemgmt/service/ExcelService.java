@@ -33,6 +33,8 @@ public class ExcelService {
     private LessonRepository lessonRepository;
     @Autowired
     private StatisticsService statisticsService;
+    @Autowired
+    private CurriculumCache curriculumCache;
 
     /**
      * Chức năng EXPORT: Xuất dữ liệu Lessons ra file Excel
@@ -155,6 +157,7 @@ public class ExcelService {
             }
 
             lessonRepository.saveAll(lessonsToSave);
+            curriculumCache.bumpVersion(courseId);
         }
     }
 
@@ -0,0 +1,186 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.CourseResponse;
+import com.coursemgmt.model.Course;
+import com.coursemgmt.model.CourseStats;
+import com.coursemgmt.model.ECourseStatus;
+import com.coursemgmt.repository.CourseRepository;
+import com.coursemgmt.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Snapshot dữ liệu trang chủ (featured / mới nhất / bán chạy) dựng sẵn trong bộ nhớ
+ *
+ * - Dựng lại định kỳ và khi có thay đổi liên quan (markDirty, gộp nhiều thay đổi thành 1 lần dựng)
+ * - Snapshot mới được thay thế nguyên khối (volatile), request không bao giờ thấy snapshot dựng dở
+ * - Request ẩn danh được phục vụ không cần query DB; CourseService chỉ gắn thông tin ghi danh theo user
+ */
+@Service
+@Slf4j
+public class HomePageSnapshotService {
+
+    // Số khóa học mới nhất hiển thị khi chưa có khóa học nào được đánh dấu featured
+    private static final int FEATURED_FALLBACK_SIZE = 4;
+
+    /**
+     * Dữ liệu trang chủ tại một thời điểm. Danh sách không sửa được;
+     * caller phải copy() từng CourseResponse trước khi gắn thông tin theo user
+     */
+    public record HomePageSnapshot(List<CourseResponse> featured,
+                                   List<CourseResponse> latest,
+                                   List<CourseResponse> topSelling,
+                                   LocalDateTime builtAt) {
+    }
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private CourseStatsService courseStatsService;
+
+    @Value("${home.snapshot.featured-limit:20}")
+    private int featuredLimit;
+
+    @Value("${home.snapshot.latest-limit:8}")
+    private int latestLimit;
+
+    @Value("${home.snapshot.top-selling-limit:8}")
+    private int topSellingLimit;
+
+    private volatile HomePageSnapshot snapshot;
+
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+    /**
+     * Snapshot hiện tại (dựng ngay nếu chưa có, ví dụ request đến trước khi khởi động xong)
+     */
+    public HomePageSnapshot getSnapshot() {
+        HomePageSnapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    rebuild();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Đánh dấu cần dựng lại sau khi transaction hiện tại commit
+     * Việc dựng lại chạy ở refreshIfDirty() nên nhiều thay đổi liên tiếp chỉ tốn 1 lần dựng
+     */
+    public void markDirty() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dirty.set(true);
+                }
+            });
+        } else {
+            dirty.set(true);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${home.snapshot.dirty-check-ms:5000}")
+    public void refreshIfDirty() {
+        if (dirty.compareAndSet(true, false)) {
+            rebuild();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${home.snapshot.refresh-ms:300000}", initialDelayString = "${home.snapshot.refresh-ms:300000}")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    /**
+     * Dựng snapshot mới rồi thay thế snapshot cũ
+     * Lỗi khi dựng thì giữ snapshot cũ (trang chủ vẫn hiển thị dữ liệu gần nhất)
+     */
+    public synchronized void rebuild() {
+        try {
+            long start = System.currentTimeMillis();
+
+            List<Course> featured = courseRepository.findFeaturedCourses(PageRequest.of(0, featuredLimit));
+            List<Course> latest = courseRepository.findLatestPublishedCourses(PageRequest.of(0, Math.max(latestLimit, FEATURED_FALLBACK_SIZE)));
+            if (featured.isEmpty()) {
+                // Chưa có khóa học featured: dùng các khóa học mới nhất (giống hành vi cũ của getFeaturedCourses)
+                featured = latest.stream().limit(FEATURED_FALLBACK_SIZE).collect(Collectors.toList());
+            }
+            List<Course> topSelling = loadTopSellingCourses();
+
+            // Điền enrollmentCount + rating cho tất cả khóa học trong 1 lần đọc course_stats
+            Set<Long> courseIds = new HashSet<>();
+            featured.forEach(c -> courseIds.add(c.getId()));
+            latest.forEach(c -> courseIds.add(c.getId()));
+            topSelling.forEach(c -> courseIds.add(c.getId()));
+            Map<Long, CourseStats> stats = courseStatsService.getStatsByCourseIds(courseIds);
+
+            snapshot = new HomePageSnapshot(
+                    toResponses(featured, stats),
+                    toResponses(latest.stream().limit(latestLimit).collect(Collectors.toList()), stats),
+                    toResponses(topSelling, stats),
+                    LocalDateTime.now());
+            log.info("Home page snapshot rebuilt: {} featured, {} latest, {} top-selling in {} ms",
+                    snapshot.featured().size(), snapshot.latest().size(), snapshot.topSelling().size(),
+                    System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("Failed to rebuild home page snapshot: {}", e.getMessage(), e);
+        }
+    }
+
+    // Top khóa học bán chạy (theo số giao dịch thành công), chỉ giữ khóa học đang PUBLISHED
+    private List<Course> loadTopSellingCourses() {
+        List<Long> ids = transactionRepository.findTopSellingCourses(PageRequest.of(0, topSellingLimit)).stream()
+                .map(row -> (Long) row[0])
+                .collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Course> coursesById = courseRepository.findByIdIn(ids).stream()
+                .collect(Collectors.toMap(Course::getId, Function.identity()));
+        return ids.stream()
+                .map(coursesById::get)
+                .filter(Objects::nonNull)
+                .filter(c -> c.getStatus() == ECourseStatus.PUBLISHED)
+                .collect(Collectors.toList());
+    }
+
+    private List<CourseResponse> toResponses(List<Course> courses, Map<Long, CourseStats> stats) {
+        return courses.stream().map(course -> {
+            CourseResponse dto = CourseResponse.fromEntity(course);
+            CourseStats courseStats = stats.get(course.getId());
+            dto.setEnrollmentCount(courseStats != null ? courseStats.getEnrollmentCount() : 0L);
+            dto.setRating(courseStats != null ? courseStats.getAverageRating() : 0.0);
+            dto.setReviewCount(courseStats != null ? courseStats.getReviewCount() : 0L);
+            dto.setIsEnrolled(false);
+            return dto;
+        }).collect(Collectors.toUnmodifiableList());
+    }
+}
@@ -0,0 +1,40 @@
+package com.coursemgmt.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Dựng inbox projection cho các participant có từ trước khi có bảng inbox_entries (chạy khi khởi động,
+ * theo từng lô; các lần khởi động sau chỉ tốn 1 query kiểm tra)
+ * Chưa xong hoặc lỗi: ChatService dựng dòng còn thiếu theo từng user khi đọc inbox (InboxProjectionService.ensureEntries)
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class InboxBackfillJob {
+
+    private static final int BATCH_SIZE = 200;
+
+    private final InboxProjectionService inboxProjectionService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        try {
+            int total = 0;
+            int built;
+            do {
+                built = inboxProjectionService.rebuildMissingEntries(BATCH_SIZE);
+                total += built;
+            } while (built == BATCH_SIZE);
+            inboxProjectionService.markBackfillComplete();
+            if (total > 0) {
+                log.info("Built inbox entries for {} conversation participant(s)", total);
+            }
+        } catch (Exception e) {
+            log.error("Inbox backfill failed: {}", e.getMessage(), e);
+        }
+    }
+}
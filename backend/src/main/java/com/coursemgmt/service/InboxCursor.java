@@ -0,0 +1,33 @@
+package com.coursemgmt.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Cursor cho keyset pagination inbox: (activityAt, conversationId) của dòng cuối trang trước
+ * Được mã hóa Base64 URL-safe để client xem như chuỗi opaque
+ */
+record InboxCursor(LocalDateTime activityAt, Long conversationId) {
+
+    private static final String SEPARATOR = "|";
+
+    String encode() {
+        String raw = activityAt + SEPARATOR + conversationId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static InboxCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 2);
+            if (parts.length != 2) {
+                throw new RuntimeException("Invalid cursor");
+            }
+            return new InboxCursor(LocalDateTime.parse(parts[0]), Long.valueOf(parts[1]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new RuntimeException("Invalid cursor");
+        }
+    }
+}
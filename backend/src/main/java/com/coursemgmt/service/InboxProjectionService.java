@@ -0,0 +1,240 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.ChatMessageResponse;
+import com.coursemgmt.dto.ConversationResponse;
+import com.coursemgmt.model.Conversation;
+import com.coursemgmt.model.ConversationParticipant;
+import com.coursemgmt.model.InboxEntry;
+import com.coursemgmt.model.Message;
+import com.coursemgmt.model.User;
+import com.coursemgmt.repository.ConversationParticipantRepository;
+import com.coursemgmt.repository.InboxEntryRepository;
+import com.coursemgmt.repository.MessageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Duy trì inbox projection (InboxEntry: 1 dòng / user / conversation) để danh sách conversation
+ * được đọc bằng 1 query phân trang trên index (user_id, activity_at, conversation_id)
+ *
+ * - Các hàm on*() được ChatService gọi trong cùng transaction với thay đổi gốc, mỗi hàm 1-2 câu UPDATE hàng loạt
+ * - Dòng inbox của dữ liệu cũ được dựng bởi rebuildMissingEntries() (InboxBackfillJob); trước khi backfill
+ *   chạy xong trên node này, ensureEntries() dựng dòng còn thiếu của user ngay trước khi đọc inbox
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InboxProjectionService {
+
+    private final InboxEntryRepository inboxEntryRepository;
+    private final ConversationParticipantRepository participantRepository;
+    private final MessageRepository messageRepository;
+
+    // true khi InboxBackfillJob đã dựng hết dòng còn thiếu (participant mới luôn có dòng inbox từ createEntries)
+    private volatile boolean backfillComplete;
+
+    /**
+     * Tạo dòng inbox cho các participant của conversation mới
+     */
+    public void createEntries(Conversation conversation, List<ConversationParticipant> participants) {
+        List<InboxEntry> entries = new ArrayList<>(participants.size());
+        for (ConversationParticipant participant : participants) {
+            entries.add(buildEntry(conversation, participant, participants, null, 0L));
+        }
+        inboxEntryRepository.saveAll(entries);
+    }
+
+    public void onMessageSent(Message message) {
+        Long conversationId = message.getConversation().getId();
+        User sender = message.getSender();
+        inboxEntryRepository.applyLastMessage(conversationId, message.getId(), sender.getId(), displayName(sender),
+                sender.getAvatarUrl(), preview(message.getContent()), messageTypeName(message), message.getCreatedAt());
+        inboxEntryRepository.incrementUnread(conversationId, sender.getId());
+    }
+
+    /**
+     * Sửa hoặc xóa (mềm) tin nhắn: chỉ đổi các dòng inbox đang hiển thị tin nhắn đó là tin cuối
+     */
+    public void onMessageChanged(Message message) {
+        inboxEntryRepository.updateLastMessage(message.getConversation().getId(), message.getId(),
+                preview(message.getContent()), Boolean.TRUE.equals(message.getIsEdited()),
+                Boolean.TRUE.equals(message.getIsDeleted()));
+    }
+
+    /**
+     * Gọi sau khi watermark đã đọc của user được đẩy lên (ConversationParticipantRepository.advanceReadWatermark)
+     */
+    public void onRead(Long conversationId, Long userId, Long watermark, LocalDateTime readAt) {
+        inboxEntryRepository.applyRead(conversationId, userId, readAt);
+        inboxEntryRepository.applyOtherRead(conversationId, userId, watermark, readAt);
+    }
+
+    /**
+     * User đổi tên/avatar: cập nhật thông tin hiển thị trên inbox của những người chat với user
+     */
+    public void onUserProfileChanged(User user) {
+        inboxEntryRepository.updateOtherSummary(user.getId(), user.getFullName(), user.getAvatarUrl());
+        inboxEntryRepository.updateSenderSummary(user.getId(), displayName(user), user.getAvatarUrl());
+    }
+
+    /**
+     * Dựng dòng inbox cho tối đa batchSize participant chưa có (dữ liệu có từ trước projection)
+     * @return số dòng đã tạo
+     */
+    @Transactional
+    public int rebuildMissingEntries(int batchSize) {
+        List<ConversationParticipant> missing = participantRepository.findWithoutInboxEntry(PageRequest.of(0, batchSize));
+        for (ConversationParticipant participant : missing) {
+            inboxEntryRepository.save(buildFromSource(participant));
+        }
+        return missing.size();
+    }
+
+    public void markBackfillComplete() {
+        backfillComplete = true;
+    }
+
+    public boolean isBackfillComplete() {
+        return backfillComplete;
+    }
+
+    /**
+     * Dựng và lưu các dòng inbox còn thiếu của user (backfill chưa chạy xong hoặc bị lỗi)
+     * Sau khi backfill xong thì không tốn query nào
+     * @return số dòng đã tạo
+     */
+    @Transactional
+    public int ensureEntries(Long userId) {
+        if (backfillComplete) {
+            return 0;
+        }
+        List<ConversationParticipant> missing = participantRepository.findWithoutInboxEntryByUserId(userId);
+        for (ConversationParticipant participant : missing) {
+            inboxEntryRepository.save(buildFromSource(participant));
+        }
+        return missing.size();
+    }
+
+    /**
+     * Dòng inbox chưa được dựng (participant tạo trước projection, backfill chưa chạy): tính từ dữ liệu gốc, không lưu
+     */
+    public InboxEntry buildFromSource(ConversationParticipant participant) {
+        Conversation conversation = participant.getConversation();
+        Long userId = participant.getUser().getId();
+        List<ConversationParticipant> participants = participantRepository.findByConversationId(conversation.getId());
+        Message latest = messageRepository.findLatestByConversationId(conversation.getId(), PageRequest.of(0, 1))
+                .stream().findFirst().orElse(null);
+        long unread = messageRepository.countUnreadMessages(conversation.getId(), userId);
+        return buildEntry(conversation, participant, participants, latest, unread);
+    }
+
+    public ConversationResponse toResponse(InboxEntry entry) {
+        ConversationResponse.UserInfo otherParticipant = null;
+        if (entry.getOtherUserId() != null) {
+            otherParticipant = ConversationResponse.UserInfo.builder()
+                    .id(entry.getOtherUserId())
+                    .fullName(entry.getOtherFullName())
+                    .avatar(entry.getOtherAvatar())
+                    .role(entry.getOtherRole() != null ? entry.getOtherRole() : "STUDENT")
+                    .build();
+        }
+
+        ChatMessageResponse lastMessage = null;
+        if (entry.getLastMessageId() != null) {
+            // Tin của mình: "đã xem" theo watermark người còn lại; tin của người khác: đã đọc khi không còn tin chưa đọc
+            boolean own = entry.getLastMessageSenderId().equals(entry.getUserId());
+            boolean read = own
+                    ? entry.getOtherLastReadMessageId() != null && entry.getOtherLastReadMessageId() >= entry.getLastMessageId()
+                    : entry.getUnreadCount() == 0;
+            lastMessage = ChatMessageResponse.builder()
+                    .id(entry.getLastMessageId())
+                    .conversationId(entry.getConversationId())
+                    .senderId(entry.getLastMessageSenderId())
+                    .senderName(entry.getLastMessageSenderName())
+                    .senderAvatar(entry.getLastMessageSenderAvatar())
+                    .content(entry.getLastMessagePreview())
+                    .messageType(entry.getLastMessageType())
+                    .isEdited(Boolean.TRUE.equals(entry.getLastMessageEdited()))
+                    .isDeleted(Boolean.TRUE.equals(entry.getLastMessageDeleted()))
+                    .createdAt(entry.getLastMessageAt())
+                    .isRead(read)
+                    .readAt(read ? (own ? entry.getOtherLastReadAt() : entry.getLastReadAt()) : null)
+                    .build();
+        }
+
+        return ConversationResponse.builder()
+                .id(entry.getConversationId())
+                .type(entry.getConversationType() != null ? entry.getConversationType().name() : "DIRECT")
+                .createdAt(entry.getConversationCreatedAt())
+                .updatedAt(entry.getActivityAt())
+                .lastMessageAt(entry.getLastMessageAt())
+                .otherParticipant(otherParticipant)
+                .lastMessage(lastMessage)
+                .unreadCount(entry.getUnreadCount() != null ? entry.getUnreadCount() : 0L)
+                .build();
+    }
+
+    private InboxEntry buildEntry(Conversation conversation, ConversationParticipant participant,
+                                  List<ConversationParticipant> participants, Message latest, long unread) {
+        Long userId = participant.getUser().getId();
+        InboxEntry entry = new InboxEntry();
+        entry.setUserId(userId);
+        entry.setConversationId(conversation.getId());
+        entry.setConversationType(conversation.getType());
+        entry.setConversationCreatedAt(conversation.getCreatedAt());
+        entry.setActivityAt(conversation.getCreatedAt() != null ? conversation.getCreatedAt() : LocalDateTime.now());
+        entry.setUnreadCount(unread);
+        entry.setLastReadAt(participant.getLastReadAt());
+
+        // Conversation DIRECT: người còn lại là participant đầu tiên khác user
+        participants.stream()
+                .filter(other -> !other.getUser().getId().equals(userId))
+                .findFirst()
+                .ifPresent(other -> {
+                    entry.setOtherUserId(other.getUser().getId());
+                    entry.setOtherFullName(other.getUser().getFullName());
+                    entry.setOtherAvatar(other.getUser().getAvatarUrl());
+                    entry.setOtherRole(other.getRole() != null ? other.getRole().name() : null);
+                    entry.setOtherLastReadMessageId(other.getLastReadMessageId() != null ? other.getLastReadMessageId() : 0L);
+                    entry.setOtherLastReadAt(other.getLastReadAt());
+                });
+
+        if (latest != null) {
+            entry.setLastMessageId(latest.getId());
+            entry.setLastMessageSenderId(latest.getSender().getId());
+            entry.setLastMessageSenderName(displayName(latest.getSender()));
+            entry.setLastMessageSenderAvatar(latest.getSender().getAvatarUrl());
+            entry.setLastMessagePreview(preview(latest.getContent()));
+            entry.setLastMessageType(messageTypeName(latest));
+            entry.setLastMessageEdited(Boolean.TRUE.equals(latest.getIsEdited()));
+            entry.setLastMessageDeleted(Boolean.TRUE.equals(latest.getIsDeleted()));
+            entry.setLastMessageAt(latest.getCreatedAt());
+            entry.setActivityAt(latest.getCreatedAt());
+        }
+        return entry;
+    }
+
+    // Cùng quy tắc với ChatMessageResponse.fromEntity
+    private static String displayName(User user) {
+        String name = user.getFullName();
+        return name == null || name.trim().isEmpty() ? user.getUsername() : name;
+    }
+
+    private static String messageTypeName(Message message) {
+        return message.getMessageType() != null ? message.getMessageType().name() : "TEXT";
+    }
+
+    private static String preview(String content) {
+        if (content == null || content.length() <= InboxEntry.PREVIEW_LENGTH) {
+            return content;
+        }
+        return content.substring(0, InboxEntry.PREVIEW_LENGTH - 3) + "...";
+    }
+}
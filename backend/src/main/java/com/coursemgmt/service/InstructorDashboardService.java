@@ -5,32 +5,53 @@ import com.coursemgmt.dto.InstructorCourseDTO;
 import com.coursemgmt.dto.InstructorChartDataDTO;
 import com.coursemgmt.dto.InstructorEarningsDTO;
 import com.coursemgmt.dto.InstructorStudentDTO;
+import com.coursemgmt.dto.StudentRosterFilter;
 import com.coursemgmt.model.Course;
+import com.coursemgmt.model.CourseStats;
 import com.coursemgmt.model.ECourseStatus;
+import com.coursemgmt.model.EEnrollmentStatus;
 import com.coursemgmt.model.ETransactionStatus;
 import com.coursemgmt.model.Transaction;
-import com.coursemgmt.model.Enrollment;
-import com.coursemgmt.model.User_Progress;
 import com.coursemgmt.repository.CourseRepository;
 import com.coursemgmt.repository.EnrollmentRepository;
 import com.coursemgmt.repository.ReviewRepository;
 import com.coursemgmt.repository.TransactionRepository;
 import com.coursemgmt.repository.UserProgressRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.TemporalAdjusters;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
 public class InstructorDashboardService {
 
+    // Mốc bắt đầu khi lấy chart "all time" (trước mọi dữ liệu thực tế)
+    private static final LocalDate ALL_TIME_START = LocalDate.of(2000, 1, 1);
+    private static final DateTimeFormatter DAY_LABEL = DateTimeFormatter.ofPattern("dd/MM");
+    private static final DateTimeFormatter DAY_YEAR_LABEL = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private static final Map<String, String> ROSTER_SORT_PROPERTIES = Map.of(
+            "studentName", "user.fullName",
+            "courseTitle", "course.title",
+            "progress", "progress",
+            "enrolledAt", "enrolledAt",
+            "lastActive", "lastActiveAt",
+            "status", "status");
+
     @Autowired
     private CourseRepository courseRepository;
 
@@ -46,21 +67,33 @@ public class InstructorDashboardService {
     @Autowired
     private ReviewRepository reviewRepository;
 
+    @Autowired
+    private CourseStatsService courseStatsService;
+
+    @Autowired
+    private DailyRollupService dailyRollupService;
+
+    @Autowired
+    private DashboardSnapshotCache dashboardSnapshotCache;
+
     /**
      * Lấy thống kê tổng quan cho Instructor Dashboard
+     * (snapshot cache theo instructor, xem DashboardSnapshotCache)
      */
-    @Transactional(readOnly = true)
     public InstructorDashboardStatsDTO getDashboardStats(Long instructorId) {
+        return dashboardSnapshotCache.getInTransaction("instructor-stats", instructorId, () -> loadDashboardStats(instructorId));
+    }
+
+    private InstructorDashboardStatsDTO loadDashboardStats(Long instructorId) {
         // 1. Tổng số khóa học của instructor
         List<Course> instructorCourses = courseRepository.findByInstructorId(instructorId);
         Long totalCourses = (long) instructorCourses.size();
 
-        // 2. Tổng số học viên đã đăng ký (tính từ enrollments của tất cả courses)
-        Long totalStudents = 0L;
-        for (Course course : instructorCourses) {
-            Long enrollments = enrollmentRepository.countByCourseId(course.getId());
-            totalStudents += (enrollments != null ? enrollments : 0L);
-        }
+        // 2. Tổng số học viên đã đăng ký (cộng bộ đếm course_stats của tất cả courses)
+        List<Long> courseIds = instructorCourses.stream().map(Course::getId).collect(Collectors.toList());
+        Long totalStudents = courseStatsService.getStatsByCourseIds(courseIds).values().stream()
+                .mapToLong(CourseStats::getEnrollmentCount)
+                .sum();
 
         // 3. Tổng doanh thu (từ transactions thành công của tất cả courses)
         Double totalEarnings = transactionRepository.calculateRevenueByInstructor(instructorId);
@@ -83,6 +116,8 @@ public class InstructorDashboardService {
     @Transactional(readOnly = true)
     public List<InstructorCourseDTO> getMyCourses(Long instructorId) {
         List<Course> courses = courseRepository.findByInstructorId(instructorId);
+        Map<Long, CourseStats> statsMap = courseStatsService.getStatsByCourseIds(
+                courses.stream().map(Course::getId).collect(Collectors.toList()));
         
         return courses.stream().map(course -> {
             InstructorCourseDTO dto = new InstructorCourseDTO();
@@ -96,13 +131,9 @@ public class InstructorDashboardService {
             dto.setCreatedAt(course.getCreatedAt());
             dto.setUpdatedAt(course.getUpdatedAt());
             
-            // Tính số lượng học viên - đếm tất cả enrollments của course này
-            Long studentsCount = enrollmentRepository.countByCourseId(course.getId());
-            
-            // Đảm bảo không null (countByCourseId có thể trả về null nếu không có enrollment)
-            if (studentsCount == null) {
-                studentsCount = 0L;
-            }
+            // Số lượng học viên lấy từ bộ đếm course_stats
+            CourseStats stats = statsMap.get(course.getId());
+            Long studentsCount = stats != null ? stats.getEnrollmentCount() : 0L;
             
             dto.setStudentsCount(studentsCount);
             dto.setEnrollmentCount(studentsCount); // Set enrollmentCount for consistency with CourseResponse
@@ -116,85 +147,111 @@ public class InstructorDashboardService {
     }
 
     /**
-     * Lấy dữ liệu charts cho Dashboard (6 tháng gần nhất)
+     * Lấy dữ liệu charts cho Dashboard (6 tháng gần nhất, theo tháng)
      */
-    @Transactional(readOnly = true)
     public InstructorChartDataDTO getChartData(Long instructorId) {
-        LocalDateTime now = LocalDateTime.now();
-        List<Course> instructorCourses = courseRepository.findByInstructorId(instructorId);
-        
-        // Lấy danh sách course IDs
-        List<Long> courseIds = instructorCourses.stream()
-                .map(Course::getId)
-                .collect(Collectors.toList());
+        return getChartData(instructorId, InstructorChartDataDTO.Range.LAST_6_MONTHS, InstructorChartDataDTO.Granularity.MONTH);
+    }
 
-        // Tạo dữ liệu cho 6 tháng gần nhất
+    /**
+     * Lấy dữ liệu charts cho Dashboard theo khoảng thời gian và độ chia
+     * (snapshot cache theo instructor + range + granularity, xem DashboardSnapshotCache)
+     */
+    public InstructorChartDataDTO getChartData(Long instructorId, InstructorChartDataDTO.Range range,
+                                               InstructorChartDataDTO.Granularity granularity) {
+        return dashboardSnapshotCache.getInTransaction("instructor-chart:" + range + ":" + granularity, instructorId,
+                () -> loadChartData(instructorId, range, granularity));
+    }
+
+    private InstructorChartDataDTO loadChartData(Long instructorId, InstructorChartDataDTO.Range range,
+                                                 InstructorChartDataDTO.Granularity granularity) {
+        LocalDate today = LocalDate.now();
+        LocalDate from = switch (range) {
+            case LAST_30_DAYS -> today.minusDays(29);
+            case LAST_6_MONTHS -> today.withDayOfMonth(1).minusMonths(5);
+            case LAST_12_MONTHS -> today.withDayOfMonth(1).minusMonths(11);
+            case ALL_TIME -> ALL_TIME_START;
+        };
+
+        // Doanh thu và số ghi danh theo ngày của giảng viên: 1 query trên bảng tổng hợp cho cả khoảng thời gian,
+        // rồi gom theo khoảng (ngày / tuần / tháng)
+        List<DailyRollupService.DailyTotals> days = dailyRollupService.getDailyTotalsForInstructor(instructorId, from, today);
+        if (range == InstructorChartDataDTO.Range.ALL_TIME) {
+            // Bắt đầu từ ngày đầu tiên có dữ liệu (chưa có dữ liệu: chỉ hiển thị khoảng hiện tại)
+            from = days.isEmpty() ? today : days.get(0).date();
+        }
+
+        Map<LocalDate, Double> earningsByBucket = new HashMap<>();
+        Map<LocalDate, Long> enrollmentsByBucket = new HashMap<>();
+        for (DailyRollupService.DailyTotals day : days) {
+            LocalDate bucket = bucketStart(day.date(), granularity);
+            earningsByBucket.merge(bucket, day.revenue(), Double::sum);
+            enrollmentsByBucket.merge(bucket, day.enrollments(), Long::sum);
+        }
+
+        // Tạo dữ liệu cho tất cả các khoảng trong cửa sổ (khoảng không có dữ liệu = 0)
         List<InstructorChartDataDTO.MonthlyData> earningsData = new ArrayList<>();
         List<InstructorChartDataDTO.MonthlyData> enrollmentsData = new ArrayList<>();
-        
-        DateTimeFormatter monthFormatter = DateTimeFormatter.ofPattern("'Tháng' M", Locale.forLanguageTag("vi-VN"));
-        
-        for (int i = 5; i >= 0; i--) {
-            LocalDateTime monthStart = now.minusMonths(i).with(TemporalAdjusters.firstDayOfMonth())
-                    .withHour(0).withMinute(0).withSecond(0).withNano(0);
-            LocalDateTime monthEnd = monthStart.with(TemporalAdjusters.lastDayOfMonth())
-                    .withHour(23).withMinute(59).withSecond(59).withNano(999999999);
-            
-            String monthLabel = monthStart.format(monthFormatter);
-            
-            // Tính doanh thu trong tháng này (từ transactions thành công)
-            List<Transaction> monthlyTransactions = transactionRepository
-                    .findSuccessfulTransactionsByInstructorAndDateRange(instructorId, monthStart, monthEnd);
-            
-            Double monthlyEarnings = monthlyTransactions.stream()
-                    .mapToDouble(t -> t.getAmount() != null ? t.getAmount() : 0.0)
-                    .sum();
-            
-            earningsData.add(new InstructorChartDataDTO.MonthlyData(monthLabel, monthlyEarnings));
-            
-            // Tính số lượng đăng ký trong tháng này (sử dụng query tối ưu)
-            Long monthlyEnrollments = enrollmentRepository.countEnrollmentsByInstructorAndDateRange(
-                instructorId, monthStart, monthEnd
-            );
-            if (monthlyEnrollments == null) {
-                monthlyEnrollments = 0L;
-            }
-            
-            enrollmentsData.add(new InstructorChartDataDTO.MonthlyData(monthLabel, monthlyEnrollments.doubleValue()));
+        boolean withYear = labelsNeedYear(from, today, granularity);
+        for (LocalDate bucket = bucketStart(from, granularity); !bucket.isAfter(today); bucket = nextBucket(bucket, granularity)) {
+            String label = bucketLabel(bucket, granularity, withYear);
+            earningsData.add(new InstructorChartDataDTO.MonthlyData(label, earningsByBucket.getOrDefault(bucket, 0.0)));
+            enrollmentsData.add(new InstructorChartDataDTO.MonthlyData(label,
+                    enrollmentsByBucket.getOrDefault(bucket, 0L).doubleValue()));
         }
         
         return new InstructorChartDataDTO(earningsData, enrollmentsData);
     }
+
+    private static LocalDate bucketStart(LocalDate date, InstructorChartDataDTO.Granularity granularity) {
+        return switch (granularity) {
+            case DAY -> date;
+            case WEEK -> date.with(DayOfWeek.MONDAY);
+            case MONTH -> date.withDayOfMonth(1);
+        };
+    }
+
+    private static LocalDate nextBucket(LocalDate bucket, InstructorChartDataDTO.Granularity granularity) {
+        return switch (granularity) {
+            case DAY -> bucket.plusDays(1);
+            case WEEK -> bucket.plusWeeks(1);
+            case MONTH -> bucket.plusMonths(1);
+        };
+    }
+
+    // Cửa sổ dưới 1 năm (30d, 6m, 12m) thì nhãn không có năm vẫn không trùng nhau: giữ dạng cũ "Tháng M"
+    // kể cả khi cửa sổ vắt qua năm mới; chỉ thêm năm khi cửa sổ dài từ 1 năm trở lên (all)
+    static boolean labelsNeedYear(LocalDate from, LocalDate today, InstructorChartDataDTO.Granularity granularity) {
+        return !bucketStart(from, granularity).plusYears(1).isAfter(today);
+    }
+
+    // Nhãn giữ dạng cũ "Tháng M"; thêm năm khi nhãn không có năm có thể trùng nhau
+    private static String bucketLabel(LocalDate bucket, InstructorChartDataDTO.Granularity granularity, boolean withYear) {
+        return switch (granularity) {
+            case DAY -> bucket.format(withYear ? DAY_YEAR_LABEL : DAY_LABEL);
+            case WEEK -> "Tuần " + bucket.format(withYear ? DAY_YEAR_LABEL : DAY_LABEL);
+            case MONTH -> "Tháng " + (withYear ? bucket.getMonthValue() + "/" + bucket.getYear() : bucket.getMonthValue());
+        };
+    }
     
     /**
      * Lấy dữ liệu doanh thu chi tiết cho trang Doanh thu
+     * (snapshot cache theo instructor, xem DashboardSnapshotCache)
      */
-    @Transactional(readOnly = true)
     public InstructorEarningsDTO getEarnings(Long instructorId) {
+        return dashboardSnapshotCache.getInTransaction("instructor-earnings", instructorId, () -> loadEarnings(instructorId));
+    }
+
+    private InstructorEarningsDTO loadEarnings(Long instructorId) {
         // 1. Tổng doanh thu (từ transactions thành công)
         Double totalRevenue = transactionRepository.calculateRevenueByInstructor(instructorId);
         if (totalRevenue == null) {
             totalRevenue = 0.0;
         }
         
-        // 2. Đang chờ thanh toán (từ transactions PENDING)
-        List<Course> instructorCourses = courseRepository.findByInstructorId(instructorId);
-        List<Long> courseIds = instructorCourses.stream()
-                .map(Course::getId)
-                .collect(Collectors.toList());
-        
-        Double pendingBalance = 0.0;
-        if (!courseIds.isEmpty()) {
-            List<Transaction> pendingTransactions = transactionRepository.findAll()
-                    .stream()
-                    .filter(t -> t.getCourse() != null && courseIds.contains(t.getCourse().getId()))
-                    .filter(t -> t.getStatus() == ETransactionStatus.PENDING)
-                    .collect(Collectors.toList());
-            
-            pendingBalance = pendingTransactions.stream()
-                    .mapToDouble(t -> t.getAmount() != null ? t.getAmount() : 0.0)
-                    .sum();
-        }
+        // 2. Đang chờ thanh toán (tổng tiền transactions PENDING, tính trong DB)
+        Double pendingBalance = transactionRepository.sumAmountByInstructorAndStatus(
+                instructorId, ETransactionStatus.PENDING);
         
         // 3. Có thể rút = Tổng doanh thu - Đang chờ
         Double availableBalance = totalRevenue - pendingBalance;
@@ -214,17 +271,11 @@ public class InstructorDashboardService {
         LocalDateTime lastMonthEnd = lastMonthStart.with(TemporalAdjusters.lastDayOfMonth())
                 .withHour(23).withMinute(59).withSecond(59).withNano(999999999);
         
-        List<Transaction> firstMonthTransactions = transactionRepository
-                .findSuccessfulTransactionsByInstructorAndDateRange(instructorId, firstMonthStart, firstMonthEnd);
-        Double firstMonthRevenue = firstMonthTransactions.stream()
-                .mapToDouble(t -> t.getAmount() != null ? t.getAmount() : 0.0)
-                .sum();
+        Double firstMonthRevenue = transactionRepository
+                .sumRevenueByInstructorAndDateRange(instructorId, firstMonthStart, firstMonthEnd);
         
-        List<Transaction> lastMonthTransactions = transactionRepository
-                .findSuccessfulTransactionsByInstructorAndDateRange(instructorId, lastMonthStart, lastMonthEnd);
-        Double lastMonthRevenue = lastMonthTransactions.stream()
-                .mapToDouble(t -> t.getAmount() != null ? t.getAmount() : 0.0)
-                .sum();
+        Double lastMonthRevenue = transactionRepository
+                .sumRevenueByInstructorAndDateRange(instructorId, lastMonthStart, lastMonthEnd);
         
         Double growthRate = 0.0;
         if (firstMonthRevenue > 0) {
@@ -233,14 +284,11 @@ public class InstructorDashboardService {
             growthRate = 100.0; // Tăng từ 0 lên có doanh thu
         }
         
-        // 5. Lấy giao dịch gần đây (10 giao dịch mới nhất)
-        List<Transaction> allTransactions = transactionRepository
-                .findByInstructorIdOrderByCreatedAtDesc(instructorId)
-                .stream()
-                .limit(10)
-                .collect(Collectors.toList());
+        // 5. Lấy giao dịch gần đây (10 giao dịch mới nhất, LIMIT trong DB)
+        List<Transaction> latestTransactions = transactionRepository
+                .findRecentByInstructorId(instructorId, PageRequest.of(0, 10));
         
-        List<InstructorEarningsDTO.TransactionDTO> recentTransactions = allTransactions.stream()
+        List<InstructorEarningsDTO.TransactionDTO> recentTransactions = latestTransactions.stream()
                 .map(t -> {
                     InstructorEarningsDTO.TransactionDTO dto = new InstructorEarningsDTO.TransactionDTO();
                     dto.setId(t.getId());
@@ -265,56 +313,62 @@ public class InstructorDashboardService {
     }
     
     /**
-     * Lấy danh sách học viên đã đăng ký các khóa học của Instructor
+     * Lấy danh sách học viên đã đăng ký các khóa học của Instructor (toàn bộ, mới đăng ký trước)
+     * Chỉ đọc các cột cần hiển thị; danh sách lớn nên dùng getStudentRoster (phân trang)
      */
     @Transactional(readOnly = true)
     public List<InstructorStudentDTO> getStudents(Long instructorId) {
-        // Lấy tất cả courses của instructor
-        List<Course> instructorCourses = courseRepository.findByInstructorId(instructorId);
-        List<Long> courseIds = instructorCourses.stream()
-                .map(Course::getId)
-                .collect(Collectors.toList());
-        
-        if (courseIds.isEmpty()) {
-            return new ArrayList<>();
-        }
-        
-        // Lấy tất cả enrollments của các courses này (sử dụng query tối ưu)
-        List<Enrollment> enrollments = enrollmentRepository.findByInstructorIdWithDetails(instructorId);
-        
-        // Convert sang DTO
-        return enrollments.stream().map(enrollment -> {
-            InstructorStudentDTO dto = new InstructorStudentDTO();
-            dto.setEnrollmentId(enrollment.getId());
-            dto.setStudentId(enrollment.getUser().getId());
-            dto.setStudentName(enrollment.getUser().getFullName() != null ? 
-                    enrollment.getUser().getFullName() : enrollment.getUser().getUsername());
-            dto.setStudentEmail(enrollment.getUser().getEmail());
-            dto.setCourseId(enrollment.getCourse().getId());
-            dto.setCourseTitle(enrollment.getCourse().getTitle());
-            dto.setProgress(enrollment.getProgress() != null ? enrollment.getProgress() : 0.0);
-            dto.setEnrolledAt(enrollment.getEnrolledAt());
-            dto.setStatus(enrollment.getStatus() != null ? enrollment.getStatus().name() : "IN_PROGRESS");
-            
-            // Lấy lastActive từ User_Progress mới nhất
-            LocalDateTime lastActive = null;
-            if (enrollment.getProgresses() != null && !enrollment.getProgresses().isEmpty()) {
-                lastActive = enrollment.getProgresses().stream()
-                        .filter(p -> p.getCompletedAt() != null)
-                        .map(User_Progress::getCompletedAt)
-                        .max(LocalDateTime::compareTo)
-                        .orElse(null);
-            }
-            
-            // Nếu không có completedAt, lấy enrolledAt
-            if (lastActive == null) {
-                lastActive = enrollment.getEnrolledAt();
+        return getStudentRoster(instructorId, new StudentRosterFilter(),
+                Pageable.unpaged(Sort.by(Sort.Direction.DESC, "enrolledAt"))).getContent();
+    }
+
+    /**
+     * Danh sách học viên của Instructor: phân trang, sắp xếp và lọc trong SQL
+     * Sắp xếp theo: studentName, courseTitle, progress, enrolledAt, lastActive, status (mặc định: enrolledAt giảm dần)
+     */
+    @Transactional(readOnly = true)
+    public Page<InstructorStudentDTO> getStudentRoster(Long instructorId, StudentRosterFilter filter, Pageable pageable) {
+        String search = filter.getSearch() != null && !filter.getSearch().isBlank()
+                ? "%" + filter.getSearch().trim().toLowerCase() + "%"
+                : null;
+        Pageable sqlPageable = pageable.isPaged()
+                ? PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), toRosterSort(pageable.getSort()))
+                : Pageable.unpaged(toRosterSort(pageable.getSort()));
+
+        return enrollmentRepository.findRosterByInstructorId(instructorId, filter.getCourseId(), filter.getStatus(),
+                filter.getMinProgress(), filter.getMaxProgress(), filter.getActiveFrom(), filter.getActiveTo(),
+                search, sqlPageable)
+                .map(row -> {
+                    InstructorStudentDTO dto = new InstructorStudentDTO();
+                    dto.setEnrollmentId((Long) row[0]);
+                    dto.setStudentId((Long) row[1]);
+                    dto.setStudentName((String) row[2]);
+                    dto.setStudentEmail((String) row[3]);
+                    dto.setCourseId((Long) row[4]);
+                    dto.setCourseTitle((String) row[5]);
+                    dto.setProgress(row[6] != null ? (Double) row[6] : 0.0);
+                    dto.setEnrolledAt((LocalDateTime) row[7]);
+                    dto.setLastActive(row[8] != null ? (LocalDateTime) row[8] : (LocalDateTime) row[7]);
+                    dto.setStatus(row[9] != null ? ((EEnrollmentStatus) row[9]).name() : EEnrollmentStatus.IN_PROGRESS.name());
+                    return dto;
+                });
+    }
+
+    // Chỉ cho phép sắp xếp theo các cột đã biết (tên trường của DTO -> thuộc tính của Enrollment)
+    private static Sort toRosterSort(Sort requested) {
+        List<Sort.Order> orders = new ArrayList<>();
+        for (Sort.Order order : requested) {
+            String property = ROSTER_SORT_PROPERTIES.get(order.getProperty());
+            if (property == null) {
+                throw new IllegalArgumentException("Unsupported sort property: " + order.getProperty());
             }
-            
-            dto.setLastActive(lastActive);
-            
-            return dto;
-        }).collect(Collectors.toList());
+            orders.add(new Sort.Order(order.getDirection(), property));
+        }
+        if (orders.isEmpty()) {
+            orders.add(Sort.Order.desc("enrolledAt"));
+        }
+        // Thứ tự ổn định giữa các trang
+        orders.add(Sort.Order.desc("id"));
+        return Sort.by(orders);
     }
 }
-
@@ -21,6 +21,9 @@ public class InstructorService {
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private InboxProjectionService inboxProjectionService;
+    
     @Autowired
     private CourseRepository courseRepository;
     
@@ -89,6 +92,7 @@ public class InstructorService {
         // Update other fields as needed
         
         User updated = userRepository.save(instructor);
+        inboxProjectionService.onUserProfileChanged(updated);
         return convertToDTO(updated);
     }
 
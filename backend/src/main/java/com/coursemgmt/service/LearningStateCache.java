@@ -0,0 +1,192 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.repository.EnrollmentRepository;
+import com.coursemgmt.repository.UserProgressRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache trạng thái học của từng enrollment dưới dạng bitset (bit i = bài học thứ i của curriculum đã hoàn thành)
+ *
+ * - Chỉ số bit lấy từ CurriculumCache.CurriculumTree.ordinalOf(); bitset gắn với curriculum_version,
+ *   curriculum thay đổi thì bitset được dựng lại từ user_progress
+ * - Kiểm tra khóa bài, đếm số bài hoàn thành và % tiến độ chỉ là phép toán trên bit, không cần load User_Progress
+ * - Mỗi lần hoàn thành bài học (ở bất kỳ node nào) tăng enrollments.progress_version trong cùng transaction;
+ *   mỗi lần đọc so sánh version trong DB với bản đang cache, khác thì dựng lại từ user_progress
+ * - ContentService (markLessonAsCompleted / updateLessonWatchTime) bật bit sau khi transaction commit,
+ *   chỉ khi bản cache là bản ngay trước lần ghi này
+ * - Chỉ dùng để đọc: enrollment.progress / status vẫn được tính từ user_progress trong DB
+ */
+@Service
+public class LearningStateCache {
+
+    /**
+     * Trạng thái học của 1 enrollment tại 1 phiên bản curriculum. Không sửa được (withCompleted trả về bản mới)
+     */
+    public static final class LearningState {
+
+        private static final LearningState EMPTY = new LearningState(0L, new BitSet(), 0);
+
+        private final long curriculumVersion;
+        private final BitSet completed;
+        private final int lessonCount;
+
+        private LearningState(long curriculumVersion, BitSet completed, int lessonCount) {
+            this.curriculumVersion = curriculumVersion;
+            this.completed = completed;
+            this.lessonCount = lessonCount;
+        }
+
+        /**
+         * Trạng thái rỗng (chưa ghi danh / chưa học bài nào)
+         */
+        public static LearningState empty() {
+            return EMPTY;
+        }
+
+        public long getCurriculumVersion() {
+            return curriculumVersion;
+        }
+
+        public int getLessonCount() {
+            return lessonCount;
+        }
+
+        public boolean isCompleted(int ordinal) {
+            return ordinal >= 0 && completed.get(ordinal);
+        }
+
+        public int getCompletedCount() {
+            return completed.cardinality();
+        }
+
+        /**
+         * % tiến độ (làm tròn 2 chữ số), khóa học không có bài nào được tính là 100%
+         */
+        public double getProgressPercentage() {
+            if (lessonCount == 0) {
+                return 100.0;
+            }
+            double percentage = ((double) completed.cardinality() / lessonCount) * 100.0;
+            return Math.round(percentage * 100.0) / 100.0;
+        }
+
+        /**
+         * Bản sao có thêm bài học thứ ordinal đã hoàn thành (ordinal < 0 thì trả về chính nó)
+         */
+        public LearningState withCompleted(int ordinal) {
+            if (ordinal < 0 || completed.get(ordinal)) {
+                return this;
+            }
+            BitSet copy = (BitSet) completed.clone();
+            copy.set(ordinal);
+            return new LearningState(curriculumVersion, copy, lessonCount);
+        }
+    }
+
+    // Trạng thái học kèm enrollments.progress_version tại thời điểm nạp/cập nhật
+    private record Cached(LearningState state, long version) {
+    }
+
+    private final UserProgressRepository userProgressRepository;
+    private final EnrollmentRepository enrollmentRepository;
+    private final int maxSize;
+
+    // enrollmentId -> trạng thái học
+    private final LinkedHashMap<Long, Cached> states;
+
+    public LearningStateCache(UserProgressRepository userProgressRepository, EnrollmentRepository enrollmentRepository,
+                              @Value("${content.learning-state-cache.max-size:10000}") int maxSize) {
+        this.userProgressRepository = userProgressRepository;
+        this.enrollmentRepository = enrollmentRepository;
+        this.maxSize = maxSize;
+        this.states = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Cached> eldest) {
+                return size() > LearningStateCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Lấy trạng thái học của enrollment theo cây curriculum hiện tại
+     * (dựng lại nếu khác phiên bản curriculum hoặc progress_version trong DB đã đổi)
+     */
+    public LearningState getState(Long enrollmentId, CurriculumCache.CurriculumTree tree) {
+        return getState(enrollmentId, tree, currentVersion(enrollmentId));
+    }
+
+    /**
+     * Như trên khi đã đọc progress_version cùng câu query khác (vd. EnrollmentRepository.findWatchTarget)
+     */
+    public LearningState getState(Long enrollmentId, CurriculumCache.CurriculumTree tree, Long progressVersion) {
+        // Version phải được đọc trước user_progress: lần ghi commit xen giữa chỉ làm bản cache bị dựng lại thêm 1 lần
+        long version = progressVersion != null ? progressVersion : 0L;
+        synchronized (states) {
+            Cached cached = states.get(enrollmentId);
+            if (cached != null && cached.version() == version && cached.state().curriculumVersion == tree.version()) {
+                return cached.state();
+            }
+        }
+
+        BitSet completed = new BitSet(tree.lessonCount());
+        for (Long lessonId : userProgressRepository.findCompletedLessonIds(enrollmentId)) {
+            int ordinal = tree.ordinalOf(lessonId);
+            if (ordinal >= 0) {
+                completed.set(ordinal);
+            }
+        }
+        LearningState loaded = new LearningState(tree.version(), completed, tree.lessonCount());
+        synchronized (states) {
+            Cached cached = states.get(enrollmentId);
+            if (cached == null || cached.version() <= version) {
+                states.put(enrollmentId, new Cached(loaded, version));
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Tăng progress_version và bật bit của bài học sau khi transaction hiện tại commit
+     * (phải gọi trong transaction ghi User_Progress; rollback thì cache và version không đổi)
+     */
+    public void markCompleted(Long enrollmentId, CurriculumCache.CurriculumTree tree, Long lessonId) {
+        // UPDATE giữ khóa dòng enrollments tới khi commit: version đọc lại ngay sau đó là của lần ghi này
+        enrollmentRepository.incrementProgressVersion(enrollmentId);
+        long version = currentVersion(enrollmentId);
+        int ordinal = tree.ordinalOf(lessonId);
+        Runnable action = () -> {
+            synchronized (states) {
+                Cached cached = states.get(enrollmentId);
+                // Chỉ cập nhật đúng bản ngay trước lần ghi này; có lần ghi khác xen giữa (node khác) thì dựng lại
+                if (cached != null && cached.version() == version - 1
+                        && cached.state().curriculumVersion == tree.version()) {
+                    states.put(enrollmentId, new Cached(cached.state().withCompleted(ordinal), version));
+                } else {
+                    states.remove(enrollmentId);
+                }
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private long currentVersion(Long enrollmentId) {
+        Long version = enrollmentRepository.findProgressVersion(enrollmentId);
+        return version != null ? version : 0L;
+    }
+}
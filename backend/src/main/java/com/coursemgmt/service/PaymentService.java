@@ -45,6 +45,12 @@ public class PaymentService {
     @Autowired
     private VNPayService vnPayService;
 
+    @Autowired
+    private CourseStatsService courseStatsService;
+    
+    @Autowired
+    private HomePageSnapshotService homePageSnapshotService;
+
     /**
      * Tạo payment URL cho việc mua khóa học
      * UC-PAY-01: Payment Module - Create Payment
@@ -183,8 +189,10 @@ public class PaymentService {
         
         // 4. Update ALL transaction statuses
         for (Transaction transaction : transactions) {
+            ETransactionStatus oldStatus = transaction.getStatus();
             transaction.setStatus(newStatus);
             transactionRepository.save(transaction);
+            recordRevenueChange(transaction, oldStatus, newStatus);
             System.out.println("Transaction " + transaction.getId() + " status updated to: " + newStatus);
         }
         
@@ -328,6 +336,7 @@ public class PaymentService {
         
         // Save enrollment
         Enrollment savedEnrollment = enrollmentRepository.save(enrollment);
+        courseStatsService.recordEnrollment(courseId);
         
         System.out.println(">>> SUCCESS: Enrollment created with ID: " + savedEnrollment.getId());
         System.out.println(">>> Enrollment saved for User " + userId + " in Course " + courseId);
@@ -365,6 +374,20 @@ public class PaymentService {
         }
     }
     
+    /**
+     * Cập nhật doanh thu trong course_stats khi giao dịch chuyển vào/ra trạng thái SUCCESS
+     */
+    private void recordRevenueChange(Transaction transaction, ETransactionStatus oldStatus, ETransactionStatus newStatus) {
+        boolean wasSuccess = oldStatus == ETransactionStatus.SUCCESS;
+        boolean isSuccess = newStatus == ETransactionStatus.SUCCESS;
+        if (wasSuccess != isSuccess && transaction.getAmount() != null) {
+            courseStatsService.recordRevenue(transaction.getCourse().getId(),
+                    isSuccess ? transaction.getAmount() : -transaction.getAmount(), transaction.getCreatedAt());
+            // Xếp hạng bán chạy trên trang chủ có thể thay đổi
+            homePageSnapshotService.markDirty();
+        }
+    }
+
     /**
      * Generate unique transaction code
      */
@@ -40,6 +40,9 @@ public class ReviewService {
     @Autowired
     private NotificationService notificationService;
 
+    @Autowired
+    private CourseStatsService courseStatsService;
+
     /**
      * Tạo hoặc cập nhật đánh giá
      */
@@ -64,6 +67,7 @@ public class ReviewService {
         boolean isNewReview = existingReview.isEmpty();
         
         Review review = existingReview.orElse(new Review());
+        Integer previousRating = isNewReview ? null : review.getRating();
 
         review.setUser(user);
         review.setCourse(course);
@@ -71,6 +75,7 @@ public class ReviewService {
         review.setComment(request.getComment());
 
         Review savedReview = reviewRepository.save(review);
+        courseStatsService.recordReview(courseId, previousRating, savedReview.getRating());
         
         // Gửi thông báo cho giảng viên khi có đánh giá mới hoặc chỉnh sửa
         try {
@@ -160,6 +165,7 @@ public class ReviewService {
         }
 
         reviewRepository.delete(review);
+        courseStatsService.recordReviewDeleted(review.getCourse().getId(), review.getRating());
     }
 
     /**
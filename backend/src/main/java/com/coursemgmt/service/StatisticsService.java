@@ -6,6 +6,7 @@ import com.coursemgmt.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.TemporalAdjusters;
 import java.util.*;
@@ -29,53 +30,79 @@ public class StatisticsService {
     @Autowired
     private CertificateRepository certificateRepository;
 
+    @Autowired
+    private CourseStatsService courseStatsService;
+
+    @Autowired
+    private DashboardQueryExecutor dashboardQueryExecutor;
+
+    private static final int TOP_SELLING_LIMIT = 10;
+
     /**
      * Lấy tổng quan dashboard cho admin
      */
     public DashboardStatsDTO getDashboardStats() {
-        // Đếm tổng số
-        Long totalCourses = courseRepository.count();
-        Long totalStudents = countStudents();
-        Long totalInstructors = countInstructors();
-        Long totalEnrollments = enrollmentRepository.count();
-        Long totalCertificates = certificateRepository.count();
-        
-        // Doanh thu - handle NULL values
         LocalDateTime now = LocalDateTime.now();
         LocalDateTime startOfMonth = now.with(TemporalAdjusters.firstDayOfMonth()).withHour(0).withMinute(0);
         LocalDateTime startOfYear = now.with(TemporalAdjusters.firstDayOfYear()).withHour(0).withMinute(0);
         
-        Double totalRevenue = calculateTotalRevenue();
-        Double monthlyRevenue = transactionRepository.calculateRevenueByDateRange(startOfMonth, now);
-        Double yearlyRevenue = transactionRepository.calculateRevenueByDateRange(startOfYear, now);
+        // Các query count/sum độc lập chạy song song (mỗi query 1 transaction read-only riêng)
+        DashboardQueryExecutor.Batch batch = dashboardQueryExecutor.newBatch("statistics");
+        
+        // Đếm tổng số
+        var totalCourses = batch.submit("totalCourses", 0L, courseRepository::count);
+        var totalStudents = batch.submit("totalStudents", 0L, this::countStudents);
+        var totalInstructors = batch.submit("totalInstructors", 0L, this::countInstructors);
+        var totalEnrollments = batch.submit("totalEnrollments", 0L, enrollmentRepository::count);
+        var totalCertificates = batch.submit("totalCertificates", 0L, certificateRepository::count);
+        
+        // Doanh thu - handle NULL values
+        var totalRevenue = batch.submit("totalRevenue", 0.0, this::calculateTotalRevenue);
+        var monthlyRevenue = batch.submit("monthlyRevenue", 0.0,
+            () -> transactionRepository.calculateRevenueByDateRange(startOfMonth, now));
+        var yearlyRevenue = batch.submit("yearlyRevenue", 0.0,
+            () -> transactionRepository.calculateRevenueByDateRange(startOfYear, now));
         
         // Khóa học theo status
-        Long activeCourses = courseRepository.countByStatus(ECourseStatus.PUBLISHED);
-        Long pendingCourses = courseRepository.countByStatus(ECourseStatus.PENDING_APPROVAL);
-        Long draftCourses = courseRepository.countByStatus(ECourseStatus.DRAFT);
+        var activeCourses = batch.submit("activeCourses", 0L,
+            () -> courseRepository.countByStatus(ECourseStatus.PUBLISHED));
+        var pendingCourses = batch.submit("pendingCourses", 0L,
+            () -> courseRepository.countByStatus(ECourseStatus.PENDING_APPROVAL));
+        var draftCourses = batch.submit("draftCourses", 0L,
+            () -> courseRepository.countByStatus(ECourseStatus.DRAFT));
         
         // Giao dịch theo status
-        Long successfulTransactions = transactionRepository.countByStatus(ETransactionStatus.SUCCESS);
-        Long pendingTransactions = transactionRepository.countByStatus(ETransactionStatus.PENDING);
-        Long failedTransactions = transactionRepository.countByStatus(ETransactionStatus.FAILED);
+        var successfulTransactions = batch.submit("successfulTransactions", 0L,
+            () -> transactionRepository.countByStatus(ETransactionStatus.SUCCESS));
+        var pendingTransactions = batch.submit("pendingTransactions", 0L,
+            () -> transactionRepository.countByStatus(ETransactionStatus.PENDING));
+        var failedTransactions = batch.submit("failedTransactions", 0L,
+            () -> transactionRepository.countByStatus(ETransactionStatus.FAILED));
         
         // Tỷ lệ hoàn thành
-        Long completedEnrollments = enrollmentRepository.countByStatus(EEnrollmentStatus.COMPLETED);
-        Long inProgressEnrollments = totalEnrollments - completedEnrollments;
+        var completedEnrollments = batch.submit("completedEnrollments", 0L,
+            () -> enrollmentRepository.countByStatus(EEnrollmentStatus.COMPLETED));
+        
+        batch.await();
+        
+        Long enrollments = totalEnrollments.get();
+        Long completed = completedEnrollments.get();
+        Long inProgressEnrollments = Math.max(0L, enrollments - completed);
         
         Double averageCompletionRate = null;
-        if (totalEnrollments > 0) {
-            averageCompletionRate = (completedEnrollments * 100.0) / totalEnrollments;
+        if (enrollments > 0) {
+            averageCompletionRate = (completed * 100.0) / enrollments;
         }
         
         return new DashboardStatsDTO(
-            totalCourses, totalStudents, totalInstructors, totalEnrollments, totalCertificates,
-            totalRevenue != null ? totalRevenue : 0.0,
-            monthlyRevenue != null ? monthlyRevenue : 0.0,
-            yearlyRevenue != null ? yearlyRevenue : 0.0,
-            activeCourses, pendingCourses, draftCourses,
-            successfulTransactions, pendingTransactions, failedTransactions,
-            averageCompletionRate, completedEnrollments, inProgressEnrollments
+            totalCourses.get(), totalStudents.get(), totalInstructors.get(), enrollments, totalCertificates.get(),
+            orZero(totalRevenue.get()),
+            orZero(monthlyRevenue.get()),
+            orZero(yearlyRevenue.get()),
+            activeCourses.get(), pendingCourses.get(), draftCourses.get(),
+            successfulTransactions.get(), pendingTransactions.get(), failedTransactions.get(),
+            averageCompletionRate, completed, inProgressEnrollments,
+            batch.errors().isEmpty() ? null : batch.errors()
         );
     }
 
@@ -85,8 +112,8 @@ public class StatisticsService {
     public CourseStatsDTO getCourseStats(Long courseId) {
         CourseStatsDTO stats = new CourseStatsDTO();
         
-        // Basic info
-        courseRepository.findById(courseId).ifPresent(course -> {
+        // Basic info (load kèm instructor)
+        courseRepository.findWithDetailsById(courseId).ifPresent(course -> {
             stats.setCourseId(course.getId());
             stats.setCourseTitle(course.getTitle());
             if (course.getInstructor() != null) {
@@ -94,52 +121,26 @@ public class StatisticsService {
             }
         });
         
-        // Enrollments
-        Long totalEnrollments = enrollmentRepository.countByCourseId(courseId);
+        // Tổng số ghi danh, số hoàn thành và doanh thu đọc từ bộ đếm course_stats (O(1))
+        CourseStats counters = courseStatsService.getStats(courseId);
+        long totalEnrollments = counters.getEnrollmentCount();
+        long completed = counters.getCompletedCount();
         stats.setTotalEnrollments(totalEnrollments);
-        
-        // Get all enrollments for this course
-        List<Enrollment> enrollments = enrollmentRepository
-            .findByCourseId(courseId, org.springframework.data.domain.Pageable.unpaged())
-            .getContent();
-        
-        long completed = enrollments.stream()
-            .filter(e -> e.getProgress() >= 100.0)
-            .count();
-        
         stats.setCompletedStudents(completed);
         stats.setActiveStudents(totalEnrollments - completed);
         
-        // Completion rate
+        // Completion rate; tiến độ trung bình không có trong course_stats nên vẫn AVG trên enrollments
         if (totalEnrollments > 0) {
             stats.setCompletionRate((completed * 100.0) / totalEnrollments);
-            
-            // Average progress
-            double avgProgress = enrollments.stream()
-                .mapToDouble(Enrollment::getProgress)
-                .average()
-                .orElse(0.0);
-            stats.setAverageProgress(avgProgress);
+            stats.setAverageProgress(enrollmentRepository.averageProgressByCourseId(courseId));
         }
         
         // Certificates
-        Long certificates = certificateRepository
-            .findByEnrollmentCourseId(courseId, org.springframework.data.domain.Pageable.unpaged())
-            .getTotalElements();
-        stats.setCertificatesIssued(certificates);
-        
-        // Revenue
-        List<Transaction> transactions = transactionRepository
-            .findByCourseId(courseId, org.springframework.data.domain.Pageable.unpaged())
-            .getContent();
-        
-        double revenue = transactions.stream()
-            .filter(t -> "SUCCESS".equals(t.getStatus().toString()))
-            .mapToDouble(Transaction::getAmount)
-            .sum();
+        stats.setCertificatesIssued(certificateRepository.countByEnrollmentCourseId(courseId));
         
-        stats.setTotalRevenue(revenue);
-        stats.setTotalTransactions((long) transactions.size());
+        // Revenue: doanh thu thành công từ course_stats, số giao dịch (mọi trạng thái) đếm trên index
+        stats.setTotalTransactions(transactionRepository.countByCourseId(courseId));
+        stats.setTotalRevenue(counters.getRevenueTotal());
         
         return stats;
     }
@@ -167,39 +168,14 @@ public class StatisticsService {
         stats.setPublishedCourses(published);
         stats.setDraftCourses(courses.size() - published);
         
-        // Students & Revenue
-        Set<Long> uniqueStudents = new HashSet<>();
-        double totalRevenue = 0.0;
-        long totalCertificates = 0;
+        // Students & Revenue & Certificates: đếm/tổng trong DB cho tất cả khóa học của giảng viên
+        Long totalStudents = enrollmentRepository.countDistinctStudentsByInstructorId(instructorId);
+        Double totalRevenue = transactionRepository.calculateRevenueByInstructor(instructorId);
         
-        for (Course course : courses) {
-            // Students
-            List<Enrollment> enrollments = enrollmentRepository
-                .findByCourseId(course.getId(), org.springframework.data.domain.Pageable.unpaged())
-                .getContent();
-            
-            enrollments.forEach(e -> uniqueStudents.add(e.getUser().getId()));
-            
-            // Revenue
-            List<Transaction> transactions = transactionRepository
-                .findByCourseId(course.getId(), org.springframework.data.domain.Pageable.unpaged())
-                .getContent();
-            
-            totalRevenue += transactions.stream()
-                .filter(t -> "SUCCESS".equals(t.getStatus().toString()))
-                .mapToDouble(Transaction::getAmount)
-                .sum();
-            
-            // Certificates
-            totalCertificates += certificateRepository
-                .findByEnrollmentCourseId(course.getId(), org.springframework.data.domain.Pageable.unpaged())
-                .getTotalElements();
-        }
-        
-        stats.setTotalStudents((long) uniqueStudents.size());
-        stats.setActiveStudents((long) uniqueStudents.size()); // Simplified
-        stats.setTotalRevenue(totalRevenue);
-        stats.setCertificatesIssued(totalCertificates);
+        stats.setTotalStudents(totalStudents);
+        stats.setActiveStudents(totalStudents); // Simplified
+        stats.setTotalRevenue(totalRevenue != null ? totalRevenue : 0.0);
+        stats.setCertificatesIssued(certificateRepository.countByInstructorId(instructorId));
         
         return stats;
     }
@@ -254,45 +230,67 @@ public class StatisticsService {
     }
 
     /**
-     * Báo cáo doanh thu
+     * Báo cáo doanh thu trong khoảng [startDate, endDate)
+     * Tổng quan, top khóa học bán chạy (kèm doanh thu) và số giao dịch theo cổng thanh toán
+     * được tính từ cùng 1 query gom nhóm theo khóa học
      */
     public RevenueStatsDTO getRevenueReport(LocalDateTime startDate, LocalDateTime endDate) {
-        RevenueStatsDTO report = new RevenueStatsDTO();
+        validateRange(startDate, endDate);
+        List<Object[]> rows = transactionRepository.aggregateRevenueByCourse(startDate, endDate);
         
+        RevenueStatsDTO report = new RevenueStatsDTO();
         report.setStartDate(startDate.toLocalDate());
         report.setEndDate(endDate.toLocalDate());
         
-        // Total revenue
-        Double totalRevenue = transactionRepository.calculateRevenueByDateRange(startDate, endDate);
-        report.setTotalRevenue(totalRevenue != null ? totalRevenue : 0.0);
-        
-        // Total transactions
-        Long totalTxs = transactionRepository.countSuccessfulTransactions();
-        report.setTotalTransactions(totalTxs);
-        
-        if (totalTxs > 0 && totalRevenue != null) {
-            report.setAverageTransactionValue(totalRevenue / totalTxs);
+        RevenueBreakdownDTO.RevenueGroupDTO total = sumGroups(null, null, rows);
+        report.setTotalRevenue(total.getRevenue());
+        report.setTotalTransactions(total.getUnitsSold());
+        if (total.getUnitsSold() > 0) {
+            report.setAverageTransactionValue(total.getAverageOrderValue());
         }
         
-        // Top selling courses
-        List<Object[]> topCourses = transactionRepository.findTopSellingCourses(
-            org.springframework.data.domain.PageRequest.of(0, 10)
-        );
-        
-        List<RevenueStatsDTO.TopSellingCourseDTO> topSellingList = topCourses.stream()
-            .map(obj -> new RevenueStatsDTO.TopSellingCourseDTO(
-                (Long) obj[0],      // courseId
-                (String) obj[1],    // courseTitle
-                (Long) obj[2],      // totalSales
-                0.0                 // revenue - would need separate query
+        // Top selling courses: theo số lượng bán trong khoảng, rồi theo doanh thu
+        List<RevenueStatsDTO.TopSellingCourseDTO> topSellingList = rows.stream()
+            .filter(row -> toLong(row[7]) > 0)
+            .sorted(Comparator.comparingLong((Object[] row) -> toLong(row[7])).reversed()
+                .thenComparing(Comparator.comparingDouble((Object[] row) -> toDouble(row[6])).reversed()))
+            .limit(TOP_SELLING_LIMIT)
+            .map(row -> new RevenueStatsDTO.TopSellingCourseDTO(
+                (Long) row[0],      // courseId
+                (String) row[1],    // courseTitle
+                toLong(row[7]),     // totalSales
+                toDouble(row[6])    // revenue
             ))
             .collect(Collectors.toList());
-        
         report.setTopSellingCourses(topSellingList);
         
+        // Phương thức thanh toán (giao dịch thành công)
+        report.setVnpayTransactions(rows.stream().mapToLong(row -> toLong(row[11])).sum());
+        report.setMomoTransactions(rows.stream().mapToLong(row -> toLong(row[12])).sum());
+        
         return report;
     }
 
+    /**
+     * Phân tích doanh thu theo khóa học, danh mục và giảng viên từ ngày startDate đến hết ngày endDate
+     * 1 query gom nhóm theo khóa học (range scan trên created_at), danh mục/giảng viên được cộng dồn từ các dòng đó
+     */
+    public RevenueBreakdownDTO getRevenueBreakdown(LocalDate startDate, LocalDate endDate) {
+        LocalDateTime from = startDate.atStartOfDay();
+        LocalDateTime to = endDate.plusDays(1).atStartOfDay();
+        validateRange(from, to);
+        List<Object[]> rows = transactionRepository.aggregateRevenueByCourse(from, to);
+        
+        RevenueBreakdownDTO breakdown = new RevenueBreakdownDTO();
+        breakdown.setStartDate(startDate);
+        breakdown.setEndDate(endDate);
+        breakdown.setTotal(sumGroups(null, null, rows));
+        breakdown.setByCourse(groupRevenue(rows, 0, 1));
+        breakdown.setByCategory(groupRevenue(rows, 2, 3));
+        breakdown.setByInstructor(groupRevenue(rows, 4, 5));
+        return breakdown;
+    }
+
     /**
      * Báo cáo tỷ lệ hoàn thành
      */
@@ -313,33 +311,20 @@ public class StatisticsService {
             );
         }
         
-        // By course
-        List<Course> courses = courseRepository.findAll();
-        List<CompletionReportDTO.CourseCompletionDTO> courseCompletions = courses.stream()
-            .map(course -> {
-                List<Enrollment> enrollments = enrollmentRepository
-                    .findByCourseId(course.getId(), org.springframework.data.domain.Pageable.unpaged())
-                    .getContent();
-                
-                long total = enrollments.size();
-                long completed = enrollments.stream()
-                    .filter(e -> e.getProgress() >= 100.0)
-                    .count();
-                
-                double avgProgress = enrollments.stream()
-                    .mapToDouble(Enrollment::getProgress)
-                    .average()
-                    .orElse(0.0);
-                
+        // By course: 1 query gom nhóm, mỗi khóa học 1 dòng (bộ nhớ không phụ thuộc số lượng enrollment)
+        List<CompletionReportDTO.CourseCompletionDTO> courseCompletions = enrollmentRepository.aggregateCompletionByCourse().stream()
+            .map(row -> {
+                long total = toLong(row[2]);
+                long completed = toLong(row[3]);
                 double completionRate = total > 0 ? (completed * 100.0) / total : 0.0;
                 
                 return new CompletionReportDTO.CourseCompletionDTO(
-                    course.getId(),
-                    course.getTitle(),
+                    (Long) row[0],
+                    (String) row[1],
                     total,
                     completed,
                     completionRate,
-                    avgProgress
+                    toDouble(row[4])
                 );
             })
             .collect(Collectors.toList());
@@ -351,6 +336,39 @@ public class StatisticsService {
 
     // Helper methods
     
+    private static void validateRange(LocalDateTime startDate, LocalDateTime endDate) {
+        if (!startDate.isBefore(endDate)) {
+            throw new IllegalArgumentException("startDate must be before endDate");
+        }
+    }
+    
+    // Gom các dòng aggregateRevenueByCourse theo cột id (khóa học / danh mục / giảng viên), doanh thu giảm dần
+    private static List<RevenueBreakdownDTO.RevenueGroupDTO> groupRevenue(List<Object[]> rows, int idColumn, int nameColumn) {
+        Map<Long, List<Object[]>> groups = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            groups.computeIfAbsent((Long) row[idColumn], id -> new ArrayList<>()).add(row);
+        }
+        return groups.entrySet().stream()
+            .map(entry -> sumGroups(entry.getKey(), (String) entry.getValue().get(0)[nameColumn], entry.getValue()))
+            .sorted(Comparator.comparingDouble(RevenueBreakdownDTO.RevenueGroupDTO::getRevenue).reversed())
+            .collect(Collectors.toList());
+    }
+    
+    private static RevenueBreakdownDTO.RevenueGroupDTO sumGroups(Long id, String name, List<Object[]> rows) {
+        double revenue = 0.0;
+        long success = 0L, failed = 0L, pending = 0L, total = 0L;
+        for (Object[] row : rows) {
+            revenue += toDouble(row[6]);
+            success += toLong(row[7]);
+            failed += toLong(row[8]);
+            pending += toLong(row[9]);
+            total += toLong(row[10]);
+        }
+        return new RevenueBreakdownDTO.RevenueGroupDTO(id, name, revenue, success, total, failed, pending,
+            total > 0 ? (failed * 100.0) / total : 0.0,
+            success > 0 ? revenue / success : 0.0);
+    }
+    
     private Long countStudents() {
         // Count users with STUDENT role
         // Simplified - would need Role join
@@ -363,6 +381,19 @@ public class StatisticsService {
         return courseRepository.countDistinctInstructors();
     }
     
+    private static Double orZero(Double value) {
+        return value != null ? value : 0.0;
+    }
+    
+    // Giá trị số từ kết quả query gom nhóm (kiểu trả về của SUM/COUNT/AVG tùy DB)
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+    
+    private static double toDouble(Object value) {
+        return value != null ? ((Number) value).doubleValue() : 0.0;
+    }
+    
     private Double calculateTotalRevenue() {
         LocalDateTime beginning = LocalDateTime.of(2020, 1, 1, 0, 0);
         LocalDateTime now = LocalDateTime.now();
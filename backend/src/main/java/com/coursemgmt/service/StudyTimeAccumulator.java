@@ -0,0 +1,185 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.model.User_Progress;
+import com.coursemgmt.repository.UserProgressRepository;
+import com.coursemgmt.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bộ cộng dồn thời gian học theo học viên (tổng số phút và số phút của các bài hoàn thành trong tuần này)
+ *
+ * - Lần đầu (hoặc sang tuần mới) được nạp bằng 1 câu SUM trên user_progress JOIN lessons
+ * - Mỗi lần ghi thời gian học (ở bất kỳ node nào) tăng users.study_time_version trong cùng transaction;
+ *   mỗi lần đọc so sánh version trong DB (1 câu theo khóa chính) với bản đang cache, khác thì nạp lại
+ * - ContentService cộng chênh lệch khi ghi thời gian xem / hoàn thành bài đồng bộ (sau khi transaction commit),
+ *   chỉ khi bản cache là bản ngay trước lần ghi này
+ * - Heartbeat đi qua WatchTimeBuffer: chỉ tăng version khi flush, lần đọc sau sẽ nạp lại
+ */
+@Service
+public class StudyTimeAccumulator {
+
+    /**
+     * Thời gian học của 1 học viên, weeklyMinutes tính từ thứ Hai của weekStart
+     */
+    public record StudyTime(double totalMinutes, double weeklyMinutes, LocalDate weekStart) {
+
+        public double totalHours() {
+            return toHours(totalMinutes);
+        }
+
+        public double weeklyHours() {
+            return toHours(weeklyMinutes);
+        }
+
+        private StudyTime plus(double totalDelta, double weeklyDelta) {
+            return new StudyTime(totalMinutes + totalDelta, weeklyMinutes + weeklyDelta, weekStart);
+        }
+
+        // Làm tròn 1 chữ số thập phân
+        private static double toHours(double minutes) {
+            return Math.round((minutes / 60.0) * 10.0) / 10.0;
+        }
+    }
+
+    /**
+     * Các trường của User_Progress ảnh hưởng tới thời gian học (chụp trước và sau khi sửa)
+     */
+    public record ProgressTime(Integer lastWatchedTime, boolean completed, LocalDateTime completedAt) {
+
+        public static ProgressTime of(User_Progress progress) {
+            return new ProgressTime(progress.getLastWatchedTime(), Boolean.TRUE.equals(progress.getIsCompleted()),
+                    progress.getCompletedAt());
+        }
+    }
+
+    // Thời gian học kèm users.study_time_version tại thời điểm nạp/cộng
+    private record Cached(StudyTime studyTime, long version) {
+    }
+
+    private final UserProgressRepository userProgressRepository;
+    private final UserRepository userRepository;
+    private final int maxSize;
+
+    // userId -> thời gian học
+    private final LinkedHashMap<Long, Cached> studyTimes;
+
+    public StudyTimeAccumulator(UserProgressRepository userProgressRepository, UserRepository userRepository,
+                                @Value("${dashboard.study-time.max-size:10000}") int maxSize) {
+        this.userProgressRepository = userProgressRepository;
+        this.userRepository = userRepository;
+        this.maxSize = maxSize;
+        this.studyTimes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Cached> eldest) {
+                return size() > StudyTimeAccumulator.this.maxSize;
+            }
+        };
+    }
+
+    public StudyTime getStudyTime(Long userId) {
+        LocalDate weekStart = currentWeekStart();
+        // Đọc version trước câu SUM: lần ghi commit xen giữa chỉ làm bản cache bị nạp lại thêm 1 lần
+        long version = currentVersion(userId);
+        synchronized (studyTimes) {
+            Cached cached = studyTimes.get(userId);
+            if (cached != null && cached.version() == version && cached.studyTime().weekStart().equals(weekStart)) {
+                return cached.studyTime();
+            }
+        }
+
+        Object[] row = userProgressRepository.sumStudyMinutesByUserId(userId, weekStart.atStartOfDay()).get(0);
+        StudyTime loaded = new StudyTime(toDouble(row[0]), toDouble(row[1]), weekStart);
+        synchronized (studyTimes) {
+            Cached cached = studyTimes.get(userId);
+            if (cached == null || cached.version() <= version) {
+                studyTimes.put(userId, new Cached(loaded, version));
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Tăng version và cộng chênh lệch thời gian học của 1 bản ghi User_Progress sau khi transaction hiện tại commit
+     * (phải gọi trong transaction ghi User_Progress)
+     */
+    public void recordProgressChange(Long userId, ProgressTime before, ProgressTime after, Integer lessonDurationInMinutes) {
+        LocalDateTime weekStart = currentWeekStart().atStartOfDay();
+        double totalDelta = minutesOf(after, lessonDurationInMinutes) - minutesOf(before, lessonDurationInMinutes);
+        double weeklyDelta = weeklyMinutesOf(after, lessonDurationInMinutes, weekStart)
+                - weeklyMinutesOf(before, lessonDurationInMinutes, weekStart);
+        if (totalDelta == 0.0 && weeklyDelta == 0.0) {
+            return;
+        }
+        // UPDATE giữ khóa dòng users tới khi commit: version đọc lại ngay sau đó là của lần ghi này
+        userRepository.incrementStudyTimeVersion(userId);
+        long version = currentVersion(userId);
+        afterCommit(() -> {
+            synchronized (studyTimes) {
+                Cached cached = studyTimes.get(userId);
+                // Chỉ cộng vào đúng bản ngay trước lần ghi này; có lần ghi khác xen giữa (node khác) thì nạp lại
+                if (cached != null && cached.version() == version - 1
+                        && cached.studyTime().weekStart().equals(weekStart.toLocalDate())) {
+                    studyTimes.put(userId, new Cached(cached.studyTime().plus(totalDelta, weeklyDelta), version));
+                } else {
+                    studyTimes.remove(userId);
+                }
+            }
+        });
+    }
+
+    private long currentVersion(Long userId) {
+        Long version = userRepository.findStudyTimeVersion(userId);
+        return version != null ? version : 0L;
+    }
+
+    // Cùng công thức với UserProgressRepository.sumStudyMinutesByUserId
+    private static double minutesOf(ProgressTime progress, Integer lessonDurationInMinutes) {
+        if (progress.lastWatchedTime() != null && progress.lastWatchedTime() > 0) {
+            return progress.lastWatchedTime() / 60.0;
+        }
+        if (progress.completed() && lessonDurationInMinutes != null) {
+            return lessonDurationInMinutes;
+        }
+        return 0.0;
+    }
+
+    private static double weeklyMinutesOf(ProgressTime progress, Integer lessonDurationInMinutes, LocalDateTime weekStart) {
+        if (progress.completedAt() == null || progress.completedAt().isBefore(weekStart)) {
+            return 0.0;
+        }
+        if (progress.lastWatchedTime() != null && progress.lastWatchedTime() > 0) {
+            return progress.lastWatchedTime() / 60.0;
+        }
+        return lessonDurationInMinutes != null ? lessonDurationInMinutes : 0.0;
+    }
+
+    private static LocalDate currentWeekStart() {
+        return LocalDate.now().with(DayOfWeek.MONDAY);
+    }
+
+    private static double toDouble(Object value) {
+        return value != null ? ((Number) value).doubleValue() : 0.0;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
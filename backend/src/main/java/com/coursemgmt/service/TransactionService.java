@@ -30,6 +30,12 @@ public class TransactionService {
     
     @Autowired
     private VNPayService vnPayService; // Service tích hợp VNPay
+    
+    @Autowired
+    private CourseStatsService courseStatsService;
+    
+    @Autowired
+    private HomePageSnapshotService homePageSnapshotService;
 
     /**
      * Tạo giao dịch mới và generate payment URL
@@ -132,6 +138,7 @@ public class TransactionService {
         // Verify payment từ VNPay
         boolean isValid = vnPayService.verifyPaymentSignature(params);
         String responseCode = params.get("vnp_ResponseCode");
+        boolean wasSuccess = transaction.getStatus() == ETransactionStatus.SUCCESS;
         
         if (isValid && "00".equals(responseCode)) {
             // Payment success
@@ -146,6 +153,15 @@ public class TransactionService {
         }
         
         Transaction updated = transactionRepository.save(transaction);
+        
+        // Cập nhật doanh thu khóa học khi trạng thái SUCCESS thay đổi
+        boolean isSuccess = updated.getStatus() == ETransactionStatus.SUCCESS;
+        if (wasSuccess != isSuccess && updated.getAmount() != null) {
+            courseStatsService.recordRevenue(updated.getCourse().getId(),
+                    isSuccess ? updated.getAmount() : -updated.getAmount(), updated.getCreatedAt());
+            // Xếp hạng bán chạy trên trang chủ có thể thay đổi
+            homePageSnapshotService.markDirty();
+        }
         return convertToDTO(updated);
     }
 
@@ -161,6 +177,7 @@ public class TransactionService {
         enrollment.setStatus(EEnrollmentStatus.IN_PROGRESS);
         
         enrollmentRepository.save(enrollment);
+        courseStatsService.recordEnrollment(transaction.getCourse().getId());
     }
 
     /**
@@ -0,0 +1,94 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.model.User_Progress;
+import com.coursemgmt.repository.EnrollmentRepository;
+import com.coursemgmt.repository.UserProgressRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Gộp các bản ghi user_progress trùng (enrollment, lesson) có từ trước khi có uk_user_progress_enrollment_lesson
+ *
+ * - Giữ bản ghi có id nhỏ nhất: thời gian xem/thời lượng lớn nhất, đã hoàn thành nếu 1 bản bất kỳ đã hoàn thành
+ *   (completedAt sớm nhất), các bản còn lại bị xóa; tăng enrollments.progress_version để LearningStateCache dựng lại
+ * - Nếu có trùng thì lúc khởi động Hibernate (ddl-auto=update) không tạo được constraint, nên tạo lại sau khi gộp
+ * - Không còn trùng thì các lần khởi động sau chỉ tốn 1 query
+ */
+@Component
+@Slf4j
+public class UserProgressDeduplicationJob {
+
+    static final String ADD_UNIQUE_CONSTRAINT_SQL =
+            "ALTER TABLE user_progress ADD CONSTRAINT uk_user_progress_enrollment_lesson UNIQUE (enrollment_id, lesson_id)";
+
+    private final UserProgressRepository userProgressRepository;
+    private final EnrollmentRepository enrollmentRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaction;
+
+    public UserProgressDeduplicationJob(UserProgressRepository userProgressRepository,
+                                        EnrollmentRepository enrollmentRepository, JdbcTemplate jdbcTemplate,
+                                        PlatformTransactionManager transactionManager) {
+        this.userProgressRepository = userProgressRepository;
+        this.enrollmentRepository = enrollmentRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void deduplicateOnStartup() {
+        try {
+            List<Object[]> duplicates = userProgressRepository.findDuplicateEnrollmentLessons();
+            if (duplicates.isEmpty()) {
+                return;
+            }
+            for (Object[] key : duplicates) {
+                transaction.executeWithoutResult(status -> merge((Long) key[0], (Long) key[1]));
+            }
+            jdbcTemplate.execute(ADD_UNIQUE_CONSTRAINT_SQL);
+            log.info("Merged duplicate user_progress rows for {} (enrollment, lesson) pair(s) and added the unique constraint",
+                    duplicates.size());
+        } catch (Exception e) {
+            log.error("User progress deduplication failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void merge(Long enrollmentId, Long lessonId) {
+        List<User_Progress> rows = userProgressRepository.findAllByEnrollmentIdAndLessonId(enrollmentId, lessonId);
+        if (rows.size() < 2) {
+            return;
+        }
+        User_Progress kept = rows.get(0);
+        for (User_Progress row : rows.subList(1, rows.size())) {
+            kept.setLastWatchedTime(max(kept.getLastWatchedTime(), row.getLastWatchedTime()));
+            kept.setTotalDuration(max(kept.getTotalDuration(), row.getTotalDuration()));
+            if (Boolean.TRUE.equals(row.getIsCompleted())) {
+                kept.setIsCompleted(true);
+                kept.setCompletedAt(earliest(kept.getCompletedAt(), row.getCompletedAt()));
+            }
+        }
+        userProgressRepository.save(kept);
+        userProgressRepository.deleteAll(rows.subList(1, rows.size()));
+        enrollmentRepository.incrementProgressVersion(enrollmentId);
+    }
+
+    private static Integer max(Integer a, Integer b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return Math.max(a, b);
+    }
+
+    private static LocalDateTime earliest(LocalDateTime a, LocalDateTime b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return a.isBefore(b) ? a : b;
+    }
+}
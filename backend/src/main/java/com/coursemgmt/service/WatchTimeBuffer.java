@@ -0,0 +1,205 @@
+package com.coursemgmt.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buffer ghi trễ (write-behind) cho heartbeat thời gian xem video
+ *
+ * - Gộp theo (enrollment, lesson): chỉ giữ thời gian xem lớn nhất và tổng thời lượng mới nhất
+ * - Ghi xuống user_progress theo lô (JDBC batch) định kỳ, khi buffer đầy và khi tắt ứng dụng,
+ *   trong transaction riêng; buffer đầy thì nhờ thread nền flush (không flush trong transaction của request)
+ * - Chỉ ghi last_watched_time / total_duration (và enrollments.last_active_at, users.study_time_version);
+ *   việc hoàn thành bài học vẫn do ContentService xử lý đồng bộ
+ */
+@Service
+@Slf4j
+public class WatchTimeBuffer {
+
+    // 1 câu cho mỗi (enrollment, lesson): tạo bản ghi nếu chưa có, nếu đã có (uk_user_progress_enrollment_lesson,
+    // kể cả bản ghi vừa được tạo bởi luồng hoàn thành bài học) thì chỉ tăng thời gian xem
+    // Bỏ qua nếu enrollment/lesson đã bị xóa trong lúc chờ ghi
+    private static final String UPSERT_SQL =
+            "INSERT INTO user_progress (enrollment_id, lesson_id, is_completed, last_watched_time, total_duration) " +
+            "SELECT ?, ?, FALSE, ?, ? FROM DUAL " +
+            "WHERE EXISTS (SELECT 1 FROM enrollments WHERE id = ?) AND EXISTS (SELECT 1 FROM lessons WHERE id = ?) " +
+            "ON DUPLICATE KEY UPDATE last_watched_time = GREATEST(COALESCE(last_watched_time, 0), VALUES(last_watched_time)), " +
+            "total_duration = COALESCE(VALUES(total_duration), total_duration)";
+
+    // Hoạt động gần nhất của enrollment = thời điểm flush (trễ tối đa 1 chu kỳ flush)
+    private static final String TOUCH_ENROLLMENT_SQL =
+            "UPDATE enrollments SET last_active_at = ? WHERE id = ? AND (last_active_at IS NULL OR last_active_at < ?)";
+
+    // Thời gian học của học viên đã đổi: StudyTimeAccumulator ở mọi node nạp lại ở lần đọc sau
+    private static final String INCREMENT_STUDY_TIME_VERSION_SQL =
+            "UPDATE users SET study_time_version = study_time_version + 1 WHERE id = ?";
+
+    private record Key(Long enrollmentId, Long lessonId) {
+    }
+
+    /**
+     * Thời gian xem đang chờ ghi của 1 (enrollment, lesson); userId là học viên của enrollment
+     */
+    public record PendingWatch(Long userId, int watchedTime, Integer totalDuration) {
+
+        private PendingWatch merge(PendingWatch newer) {
+            return new PendingWatch(newer.userId, Math.max(watchedTime, newer.watchedTime),
+                    newer.totalDuration != null ? newer.totalDuration : totalDuration);
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${content.watch-time.max-pending:50000}")
+    private int maxPending;
+
+    private final ConcurrentHashMap<Key, PendingWatch> pending = new ConcurrentHashMap<>();
+
+    private final Object flushLock = new Object();
+
+    // Buffer đầy: nhờ thread này flush thay vì flush trên thread của request
+    private final ExecutorService overflowFlusher = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicBoolean overflowFlushRequested = new AtomicBoolean(false);
+
+    private TransactionTemplate flushTransaction;
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    /**
+     * Ghi nhận 1 heartbeat (không chạm DB)
+     */
+    public void record(Long userId, Long enrollmentId, Long lessonId, int watchedTime, Integer totalDuration) {
+        received.incrementAndGet();
+        pending.merge(new Key(enrollmentId, lessonId), new PendingWatch(userId, watchedTime, totalDuration), PendingWatch::merge);
+        if (pending.size() >= maxPending && overflowFlushRequested.compareAndSet(false, true)) {
+            overflowFlusher.execute(() -> {
+                try {
+                    flush();
+                } finally {
+                    overflowFlushRequested.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Lấy ra (và bỏ khỏi buffer) thời gian xem đang chờ ghi, dùng khi bài học được hoàn thành đồng bộ
+     * @return null nếu không có gì đang chờ
+     */
+    public PendingWatch take(Long enrollmentId, Long lessonId) {
+        return pending.remove(new Key(enrollmentId, lessonId));
+    }
+
+    @PostConstruct
+    public void init() {
+        flushTransaction = new TransactionTemplate(transactionManager);
+        flushTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Scheduled(fixedDelayString = "${content.watch-time.flush-ms:10000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        overflowFlusher.shutdown();
+        flush();
+        log.info("Watch-time buffer stopped: {} heartbeat(s) received, {} row write(s)", received.get(), written.get());
+    }
+
+    /**
+     * Ghi toàn bộ buffer xuống DB trong 1 transaction riêng (REQUIRES_NEW): 1 batch upsert user_progress,
+     * 1 batch cập nhật enrollments.last_active_at và 1 batch tăng users.study_time_version
+     * Lỗi khi ghi thì transaction rollback và dữ liệu được đưa trở lại buffer để lần sau ghi tiếp
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<Map.Entry<Key, PendingWatch>> batch = drain();
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                flushTransaction.executeWithoutResult(status -> write(batch));
+                written.addAndGet(batch.size());
+                log.debug("Flushed {} watch-time update(s)", batch.size());
+            } catch (Exception e) {
+                log.error("Failed to flush {} watch-time update(s), will retry: {}", batch.size(), e.getMessage(), e);
+                batch.forEach(entry -> pending.merge(entry.getKey(), entry.getValue(), PendingWatch::merge));
+            }
+        }
+    }
+
+    private void write(List<Map.Entry<Key, PendingWatch>> batch) {
+        jdbcTemplate.batchUpdate(UPSERT_SQL, batch, batch.size(), (ps, entry) -> {
+            ps.setLong(1, entry.getKey().enrollmentId());
+            ps.setLong(2, entry.getKey().lessonId());
+            ps.setInt(3, entry.getValue().watchedTime());
+            setNullableInt(ps, 4, entry.getValue().totalDuration());
+            ps.setLong(5, entry.getKey().enrollmentId());
+            ps.setLong(6, entry.getKey().lessonId());
+        });
+        List<Long> enrollmentIds = batch.stream().map(entry -> entry.getKey().enrollmentId()).distinct().toList();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(TOUCH_ENROLLMENT_SQL, enrollmentIds, enrollmentIds.size(), (ps, enrollmentId) -> {
+            ps.setTimestamp(1, now);
+            ps.setLong(2, enrollmentId);
+            ps.setTimestamp(3, now);
+        });
+        // Sắp xếp để các transaction flush khóa dòng users theo cùng thứ tự
+        List<Long> userIds = batch.stream().map(entry -> entry.getValue().userId()).distinct().sorted().toList();
+        jdbcTemplate.batchUpdate(INCREMENT_STUDY_TIME_VERSION_SQL, userIds, userIds.size(),
+                (ps, userId) -> ps.setLong(1, userId));
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private List<Map.Entry<Key, PendingWatch>> drain() {
+        List<Map.Entry<Key, PendingWatch>> batch = new ArrayList<>(pending.size());
+        for (Key key : pending.keySet()) {
+            PendingWatch value = pending.remove(key);
+            if (value != null) {
+                batch.add(Map.entry(key, value));
+            }
+        }
+        return batch;
+    }
+
+    private static void setNullableInt(PreparedStatement ps, int index, Integer value) throws SQLException {
+        if (value != null) {
+            ps.setInt(index, value);
+        } else {
+            ps.setNull(index, Types.INTEGER);
+        }
+    }
+}
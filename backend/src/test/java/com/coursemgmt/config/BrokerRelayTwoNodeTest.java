@@ -0,0 +1,182 @@
+package com.coursemgmt.config;
+
+import com.coursemgmt.CourseManagementSystemApplication;
+import com.coursemgmt.model.User;
+import com.coursemgmt.security.jwt.JwtUtils;
+import com.coursemgmt.security.services.UserDetailsImpl;
+import com.coursemgmt.support.TestData;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 2 node chạy trong cùng JVM, dùng chung 1 DB H2:
+ * node A bật EmbeddedStompBroker (websocket.broker.mode=embedded), node B relay tới broker của A
+ * Client kết nối vào 1 node phải nhận được tin nhắn /topic và /user/queue gửi từ node còn lại
+ */
+class BrokerRelayTwoNodeTest {
+
+    private static final String DB_URL = "jdbc:h2:mem:two-node;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    private static final long TIMEOUT_SECONDS = 20;
+
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+    private static WebSocketStompClient stompClient;
+
+    @BeforeAll
+    static void startNodes() {
+        nodeA = start("--websocket.broker.mode=embedded",
+                "--websocket.broker.embedded.port=0",
+                "--spring.jpa.hibernate.ddl-auto=create-drop");
+        EmbeddedStompBroker broker = nodeA.getBean(EmbeddedStompBroker.class);
+        nodeB = start("--websocket.broker.mode=relay",
+                "--websocket.broker.relay.host=" + broker.getHost(),
+                "--websocket.broker.relay.port=" + broker.getPort(),
+                // Schema do node A tạo
+                "--spring.jpa.hibernate.ddl-auto=none");
+        stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(new StringMessageConverter());
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        if (stompClient != null) {
+            stompClient.stop();
+        }
+        if (nodeB != null) {
+            nodeB.close();
+        }
+        if (nodeA != null) {
+            nodeA.close();
+        }
+    }
+
+    @Test
+    void topicMessageSentOnOneNodeReachesSubscribersOnBothNodes() throws Exception {
+        User user = new TestData(nodeA).user("topic");
+        StompSession onA = connect(nodeA, user);
+        StompSession onB = connect(nodeB, user);
+        String destination = "/topic/conversation/" + user.getId();
+        BlockingQueue<String> receivedOnA = subscribe(onA, destination);
+        BlockingQueue<String> receivedOnB = subscribe(onB, destination);
+
+        // Gửi từ A tới khi cả 2 subscription đã tới broker (SUBSCRIBE đi qua relay bất đồng bộ)
+        String first = sendUntilReceived(nodeA, destination, receivedOnB);
+        assertEquals(first, poll(receivedOnA, first));
+
+        nodeB.getBean(SimpMessagingTemplate.class).convertAndSend(destination, "from-b");
+        assertEquals("from-b", poll(receivedOnA, "from-b"));
+        assertEquals("from-b", poll(receivedOnB, "from-b"));
+
+        onA.disconnect();
+        onB.disconnect();
+    }
+
+    @Test
+    void userQueueMessageSentOnOtherNodeReachesConnectedUser() throws Exception {
+        User user = new TestData(nodeA).user("queue");
+        StompSession onA = connect(nodeA, user);
+        BlockingQueue<String> received = subscribe(onA, "/user/queue/chat.catchup");
+
+        // Node B không có phiên nào của user: phải chuyển qua broker tới node A
+        SimpMessagingTemplate templateB = nodeB.getBean(SimpMessagingTemplate.class);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        String message = null;
+        for (int attempt = 0; message == null && System.nanoTime() < deadline; attempt++) {
+            templateB.convertAndSendToUser(user.getUsername(), "/queue/chat.catchup", "to-user-" + attempt);
+            message = received.poll(500, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(message != null && message.startsWith("to-user-"),
+                "user on node A should receive /user/queue message sent from node B");
+
+        onA.disconnect();
+    }
+
+    private static ConfigurableApplicationContext start(String... args) {
+        String[] common = {
+                "--server.port=0",
+                "--spring.jmx.enabled=false",
+                "--spring.datasource.url=" + DB_URL
+        };
+        String[] all = new String[common.length + args.length];
+        System.arraycopy(common, 0, all, 0, common.length);
+        System.arraycopy(args, 0, all, common.length, args.length);
+        return new SpringApplicationBuilder(CourseManagementSystemApplication.class).run(all);
+    }
+
+    private static StompSession connect(ConfigurableApplicationContext node, User user) throws Exception {
+        UserDetailsImpl principal = new UserDetailsImpl(user.getId(), user.getUsername(), user.getEmail(),
+                user.getPassword(), true, List.of());
+        String token = node.getBean(JwtUtils.class)
+                .generateJwtToken(new UsernamePasswordAuthenticationToken(principal, null, List.of()));
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("Authorization", "Bearer " + token);
+        int port = ((WebServerApplicationContext) node).getWebServer().getPort();
+        return stompClient.connectAsync("ws://localhost:" + port + "/ws/websocket", new WebSocketHttpHeaders(),
+                connectHeaders, new StompSessionHandlerAdapter() {
+                }).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static BlockingQueue<String> subscribe(StompSession session, String destination) {
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return String.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add((String) payload);
+            }
+        });
+        return received;
+    }
+
+    private static String sendUntilReceived(ConfigurableApplicationContext node, String destination,
+                                            BlockingQueue<String> received) throws InterruptedException {
+        SimpMessagingTemplate template = node.getBean(SimpMessagingTemplate.class);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        for (int attempt = 0; System.nanoTime() < deadline; attempt++) {
+            String payload = "warm-up-" + attempt;
+            template.convertAndSend(destination, payload);
+            String message = received.poll(500, TimeUnit.MILLISECONDS);
+            if (message != null) {
+                return message;
+            }
+        }
+        throw new AssertionError("no message on " + destination + " within " + TIMEOUT_SECONDS + "s");
+    }
+
+    // Bỏ qua các tin warm-up còn sót lại
+    private static String poll(BlockingQueue<String> received, String expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        String message;
+        do {
+            message = received.poll(500, TimeUnit.MILLISECONDS);
+        } while (!expected.equals(message) && System.nanoTime() < deadline);
+        return message;
+    }
+}
@@ -0,0 +1,99 @@
+package com.coursemgmt.controller;
+
+import com.coursemgmt.model.Course;
+import com.coursemgmt.model.User;
+import com.coursemgmt.repository.CourseRepository;
+import com.coursemgmt.repository.UserRepository;
+import com.coursemgmt.security.services.UserDetailsImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.List;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * GET /api/v1/enrollments/stats/monthly: Admin, hoặc giảng viên với khóa học / instructorId của chính mình
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class EnrollmentStatsSecurityTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CourseRepository courseRepository;
+
+    private User lecturer;
+    private User otherLecturer;
+    private Course course;
+
+    @BeforeEach
+    void setUp() {
+        lecturer = saveUser("stats_gv1");
+        otherLecturer = saveUser("stats_gv2");
+        course = new Course();
+        course.setTitle("Khóa học thống kê");
+        course.setDescription("d");
+        course.setPrice(0.0);
+        course.setInstructor(lecturer);
+        course = courseRepository.save(course);
+    }
+
+    @Test
+    void studentCannotReadStats() throws Exception {
+        mockMvc.perform(as(monthly("courseId", course.getId()), saveUser("stats_hv"), "ROLE_STUDENT"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void lecturerReadsOnlyOwnCourseOrOwnInstructorId() throws Exception {
+        mockMvc.perform(as(monthly("courseId", course.getId()), lecturer, "ROLE_LECTURER"))
+                .andExpect(status().isOk());
+        mockMvc.perform(as(monthly("instructorId", lecturer.getId()), lecturer, "ROLE_LECTURER"))
+                .andExpect(status().isOk());
+        mockMvc.perform(as(monthly("courseId", course.getId()), otherLecturer, "ROLE_LECTURER"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(as(monthly("instructorId", lecturer.getId()), otherLecturer, "ROLE_LECTURER"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(as(get("/api/v1/enrollments/stats/monthly"), lecturer, "ROLE_LECTURER"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void adminReadsAnyStats() throws Exception {
+        User admin = saveUser("stats_admin");
+        mockMvc.perform(as(get("/api/v1/enrollments/stats/monthly"), admin, "ROLE_ADMIN"))
+                .andExpect(status().isOk());
+        mockMvc.perform(as(monthly("courseId", course.getId()), admin, "ROLE_ADMIN"))
+                .andExpect(status().isOk());
+    }
+
+    private static MockHttpServletRequestBuilder monthly(String param, Long value) {
+        return get("/api/v1/enrollments/stats/monthly").param("year", "2025").param(param, value.toString());
+    }
+
+    private static MockHttpServletRequestBuilder as(MockHttpServletRequestBuilder request, User account, String role) {
+        return request.with(user(new UserDetailsImpl(account.getId(), account.getUsername(), account.getEmail(),
+                "x", true, List.of(new SimpleGrantedAuthority(role)))));
+    }
+
+    private User saveUser(String username) {
+        User user = userRepository.findByUsername(username).orElseGet(User::new);
+        user.setUsername(username);
+        user.setEmail(username + "@test.local");
+        user.setPassword("x");
+        user.setFullName(username);
+        return userRepository.save(user);
+    }
+}
@@ -0,0 +1,168 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.CompletionReportDTO;
+import com.coursemgmt.model.Course;
+import com.coursemgmt.model.EEnrollmentStatus;
+import com.coursemgmt.model.Enrollment;
+import com.coursemgmt.model.User;
+import com.coursemgmt.repository.CourseRepository;
+import com.coursemgmt.repository.EnrollmentRepository;
+import com.coursemgmt.support.TestData;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Báo cáo hoàn thành StatisticsService.getCompletionReport (1 query GROUP BY) cho cùng kết quả với cách cũ
+ * (findAll khóa học + load toàn bộ enrollment của từng khóa) và số câu SQL không phụ thuộc số khóa học
+ *
+ * Phần so sánh thời gian trên 40.000 enrollment (200 khóa học x 200 học viên, bản thu nhỏ của benchmark
+ * 1 triệu enrollment) gắn tag benchmark, không chạy mặc định
+ */
+@SpringBootTest
+class CompletionReportBenchmarkTest {
+
+    private static final int BENCHMARK_COURSES = 200;
+    private static final int BENCHMARK_STUDENTS = 200;
+    private static final int ROUNDS = 3;
+    // 2 câu đếm tổng (enrollments, COMPLETED) + 1 câu GROUP BY theo khóa học
+    private static final int MAX_STATEMENTS = 3;
+
+    private static final String INSERT_ENROLLMENT_SQL =
+            "INSERT INTO enrollments (user_id, course_id, enrolled_at, progress, status) VALUES (?, ?, ?, ?, ?)";
+
+    @Autowired
+    private StatisticsService statisticsService;
+    @Autowired
+    private CourseRepository courseRepository;
+    @Autowired
+    private EnrollmentRepository enrollmentRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private ApplicationContext context;
+
+    @Test
+    void groupedReportMatchesPerCourseCountsWithConstantStatements() {
+        int students = 20;
+        List<Long> courseIds = coursesWithEnrollments(20, students);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+        CompletionReportDTO report = statisticsService.getCompletionReport();
+        long statements = statistics.getPrepareStatementCount();
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        Map<Long, double[]> oldCounts = readOnly.execute(status -> perCourseCounts());
+        Map<Long, CompletionReportDTO.CourseCompletionDTO> byCourse = new HashMap<>();
+        report.getCourseCompletions().forEach(row -> byCourse.put(row.getCourseId(), row));
+        for (Long courseId : courseIds) {
+            CompletionReportDTO.CourseCompletionDTO row = byCourse.get(courseId);
+            double[] old = oldCounts.get(courseId);
+            assertEquals(students, row.getTotalEnrollments().intValue());
+            assertEquals((long) old[0], row.getTotalEnrollments());
+            assertEquals((long) old[1], row.getCompleted());
+            assertEquals(old[2], row.getAverageProgress(), 0.01);
+        }
+        assertTrue(statements <= MAX_STATEMENTS,
+                "getCompletionReport ran " + statements + " statements, expected at most " + MAX_STATEMENTS);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void groupedReportIsFasterThanLoadingEnrollmentsPerCourse(TestReporter reporter) {
+        coursesWithEnrollments(BENCHMARK_COURSES, BENCHMARK_STUDENTS);
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        long oldNanos = Long.MAX_VALUE;
+        long newNanos = Long.MAX_VALUE;
+        // Vòng đầu là warm-up, lấy thời gian tốt nhất của mỗi cách
+        for (int round = 0; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            readOnly.execute(status -> perCourseCounts());
+            long oldElapsed = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            statisticsService.getCompletionReport();
+            long newElapsed = System.nanoTime() - start;
+
+            if (round > 0) {
+                oldNanos = Math.min(oldNanos, oldElapsed);
+                newNanos = Math.min(newNanos, newElapsed);
+            }
+        }
+
+        reporter.publishEntry("perCourseLoadMs", String.format("%.2f", oldNanos / 1e6));
+        reporter.publishEntry("groupByMs", String.format("%.2f", newNanos / 1e6));
+        assertTrue(newNanos < oldNanos, "grouped completion report should be faster than per-course loading");
+    }
+
+    // courses khóa học x students học viên, cứ 4 enrollment thì 1 đã hoàn thành; trả về id các khóa học
+    private List<Long> coursesWithEnrollments(int courses, int students) {
+        TestData data = new TestData(context);
+        User instructor = data.user("report_instructor");
+        List<Long> courseIds = new ArrayList<>();
+        for (int c = 0; c < courses; c++) {
+            courseIds.add(data.course(instructor, "Báo cáo " + c).getId());
+        }
+        List<Long> studentIds = new ArrayList<>();
+        for (int s = 0; s < students; s++) {
+            studentIds.add(data.user("report_student").getId());
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>();
+        for (int c = 0; c < courses; c++) {
+            for (int s = 0; s < students; s++) {
+                boolean completed = (c + s) % 4 == 0;
+                rows.add(new Object[]{studentIds.get(s), courseIds.get(c), now,
+                        completed ? 100.0 : (double) (s % 100),
+                        (completed ? EEnrollmentStatus.COMPLETED : EEnrollmentStatus.IN_PROGRESS).name()});
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_ENROLLMENT_SQL, rows);
+        return courseIds;
+    }
+
+    // Cách cũ: mỗi khóa học load toàn bộ enrollment rồi đếm trong Java; trả về courseId -> [total, completed, avgProgress]
+    private Map<Long, double[]> perCourseCounts() {
+        Map<Long, double[]> counts = new HashMap<>();
+        for (Course course : courseRepository.findAll()) {
+            List<Enrollment> enrollments = enrollmentRepository.findByCourseId(course.getId(), Pageable.unpaged()).getContent();
+            long completed = enrollments.stream()
+                    .filter(e -> e.getStatus() == EEnrollmentStatus.COMPLETED)
+                    .count();
+            double avgProgress = enrollments.stream()
+                    .mapToDouble(e -> e.getProgress() != null ? e.getProgress() : 0.0)
+                    .average()
+                    .orElse(0.0);
+            counts.put(course.getId(), new double[]{enrollments.size(), completed, avgProgress});
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,142 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.model.Chapter;
+import com.coursemgmt.model.Course;
+import com.coursemgmt.model.Lesson;
+import com.coursemgmt.repository.ChapterRepository;
+import com.coursemgmt.repository.CourseRepository;
+import com.coursemgmt.repository.LessonRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reorder 300 lessons bằng ContentService.reorderCourseLessons (1 query kiểm tra + 1 câu UPDATE ... CASE):
+ * số câu SQL không phụ thuộc số lesson
+ *
+ * Phần so sánh thời gian với cách cũ (findById + save từng lesson) gắn tag benchmark, không chạy mặc định
+ */
+@SpringBootTest
+class ContentServiceReorderBenchmarkTest {
+
+    private static final int CHAPTERS = 10;
+    private static final int LESSONS_PER_CHAPTER = 30;
+    private static final int ROUNDS = 5;
+    // 1 query kiểm tra lesson thuộc khóa học + 1 câu UPDATE ... CASE
+    private static final int MAX_STATEMENTS = 2;
+
+    @Autowired
+    private ContentService contentService;
+    @Autowired
+    private CourseRepository courseRepository;
+    @Autowired
+    private ChapterRepository chapterRepository;
+    @Autowired
+    private LessonRepository lessonRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void reorderOf300LessonsUsesConstantNumberOfStatements() {
+        List<Long> lessonIds = new ArrayList<>();
+        Course course = courseWithLessons(lessonIds);
+        Map<Long, Integer> positions = positions(lessonIds, 0);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+        contentService.reorderCourseLessons(course.getId(), positions);
+        long statements = statistics.getPrepareStatementCount();
+
+        for (Lesson lesson : lessonRepository.findAllById(lessonIds)) {
+            assertEquals(positions.get(lesson.getId()), lesson.getPosition());
+        }
+        assertTrue(statements <= MAX_STATEMENTS,
+                "reorderCourseLessons ran " + statements + " statements, expected at most " + MAX_STATEMENTS);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void reorderOf300LessonsIsFasterThanPerRowSaves(TestReporter reporter) {
+        List<Long> lessonIds = new ArrayList<>();
+        Course course = courseWithLessons(lessonIds);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        Long courseId = course.getId();
+        long oldNanos = Long.MAX_VALUE;
+        long newNanos = Long.MAX_VALUE;
+        // Vòng đầu là warm-up, lấy thời gian tốt nhất của mỗi cách
+        for (int round = 0; round <= ROUNDS; round++) {
+            Map<Long, Integer> oldPositions = positions(lessonIds, round * 2);
+            long start = System.nanoTime();
+            transaction.executeWithoutResult(status -> oldPositions.forEach((id, position) -> {
+                Lesson lesson = lessonRepository.findById(id).orElseThrow();
+                lesson.setPosition(position);
+                lessonRepository.save(lesson);
+            }));
+            long oldElapsed = System.nanoTime() - start;
+
+            Map<Long, Integer> newPositions = positions(lessonIds, round * 2 + 1);
+            start = System.nanoTime();
+            contentService.reorderCourseLessons(courseId, newPositions);
+            long newElapsed = System.nanoTime() - start;
+
+            if (round > 0) {
+                oldNanos = Math.min(oldNanos, oldElapsed);
+                newNanos = Math.min(newNanos, newElapsed);
+            }
+        }
+
+        reporter.publishEntry("perRowSaveMs", String.format("%.2f", oldNanos / 1e6));
+        reporter.publishEntry("bulkUpdateMs", String.format("%.2f", newNanos / 1e6));
+        assertTrue(newNanos < oldNanos, "bulk reorder should be faster than per-row saves");
+    }
+
+    // Khóa học 10 chương x 30 bài, id các bài được thêm vào lessonIds
+    private Course courseWithLessons(List<Long> lessonIds) {
+        Course course = new Course();
+        course.setTitle("Benchmark reorder");
+        course.setDescription("300 lessons");
+        course.setPrice(0.0);
+        course = courseRepository.save(course);
+        for (int c = 0; c < CHAPTERS; c++) {
+            Chapter chapter = new Chapter();
+            chapter.setTitle("Chương " + c);
+            chapter.setPosition(c);
+            chapter.setCourse(course);
+            chapter = chapterRepository.save(chapter);
+            for (int l = 0; l < LESSONS_PER_CHAPTER; l++) {
+                Lesson lesson = new Lesson();
+                lesson.setTitle("Bài " + c + "." + l);
+                lesson.setPosition(l);
+                lesson.setChapter(chapter);
+                lessonIds.add(lessonRepository.save(lesson).getId());
+            }
+        }
+        return course;
+    }
+
+    // Đảo ngược thứ tự, cộng thêm offset để mỗi vòng thực sự thay đổi dữ liệu
+    private static Map<Long, Integer> positions(List<Long> lessonIds, int offset) {
+        Map<Long, Integer> positions = new HashMap<>();
+        for (int i = 0; i < lessonIds.size(); i++) {
+            positions.put(lessonIds.get(i), lessonIds.size() - i + offset);
+        }
+        return positions;
+    }
+}
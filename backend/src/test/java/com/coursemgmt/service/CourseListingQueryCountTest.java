@@ -0,0 +1,121 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.CourseResponse;
+import com.coursemgmt.model.Category;
+import com.coursemgmt.model.Course;
+import com.coursemgmt.model.Review;
+import com.coursemgmt.model.User;
+import com.coursemgmt.repository.CategoryRepository;
+import com.coursemgmt.repository.CourseRepository;
+import com.coursemgmt.repository.ReviewRepository;
+import com.coursemgmt.support.TestData;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.Page;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Số câu SQL của các trang danh sách khóa học không được tăng theo số khóa học trên trang
+ * (mỗi khóa học có instructor, category, enrollment và review riêng để lộ ra N+1 nếu có)
+ */
+@SpringBootTest
+class CourseListingQueryCountTest {
+
+    private static final int COURSES = 50;
+    // 2 câu lấy danh sách (trang + count, hoặc user + enrollments) + 1 câu course_stats
+    // + 3 câu gộp (enrollments, reviews, transactions) cho các khóa học chưa có dòng course_stats
+    private static final int MAX_STATEMENTS = 6;
+
+    @Autowired
+    private CourseService courseService;
+    @Autowired
+    private HomePageSnapshotService homePageSnapshotService;
+    @Autowired
+    private CourseRepository courseRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private ReviewRepository reviewRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private ApplicationContext context;
+
+    private User student;
+
+    @BeforeEach
+    void createCourses() {
+        TestData data = new TestData(context);
+        student = data.user("listing_student");
+        for (int i = 0; i < COURSES; i++) {
+            Category category = new Category();
+            category.setName("Danh mục " + student.getId() + "." + i);
+            category = categoryRepository.save(category);
+
+            Course course = data.course(data.user("listing_instructor"), "Khóa học " + i);
+            course.setCategory(category);
+            course.setIsFeatured(i < 4);
+            course = courseRepository.save(course);
+            data.enrollment(student, course, LocalDateTime.now());
+
+            Review review = new Review();
+            review.setUser(student);
+            review.setCourse(course);
+            review.setRating(1 + i % 5);
+            review.setCreatedAt(LocalDateTime.now());
+            reviewRepository.save(review);
+        }
+    }
+
+    @Test
+    void publishedCoursePageUsesConstantNumberOfStatements() {
+        Page<CourseResponse> page = countStatements("getAllPublishedCourses", () -> courseService.getAllPublishedCourses(
+                null, null, null, null, null, null, null, null, 0, COURSES, "createdAt,desc"));
+
+        assertEquals(COURSES, page.getContent().size());
+        page.getContent().forEach(course -> assertTrue(course.getInstructor() != null && course.getCategory() != null));
+    }
+
+    @Test
+    void myCoursesUsesConstantNumberOfStatements() {
+        List<CourseResponse> courses = countStatements("getMyCourses", () -> courseService.getMyCourses(student.getId()));
+
+        assertEquals(COURSES, courses.size());
+        courses.forEach(course -> {
+            assertEquals(1L, course.getEnrollmentCount());
+            assertEquals(1L, course.getReviewCount());
+        });
+    }
+
+    @Test
+    void featuredCoursesUseConstantNumberOfStatements() {
+        homePageSnapshotService.rebuild();
+
+        List<CourseResponse> featured = countStatements("getFeaturedCourses", () -> courseService.getFeaturedCourses());
+
+        assertFalse(featured.isEmpty());
+    }
+
+    private <T> T countStatements(String name, Supplier<T> call) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        T result = call.get();
+        long statements = statistics.getPrepareStatementCount();
+        assertTrue(statements <= MAX_STATEMENTS,
+                name + " ran " + statements + " statements, expected at most " + MAX_STATEMENTS);
+        return result;
+    }
+}
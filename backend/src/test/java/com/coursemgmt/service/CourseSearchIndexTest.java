@@ -0,0 +1,73 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.model.Course;
+import com.coursemgmt.model.ECourseStatus;
+import com.coursemgmt.repository.CourseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CourseSearchIndexTest {
+
+    private CourseRepository courseRepository;
+    private CourseSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        courseRepository = mock(CourseRepository.class);
+        index = new CourseSearchIndex();
+        ReflectionTestUtils.setField(index, "courseRepository", courseRepository);
+    }
+
+    @Test
+    void prefixMatchesEveryExpandedTerm() {
+        // 100 từ khác nhau cùng tiền tố "java": không khóa học nào bị bỏ sót
+        List<Course> courses = new ArrayList<>();
+        for (long i = 1; i <= 100; i++) {
+            courses.add(course(i, "Lập trình java" + i));
+        }
+        when(courseRepository.findAllPublishedWithDetails()).thenReturn(courses);
+        index.rebuild();
+
+        assertEquals(100, index.search("java").size());
+        assertEquals(100, index.search("lap java").size());
+        // Khớp nguyên từ xếp trước các từ mở rộng theo tiền tố (java70..java79)
+        List<CourseSearchIndex.SearchHit> hits = index.search("java7 lap");
+        assertEquals(11, hits.size());
+        assertEquals(7L, hits.get(0).courseId());
+    }
+
+    @Test
+    void updatesCommittedDuringRebuildAreKept() {
+        when(courseRepository.findAllPublishedWithDetails()).thenReturn(List.of(course(1L, "Spring Boot")));
+        index.rebuild();
+
+        // Khóa học 2 được publish (và khóa 1 bị gỡ) sau khi rebuild đã đọc DB nhưng trước khi thay chỉ mục
+        when(courseRepository.findAllPublishedWithDetails()).thenAnswer(invocation -> {
+            List<Course> snapshot = List.of(course(1L, "Spring Boot"));
+            index.indexCourse(course(2L, "Spring Security"));
+            index.removeCourse(1L);
+            return snapshot;
+        });
+        index.rebuild();
+
+        assertEquals(List.of(2L), index.search("spring").stream().map(CourseSearchIndex.SearchHit::courseId).toList());
+    }
+
+    private static Course course(Long id, String title) {
+        Course course = new Course();
+        course.setId(id);
+        course.setTitle(title);
+        course.setDescription("");
+        course.setPrice(0.0);
+        course.setStatus(ECourseStatus.PUBLISHED);
+        return course;
+    }
+}
@@ -0,0 +1,50 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.CourseResponse;
+import com.coursemgmt.model.Course;
+import com.coursemgmt.support.TestData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Khóa học bị gỡ ở node khác (chỉ mục của node này chưa biết) không còn xuất hiện trong kết quả tìm kiếm
+ */
+@SpringBootTest
+class CourseSearchStatusTest {
+
+    @Autowired
+    private CourseService courseService;
+    @Autowired
+    private CourseSearchIndex courseSearchIndex;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ApplicationContext context;
+
+    @Test
+    void searchSkipsCoursesNoLongerPublished() {
+        TestData data = new TestData(context);
+        Course kept = data.course(data.user("gv"), "Kubernetes căn bản");
+        Course unpublished = data.course(data.user("gv"), "Kubernetes nâng cao");
+        courseSearchIndex.rebuild();
+
+        // Node khác gỡ khóa học về DRAFT: chỉ DB thay đổi, chỉ mục ở node này vẫn còn id
+        jdbcTemplate.update("UPDATE courses SET status = 'DRAFT' WHERE id = ?", unpublished.getId());
+
+        assertEquals(List.of(kept.getId()), ids(courseService.getAllPublishedCourses(
+                "kubernetes", null, null, null, null, null, null, null, 0, 10, "relevance,desc").getContent()));
+        assertEquals(List.of(kept.getId()), ids(courseService.getPublishedCoursesByCursor(
+                "kubernetes", null, null, null, null, null, null, 10, "relevance,desc", false).getContent()));
+    }
+
+    private static List<Long> ids(List<CourseResponse> courses) {
+        return courses.stream().map(CourseResponse::getId).toList();
+    }
+}
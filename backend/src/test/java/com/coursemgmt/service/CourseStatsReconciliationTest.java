@@ -0,0 +1,74 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.model.Course;
+import com.coursemgmt.model.CourseStats;
+import com.coursemgmt.model.User;
+import com.coursemgmt.repository.CourseStatsRepository;
+import com.coursemgmt.support.TestData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Đối soát course_stats sửa dòng bị lệch, nhưng không ghi đè dòng đã được cộng delta sau khi đối soát đọc nó
+ */
+@SpringBootTest
+class CourseStatsReconciliationTest {
+
+    @Autowired
+    private CourseStatsService courseStatsService;
+    @Autowired
+    private CourseStatsRepository courseStatsRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ApplicationContext context;
+
+    @Test
+    void rebuildFixesDriftedRows() {
+        TestData data = new TestData(context);
+        Course course = data.course(data.user("gv"), "Khóa học đối soát");
+        for (int i = 0; i < 3; i++) {
+            data.enrollment(data.user("hv"), course, LocalDateTime.now());
+        }
+        courseStatsService.rebuildStats(course.getId());
+        jdbcTemplate.update("UPDATE course_stats SET enrollment_count = 99 WHERE course_id = ?", course.getId());
+
+        courseStatsService.rebuildAllStats();
+
+        assertEquals(3L, courseStatsRepository.findById(course.getId()).orElseThrow().getEnrollmentCount());
+    }
+
+    @Test
+    void correctionIsSkippedWhenDeltaCommittedAfterRead() {
+        TestData data = new TestData(context);
+        User instructor = data.user("gv");
+        Course course = data.course(instructor, "Khóa học đối soát đồng thời");
+        data.enrollment(data.user("hv"), course, LocalDateTime.now());
+        CourseStats read = courseStatsService.rebuildStats(course.getId());
+
+        // Ghi danh mới commit sau khi đối soát đã đọc dòng course_stats (enrollment_count = 1)
+        data.enrollment(data.user("hv"), course, LocalDateTime.now());
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                courseStatsService.recordEnrollment(course.getId()));
+
+        // Đối soát ghi số đếm cũ của nó (0) với điều kiện dòng vẫn là bản đã đọc: không khớp nên bỏ qua
+        int updated = new TransactionTemplate(transactionManager).execute(status ->
+                courseStatsRepository.replaceCountersIfUnchanged(course.getId(), 0L, 0L, 0L, 0L, 0.0,
+                        read.getEnrollmentCount(), read.getCompletedCount(), read.getReviewCount(),
+                        read.getRatingSum(), read.getRevenueTotal(), LocalDateTime.now()));
+
+        assertEquals(0, updated);
+        assertEquals(2L, courseStatsRepository.findById(course.getId()).orElseThrow().getEnrollmentCount());
+    }
+}
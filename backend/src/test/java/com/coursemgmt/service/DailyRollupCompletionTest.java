@@ -0,0 +1,72 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.model.Course;
+import com.coursemgmt.model.EEnrollmentStatus;
+import com.coursemgmt.model.Enrollment;
+import com.coursemgmt.repository.EnrollmentRepository;
+import com.coursemgmt.support.TestData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Hoàn thành được tính vào cùng 1 ngày (enrollments.completed_at) khi ghi tăng dần và khi dựng lại bảng tổng hợp
+ */
+@SpringBootTest
+class DailyRollupCompletionTest {
+
+    @Autowired
+    private DailyRollupService dailyRollupService;
+    @Autowired
+    private CourseStatsService courseStatsService;
+    @Autowired
+    private EnrollmentRepository enrollmentRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ApplicationContext context;
+
+    @Test
+    void liveAndRebuiltCompletionsLandOnTheSameDay() {
+        TestData data = new TestData(context);
+        Course course = data.course(data.user("gv"), "Khóa học rollup");
+        LocalDate enrolledOn = LocalDate.now().minusDays(10);
+        Enrollment enrollment = data.enrollment(data.user("hv"), course, enrolledOn.atTime(9, 0));
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        transaction.executeWithoutResult(status -> {
+            Enrollment managed = enrollmentRepository.findById(enrollment.getId()).orElseThrow();
+            managed.setStatus(EEnrollmentStatus.COMPLETED);
+            courseStatsService.recordStatusChange(managed, EEnrollmentStatus.IN_PROGRESS);
+        });
+        LocalDateTime completedAt = enrollmentRepository.findById(enrollment.getId()).orElseThrow().getCompletedAt();
+        assertNotNull(completedAt);
+        Map<LocalDate, Long> live = completionsByDay(course.getId(), enrolledOn);
+        assertEquals(Map.of(completedAt.toLocalDate(), 1L), live);
+
+        dailyRollupService.rebuildAll();
+        assertEquals(live, completionsByDay(course.getId(), enrolledOn));
+
+        // Xóa enrollment: trừ vào đúng ngày hoàn thành, không tạo số âm ở ngày khác
+        courseStatsService.recordEnrollmentRemoved(course.getId(), EEnrollmentStatus.COMPLETED,
+                enrollment.getEnrolledAt(), completedAt);
+        assertEquals(Map.of(), completionsByDay(course.getId(), enrolledOn));
+    }
+
+    private Map<LocalDate, Long> completionsByDay(Long courseId, LocalDate from) {
+        return dailyRollupService.getDailyTotalsForCourse(courseId, from, LocalDate.now()).stream()
+                .filter(totals -> totals.completions() != 0)
+                .collect(Collectors.toMap(DailyRollupService.DailyTotals::date, DailyRollupService.DailyTotals::completions));
+    }
+}
@@ -0,0 +1,73 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.model.Chapter;
+import com.coursemgmt.model.Course;
+import com.coursemgmt.model.EEnrollmentStatus;
+import com.coursemgmt.model.Enrollment;
+import com.coursemgmt.model.Lesson;
+import com.coursemgmt.model.User;
+import com.coursemgmt.model.User_Progress;
+import com.coursemgmt.repository.EnrollmentRepository;
+import com.coursemgmt.repository.UserProgressRepository;
+import com.coursemgmt.security.services.UserDetailsImpl;
+import com.coursemgmt.support.TestData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tiến độ enrollment được tính từ user_progress trong DB, không từ bitset (có thể cũ) của LearningStateCache
+ */
+@SpringBootTest
+class EnrollmentProgressTest {
+
+    @Autowired
+    private ContentService contentService;
+    @Autowired
+    private CurriculumCache curriculumCache;
+    @Autowired
+    private LearningStateCache learningStateCache;
+    @Autowired
+    private UserProgressRepository userProgressRepository;
+    @Autowired
+    private EnrollmentRepository enrollmentRepository;
+    @Autowired
+    private ApplicationContext context;
+
+    @Test
+    void progressIgnoresStaleLearningStateCache() {
+        TestData data = new TestData(context);
+        User student = data.user("hv");
+        Course course = data.course(data.user("gv"), "Khóa học tiến độ");
+        Chapter chapter = data.chapter(course, 1);
+        Lesson first = data.lesson(chapter, 1);
+        Lesson second = data.lesson(chapter, 2);
+        data.lesson(chapter, 3);
+        Enrollment enrollment = data.enrollment(student, course, LocalDateTime.now());
+
+        // Node này đã cache trạng thái "chưa học bài nào"
+        learningStateCache.getState(enrollment.getId(), curriculumCache.getTree(course.getId(), course.getCurriculumVersion()));
+
+        // Bài 1 được hoàn thành ở node khác: chỉ DB thay đổi
+        User_Progress done = new User_Progress();
+        done.setEnrollment(enrollment);
+        done.setLesson(first);
+        done.setIsCompleted(true);
+        done.setCompletedAt(LocalDateTime.now());
+        userProgressRepository.save(done);
+
+        contentService.markLessonAsCompleted(second.getId(), new UserDetailsImpl(student.getId(), student.getUsername(),
+                student.getEmail(), "x", true, List.of(new SimpleGrantedAuthority("ROLE_STUDENT"))));
+
+        Enrollment updated = enrollmentRepository.findById(enrollment.getId()).orElseThrow();
+        assertEquals(66.67, updated.getProgress());
+        assertEquals(EEnrollmentStatus.IN_PROGRESS, updated.getStatus());
+    }
+}
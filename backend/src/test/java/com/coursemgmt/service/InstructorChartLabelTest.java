@@ -0,0 +1,29 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.InstructorChartDataDTO.Granularity;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InstructorChartLabelTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 2, 10);
+
+    @Test
+    void defaultWindowCrossingNewYearKeepsMonthLabels() {
+        // 6 tháng gần nhất: 09/2025 .. 02/2026 -> vẫn là "Tháng 9" .. "Tháng 2"
+        assertFalse(InstructorDashboardService.labelsNeedYear(LocalDate.of(2025, 9, 1), TODAY, Granularity.MONTH));
+        assertFalse(InstructorDashboardService.labelsNeedYear(LocalDate.of(2025, 3, 1), TODAY, Granularity.MONTH));
+        assertFalse(InstructorDashboardService.labelsNeedYear(TODAY.minusDays(29), TODAY, Granularity.DAY));
+        assertFalse(InstructorDashboardService.labelsNeedYear(LocalDate.of(2025, 3, 1), TODAY, Granularity.WEEK));
+    }
+
+    @Test
+    void windowOfAYearOrMoreAddsYear() {
+        assertTrue(InstructorDashboardService.labelsNeedYear(LocalDate.of(2025, 2, 1), TODAY, Granularity.MONTH));
+        assertTrue(InstructorDashboardService.labelsNeedYear(LocalDate.of(2024, 6, 15), TODAY, Granularity.DAY));
+    }
+}
@@ -0,0 +1,124 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.model.Chapter;
+import com.coursemgmt.model.Course;
+import com.coursemgmt.model.Enrollment;
+import com.coursemgmt.model.Lesson;
+import com.coursemgmt.repository.EnrollmentRepository;
+import com.coursemgmt.support.TestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bitset trạng thái học chỉ dựa vào enrollments.progress_version trong DB: bài học hoàn thành ở node khác
+ * (không chạm tới cache của node này) vẫn làm lần đọc sau dựng lại
+ */
+@SpringBootTest
+class LearningStateCacheTest {
+
+    @Autowired
+    private LearningStateCache learningStateCache;
+    @Autowired
+    private CurriculumCache curriculumCache;
+    @Autowired
+    private EnrollmentRepository enrollmentRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ApplicationContext context;
+
+    private Course course;
+    private Lesson first;
+    private Lesson second;
+    private Enrollment enrollment;
+
+    @BeforeEach
+    void setUp() {
+        TestData data = new TestData(context);
+        course = data.course(data.user("gv"), "Khóa học trạng thái học");
+        Chapter chapter = data.chapter(course, 1);
+        first = data.lesson(chapter, 1);
+        second = data.lesson(chapter, 2);
+        enrollment = data.enrollment(data.user("hv"), course, LocalDateTime.now());
+    }
+
+    @Test
+    void cachedStateIsReusedUntilVersionChanges() {
+        CurriculumCache.CurriculumTree tree = tree();
+        assertEquals(0, learningStateCache.getState(enrollment.getId(), tree).getCompletedCount());
+
+        // Ghi thẳng xuống DB, không tăng version: vẫn trả bản cache
+        complete(first);
+        assertEquals(0, learningStateCache.getState(enrollment.getId(), tree).getCompletedCount());
+
+        // Node khác hoàn thành bài trong transaction của nó và tăng version
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                enrollmentRepository.incrementProgressVersion(enrollment.getId()));
+        LearningStateCache.LearningState state = learningStateCache.getState(enrollment.getId(), tree);
+        assertEquals(1, state.getCompletedCount());
+        assertTrue(state.isCompleted(tree.ordinalOf(first.getId())));
+    }
+
+    @Test
+    void markCompletedSkipsUpdateWhenAnotherWriteCameInBetween() {
+        CurriculumCache.CurriculumTree tree = tree();
+        assertEquals(0, learningStateCache.getState(enrollment.getId(), tree).getCompletedCount());
+
+        // Node khác hoàn thành bài 1 (version 0 -> 1), node này hoàn thành bài 2 (1 -> 2):
+        // bản cache (version 0) không phải bản ngay trước lần ghi này nên bị dựng lại thay vì chỉ bật bit bài 2
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> {
+            complete(first);
+            enrollmentRepository.incrementProgressVersion(enrollment.getId());
+        });
+        transaction.executeWithoutResult(status -> {
+            complete(second);
+            learningStateCache.markCompleted(enrollment.getId(), tree, second.getId());
+        });
+
+        LearningStateCache.LearningState state = learningStateCache.getState(enrollment.getId(), tree);
+        assertEquals(2, state.getCompletedCount());
+        assertTrue(state.isCompleted(tree.ordinalOf(first.getId())));
+        assertTrue(state.isCompleted(tree.ordinalOf(second.getId())));
+    }
+
+    @Test
+    void markCompletedUpdatesCacheInPlace() {
+        CurriculumCache.CurriculumTree tree = tree();
+        assertFalse(learningStateCache.getState(enrollment.getId(), tree).isCompleted(tree.ordinalOf(first.getId())));
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            complete(first);
+            learningStateCache.markCompleted(enrollment.getId(), tree, first.getId());
+        });
+        // Bài 2 ghi thẳng xuống DB không tăng version: bản cache được bật bit bài 1, không dựng lại từ DB
+        complete(second);
+
+        LearningStateCache.LearningState state = learningStateCache.getState(enrollment.getId(), tree);
+        assertEquals(1, state.getCompletedCount());
+        assertTrue(state.isCompleted(tree.ordinalOf(first.getId())));
+    }
+
+    private CurriculumCache.CurriculumTree tree() {
+        return curriculumCache.getTree(course.getId(), course.getCurriculumVersion());
+    }
+
+    private void complete(Lesson lesson) {
+        jdbcTemplate.update("INSERT INTO user_progress (enrollment_id, lesson_id, is_completed, completed_at) " +
+                "VALUES (?, ?, TRUE, ?)", enrollment.getId(), lesson.getId(), LocalDateTime.now());
+    }
+}
@@ -0,0 +1,164 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.model.Conversation;
+import com.coursemgmt.model.ConversationParticipant;
+import com.coursemgmt.model.Message;
+import com.coursemgmt.model.MessageRead;
+import com.coursemgmt.model.User;
+import com.coursemgmt.repository.ConversationParticipantRepository;
+import com.coursemgmt.repository.ConversationRepository;
+import com.coursemgmt.repository.MessageReadRepository;
+import com.coursemgmt.repository.MessageRepository;
+import com.coursemgmt.repository.UserRepository;
+import com.coursemgmt.support.TestData;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Đánh dấu đã đọc trên conversation 3.000 tin nhắn (2.000 tin của người kia): ChatService.markAsRead
+ * (đẩy watermark) có số câu SQL không phụ thuộc độ dài conversation
+ *
+ * Phần so sánh thời gian với cách cũ (load cả conversation, mỗi tin 1 câu tìm MessageRead + 1 câu insert)
+ * gắn tag benchmark, không chạy mặc định. Cách cũ tăng gần bậc 2 theo số tin (auto-flush trước mỗi câu tìm)
+ * nên không chạy 10.000 tin
+ */
+@SpringBootTest
+class MarkAsReadBenchmarkTest {
+
+    private static final int MESSAGES = 3_000;
+    private static final int MAX_STATEMENTS = 4;
+    // Cứ 3 tin thì 1 tin của học viên, còn lại của giảng viên
+    private static final long FROM_INSTRUCTOR = MESSAGES - (MESSAGES + 2) / 3;
+
+    private static final String INSERT_MESSAGE_SQL =
+            "INSERT INTO messages (conversation_id, sender_id, content, message_type, is_edited, is_deleted, created_at) " +
+            "VALUES (?, ?, ?, 'TEXT', FALSE, FALSE, ?)";
+
+    @Autowired
+    private ChatService chatService;
+    @Autowired
+    private ConversationRepository conversationRepository;
+    @Autowired
+    private ConversationParticipantRepository participantRepository;
+    @Autowired
+    private MessageRepository messageRepository;
+    @Autowired
+    private MessageReadRepository messageReadRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private ApplicationContext context;
+
+    @Test
+    void markAsReadOnLongConversationUsesConstantNumberOfStatements() {
+        TestData data = new TestData(context);
+        User student = data.user("read_student");
+        Long conversationId = conversation(student, data.user("read_instructor"), MESSAGES);
+        assertEquals(FROM_INSTRUCTOR, chatService.getUnreadCount(conversationId, student.getId()));
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+        Long watermark = chatService.markAsRead(conversationId, student.getId());
+        long statements = statistics.getPrepareStatementCount();
+
+        assertEquals(messageRepository.findLastMessageId(conversationId, null), watermark);
+        assertEquals(0L, chatService.getUnreadCount(conversationId, student.getId()));
+        assertTrue(statements <= MAX_STATEMENTS,
+                "markAsRead ran " + statements + " statements, expected at most " + MAX_STATEMENTS);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void watermarkIsFasterThanPerMessageReceipts(TestReporter reporter) {
+        TestData data = new TestData(context);
+        User student = data.user("read_student");
+        User instructor = data.user("read_instructor");
+        // Warm-up trên conversation ngắn để JIT/Hibernate không làm lệch lần đo đầu
+        Long warmUp = conversation(student, instructor, 50);
+        perMessageMarkAsRead(warmUp, student.getId());
+        chatService.markAsRead(warmUp, student.getId());
+
+        Long conversationId = conversation(student, instructor, MESSAGES);
+        long start = System.nanoTime();
+        int receipts = perMessageMarkAsRead(conversationId, student.getId());
+        long oldNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        chatService.markAsRead(conversationId, student.getId());
+        long newNanos = System.nanoTime() - start;
+
+        reporter.publishEntry("perMessageReceiptsMs", String.format("%.2f", oldNanos / 1e6));
+        reporter.publishEntry("watermarkMs", String.format("%.2f", newNanos / 1e6));
+        assertEquals(FROM_INSTRUCTOR, receipts);
+        assertTrue(newNanos < oldNanos, "watermark markAsRead should be faster than per-message receipts");
+    }
+
+    // Cách cũ: load toàn bộ tin nhắn, mỗi tin của người khác tìm MessageRead rồi lưu nếu chưa có
+    private int perMessageMarkAsRead(Long conversationId, Long userId) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        return transaction.execute(status -> {
+            User user = userRepository.getReferenceById(userId);
+            int created = 0;
+            for (Message message : messageRepository.findByConversationIdOrderByCreatedAtAsc(conversationId)) {
+                if (!message.getSender().getId().equals(userId)
+                        && messageReadRepository.findByMessageIdAndUserId(message.getId(), userId).isEmpty()) {
+                    MessageRead read = new MessageRead();
+                    read.setMessage(message);
+                    read.setUser(user);
+                    messageReadRepository.save(read);
+                    created++;
+                }
+            }
+            return created;
+        });
+    }
+
+    // Conversation 2 người, cứ 3 tin thì 1 tin của học viên (bắt đầu bằng học viên), còn lại của giảng viên
+    private Long conversation(User student, User instructor, int messages) {
+        Conversation conversation = conversationRepository.save(new Conversation());
+        participantRepository.save(participant(conversation, student, ConversationParticipant.ParticipantRole.STUDENT));
+        participantRepository.save(participant(conversation, instructor, ConversationParticipant.ParticipantRole.INSTRUCTOR));
+
+        LocalDateTime start = LocalDateTime.now().minusDays(1);
+        List<Object[]> rows = new ArrayList<>(messages);
+        for (int i = 0; i < messages; i++) {
+            Long senderId = i % 3 == 0 ? student.getId() : instructor.getId();
+            rows.add(new Object[]{conversation.getId(), senderId, "Tin nhắn " + i, Timestamp.valueOf(start.plusSeconds(i))});
+        }
+        jdbcTemplate.batchUpdate(INSERT_MESSAGE_SQL, rows);
+        return conversation.getId();
+    }
+
+    private static ConversationParticipant participant(Conversation conversation, User user,
+                                                       ConversationParticipant.ParticipantRole role) {
+        ConversationParticipant participant = new ConversationParticipant();
+        participant.setConversation(conversation);
+        participant.setUser(user);
+        participant.setRole(role);
+        return participant;
+    }
+}
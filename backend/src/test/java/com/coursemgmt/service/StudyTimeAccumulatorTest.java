@@ -0,0 +1,85 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.model.Chapter;
+import com.coursemgmt.model.Course;
+import com.coursemgmt.model.Enrollment;
+import com.coursemgmt.model.Lesson;
+import com.coursemgmt.model.User;
+import com.coursemgmt.repository.UserRepository;
+import com.coursemgmt.support.TestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Cache thời gian học chỉ dựa vào users.study_time_version trong DB: lần ghi ở node khác
+ * (không chạm tới cache của node này) vẫn làm lần đọc sau nạp lại
+ */
+@SpringBootTest
+class StudyTimeAccumulatorTest {
+
+    @Autowired
+    private StudyTimeAccumulator studyTimeAccumulator;
+    @Autowired
+    private WatchTimeBuffer watchTimeBuffer;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ApplicationContext context;
+
+    private User student;
+    private Enrollment enrollment;
+    private Lesson lesson;
+
+    @BeforeEach
+    void setUp() {
+        TestData data = new TestData(context);
+        student = data.user("hv");
+        Course course = data.course(data.user("gv"), "Khóa học thời gian học");
+        Chapter chapter = data.chapter(course, 1);
+        lesson = data.lesson(chapter, 1);
+        enrollment = data.enrollment(student, course, LocalDateTime.now());
+    }
+
+    @Test
+    void cachedStudyTimeIsReusedUntilVersionChanges() {
+        assertEquals(0.0, studyTimeAccumulator.getStudyTime(student.getId()).totalMinutes());
+
+        // Ghi thẳng xuống DB, không tăng version: vẫn trả bản cache
+        jdbcTemplate.update("INSERT INTO user_progress (enrollment_id, lesson_id, is_completed, last_watched_time) " +
+                "VALUES (?, ?, FALSE, 600)", enrollment.getId(), lesson.getId());
+        assertEquals(0.0, studyTimeAccumulator.getStudyTime(student.getId()).totalMinutes());
+
+        // Node khác ghi thời gian học trong transaction của nó và tăng version
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                userRepository.incrementStudyTimeVersion(student.getId()));
+        assertEquals(10.0, studyTimeAccumulator.getStudyTime(student.getId()).totalMinutes());
+    }
+
+    @Test
+    void watchTimeFlushInvalidatesThroughVersion() {
+        assertEquals(0.0, studyTimeAccumulator.getStudyTime(student.getId()).totalMinutes());
+
+        // Flush không xóa cache của node nào: lần đọc sau thấy version mới và nạp lại
+        watchTimeBuffer.record(student.getId(), enrollment.getId(), lesson.getId(), 300, 600);
+        watchTimeBuffer.flush();
+        assertEquals(5.0, studyTimeAccumulator.getStudyTime(student.getId()).totalMinutes());
+
+        watchTimeBuffer.record(student.getId(), enrollment.getId(), lesson.getId(), 540, 600);
+        watchTimeBuffer.flush();
+        assertEquals(9.0, studyTimeAccumulator.getStudyTime(student.getId()).totalMinutes());
+    }
+}
@@ -0,0 +1,66 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.model.Chapter;
+import com.coursemgmt.model.Course;
+import com.coursemgmt.model.Enrollment;
+import com.coursemgmt.model.Lesson;
+import com.coursemgmt.model.User_Progress;
+import com.coursemgmt.repository.UserProgressRepository;
+import com.coursemgmt.support.TestData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class UserProgressDeduplicationJobTest {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO user_progress (enrollment_id, lesson_id, is_completed, completed_at, last_watched_time, total_duration) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private UserProgressDeduplicationJob job;
+    @Autowired
+    private UserProgressRepository userProgressRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ApplicationContext context;
+
+    @Test
+    void mergesDuplicatesAndRestoresUniqueConstraint() {
+        TestData data = new TestData(context);
+        Course course = data.course(data.user("gv"), "Khóa học trùng tiến độ");
+        Chapter chapter = data.chapter(course, 1);
+        Lesson lesson = data.lesson(chapter, 1);
+        Enrollment enrollment = data.enrollment(data.user("hv"), course, LocalDateTime.now());
+        LocalDateTime completedAt = LocalDateTime.of(2025, 3, 1, 8, 0);
+
+        // Dữ liệu cũ: chưa có constraint nên có 3 bản ghi cho cùng (enrollment, lesson)
+        jdbcTemplate.execute("ALTER TABLE user_progress DROP CONSTRAINT uk_user_progress_enrollment_lesson");
+        jdbcTemplate.update(INSERT_SQL, enrollment.getId(), lesson.getId(), false, null, 30, null);
+        jdbcTemplate.update(INSERT_SQL, enrollment.getId(), lesson.getId(), true, completedAt, 120, 600);
+        jdbcTemplate.update(INSERT_SQL, enrollment.getId(), lesson.getId(), false, null, 90, 600);
+
+        job.deduplicateOnStartup();
+
+        List<User_Progress> rows = userProgressRepository.findAllByEnrollmentIdAndLessonId(enrollment.getId(), lesson.getId());
+        assertEquals(1, rows.size());
+        assertTrue(rows.get(0).getIsCompleted());
+        assertEquals(completedAt, rows.get(0).getCompletedAt());
+        assertEquals(120, rows.get(0).getLastWatchedTime());
+        assertEquals(600, rows.get(0).getTotalDuration());
+        assertThrows(DataIntegrityViolationException.class,
+                () -> jdbcTemplate.update(INSERT_SQL, enrollment.getId(), lesson.getId(), false, null, 10, null));
+    }
+}
@@ -0,0 +1,109 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.model.Chapter;
+import com.coursemgmt.model.Course;
+import com.coursemgmt.model.Enrollment;
+import com.coursemgmt.model.Lesson;
+import com.coursemgmt.model.User;
+import com.coursemgmt.model.User_Progress;
+import com.coursemgmt.repository.UserProgressRepository;
+import com.coursemgmt.support.TestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class WatchTimeBufferTest {
+
+    @Autowired
+    private WatchTimeBuffer watchTimeBuffer;
+    @Autowired
+    private UserProgressRepository userProgressRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ApplicationContext context;
+
+    private User student;
+    private Enrollment enrollment;
+    private Lesson watchedLesson;
+    private Lesson newLesson;
+
+    @BeforeEach
+    void setUp() {
+        TestData data = new TestData(context);
+        student = data.user("hv");
+        Course course = data.course(data.user("gv"), "Khóa học buffer");
+        Chapter chapter = data.chapter(course, 1);
+        watchedLesson = data.lesson(chapter, 1);
+        newLesson = data.lesson(chapter, 2);
+        enrollment = data.enrollment(student, course, LocalDateTime.now());
+    }
+
+    @Test
+    void flushUpsertsOneRowPerEnrollmentLesson() {
+        User_Progress existing = new User_Progress();
+        existing.setEnrollment(enrollment);
+        existing.setLesson(watchedLesson);
+        existing.setIsCompleted(true);
+        existing.setLastWatchedTime(100);
+        userProgressRepository.save(existing);
+
+        watchTimeBuffer.record(student.getId(), enrollment.getId(), watchedLesson.getId(), 50, 600);
+        watchTimeBuffer.record(student.getId(), enrollment.getId(), newLesson.getId(), 30, 600);
+        watchTimeBuffer.flush();
+        watchTimeBuffer.record(student.getId(), enrollment.getId(), watchedLesson.getId(), 250, null);
+        watchTimeBuffer.record(student.getId(), enrollment.getId(), newLesson.getId(), 40, 600);
+        watchTimeBuffer.flush();
+
+        List<User_Progress> watched = rows(watchedLesson);
+        assertEquals(1, watched.size());
+        assertEquals(250, watched.get(0).getLastWatchedTime());
+        assertEquals(600, watched.get(0).getTotalDuration());
+        assertTrue(watched.get(0).getIsCompleted());
+
+        List<User_Progress> created = rows(newLesson);
+        assertEquals(1, created.size());
+        assertEquals(40, created.get(0).getLastWatchedTime());
+    }
+
+    @Test
+    void flushCommitsIndependentlyOfCallerTransaction() {
+        watchTimeBuffer.record(student.getId(), enrollment.getId(), newLesson.getId(), 70, 600);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            watchTimeBuffer.flush();
+            status.setRollbackOnly();
+        });
+
+        assertEquals(70, rows(newLesson).get(0).getLastWatchedTime());
+    }
+
+    @Test
+    void duplicateProgressRowsAreRejected() {
+        User_Progress first = new User_Progress();
+        first.setEnrollment(enrollment);
+        first.setLesson(newLesson);
+        userProgressRepository.saveAndFlush(first);
+
+        User_Progress second = new User_Progress();
+        second.setEnrollment(enrollment);
+        second.setLesson(newLesson);
+        assertThrows(DataIntegrityViolationException.class, () -> userProgressRepository.saveAndFlush(second));
+    }
+
+    private List<User_Progress> rows(Lesson lesson) {
+        return userProgressRepository.findAllByEnrollmentIdAndLessonId(enrollment.getId(), lesson.getId());
+    }
+}
@@ -0,0 +1,88 @@
+package com.coursemgmt.support;
+
+import com.coursemgmt.model.Chapter;
+import com.coursemgmt.model.Course;
+import com.coursemgmt.model.ECourseStatus;
+import com.coursemgmt.model.EEnrollmentStatus;
+import com.coursemgmt.model.Enrollment;
+import com.coursemgmt.model.Lesson;
+import com.coursemgmt.model.User;
+import com.coursemgmt.repository.ChapterRepository;
+import com.coursemgmt.repository.CourseRepository;
+import com.coursemgmt.repository.EnrollmentRepository;
+import com.coursemgmt.repository.LessonRepository;
+import com.coursemgmt.repository.UserRepository;
+import org.springframework.context.ApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tạo dữ liệu tối thiểu (user, khóa học, chương, bài học, ghi danh) cho các test dùng chung 1 DB H2
+ * Tên đăng nhập/email được đánh số để các test không đụng nhau
+ */
+public class TestData {
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final UserRepository userRepository;
+    private final CourseRepository courseRepository;
+    private final ChapterRepository chapterRepository;
+    private final LessonRepository lessonRepository;
+    private final EnrollmentRepository enrollmentRepository;
+
+    public TestData(ApplicationContext context) {
+        this.userRepository = context.getBean(UserRepository.class);
+        this.courseRepository = context.getBean(CourseRepository.class);
+        this.chapterRepository = context.getBean(ChapterRepository.class);
+        this.lessonRepository = context.getBean(LessonRepository.class);
+        this.enrollmentRepository = context.getBean(EnrollmentRepository.class);
+    }
+
+    public User user(String prefix) {
+        String username = prefix + "_" + SEQUENCE.incrementAndGet();
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@test.local");
+        user.setPassword("x");
+        user.setFullName(username);
+        return userRepository.save(user);
+    }
+
+    public Course course(User instructor, String title) {
+        Course course = new Course();
+        course.setTitle(title);
+        course.setDescription(title);
+        course.setPrice(0.0);
+        course.setStatus(ECourseStatus.PUBLISHED);
+        course.setInstructor(instructor);
+        course.setCreatedAt(LocalDateTime.now());
+        return courseRepository.save(course);
+    }
+
+    public Chapter chapter(Course course, int position) {
+        Chapter chapter = new Chapter();
+        chapter.setTitle("Chương " + position);
+        chapter.setPosition(position);
+        chapter.setCourse(course);
+        return chapterRepository.save(chapter);
+    }
+
+    public Lesson lesson(Chapter chapter, int position) {
+        Lesson lesson = new Lesson();
+        lesson.setTitle("Bài " + position);
+        lesson.setPosition(position);
+        lesson.setDurationInMinutes(10);
+        lesson.setChapter(chapter);
+        return lessonRepository.save(lesson);
+    }
+
+    public Enrollment enrollment(User student, Course course, LocalDateTime enrolledAt) {
+        Enrollment enrollment = new Enrollment();
+        enrollment.setUser(student);
+        enrollment.setCourse(course);
+        enrollment.setEnrolledAt(enrolledAt);
+        enrollment.setStatus(EEnrollmentStatus.IN_PROGRESS);
+        return enrollmentRepository.save(enrollment);
+    }
+}